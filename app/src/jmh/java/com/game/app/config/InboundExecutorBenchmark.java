@@ -0,0 +1,122 @@
+package com.game.app.config;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Compares the default inbound channel pool (core 4 / max 12 / queue 500) with the virtual-thread mode.
+ *
+ * <p>Each benchmark thread is a client with one SEND frame in flight. The handler holds one of
+ * {@code connections} (the Hikari pool) for a database round trip and then waits on an outbound call such
+ * as FCM without a connection. An operation ends when the handler has finished, so {@code SampleTime}
+ * percentiles are frame latency and {@code Throughput} is frames per second. With fewer than 500 frames
+ * queued the pool never grows past its 4 core threads; frames it rejects are counted and printed at the end.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(256)
+public class InboundExecutorBenchmark {
+
+  private static final String DONE_HEADER = "done";
+
+  @Param({ "pool", "virtual" })
+  public String mode;
+
+  @Param({ "20" })
+  public int connections;
+
+  @Param({ "1000" })
+  public long roundTripMicros;
+
+  @Param({ "0", "20000" })
+  public long outboundCallMicros;
+
+  private final LongAdder rejected = new LongAdder();
+  private Semaphore pooledConnections;
+  private ThreadPoolTaskExecutor pool;
+  private ExecutorSubscribableChannel inbound;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    pooledConnections = new Semaphore(connections, true);
+    if ("virtual".equals(mode)) {
+      inbound = new ExecutorSubscribableChannel(new VirtualThreadTaskExecutor("stomp-inbound-"));
+      inbound.addInterceptor(new BlockingWorkLimiter(true, connections));
+    } else {
+      pool = new ThreadPoolTaskExecutor();
+      pool.setCorePoolSize(4);
+      pool.setMaxPoolSize(12);
+      pool.setQueueCapacity(500);
+      pool.initialize();
+      inbound = new ExecutorSubscribableChannel(pool);
+    }
+    inbound.subscribe(this::handle);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (pool != null) {
+      pool.shutdown();
+    }
+    System.out.println("rejected frames: " + rejected.sum());
+  }
+
+  @Benchmark
+  public Object sendUntilHandled() {
+    CompletableFuture<Object> done = new CompletableFuture<>();
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+    accessor.setDestination("/app/chat.send");
+    accessor.setHeader(DONE_HEADER, done);
+    try {
+      inbound.send(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    } catch (MessageDeliveryException ex) {
+      rejected.increment();
+      return ex;
+    }
+    return done.join();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void handle(Message<?> message) {
+    pooledConnections.acquireUninterruptibly();
+    try {
+      LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros));
+    } finally {
+      pooledConnections.release();
+    }
+    if (outboundCallMicros > 0) {
+      LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(outboundCallMicros));
+    }
+    ((CompletableFuture<Object>) message.getHeaders().get(DONE_HEADER)).complete(Boolean.TRUE);
+  }
+}
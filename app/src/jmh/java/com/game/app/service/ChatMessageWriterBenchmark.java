@@ -0,0 +1,121 @@
+package com.game.app.service;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.game.app.model.ChatMessageEntity;
+import com.game.app.repository.ChatMessageRepository;
+
+/**
+ * Compares the per-message save path of {@code /chat.send} with group commit.
+ *
+ * <p>Each benchmark thread is one sending client. The server side is modelled by the default inbound pool
+ * (4 worker permits) in front of a repository stub that parks for one database round trip plus a small
+ * per-row cost. An operation ends when the message is durable, i.e. when the send-ack would go out, so the
+ * {@code SampleTime} percentiles are ack latency and {@code Throughput} is messages per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+public class ChatMessageWriterBenchmark {
+
+  @Param({ "false", "true" })
+  public boolean groupCommit;
+
+  @Param({ "0", "2" })
+  public long maxDelayMs;
+
+  @Param({ "500" })
+  public long roundTripMicros;
+
+  @Param({ "20" })
+  public long perRowMicros;
+
+  private final AtomicLong ids = new AtomicLong();
+  private final Semaphore inboundWorkers = new Semaphore(4);
+  private ChatMessageWriter writer;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    writer = new ChatMessageWriter(stubRepository(), groupCommit, 64, maxDelayMs, 2000, 1000);
+    writer.start();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    writer.stop();
+  }
+
+  @Benchmark
+  public ChatMessageWriter.PersistedMessage sendUntilAck() throws InterruptedException {
+    ChatMessageEntity entity = new ChatMessageEntity();
+    entity.setFromUsername("alice");
+    entity.setToUsername("bob");
+    entity.setMessage("hello");
+    entity.setType("text");
+
+    inboundWorkers.acquire();
+    CompletableFuture<ChatMessageWriter.PersistedMessage> future;
+    try {
+      future = writer.persist(entity);
+    } finally {
+      inboundWorkers.release();
+    }
+    return future.join();
+  }
+
+  private ChatMessageRepository stubRepository() {
+    return (ChatMessageRepository) Proxy.newProxyInstance(
+        ChatMessageRepository.class.getClassLoader(),
+        new Class<?>[] { ChatMessageRepository.class },
+        (proxy, method, args) -> switch (method.getName()) {
+          case "save" -> {
+            simulateRoundTrip(1);
+            ChatMessageEntity entity = (ChatMessageEntity) args[0];
+            entity.setId(ids.incrementAndGet());
+            yield entity;
+          }
+          case "insertAll" -> {
+            @SuppressWarnings("unchecked")
+            List<ChatMessageEntity> entities = (List<ChatMessageEntity>) args[0];
+            simulateRoundTrip(entities.size());
+            for (ChatMessageEntity entity : entities) {
+              entity.setId(ids.incrementAndGet());
+            }
+            yield null;
+          }
+          case "hashCode" -> System.identityHashCode(proxy);
+          case "equals" -> proxy == args[0];
+          case "toString" -> "StubChatMessageRepository";
+          default -> throw new UnsupportedOperationException(method.getName());
+        });
+  }
+
+  private void simulateRoundTrip(int rows) {
+    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros + perRowMicros * rows));
+  }
+}
@@ -0,0 +1,60 @@
+package com.game.app.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Baseline for {@link ChatStatsService#calculateStreak} over a pair's talk dates, as computed for every stats
+ * request. {@code days} is the history length; a pair talks on roughly four days out of five, with the dates
+ * newest first and partly repeated, one per analytics row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatStreakBenchmark {
+
+  @Param({ "30", "365", "1500" })
+  public int days;
+
+  private List<LocalDate> talkDates;
+  private LocalDate today;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    SplittableRandom random = new SplittableRandom(7);
+    today = LocalDate.of(2026, 3, 1);
+    talkDates = new ArrayList<>();
+    for (int day = 0; day < days; day += 1) {
+      if (random.nextInt(5) != 0) {
+        talkDates.add(today.minusDays(day));
+        if (random.nextBoolean()) {
+          talkDates.add(today.minusDays(day));
+        }
+      }
+    }
+  }
+
+  @Benchmark
+  public Object calculateStreak() {
+    return ChatStatsService.calculateStreak(talkDates, today);
+  }
+}
@@ -0,0 +1,97 @@
+package com.game.app.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.game.app.model.UserEntity;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * Access-token verification throughput, as paid by every REST request and STOMP CONNECT.
+ *
+ * <p>{@code freshParserPerCall} is the previous implementation (a parser built and the signature checked on
+ * every call). {@code extractAccessUserId} runs the service with the verified-token cache disabled
+ * ({@code cacheEntries=0}, shared parser only) and enabled. {@code distinctTokens} is how many different
+ * users' tokens the threads rotate through.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class JwtTokenServiceBenchmark {
+
+  private static final String ACCESS_SECRET = "benchmark-access-secret-benchmark-access-secret-0123";
+  private static final String REFRESH_SECRET = "benchmark-refresh-secret-benchmark-refresh-secret-012";
+
+  @Param({ "0", "10000" })
+  public int cacheEntries;
+
+  @Param({ "1000" })
+  public int distinctTokens;
+
+  private JwtTokenService service;
+  private SecretKey accessKey;
+  private String[] tokens;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    service = new JwtTokenService(ACCESS_SECRET, REFRESH_SECRET, 3600000L, 2592000000L, cacheEntries);
+    accessKey = Keys.hmacShaKeyFor(ACCESS_SECRET.getBytes(StandardCharsets.UTF_8));
+    tokens = new String[distinctTokens];
+    for (int i = 0; i < distinctTokens; i += 1) {
+      UserEntity user = new UserEntity("user" + i, "hash");
+      ReflectionTestUtils.setField(user, "id", (long) i + 1);
+      user.setRole("chat");
+      tokens[i] = "Bearer " + service.issueAccessToken(user);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int next;
+
+    int advance(int size) {
+      next = next + 1 == size ? 0 : next + 1;
+      return next;
+    }
+  }
+
+  @Benchmark
+  public Long extractAccessUserId(Cursor cursor) {
+    return service.extractAccessUserId(tokens[cursor.advance(tokens.length)]);
+  }
+
+  @Benchmark
+  public String freshParserPerCall(Cursor cursor) {
+    String token = tokens[cursor.advance(tokens.length)].substring(7);
+    Claims claims = Jwts.parser()
+        .verifyWith(accessKey)
+        .build()
+        .parseSignedClaims(token)
+        .getPayload();
+    return claims.getSubject();
+  }
+}
@@ -0,0 +1,121 @@
+package com.game.app.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Upload classification cost, per upload.
+ *
+ * <p>{@code previousRegexChain} is the former {@code ChatMessageController.normalizeMimeType}: the declared
+ * type when it is a media type, otherwise up to 16 {@code String.matches} calls on the file name, each
+ * compiling its pattern. {@code detect} is {@link MediaTypeDetector} on the same uploads with their first
+ * {@link MediaTypeDetector#HEAD_BYTES} bytes. {@code trusted} uploads declare a media type; {@code byName}
+ * ones arrive as {@code application/octet-stream} or untyped, as many Android pickers send them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MediaTypeDetectorBenchmark {
+
+  private static final byte[] JPEG = { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0, 0x10, 'J', 'F', 'I', 'F', 0, 1 };
+  private static final byte[] MP4 = { 0, 0, 0, 0x20, 'f', 't', 'y', 'p', 'i', 's', 'o', 'm' };
+  private static final byte[] HEIC = { 0, 0, 0, 0x18, 'f', 't', 'y', 'p', 'h', 'e', 'i', 'c' };
+  private static final byte[] OGG = ascii("OggS\0\2\0\0\0\0\0\0");
+  private static final byte[] ZIP = { 'P', 'K', 3, 4, 20, 0, 8, 0, 8, 0, 0, 0 };
+  private static final byte[] WEBP = ascii("RIFF\0\0\0\0WEBP");
+  private static final byte[] SVG = ascii("<?xml versio");
+  private static final byte[] PDF = ascii("%PDF-1.7\n%\0\0");
+  private static final byte[] TEXT = ascii("hello there!");
+
+  private static final Upload[] TRUSTED = {
+      new Upload(JPEG, "image/jpeg", "IMG_2041.JPG"),
+      new Upload(MP4, "video/mp4", "clip.mp4"),
+      new Upload(OGG, "audio/ogg; codecs=opus", "voice-note.ogg"),
+      new Upload(HEIC, "image/heic", "IMG_2042.HEIC"),
+  };
+
+  private static final Upload[] BY_NAME = {
+      new Upload(JPEG, "application/octet-stream", "IMG_2041.JPG"),
+      new Upload(MP4, null, "clip.mp4"),
+      new Upload(HEIC, "", "IMG_2042.HEIC"),
+      new Upload(ZIP, "application/octet-stream", "app-release.apk"),
+      new Upload(WEBP, null, "sticker.webp"),
+      new Upload(SVG, "application/octet-stream", "drawing.svg"),
+      new Upload(PDF, "application/pdf", "ticket.pdf"),
+      new Upload(TEXT, null, "notes"),
+  };
+
+  @Param({ "trusted", "byName" })
+  public String source;
+
+  private int next;
+
+  private Upload advance() {
+    Upload[] uploads = "trusted".equals(source) ? TRUSTED : BY_NAME;
+    next = next + 1 >= uploads.length ? 0 : next + 1;
+    return uploads[next];
+  }
+
+  @Benchmark
+  public String detect() {
+    Upload upload = advance();
+    return MediaTypeDetector.detect(upload.head(), upload.contentType(), upload.fileName());
+  }
+
+  @Benchmark
+  public String previousRegexChain() {
+    Upload upload = advance();
+    return previousNormalizeMimeType(upload.contentType(), upload.fileName());
+  }
+
+  private record Upload(byte[] head, String contentType, String fileName) {
+  }
+
+  private static byte[] ascii(String value) {
+    return value.getBytes(StandardCharsets.ISO_8859_1);
+  }
+
+  private static String previousNormalizeMimeType(String contentType, String originalFilename) {
+    String rawType = contentType != null ? contentType.trim().toLowerCase() : "";
+    if (rawType.startsWith("video/x-quicktime")) {
+      return "video/quicktime";
+    }
+    if (rawType.startsWith("video/") || rawType.startsWith("image/") || rawType.startsWith("audio/")) {
+      return rawType;
+    }
+
+    String name = originalFilename != null ? originalFilename.trim().toLowerCase() : "";
+    if (name.matches(".*\\.(apk)$")) return "application/vnd.android.package-archive";
+    if (name.matches(".*\\.(mp4|m4v)$")) return "video/mp4";
+    if (name.matches(".*\\.(mov|qt)$")) return "video/quicktime";
+    if (name.matches(".*\\.(3g2)$")) return "video/3gpp2";
+    if (name.matches(".*\\.(webm)$")) return "video/webm";
+    if (name.matches(".*\\.(mkv)$")) return "video/x-matroska";
+    if (name.matches(".*\\.(avi)$")) return "video/x-msvideo";
+    if (name.matches(".*\\.(3gp)$")) return "video/3gpp";
+    if (name.matches(".*\\.(heic|heics)$")) return "image/heic";
+    if (name.matches(".*\\.(heif|heifs|hif)$")) return "image/heif";
+    if (name.matches(".*\\.(jpg|jpeg)$")) return "image/jpeg";
+    if (name.matches(".*\\.(png)$")) return "image/png";
+    if (name.matches(".*\\.(gif)$")) return "image/gif";
+    if (name.matches(".*\\.(webp)$")) return "image/webp";
+    if (name.matches(".*\\.(bmp)$")) return "image/bmp";
+    if (name.matches(".*\\.(svg)$")) return "image/svg+xml";
+    if (!rawType.isBlank()) return rawType;
+    return "application/octet-stream";
+  }
+}
@@ -0,0 +1,133 @@
+package com.game.app.service;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CPU per presence prune cycle with {@code presences} users heartbeating every 30s, a 65s timeout and a 20s
+ * prune interval; about 0.1% of users go quiet each cycle and expire.
+ *
+ * <p>{@code fullScan} is the previous prune (copy the online set, probe the session registry and heartbeat map
+ * for every user); {@code timingWheel} advances a {@link DeadlineWheel}. The simulated 20s of heartbeats runs
+ * in the per-invocation setup, so only the prune itself is timed:
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec -Djmh.args="PresencePruneBenchmark"
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PresencePruneBenchmark {
+
+  private static final long TICK_MILLIS = 20_000L;
+  private static final long TIMEOUT_MILLIS = 65_000L;
+  private static final long HEARTBEAT_MILLIS = 30_000L;
+  private static final int QUIET_ONE_IN = 1_000;
+
+  @Param({ "100000" })
+  public int presences;
+
+  @Param({ "fullScan", "timingWheel" })
+  public String strategy;
+
+  private String[] users;
+  private long[] nextBeat;
+  private Set<String> onlineUsers;
+  private Map<String, Long> heartbeats;
+  private Map<String, Object> sessionRegistry;
+  private DeadlineWheel<String> wheel;
+  private boolean useWheel;
+  private long now;
+  private long cycle;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    useWheel = "timingWheel".equals(strategy);
+    now = 1_760_000_000_000L;
+    users = new String[presences];
+    nextBeat = new long[presences];
+    onlineUsers = new HashSet<>();
+    heartbeats = new HashMap<>();
+    sessionRegistry = new HashMap<>();
+    wheel = new DeadlineWheel<>(TICK_MILLIS, TIMEOUT_MILLIS, now);
+    for (int i = 0; i < presences; i += 1) {
+      users[i] = "user" + i;
+      long lastBeat = now - (i * 7919L) % HEARTBEAT_MILLIS;
+      beat(i, lastBeat);
+      nextBeat[i] = lastBeat + HEARTBEAT_MILLIS;
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void heartbeatsForOneCycle() {
+    now += TICK_MILLIS;
+    cycle += 1;
+    for (int i = 0; i < presences; i += 1) {
+      while (nextBeat[i] <= now) {
+        if ((i + cycle) % QUIET_ONE_IN == 0) {
+          // Goes quiet long enough to expire, then comes back.
+          nextBeat[i] += 3 * HEARTBEAT_MILLIS;
+          continue;
+        }
+        beat(i, nextBeat[i]);
+        nextBeat[i] += HEARTBEAT_MILLIS;
+      }
+    }
+  }
+
+  @Benchmark
+  public int prune() {
+    int expired = 0;
+    if (useWheel) {
+      for (String username : wheel.advance(now)) {
+        expire(username);
+        expired += 1;
+      }
+      return expired;
+    }
+    for (String username : Set.copyOf(onlineUsers)) {
+      Long lastBeat = heartbeats.get(username);
+      if (sessionRegistry.get(username) != null && lastBeat != null && now - lastBeat <= TIMEOUT_MILLIS) {
+        continue;
+      }
+      expire(username);
+      expired += 1;
+    }
+    return expired;
+  }
+
+  private void beat(int index, long at) {
+    String username = users[index];
+    onlineUsers.add(username);
+    heartbeats.put(username, at);
+    sessionRegistry.put(username, Boolean.TRUE);
+    if (useWheel) {
+      wheel.schedule(username, at + TIMEOUT_MILLIS);
+    }
+  }
+
+  private void expire(String username) {
+    onlineUsers.remove(username);
+    heartbeats.remove(username);
+    sessionRegistry.remove(username);
+  }
+}
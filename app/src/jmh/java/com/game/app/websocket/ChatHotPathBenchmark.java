@@ -0,0 +1,66 @@
+package com.game.app.websocket;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Baseline for the pure helpers of {@link ChatWebSocketController} that run on every chat frame: username
+ * normalization (several calls per frame), media type resolution on persist and the push preview.
+ *
+ * <p>Inputs rotate through a small mix of message shapes so no single branch is measured in isolation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatHotPathBenchmark {
+
+  private static final String[] USERNAMES = { "alice", " Bob ", "CHARLIE_99", "dave.smith", "Eve" };
+
+  // mediaType, type, mimeType, text, fileName
+  private static final String[][] MESSAGES = {
+      { null, "text", null, "see you at eight", null },
+      { null, "image", "image/jpeg", "", "IMG_2041.JPG" },
+      { "photo", "", "image/heic", "", "IMG_2042.HEIC" },
+      { null, "voice", "audio/ogg", "", "voice-note.ogg" },
+      { null, "file", "application/pdf", "", "ticket.pdf" },
+      { "", "video", "video/mp4", "", "clip.mp4" },
+      { null, "secret-tap", null, "tap", null },
+      { null, "TEXT", null, "ok", null },
+  };
+
+  private int next;
+
+  private int advance(int size) {
+    next = next + 1 >= size ? 0 : next + 1;
+    return next;
+  }
+
+  @Benchmark
+  public String normalizeUsername() {
+    return ChatWebSocketController.normalizeUsername(USERNAMES[advance(USERNAMES.length)]);
+  }
+
+  @Benchmark
+  public String resolveMediaType() {
+    String[] message = MESSAGES[advance(MESSAGES.length)];
+    return ChatWebSocketController.resolveMediaType(message[0], message[1], message[2]);
+  }
+
+  @Benchmark
+  public String notificationPreview() {
+    String[] message = MESSAGES[advance(MESSAGES.length)];
+    return ChatWebSocketController.notificationPreview(message[3], message[1], message[4], "tony");
+  }
+}
@@ -0,0 +1,117 @@
+package com.game.app.websocket;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.JacksonJsonMessageConverter;
+import org.springframework.util.MimeTypeUtils;
+
+import com.game.app.model.ChatMessageEntity;
+
+/**
+ * Encoding cost and frame size of a {@code /queue/messages} payload in the v1 and v2 chat schemas.
+ *
+ * <p>On tear-down the trial prints bytes per message for both schemas, raw and after a raw DEFLATE pass that
+ * approximates what {@code permessage-deflate} does to a single frame without context takeover:
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec -Djmh.args="ChatWireSchemaBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatWireSchemaBenchmark {
+
+  private static final MessageHeaders JSON_HEADERS =
+      new MessageHeaders(Map.of(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON));
+
+  @Param({ "text", "reply" })
+  public String kind;
+
+  private JacksonJsonMessageConverter converter;
+  private ChatMessageEntity entity;
+  private long createdAt;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    converter = new JacksonJsonMessageConverter();
+    entity = sampleMessage("reply".equals(kind));
+    createdAt = entity.getCreatedAt().toEpochMilli();
+  }
+
+  @Benchmark
+  public byte[] encodeV1() {
+    return encode(ChatMessageDelivery.incomingMessage(entity, "alice", createdAt));
+  }
+
+  @Benchmark
+  public byte[] encodeV2() {
+    return encode(CompactChatMessage.of(entity, "alice", createdAt));
+  }
+
+  @TearDown(Level.Trial)
+  public void report() {
+    byte[] v1 = encodeV1();
+    byte[] v2 = encodeV2();
+    System.out.printf(
+        "%n%s message: v1 %d bytes (%d deflated), v2 %d bytes (%d deflated)%n",
+        kind, v1.length, deflatedSize(v1), v2.length, deflatedSize(v2));
+  }
+
+  static ChatMessageEntity sampleMessage(boolean reply) {
+    ChatMessageEntity entity = new ChatMessageEntity();
+    entity.setId(123456789L);
+    entity.setClientMessageId("tmp-1760000000000-k3j9x2");
+    entity.setFromUsername("alice");
+    entity.setToUsername("bob");
+    entity.setMessage("Sounds good, I will be there around seven. Want me to bring anything along?");
+    entity.setType("text");
+    entity.setCreatedAt(Instant.ofEpochMilli(1760000000000L));
+    if (reply) {
+      entity.setReplyText("Dinner at my place on Friday?");
+      entity.setReplySenderName("bob");
+      entity.setReplyMessageId(123456700L);
+      entity.setReplyType("text");
+    }
+    return entity;
+  }
+
+  private byte[] encode(Object payload) {
+    return (byte[]) converter.toMessage(payload, JSON_HEADERS).getPayload();
+  }
+
+  private static int deflatedSize(byte[] frame) {
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    try {
+      deflater.setInput(frame);
+      deflater.finish();
+      byte[] buffer = new byte[frame.length + 64];
+      int size = 0;
+      while (!deflater.finished()) {
+        size += deflater.deflate(buffer);
+      }
+      return size;
+    } finally {
+      deflater.end();
+    }
+  }
+}
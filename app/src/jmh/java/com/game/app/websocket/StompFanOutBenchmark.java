@@ -0,0 +1,67 @@
+package com.game.app.websocket;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.converter.JacksonJsonMessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import com.game.app.websocket.ChatWebSocketController.MessageEditPayload;
+
+/**
+ * Cost of delivering one edit event to both participants, up to the hand-off to the outbound channel.
+ *
+ * <p>{@code convertAndSendTwice} is the previous path (the record serialized once per recipient);
+ * {@code fanOut} encodes once through {@link StompFanOut}. The channel is a sink, so the numbers isolate
+ * conversion and message construction. Run with {@code -prof gc} to get bytes allocated per operation:
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec -Djmh.args="StompFanOutBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StompFanOutBenchmark {
+
+  private SimpMessagingTemplate template;
+  private StompFanOut fanOut;
+  private MessageEditPayload event;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    template = new SimpMessagingTemplate((message, timeout) -> true);
+    template.setMessageConverter(new JacksonJsonMessageConverter());
+    fanOut = new StompFanOut(template);
+    event = new MessageEditPayload(
+        123456789L,
+        "alice",
+        "Edited text that is about as long as a typical chat message, give or take.",
+        true,
+        1760000000000L,
+        1759999990000L);
+  }
+
+  @Benchmark
+  public void convertAndSendTwice() {
+    template.convertAndSendToUser("bob", "/queue/message-edits", event);
+    template.convertAndSendToUser("alice", "/queue/message-edits", event);
+  }
+
+  @Benchmark
+  public void fanOut() {
+    fanOut.sendToUsers("/queue/message-edits", event, "bob", "alice");
+  }
+}
@@ -0,0 +1,67 @@
+package com.game.app.websocket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Baseline for {@link TttWebSocketController#getWinner}, evaluated under the room lock after every move.
+ * Boards are random mid-game positions of each supported size, most of them undecided, so the usual full
+ * scan of rows, columns and both diagonals is what gets measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TttWinnerBenchmark {
+
+  private static final int BOARDS = 256;
+
+  @Param({ "3", "5" })
+  public int size;
+
+  private List<List<String>> boards;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    SplittableRandom random = new SplittableRandom(42);
+    boards = new ArrayList<>(BOARDS);
+    for (int b = 0; b < BOARDS; b += 1) {
+      List<String> board = new ArrayList<>(size * size);
+      int moves = random.nextInt(size * size + 1);
+      for (int cell = 0; cell < size * size; cell += 1) {
+        board.add("");
+      }
+      for (int move = 0; move < moves; move += 1) {
+        int cell = random.nextInt(size * size);
+        if (board.get(cell).isEmpty()) {
+          board.set(cell, (move & 1) == 0 ? "X" : "O");
+        }
+      }
+      boards.add(board);
+    }
+  }
+
+  @Benchmark
+  public String getWinner() {
+    next = next + 1 == BOARDS ? 0 : next + 1;
+    return TttWebSocketController.getWinner(boards.get(next), size);
+  }
+}
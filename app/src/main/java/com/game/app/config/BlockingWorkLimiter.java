@@ -0,0 +1,111 @@
+package com.game.app.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import com.game.app.service.RuntimeMetricsSource;
+
+/**
+ * Caps how many inbound STOMP SEND frames and {@code /api} requests run at once when handlers run on virtual
+ * threads ({@code spring.threads.virtual.enabled=true}). Without the fixed pools nothing else bounds them, and
+ * since nearly every handler takes a JDBC connection, more than the Hikari pool in flight only means waiting
+ * inside Hikari until {@code connection-timeout} fails the request. Permits default to the pool size; callers
+ * beyond them park here, which is cheap on a virtual thread. With platform threads the limiter is inert.
+ */
+@Component
+public class BlockingWorkLimiter implements ExecutorChannelInterceptor, RuntimeMetricsSource {
+
+  private final boolean enabled;
+  private final int permits;
+  private final Semaphore semaphore;
+  private final LongAdder acquired = new LongAdder();
+  private final LongAdder waited = new LongAdder();
+  private final LongAdder interrupted = new LongAdder();
+
+  public BlockingWorkLimiter(
+      @Value("${spring.threads.virtual.enabled:false}") boolean enabled,
+      @Value("${app.threads.virtual.blocking-permits:${spring.datasource.hikari.maximum-pool-size:10}}") int permits) {
+    this.enabled = enabled;
+    this.permits = Math.max(1, permits);
+    this.semaphore = new Semaphore(this.permits, true);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Waits for a permit; returns false only when interrupted, in which case nothing must be released. */
+  public boolean acquire() {
+    if (!enabled) {
+      return true;
+    }
+    if (!semaphore.tryAcquire()) {
+      waited.increment();
+      try {
+        semaphore.acquire();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        interrupted.increment();
+        return false;
+      }
+    }
+    acquired.increment();
+    return true;
+  }
+
+  public void release() {
+    if (enabled) {
+      semaphore.release();
+    }
+  }
+
+  @Override
+  public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+    if (!isLimited(message)) {
+      return message;
+    }
+    // Returning null skips the frame and, for this interceptor, afterMessageHandled.
+    return acquire() ? message : null;
+  }
+
+  @Override
+  public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+    if (isLimited(message)) {
+      release();
+    }
+  }
+
+  private boolean isLimited(Message<?> message) {
+    // Only SEND frames reach the controllers; CONNECT, SUBSCRIBE and heartbeats stay unthrottled.
+    return enabled && SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE;
+  }
+
+  @Override
+  public String metricsName() {
+    return "blockingWork";
+  }
+
+  @Override
+  public Map<String, Object> metricsSnapshot() {
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put("virtualThreads", enabled);
+    snapshot.put("permits", permits);
+    snapshot.put("inFlight", enabled ? permits - semaphore.availablePermits() : 0);
+    snapshot.put("waiting", semaphore.getQueueLength());
+    snapshot.put("acquired", acquired.sum());
+    snapshot.put("waited", waited.sum());
+    snapshot.put("interrupted", interrupted.sum());
+    return snapshot;
+  }
+}
@@ -0,0 +1,23 @@
+package com.game.app.config;
+
+import java.util.List;
+
+/**
+ * Chat payload shape a client negotiated. STOMP clients send {@value #HEADER} on CONNECT, REST clients send
+ * {@value #HTTP_HEADER}; {@code 2} selects {@link #V2}, anything else stays on {@link #V1}, the original verbose shape.
+ */
+public enum ChatSchema {
+  V1,
+  V2;
+
+  public static final String HEADER = "chat-schema";
+  public static final String HTTP_HEADER = "X-Chat-Schema";
+
+  public static ChatSchema fromHeader(String value) {
+    return value != null && "2".equals(value.trim()) ? V2 : V1;
+  }
+
+  public static ChatSchema fromHeaders(List<String> values) {
+    return values == null || values.isEmpty() ? V1 : fromHeader(values.get(0));
+  }
+}
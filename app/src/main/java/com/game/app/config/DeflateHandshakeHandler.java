@@ -0,0 +1,38 @@
+package com.game.app.config;
+
+import java.util.List;
+
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+/**
+ * Handshake handler for the STOMP endpoints that controls {@code permessage-deflate} (RFC 7692).
+ *
+ * <p>When enabled, a client that offers the extension gets it as long as the container installs it (Tomcat
+ * does by default). When disabled, the offer is dropped so frames go out uncompressed.
+ */
+public class DeflateHandshakeHandler extends DefaultHandshakeHandler {
+
+  static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+  private final boolean deflateEnabled;
+
+  public DeflateHandshakeHandler(boolean deflateEnabled) {
+    this.deflateEnabled = deflateEnabled;
+  }
+
+  @Override
+  protected List<WebSocketExtension> filterRequestedExtensions(
+      ServerHttpRequest request,
+      List<WebSocketExtension> requestedExtensions,
+      List<WebSocketExtension> supportedExtensions) {
+    List<WebSocketExtension> negotiated = super.filterRequestedExtensions(request, requestedExtensions, supportedExtensions);
+    if (deflateEnabled) {
+      return negotiated;
+    }
+    return negotiated.stream()
+        .filter(extension -> !PERMESSAGE_DEFLATE.equalsIgnoreCase(extension.getName()))
+        .toList();
+  }
+}
@@ -0,0 +1,243 @@
+package com.game.app.config;
+
+import java.security.Principal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.game.app.service.RuntimeMetricsSource;
+import com.game.app.websocket.ChatWebSocketController.ChatMessage;
+import com.game.app.websocket.ChatWebSocketController.ChatMessageBatch;
+import com.game.app.websocket.ChatWebSocketController.SendAck;
+import com.game.app.websocket.ChatWebSocketController.SendBatchAck;
+
+/**
+ * Per-user token buckets for inbound STOMP SEND frames, checked on the connection's own thread before a frame
+ * is queued for the inbound executor, so a flooding client costs no worker time.
+ *
+ * <p>Each user has one bucket per {@link FrameClass}, refilled at {@code <class>-per-second} and holding up to
+ * {@code burst-seconds} of that; presence frames are budgeted per session instead, since every open tab
+ * announces itself. A bucket is a single {@link AtomicLong} holding the time at which it will be full again
+ * (GCRA), updated by compare-and-set. An over-budget frame is dropped. A dropped {@code chat.send} or
+ * {@code chat.sendBatch} is answered with failed acks for its tempIds on the usual ack destination, so the
+ * client marks those messages as failed; for other classes the user gets a {@code rate_limited} notice on
+ * {@code /queue/errors}, at most once per second per class. Buckets that have refilled completely are
+ * equivalent to new ones and are swept.
+ */
+@Component
+public class InboundAdmissionControl implements RuntimeMetricsSource {
+
+  private static final Logger logger = LoggerFactory.getLogger(InboundAdmissionControl.class);
+  private static final long NOTICE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final String APP_PREFIX = "/app/";
+  private static final String SEND_DESTINATION = "/app/chat.send";
+
+  public enum FrameClass {
+    TYPING, MESSAGE, ACTION, PRESENCE, GAME, OTHER
+  }
+
+  private final boolean enabled;
+  private final long[] intervalNanos = new long[FrameClass.values().length];
+  private final long[] toleranceNanos = new long[FrameClass.values().length];
+  private final ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+  private final Map<String, UserBuckets> buckets = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> throttledByDestination = new ConcurrentHashMap<>();
+  private final LongAdder admitted = new LongAdder();
+  private final LongAdder notices = new LongAdder();
+  private final LongAdder failedSendAcks = new LongAdder();
+
+  public InboundAdmissionControl(
+      // Lazy: the broker template is built from the configuration this is registered in.
+      ObjectProvider<SimpMessagingTemplate> messagingTemplate,
+      @Value("${app.websocket.admission.enabled:true}") boolean enabled,
+      @Value("${app.websocket.admission.burst-seconds:2}") double burstSeconds,
+      @Value("${app.websocket.admission.typing-per-second:5}") double typingPerSecond,
+      @Value("${app.websocket.admission.message-per-second:20}") double messagePerSecond,
+      @Value("${app.websocket.admission.action-per-second:20}") double actionPerSecond,
+      @Value("${app.websocket.admission.presence-per-second:1}") double presencePerSecond,
+      @Value("${app.websocket.admission.game-per-second:10}") double gamePerSecond,
+      @Value("${app.websocket.admission.other-per-second:10}") double otherPerSecond) {
+    this.messagingTemplate = messagingTemplate;
+    this.enabled = enabled;
+    double safeBurstSeconds = Math.max(1.0, burstSeconds);
+    configure(FrameClass.TYPING, typingPerSecond, safeBurstSeconds);
+    configure(FrameClass.MESSAGE, messagePerSecond, safeBurstSeconds);
+    configure(FrameClass.ACTION, actionPerSecond, safeBurstSeconds);
+    configure(FrameClass.PRESENCE, presencePerSecond, safeBurstSeconds);
+    configure(FrameClass.GAME, gamePerSecond, safeBurstSeconds);
+    configure(FrameClass.OTHER, otherPerSecond, safeBurstSeconds);
+  }
+
+  private void configure(FrameClass frameClass, double perSecond, double burstSeconds) {
+    double safeRate = Math.max(0.1, perSecond);
+    long interval = (long) (TimeUnit.SECONDS.toNanos(1) / safeRate);
+    long burst = Math.max(1L, Math.round(safeRate * burstSeconds));
+    intervalNanos[frameClass.ordinal()] = interval;
+    // A full bucket admits burst frames at once: the first at the current time, the rest within the tolerance.
+    toleranceNanos[frameClass.ordinal()] = interval * (burst - 1);
+  }
+
+  static FrameClass classify(String destination) {
+    if (destination == null || !destination.startsWith(APP_PREFIX)) {
+      return FrameClass.OTHER;
+    }
+    String action = destination.substring(APP_PREFIX.length());
+    return switch (action) {
+      case "chat.typing" -> FrameClass.TYPING;
+      case "chat.send", "chat.sendBatch" -> FrameClass.MESSAGE;
+      case "chat.edit", "chat.read", "chat.react", "chat.delete" -> FrameClass.ACTION;
+      case "user.online", "user.offline" -> FrameClass.PRESENCE;
+      default -> action.startsWith("ttt.") || action.startsWith("snl.") ? FrameClass.GAME : FrameClass.OTHER;
+    };
+  }
+
+  /** Returns true when the frame fits the sender's budget; otherwise counts it and may notify the sender. */
+  public boolean admit(Principal user, String sessionId, String destination, Message<?> frame) {
+    return admit(user, sessionId, destination, frame, System.nanoTime());
+  }
+
+  boolean admit(Principal user, String sessionId, String destination, Message<?> frame, long nowNanos) {
+    if (!enabled) {
+      return true;
+    }
+    FrameClass frameClass = classify(destination);
+    String key = user != null && frameClass != FrameClass.PRESENCE ? user.getName() : "session:" + sessionId;
+    UserBuckets userBuckets = buckets.computeIfAbsent(key, ignored -> new UserBuckets());
+    int slot = frameClass.ordinal();
+    AtomicLong fullAt = userBuckets.fullAt[slot];
+    while (true) {
+      long current = fullAt.get();
+      long base = Math.max(current, nowNanos);
+      if (base - nowNanos > toleranceNanos[slot]) {
+        throttled(frameClass, destination);
+        if (user != null && frameClass == FrameClass.MESSAGE) {
+          failSends(user.getName(), destination, frame);
+        } else if (user != null && userBuckets.shouldNotify(slot, nowNanos)) {
+          notifyThrottled(user.getName(), destination, base - nowNanos - toleranceNanos[slot]);
+        }
+        return false;
+      }
+      if (fullAt.compareAndSet(current, base + intervalNanos[slot])) {
+        admitted.increment();
+        return true;
+      }
+    }
+  }
+
+  private void throttled(FrameClass frameClass, String destination) {
+    // Only mapped destinations are counted by name, so arbitrary client destinations cannot grow the map.
+    String counterKey = frameClass == FrameClass.OTHER ? "other" : destination;
+    throttledByDestination.computeIfAbsent(counterKey, ignored -> new LongAdder()).increment();
+  }
+
+  private void notifyThrottled(String username, String destination, long retryAfterNanos) {
+    notices.increment();
+    try {
+      messagingTemplate.getObject().convertAndSendToUser(username, "/queue/errors", Map.of(
+          "type", "rate_limited",
+          "destination", destination != null ? destination : "",
+          "retryAfterMs", Math.max(1L, TimeUnit.NANOSECONDS.toMillis(retryAfterNanos))));
+    } catch (RuntimeException ex) {
+      logger.debug("Rate-limit notice to {} not sent: {}", username, ex.getMessage());
+    }
+  }
+
+  /** Acks every message in a dropped send frame as failed, as the chat controller does for a rejected send. */
+  private void failSends(String username, String destination, Message<?> frame) {
+    if (frame == null) {
+      return;
+    }
+    try {
+      SimpMessagingTemplate template = messagingTemplate.getObject();
+      MessageConverter converter = template.getMessageConverter();
+      if (SEND_DESTINATION.equals(destination)) {
+        if (converter.fromMessage(frame, ChatMessage.class) instanceof ChatMessage message
+            && message.tempId() != null) {
+          template.convertAndSendToUser(username, "/queue/send-ack", new SendAck(message.tempId(), false, null, null));
+          failedSendAcks.increment();
+        }
+      } else if (converter.fromMessage(frame, ChatMessageBatch.class) instanceof ChatMessageBatch batch
+          && batch.messages() != null && !batch.messages().isEmpty()) {
+        List<SendAck> acks = batch.messages().stream()
+            .map(message -> new SendAck(message != null ? message.tempId() : null, false, null, null))
+            .toList();
+        template.convertAndSendToUser(username, "/queue/send-batch-ack", new SendBatchAck(acks));
+        failedSendAcks.add(acks.size());
+      }
+    } catch (RuntimeException ex) {
+      logger.debug("Failed send ack to {} not sent: {}", username, ex.getMessage());
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${app.websocket.admission.sweep-ms:60000}")
+  public void sweepIdle() {
+    long now = System.nanoTime();
+    buckets.values().removeIf(userBuckets -> userBuckets.isFull(now));
+  }
+
+  @Override
+  public String metricsName() {
+    return "inboundAdmission";
+  }
+
+  @Override
+  public Map<String, Object> metricsSnapshot() {
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put("enabled", enabled);
+    snapshot.put("trackedUsers", buckets.size());
+    snapshot.put("admitted", admitted.sum());
+    long total = 0;
+    Map<String, Long> byDestination = new LinkedHashMap<>();
+    for (Map.Entry<String, LongAdder> entry : throttledByDestination.entrySet()) {
+      long count = entry.getValue().sum();
+      byDestination.put(entry.getKey(), count);
+      total += count;
+    }
+    snapshot.put("throttled", total);
+    snapshot.put("throttledByDestination", byDestination);
+    snapshot.put("notices", notices.sum());
+    snapshot.put("failedSendAcks", failedSendAcks.sum());
+    return snapshot;
+  }
+
+  private static final class UserBuckets {
+    private final AtomicLong[] fullAt = new AtomicLong[FrameClass.values().length];
+    private final AtomicLong[] notifiedAt = new AtomicLong[FrameClass.values().length];
+
+    private UserBuckets() {
+      long longAgo = System.nanoTime() - TimeUnit.DAYS.toNanos(1);
+      for (int i = 0; i < fullAt.length; i += 1) {
+        fullAt[i] = new AtomicLong(longAgo);
+        notifiedAt[i] = new AtomicLong(longAgo);
+      }
+    }
+
+    private boolean shouldNotify(int slot, long nowNanos) {
+      long last = notifiedAt[slot].get();
+      return nowNanos - last >= NOTICE_INTERVAL_NANOS && notifiedAt[slot].compareAndSet(last, nowNanos);
+    }
+
+    private boolean isFull(long nowNanos) {
+      for (AtomicLong bucket : fullAt) {
+        if (bucket.get() > nowNanos) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,291 @@
+package com.game.app.config;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import com.game.app.service.RuntimeMetricsSource;
+
+/**
+ * Per-session outbound backlog and priority shedding for STOMP {@code MESSAGE} frames.
+ *
+ * <p>A frame counts as pending from the moment it enters the client outbound channel until the socket write
+ * of it returns, which covers both the channel queue and the send buffer of Spring's session decorator that
+ * closes a session once it exceeds {@code send-buffer-size-limit-bytes}. The write side is observed by a
+ * session wrapper installed beneath that decorator through {@link #decorate}.
+ *
+ * <p>Frames are classified by destination ({@link Priority}). Once a session has more than
+ * {@code low-watermark-bytes} pending, new {@link Priority#LOW} frames for it are dropped, and above
+ * {@code high-watermark-bytes} {@link Priority#NORMAL} ones too; {@link Priority#HIGH} frames always go out.
+ * Shed typing frames are superseded by the next one or by the client's own timeout. Presence transitions
+ * ({@code /queue/user-status}) are {@link Priority#NORMAL}: keep-alives do not resync presence, so a shed
+ * transition stays wrong until the contact's next transition or the client's next reconnect sync. They are
+ * therefore only shed with edits and read receipts, when the session is near the send buffer limit.
+ */
+@Component
+public class OutboundFlowControl implements ChannelInterceptor, RuntimeMetricsSource {
+
+  /** Rough STOMP framing added to each body (command, destination, subscription and id headers). */
+  static final int FRAME_OVERHEAD_BYTES = 160;
+
+  private static final String USER_PREFIX = "/user";
+
+  private final boolean enabled;
+  private final long lowWatermarkBytes;
+  private final long highWatermarkBytes;
+  private final Map<String, Backlog> backlogs = new ConcurrentHashMap<>();
+  private final LongAdder shedLow = new LongAdder();
+  private final LongAdder shedNormal = new LongAdder();
+
+  public OutboundFlowControl(
+      @Value("${app.websocket.shedding.enabled:true}") boolean enabled,
+      @Value("${app.websocket.shedding.low-watermark-bytes:16384}") long lowWatermarkBytes,
+      @Value("${app.websocket.shedding.high-watermark-bytes:32768}") long highWatermarkBytes) {
+    this.enabled = enabled;
+    this.lowWatermarkBytes = Math.max(1024L, lowWatermarkBytes);
+    this.highWatermarkBytes = Math.max(this.lowWatermarkBytes, highWatermarkBytes);
+  }
+
+  public enum Priority {
+    /** Messages, acks, errors and game events: never shed. */
+    HIGH,
+    /** Edits, reactions, deletes, read receipts, notices, presence transitions and sync replies. */
+    NORMAL,
+    /** Typing indicators. */
+    LOW
+  }
+
+  static Priority classify(String destination) {
+    if (destination == null) {
+      return Priority.HIGH;
+    }
+    String path = destination.startsWith(USER_PREFIX + "/") ? destination.substring(USER_PREFIX.length()) : destination;
+    return switch (path) {
+      case "/queue/typing" -> Priority.LOW;
+      case "/queue/message-edits", "/queue/message-reactions", "/queue/message-deletes", "/queue/read-receipts",
+          "/queue/check-count-notices", "/queue/user-status", "/queue/presence" -> Priority.NORMAL;
+      default -> Priority.HIGH;
+    };
+  }
+
+  @Override
+  public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+    if (!enabled) {
+      return message;
+    }
+    String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+    if (sessionId == null || SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+      return message;
+    }
+    Backlog backlog = backlogs.get(sessionId);
+    if (backlog == null) {
+      // Not (or no longer) a tracked connection; leave it to Spring.
+      return message;
+    }
+    Priority priority = classify(destinationOf(message));
+    long pending = backlog.bytes.get();
+    if (priority == Priority.LOW && pending > lowWatermarkBytes) {
+      backlog.shed.increment();
+      shedLow.increment();
+      return null;
+    }
+    if (priority == Priority.NORMAL && pending > highWatermarkBytes) {
+      backlog.shed.increment();
+      shedNormal.increment();
+      return null;
+    }
+    backlog.accepted(sizeOf(message));
+    return message;
+  }
+
+  @Override
+  public void afterSendCompletion(
+      @NonNull Message<?> message, @NonNull MessageChannel channel, boolean sent, Exception ex) {
+    if (sent || !enabled) {
+      return;
+    }
+    // Rejected by the outbound executor after preSend counted it: it will never be written.
+    String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+    Backlog backlog = sessionId != null ? backlogs.get(sessionId) : null;
+    if (backlog != null && SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE) {
+      backlog.written();
+    }
+  }
+
+  /** Decorator factory for {@code WebSocketTransportRegistration}: tracks each connection's written frames. */
+  public WebSocketHandler decorate(WebSocketHandler handler) {
+    return new WebSocketHandlerDecorator(handler) {
+      @Override
+      public void afterConnectionEstablished(@NonNull WebSocketSession session) throws Exception {
+        if (enabled) {
+          backlogs.put(session.getId(), new Backlog());
+          session = new WriteTrackingSession(session);
+        }
+        super.afterConnectionEstablished(session);
+      }
+
+      @Override
+      public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus closeStatus)
+          throws Exception {
+        backlogs.remove(session.getId());
+        super.afterConnectionClosed(session, closeStatus);
+      }
+    };
+  }
+
+  private static String destinationOf(Message<?> message) {
+    // The broker delivers to the resolved /queue/...-user{session}; the original is what the client subscribed to.
+    Object original = message.getHeaders().get(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION);
+    return original instanceof String value ? value : SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+  }
+
+  private static int sizeOf(Message<?> message) {
+    return (message.getPayload() instanceof byte[] body ? body.length : 0) + FRAME_OVERHEAD_BYTES;
+  }
+
+  private static boolean isMessageFrame(WebSocketMessage<?> message) {
+    if (message instanceof TextMessage text) {
+      return text.getPayload().startsWith("MESSAGE\n");
+    }
+    if (message instanceof BinaryMessage binary) {
+      ByteBuffer payload = binary.getPayload().duplicate();
+      byte[] command = "MESSAGE\n".getBytes(StandardCharsets.US_ASCII);
+      if (payload.remaining() < command.length) {
+        return false;
+      }
+      for (byte expected : command) {
+        if (payload.get() != expected) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public String metricsName() {
+    return "outboundFlow";
+  }
+
+  @Override
+  public Map<String, Object> metricsSnapshot() {
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put("enabled", enabled);
+    snapshot.put("lowWatermarkBytes", lowWatermarkBytes);
+    snapshot.put("highWatermarkBytes", highWatermarkBytes);
+    snapshot.put("sessions", backlogs.size());
+    // Depths only: session ids appear in SockJS transport URLs, so they are never reported.
+    long pendingFrames = 0;
+    long pendingBytes = 0;
+    long maxPendingBytes = 0;
+    long maxPeakBytes = 0;
+    int empty = 0;
+    int belowLow = 0;
+    int lowToHigh = 0;
+    int aboveHigh = 0;
+    int sessionsShed = 0;
+    for (Backlog backlog : backlogs.values()) {
+      long bytes = backlog.bytes.get();
+      pendingFrames += backlog.frames.get();
+      pendingBytes += bytes;
+      maxPendingBytes = Math.max(maxPendingBytes, bytes);
+      maxPeakBytes = Math.max(maxPeakBytes, backlog.peakBytes.get());
+      if (bytes == 0) {
+        empty += 1;
+      } else if (bytes <= lowWatermarkBytes) {
+        belowLow += 1;
+      } else if (bytes <= highWatermarkBytes) {
+        lowToHigh += 1;
+      } else {
+        aboveHigh += 1;
+      }
+      if (backlog.shed.sum() > 0) {
+        sessionsShed += 1;
+      }
+    }
+    snapshot.put("pendingFrames", pendingFrames);
+    snapshot.put("pendingBytes", pendingBytes);
+    snapshot.put("maxPendingBytes", maxPendingBytes);
+    snapshot.put("maxPeakBytes", maxPeakBytes);
+    snapshot.put("sessionsShedding", lowToHigh + aboveHigh);
+    snapshot.put("sessionsShed", sessionsShed);
+    snapshot.put("shedLow", shedLow.sum());
+    snapshot.put("shedNormal", shedNormal.sum());
+    Map<String, Object> depths = new LinkedHashMap<>();
+    depths.put("empty", empty);
+    depths.put("belowLow", belowLow);
+    depths.put("lowToHigh", lowToHigh);
+    depths.put("aboveHigh", aboveHigh);
+    snapshot.put("backlogDepths", depths);
+    return snapshot;
+  }
+
+  /** Pending frames of one connection; sizes are kept in send order so each write returns the matching estimate. */
+  private static final class Backlog {
+    private final ConcurrentLinkedQueue<Integer> sizes = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger frames = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong peakBytes = new AtomicLong();
+    private final LongAdder shed = new LongAdder();
+
+    private void accepted(int size) {
+      sizes.add(size);
+      frames.incrementAndGet();
+      peakBytes.accumulateAndGet(bytes.addAndGet(size), Math::max);
+    }
+
+    private void written() {
+      Integer size = sizes.poll();
+      if (size != null) {
+        frames.decrementAndGet();
+        bytes.addAndGet(-size);
+      }
+    }
+  }
+
+  private final class WriteTrackingSession extends WebSocketSessionDecorator {
+
+    private WriteTrackingSession(WebSocketSession delegate) {
+      super(delegate);
+    }
+
+    @Override
+    public void sendMessage(@NonNull WebSocketMessage<?> message) throws IOException {
+      try {
+        super.sendMessage(message);
+      } finally {
+        if (isMessageFrame(message)) {
+          Backlog backlog = backlogs.get(getId());
+          if (backlog != null) {
+            backlog.written();
+          }
+        }
+      }
+    }
+  }
+}
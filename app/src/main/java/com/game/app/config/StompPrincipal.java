@@ -2,15 +2,51 @@ package com.game.app.config;
 
 import java.security.Principal;
 
+/**
+ * The authenticated user of a STOMP session. Id, role and {@link ChatSchema} are resolved once at CONNECT; the
+ * role is refreshed in place by {@link StompSessionRegistry} when the user changes.
+ */
 public class StompPrincipal implements Principal {
+  private static final String CHAT_ROLE = "chat";
+
   private final String name;
+  private final Long userId;
+  private final ChatSchema schema;
+  private volatile String role;
+
+  public StompPrincipal(String name, Long userId, String role) {
+    this(name, userId, role, ChatSchema.V1);
+  }
 
-  public StompPrincipal(String name) {
+  public StompPrincipal(String name, Long userId, String role, ChatSchema schema) {
     this.name = name;
+    this.userId = userId;
+    this.role = role;
+    this.schema = schema != null ? schema : ChatSchema.V1;
   }
 
   @Override
   public String getName() {
     return name;
   }
+
+  public Long getUserId() {
+    return userId;
+  }
+
+  public String getRole() {
+    return role;
+  }
+
+  public ChatSchema getSchema() {
+    return schema;
+  }
+
+  public boolean hasChatRole() {
+    return CHAT_ROLE.equalsIgnoreCase(role);
+  }
+
+  void updateRole(String role) {
+    this.role = role;
+  }
 }
@@ -0,0 +1,112 @@
+package com.game.app.config;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import com.game.app.service.JwtTokenService.AccessIdentity;
+import com.game.app.service.UserChangedEvent;
+import com.game.app.service.UserDirectory;
+import com.game.app.service.UserDirectory.UserSnapshot;
+
+/**
+ * Builds the {@link StompPrincipal} for each CONNECT and keeps the live ones so their role can be refreshed.
+ *
+ * <p>The role comes from the access token's signed {@code role} claim, unless the token predates the claim or
+ * was issued before the user last changed; only then is it looked up. A {@link UserChangedEvent}, local or
+ * relayed from another node, re-resolves that user's open sessions immediately, and every session is
+ * re-resolved on {@code app.chat.session-role-refresh-ms} to pick up changes made outside the application.
+ */
+@Component
+public class StompSessionRegistry {
+
+  private final UserDirectory userDirectory;
+  private final long accessExpirationMs;
+  private final Map<String, StompPrincipal> sessions = new ConcurrentHashMap<>();
+  private final Map<Long, Long> userChangedAt = new ConcurrentHashMap<>();
+
+  public StompSessionRegistry(
+      UserDirectory userDirectory,
+      @Value("${app.auth.jwt-access-expiration-ms:3600000}") long accessExpirationMs) {
+    this.userDirectory = userDirectory;
+    this.accessExpirationMs = Math.max(0L, accessExpirationMs);
+  }
+
+  public StompPrincipal connect(String sessionId, AccessIdentity identity) {
+    return connect(sessionId, identity, ChatSchema.V1);
+  }
+
+  public StompPrincipal connect(String sessionId, AccessIdentity identity, ChatSchema schema) {
+    String role = identity.role();
+    if (role == null || changedSince(identity.userId(), identity.issuedAt())) {
+      role = resolveRole(identity.userId());
+    }
+    StompPrincipal principal = new StompPrincipal(identity.username(), identity.userId(), role, schema);
+    if (sessionId != null) {
+      sessions.put(sessionId, principal);
+    }
+    return principal;
+  }
+
+  public ChatSchema schemaOf(String sessionId) {
+    StompPrincipal principal = sessionId != null ? sessions.get(sessionId) : null;
+    return principal != null ? principal.getSchema() : ChatSchema.V1;
+  }
+
+  @EventListener
+  public void onSessionDisconnect(SessionDisconnectEvent event) {
+    sessions.remove(event.getSessionId());
+  }
+
+  @EventListener
+  public void onUserChanged(UserChangedEvent event) {
+    if (event.userId() == null) {
+      return;
+    }
+    userChangedAt.put(event.userId(), System.currentTimeMillis());
+    String role = null;
+    boolean resolved = false;
+    for (StompPrincipal principal : sessions.values()) {
+      if (!event.userId().equals(principal.getUserId())) {
+        continue;
+      }
+      if (!resolved) {
+        role = resolveRole(event.userId());
+        resolved = true;
+      }
+      principal.updateRole(role);
+    }
+  }
+
+  @Scheduled(
+      fixedDelayString = "${app.chat.session-role-refresh-ms:300000}",
+      initialDelayString = "${app.chat.session-role-refresh-ms:300000}")
+  public void refreshAll() {
+    Map<Long, String> roles = new HashMap<>();
+    for (StompPrincipal principal : sessions.values()) {
+      if (principal.getUserId() == null) {
+        continue;
+      }
+      principal.updateRole(roles.computeIfAbsent(principal.getUserId(), this::resolveRole));
+    }
+    // A change older than any still-valid access token can no longer make a token stale.
+    long cutoff = System.currentTimeMillis() - accessExpirationMs;
+    userChangedAt.values().removeIf(changedAt -> changedAt < cutoff);
+  }
+
+  private boolean changedSince(Long userId, Instant issuedAt) {
+    Long changedAt = userId != null ? userChangedAt.get(userId) : null;
+    return changedAt != null && changedAt >= issuedAt.toEpochMilli();
+  }
+
+  private String resolveRole(Long userId) {
+    return userDirectory.findById(userId).map(UserSnapshot::role).orElse(null);
+  }
+}
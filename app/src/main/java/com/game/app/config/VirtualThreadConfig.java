@@ -0,0 +1,51 @@
+package com.game.app.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet side of the virtual-thread mode. Spring Boot already moves Tomcat request handling and
+ * {@code @Scheduled} tasks onto virtual threads for {@code spring.threads.virtual.enabled=true}; this bounds
+ * the {@code /api} handlers that then run unpooled by {@link BlockingWorkLimiter}. Multipart requests pass
+ * through unlimited: their body is only parsed after the filters, and a permit held while a slow client
+ * streams a few megabytes would starve every other request, so the upload handler takes its own permit once
+ * the parts are in.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+  @Bean
+  public FilterRegistrationBean<Filter> blockingWorkFilter(BlockingWorkLimiter blockingWorkLimiter) {
+    Filter filter = (request, response, chain) -> {
+      if (isMultipart((HttpServletRequest) request)) {
+        chain.doFilter(request, response);
+        return;
+      }
+      if (!blockingWorkLimiter.acquire()) {
+        ((HttpServletResponse) response).sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+        return;
+      }
+      try {
+        chain.doFilter(request, response);
+      } finally {
+        blockingWorkLimiter.release();
+      }
+    };
+    FilterRegistrationBean<Filter> registration = new FilterRegistrationBean<>(filter);
+    registration.addUrlPatterns("/api/*");
+    return registration;
+  }
+
+  static boolean isMultipart(HttpServletRequest request) {
+    String contentType = request.getContentType();
+    return contentType != null && contentType.regionMatches(true, 0, "multipart/", 0, "multipart/".length());
+  }
+}
@@ -15,19 +15,36 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.server.ResponseStatusException;
 
 import com.game.app.service.JwtTokenService;
+import com.game.app.service.JwtTokenService.AccessIdentity;
 
 @Component
 public class WebSocketChannelInterceptor implements ChannelInterceptor {
   private final JwtTokenService jwtTokenService;
+  private final StompSessionRegistry stompSessionRegistry;
+  private final InboundAdmissionControl inboundAdmissionControl;
 
-  public WebSocketChannelInterceptor(JwtTokenService jwtTokenService) {
+  public WebSocketChannelInterceptor(
+      JwtTokenService jwtTokenService,
+      StompSessionRegistry stompSessionRegistry,
+      InboundAdmissionControl inboundAdmissionControl) {
     this.jwtTokenService = jwtTokenService;
+    this.stompSessionRegistry = stompSessionRegistry;
+    this.inboundAdmissionControl = inboundAdmissionControl;
   }
 
   @Override
   public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
     StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
-    if (accessor == null || accessor.getCommand() != StompCommand.CONNECT) {
+    if (accessor == null) {
+      return message;
+    }
+    if (accessor.getCommand() == StompCommand.SEND) {
+      // Over budget: dropped here, before it takes a slot in the inbound executor's queue.
+      return inboundAdmissionControl.admit(accessor.getUser(), accessor.getSessionId(), accessor.getDestination(), message)
+          ? message
+          : null;
+    }
+    if (accessor.getCommand() != StompCommand.CONNECT) {
       return message;
     }
 
@@ -37,8 +54,9 @@ public class WebSocketChannelInterceptor implements ChannelInterceptor {
       throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Authorization header is required");
     }
 
-    String username = jwtTokenService.extractAccessUsername(authHeader);
-    Principal user = new StompPrincipal(username);
+    AccessIdentity identity = jwtTokenService.extractAccessIdentity(authHeader);
+    ChatSchema schema = ChatSchema.fromHeaders(accessor.getNativeHeader(ChatSchema.HEADER));
+    Principal user = stompSessionRegistry.connect(accessor.getSessionId(), identity, schema);
     accessor.setUser(user);
 
     return message;
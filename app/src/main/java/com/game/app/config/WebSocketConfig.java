@@ -5,6 +5,7 @@ import java.util.List;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
@@ -12,11 +13,16 @@ import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
+import com.game.app.websocket.ClusterRouter;
+
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
   private final WebSocketChannelInterceptor webSocketChannelInterceptor;
+  private final ClusterRouter clusterRouter;
+  private final BlockingWorkLimiter blockingWorkLimiter;
+  private final OutboundFlowControl outboundFlowControl;
   private final List<String> allowedOriginPatterns;
   private final int messageSizeLimitBytes;
   private final int sendBufferSizeLimitBytes;
@@ -27,9 +33,14 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
   private final int outboundCorePoolSize;
   private final int outboundMaxPoolSize;
   private final int outboundQueueCapacity;
+  private final boolean permessageDeflate;
+  private final boolean virtualThreads;
 
   public WebSocketConfig(
       WebSocketChannelInterceptor webSocketChannelInterceptor,
+      ClusterRouter clusterRouter,
+      BlockingWorkLimiter blockingWorkLimiter,
+      OutboundFlowControl outboundFlowControl,
       @Value("${app.cors.allowed-origin-patterns:https://*.vercel.app,http://localhost:*}") String allowedOriginPatterns,
       @Value("${app.websocket.message-size-limit-bytes:262144}") int messageSizeLimitBytes,
       @Value("${app.websocket.send-buffer-size-limit-bytes:262144}") int sendBufferSizeLimitBytes,
@@ -39,8 +50,13 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
       @Value("${app.websocket.inbound-queue-capacity:500}") int inboundQueueCapacity,
       @Value("${app.websocket.outbound-core-pool-size:4}") int outboundCorePoolSize,
       @Value("${app.websocket.outbound-max-pool-size:12}") int outboundMaxPoolSize,
-      @Value("${app.websocket.outbound-queue-capacity:500}") int outboundQueueCapacity) {
+      @Value("${app.websocket.outbound-queue-capacity:500}") int outboundQueueCapacity,
+      @Value("${app.websocket.permessage-deflate:true}") boolean permessageDeflate,
+      @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
     this.webSocketChannelInterceptor = webSocketChannelInterceptor;
+    this.clusterRouter = clusterRouter;
+    this.blockingWorkLimiter = blockingWorkLimiter;
+    this.outboundFlowControl = outboundFlowControl;
     this.allowedOriginPatterns = Arrays.stream(allowedOriginPatterns.split(","))
         .map(String::trim)
         .filter(value -> !value.isEmpty())
@@ -54,19 +70,26 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     this.outboundCorePoolSize = Math.max(2, outboundCorePoolSize);
     this.outboundMaxPoolSize = Math.max(this.outboundCorePoolSize, outboundMaxPoolSize);
     this.outboundQueueCapacity = Math.max(100, outboundQueueCapacity);
+    this.permessageDeflate = permessageDeflate;
+    this.virtualThreads = virtualThreads;
   }
 
   @Override
   public void registerStompEndpoints(StompEndpointRegistry registry) {
     String[] origins = allowedOriginPatterns.toArray(String[]::new);
+    DeflateHandshakeHandler handshakeHandler = new DeflateHandshakeHandler(permessageDeflate);
+    // A task per frame on virtual threads would let a session's frames overtake each other.
+    registry.setPreserveReceiveOrder(virtualThreads);
 
     registry.addEndpoint("/ws")
         .setAllowedOriginPatterns(origins)
+        .setHandshakeHandler(handshakeHandler)
         .withSockJS()
         .setSuppressCors(false);  // ✅ FIXED: Two p's in "Suppress"
 
     registry.addEndpoint("/ws-chat")
         .setAllowedOriginPatterns(origins)
+        .setHandshakeHandler(handshakeHandler)
         .withSockJS()
         .setSuppressCors(false);  // ✅ FIXED: Two p's in "Suppress"
   }
@@ -76,10 +99,18 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     registry.enableSimpleBroker("/topic", "/queue");
     registry.setApplicationDestinationPrefixes("/app");
     registry.setUserDestinationPrefix("/user");
+    registry.configureBrokerChannel().interceptors(clusterRouter);
+    registry.setPreservePublishOrder(virtualThreads);
   }
 
   @Override
   public void configureClientInboundChannel(ChannelRegistration registration) {
+    if (virtualThreads) {
+      registration
+          .interceptors(webSocketChannelInterceptor, blockingWorkLimiter)
+          .executor(new VirtualThreadTaskExecutor("stomp-inbound-"));
+      return;
+    }
     registration
         .interceptors(webSocketChannelInterceptor)
         .taskExecutor()
@@ -90,6 +121,11 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
   @Override
   public void configureClientOutboundChannel(ChannelRegistration registration) {
+    registration.interceptors(outboundFlowControl);
+    if (virtualThreads) {
+      registration.executor(new VirtualThreadTaskExecutor("stomp-outbound-"));
+      return;
+    }
     registration
         .taskExecutor()
         .corePoolSize(outboundCorePoolSize)
@@ -102,6 +138,7 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     registration
         .setMessageSizeLimit(messageSizeLimitBytes)
         .setSendBufferSizeLimit(sendBufferSizeLimitBytes)
-        .setSendTimeLimit(sendTimeLimitMs);
+        .setSendTimeLimit(sendTimeLimitMs)
+        .addDecoratorFactory(outboundFlowControl::decorate);
   }
 }
@@ -11,38 +11,38 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
-import com.game.app.model.UserEntity;
-import com.game.app.repository.UserRepository;
 import com.game.app.service.ChatCheckEventService;
 import com.game.app.service.JwtTokenService;
+import com.game.app.service.UserDirectory;
+import com.game.app.service.UserDirectory.UserSnapshot;
 
 @RestController
 @RequestMapping("/api/app/chat")
 public class ChatCheckEventController {
   private final ChatCheckEventService chatCheckEventService;
   private final JwtTokenService jwtTokenService;
-  private final UserRepository userRepository;
+  private final UserDirectory userDirectory;
 
   public ChatCheckEventController(
       ChatCheckEventService chatCheckEventService,
       JwtTokenService jwtTokenService,
-      UserRepository userRepository) {
+      UserDirectory userDirectory) {
     this.chatCheckEventService = chatCheckEventService;
     this.jwtTokenService = jwtTokenService;
-    this.userRepository = userRepository;
+    this.userDirectory = userDirectory;
   }
 
   @PostMapping("/check-open")
   public ResponseEntity<CheckOpenResponse> checkOpen(
       @RequestHeader(value = "Authorization", required = false) String authHeader,
       @RequestBody CheckOpenRequest request) {
-    UserEntity me = requireAuthUser(authHeader);
+    UserSnapshot me = requireAuthUser(authHeader);
     String opener = normalizeUsername(request.openerUsername());
     String conversationWith = normalizeUsername(request.conversationWithUsername());
     if (conversationWith.isBlank()) {
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Conversation username is required");
     }
-    if (!normalizeUsername(me.getUsername()).equals(opener)) {
+    if (!normalizeUsername(me.username()).equals(opener)) {
       throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Cannot report another user's chat open");
     }
     boolean counted = chatCheckEventService.recordQualifiedOpen(opener, conversationWith, Instant.now());
@@ -53,10 +53,10 @@ public class ChatCheckEventController {
   public ResponseEntity<Void> consume(
       @RequestHeader(value = "Authorization", required = false) String authHeader,
       @RequestBody ConsumeCheckRequest request) {
-    UserEntity me = requireAuthUser(authHeader);
+    UserSnapshot me = requireAuthUser(authHeader);
     String receiver = normalizeUsername(request.senderUsername());
     String checker = normalizeUsername(request.checkerUsername());
-    if (!normalizeUsername(me.getUsername()).equals(receiver)) {
+    if (!normalizeUsername(me.username()).equals(receiver)) {
       throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Cannot consume another user's notice");
     }
     if (checker.isBlank()) {
@@ -66,11 +66,11 @@ public class ChatCheckEventController {
     return ResponseEntity.ok().build();
   }
 
-  private UserEntity requireAuthUser(String authHeader) {
+  private UserSnapshot requireAuthUser(String authHeader) {
     Long tokenUserId = jwtTokenService.extractAccessUserId(authHeader);
-    UserEntity user = userRepository.findById(tokenUserId)
+    UserSnapshot user = userDirectory.findById(tokenUserId)
         .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
-    if (!"chat".equalsIgnoreCase(user.getRole())) {
+    if (!user.isChatUser()) {
       throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Chat access is allowed only for chat role users");
     }
     return user;
@@ -1,5 +1,7 @@
 package com.game.app.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -28,21 +30,27 @@ import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.game.app.config.BlockingWorkLimiter;
+import com.game.app.config.ChatSchema;
 import com.game.app.model.ChatMessageEntity;
 import com.game.app.model.ChatMediaEntity;
 import com.game.app.model.MobilePushTokenEntity;
-import com.game.app.model.UserEntity;
 import com.game.app.repository.ChatMessageRepository;
 import com.game.app.repository.ChatMediaRepository;
 import com.game.app.repository.MobilePushTokenRepository;
-import com.game.app.repository.UserRepository;
 import com.game.app.service.ChatAnalyticsService;
 import com.game.app.service.ChatCheckEventService;
+import com.game.app.service.ChatSideEffectExecutor;
+import com.game.app.service.ContactIndex;
 import com.game.app.service.JwtTokenService;
+import com.game.app.service.MediaTypeDetector;
 import com.game.app.service.PushNotificationService;
-import com.game.app.websocket.ChatWebSocketController;
+import com.game.app.service.UserDirectory;
+import com.game.app.service.UserDirectory.UserSnapshot;
+import com.game.app.websocket.ChatMessageDelivery;
+import com.game.app.websocket.CompactChatMessage;
 
 @RestController
 @RequestMapping("/api/app/messages")
@@ -50,35 +58,44 @@ public class ChatMessageController {
 
   private final ChatMessageRepository chatMessageRepository;
   private final ChatMediaRepository chatMediaRepository;
-  private final UserRepository userRepository;
+  private final UserDirectory userDirectory;
   private final JwtTokenService jwtTokenService;
   private final MobilePushTokenRepository mobilePushTokenRepository;
   private final PushNotificationService pushNotificationService;
   private final ChatAnalyticsService chatAnalyticsService;
   private final ChatCheckEventService chatCheckEventService;
-  private final SimpMessagingTemplate messagingTemplate;
+  private final ChatSideEffectExecutor chatSideEffectExecutor;
+  private final ChatMessageDelivery chatMessageDelivery;
+  private final ContactIndex contactIndex;
+  private final BlockingWorkLimiter blockingWorkLimiter;
   private final long maxMediaUploadBytes;
   private final long maxMediaDownloadBytes;
 
   public ChatMessageController(ChatMessageRepository chatMessageRepository, ChatMediaRepository chatMediaRepository,
-      UserRepository userRepository,
+      UserDirectory userDirectory,
       JwtTokenService jwtTokenService,
       MobilePushTokenRepository mobilePushTokenRepository,
       PushNotificationService pushNotificationService,
       ChatAnalyticsService chatAnalyticsService,
       ChatCheckEventService chatCheckEventService,
-      SimpMessagingTemplate messagingTemplate,
+      ChatSideEffectExecutor chatSideEffectExecutor,
+      ChatMessageDelivery chatMessageDelivery,
+      ContactIndex contactIndex,
+      BlockingWorkLimiter blockingWorkLimiter,
       @Value("${app.chat.media.max-bytes:12582912}") long maxMediaUploadBytes,
       @Value("${app.chat.media.max-download-bytes:12582912}") long maxMediaDownloadBytes) {
     this.chatMessageRepository = chatMessageRepository;
     this.chatMediaRepository = chatMediaRepository;
-    this.userRepository = userRepository;
+    this.userDirectory = userDirectory;
     this.jwtTokenService = jwtTokenService;
     this.mobilePushTokenRepository = mobilePushTokenRepository;
     this.pushNotificationService = pushNotificationService;
     this.chatAnalyticsService = chatAnalyticsService;
     this.chatCheckEventService = chatCheckEventService;
-    this.messagingTemplate = messagingTemplate;
+    this.chatSideEffectExecutor = chatSideEffectExecutor;
+    this.chatMessageDelivery = chatMessageDelivery;
+    this.contactIndex = contactIndex;
+    this.blockingWorkLimiter = blockingWorkLimiter;
     this.maxMediaUploadBytes = Math.max(1L * 1024L * 1024L, maxMediaUploadBytes);
     this.maxMediaDownloadBytes = Math.max(1L * 1024L * 1024L, maxMediaDownloadBytes);
   }
@@ -88,17 +105,77 @@ public class ChatMessageController {
       @RequestHeader(value = "Authorization", required = false) String authHeader,
       @RequestParam("with") String withUsername,
       @RequestParam(value = "page", required = false) Integer page,
-      @RequestParam(value = "size", required = false) Integer size) {
-    UserEntity me = requireAuthUser(authHeader);
-    String meUsername = normalizeUsername(me.getUsername());
+      @RequestParam(value = "size", required = false) Integer size,
+      @RequestParam(value = "before", required = false) String before,
+      @RequestParam(value = "after", required = false) String after) {
+    ConversationSlice slice = loadConversation(authHeader, withUsername, page, size, before, after);
+    List<ConversationMessageDto> messages = slice.rows().stream()
+        .map((row) -> toDto(row, slice.meUsername()))
+        .toList();
+
+    return new ConversationPageDto(
+        messages,
+        slice.page(),
+        slice.size(),
+        slice.hasMore(),
+        slice.totalElements(),
+        slice.before(),
+        slice.after());
+  }
+
+  @GetMapping(value = "/conversation", headers = ChatSchema.HTTP_HEADER + "=2")
+  public CompactConversationPageDto getCompactConversation(
+      @RequestHeader(value = "Authorization", required = false) String authHeader,
+      @RequestParam("with") String withUsername,
+      @RequestParam(value = "page", required = false) Integer page,
+      @RequestParam(value = "size", required = false) Integer size,
+      @RequestParam(value = "before", required = false) String before,
+      @RequestParam(value = "after", required = false) String after) {
+    ConversationSlice slice = loadConversation(authHeader, withUsername, page, size, before, after);
+    List<CompactChatMessage> messages = slice.rows().stream()
+        .map((row) -> CompactChatMessage.of(
+            row,
+            row.getFromUsername(),
+            row.getCreatedAt() != null ? row.getCreatedAt().toEpochMilli() : null))
+        .toList();
+
+    return new CompactConversationPageDto(
+        messages,
+        slice.page(),
+        slice.size(),
+        slice.hasMore(),
+        slice.totalElements(),
+        slice.before(),
+        slice.after());
+  }
+
+  /**
+   * Legacy clients page by offset, which counts the conversation and skips {@code page * size} rows. With
+   * {@code before} or {@code after} (a {@link ConversationCursor}; an empty {@code before} means the newest
+   * page) the page is a keyset seek from that message instead: no count, constant cost at any depth, and
+   * messages arriving meanwhile do not shift the pages. Rows are returned oldest first either way.
+   */
+  private ConversationSlice loadConversation(
+      String authHeader,
+      String withUsername,
+      Integer page,
+      Integer size,
+      String before,
+      String after) {
+    UserSnapshot me = requireAuthUser(authHeader);
+    String meUsername = normalizeUsername(me.username());
     String otherUsername = normalizeUsername(withUsername);
 
     if (otherUsername.isBlank()) {
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Conversation username is required");
     }
 
-    int safePage = Math.max(0, page == null ? 0 : page);
     int safeSize = Math.min(200, Math.max(1, size == null ? 50 : size));
+    if (before != null || after != null) {
+      return loadConversationAt(meUsername, otherUsername, safeSize, before, after);
+    }
+
+    int safePage = Math.max(0, page == null ? 0 : page);
 
     Page<ChatMessageEntity> conversationPage = chatMessageRepository.findConversationPage(
         meUsername,
@@ -107,23 +184,72 @@ public class ChatMessageController {
 
     List<ChatMessageEntity> content = new ArrayList<>(conversationPage.getContent());
     Collections.reverse(content);
-    List<ConversationMessageDto> messages = content.stream()
-        .map((row) -> toDto(row, meUsername))
-        .toList();
-
-    return new ConversationPageDto(
-        messages,
+    return new ConversationSlice(
+        meUsername,
+        content,
         safePage,
         safeSize,
         conversationPage.hasNext(),
-        conversationPage.getTotalElements());
+        conversationPage.getTotalElements(),
+        cursorOf(content, 0),
+        cursorOf(content, content.size() - 1));
+  }
+
+  private ConversationSlice loadConversationAt(
+      String meUsername,
+      String otherUsername,
+      int size,
+      String before,
+      String after) {
+    if (before != null && after != null) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Use either before or after, not both");
+    }
+    // One extra row tells whether another page follows without counting the conversation.
+    List<ChatMessageEntity> rows;
+    if (before != null && before.isBlank()) {
+      rows = new ArrayList<>(chatMessageRepository.findConversationLatest(meUsername, otherUsername, size + 1));
+    } else {
+      ConversationCursor cursor;
+      try {
+        cursor = ConversationCursor.parse(before != null ? before : after);
+      } catch (IllegalArgumentException ex) {
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+      }
+      rows = new ArrayList<>(before != null
+          ? chatMessageRepository.findConversationBefore(meUsername, otherUsername, cursor.createdAt(), cursor.id(), size + 1)
+          : chatMessageRepository.findConversationAfter(meUsername, otherUsername, cursor.createdAt(), cursor.id(), size + 1));
+    }
+    boolean hasMore = rows.size() > size;
+    if (hasMore) {
+      rows.remove(rows.size() - 1);
+    }
+    if (before != null) {
+      Collections.reverse(rows);
+    }
+    return new ConversationSlice(
+        meUsername,
+        rows,
+        0,
+        size,
+        hasMore,
+        null,
+        cursorOf(rows, 0),
+        cursorOf(rows, rows.size() - 1));
+  }
+
+  private static String cursorOf(List<ChatMessageEntity> rows, int index) {
+    if (index < 0 || index >= rows.size()) {
+      return null;
+    }
+    ChatMessageEntity row = rows.get(index);
+    return row.getCreatedAt() != null && row.getId() != null ? ConversationCursor.of(row).toString() : null;
   }
 
   @GetMapping("/conversation-summaries")
   public List<ConversationSummaryDto> getConversationSummaries(
       @RequestHeader(value = "Authorization", required = false) String authHeader) {
-    UserEntity me = requireAuthUser(authHeader);
-    String meUsername = normalizeUsername(me.getUsername());
+    UserSnapshot me = requireAuthUser(authHeader);
+    String meUsername = normalizeUsername(me.username());
 
     List<ChatMessageEntity> latestMessages = chatMessageRepository.findLatestMessagesByPeer(meUsername);
     Map<String, ConversationSummaryDto> byPeer = new LinkedHashMap<>();
@@ -152,9 +278,9 @@ public class ChatMessageController {
     if (file == null || file.isEmpty()) {
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File is required");
     }
-    String mimeType = normalizeMimeType(file.getContentType(), file.getOriginalFilename());
+    String mimeType = MediaTypeDetector.detect(readHead(file), file.getContentType(), file.getOriginalFilename());
     String mediaKind = normalizeMediaKind(kind, mimeType);
-    if ("video".equalsIgnoreCase(mediaKind) || (mimeType != null && mimeType.startsWith("video/"))) {
+    if (isVideoUpload(mediaKind, mimeType)) {
       throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Video uploads are disabled");
     }
     if (file.getSize() > maxMediaUploadBytes) {
@@ -163,6 +289,11 @@ public class ChatMessageController {
           "Media exceeds " + toMediaUploadLimitLabel() + " limit");
     }
 
+    // The blocking-work filter lets multipart requests through; the parts are parsed by now, so the permit
+    // only covers the database write.
+    if (!blockingWorkLimiter.acquire()) {
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE);
+    }
     try {
       ChatMediaEntity media = new ChatMediaEntity();
       media.setFileName(file.getOriginalFilename() != null ? file.getOriginalFilename() : "media");
@@ -181,6 +312,8 @@ public class ChatMessageController {
           mediaKind);
     } catch (Exception exception) {
       throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Unable to store media");
+    } finally {
+      blockingWorkLimiter.release();
     }
   }
 
@@ -269,38 +402,18 @@ public class ChatMessageController {
     entity = chatMessageRepository.save(entity);
 
     Instant createdAt = entity.getCreatedAt() != null ? entity.getCreatedAt() : Instant.now();
-    chatCheckEventService.trackOutgoingMessage(fromUsername, toUsername, null);
-    try {
-      chatAnalyticsService.recordMessage(fromUsername, toUsername, entity.getType(), createdAt);
-    } catch (Exception ignored) {
-      // Keep notification reply delivery non-blocking if analytics write fails.
-    }
-
-    messagingTemplate.convertAndSendToUser(
-        toUsername,
-        "/queue/messages",
-        new ChatWebSocketController.IncomingMessage(
-            entity.getId(),
-            entity.getClientMessageId(),
-            fromUsername,
-            entity.getMessage(),
-            entity.getType(),
-            entity.getFileName(),
-            entity.getMediaUrl(),
-            entity.getMimeType(),
-            entity.getReaction(),
-            null,
-            null,
-            null,
-            null,
-            null,
-            null,
-            null,
-            null,
-            createdAt.toEpochMilli(),
-            entity.isEdited(),
-            entity.getEditedAt() != null ? entity.getEditedAt().toEpochMilli() : null,
-            entity.getMediaType()));
+    String messageType = entity.getType();
+    chatSideEffectExecutor.submit(fromUsername, toUsername, () -> {
+      chatCheckEventService.trackOutgoingMessage(fromUsername, toUsername, null);
+      try {
+        chatAnalyticsService.recordMessage(fromUsername, toUsername, messageType, createdAt);
+      } catch (Exception ignored) {
+        // Keep check-event tracking independent from analytics write failures.
+      }
+    });
+
+    contactIndex.recordPair(fromUsername, toUsername);
+    chatMessageDelivery.deliver(toUsername, fromUsername, entity, createdAt.toEpochMilli());
 
     pushNotificationService.notifyUser(
         toUsername,
@@ -337,11 +450,11 @@ public class ChatMessageController {
         row.getMediaType());
   }
 
-  private UserEntity requireAuthUser(String authHeader) {
+  private UserSnapshot requireAuthUser(String authHeader) {
     Long tokenUserId = jwtTokenService.extractAccessUserId(authHeader);
-    UserEntity user = userRepository.findById(tokenUserId)
+    UserSnapshot user = userDirectory.findById(tokenUserId)
         .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
-    if (!"chat".equalsIgnoreCase(user.getRole())) {
+    if (!user.isChatUser()) {
       throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Chat access is allowed only for chat role users");
     }
     return user;
@@ -355,17 +468,21 @@ public class ChatMessageController {
     return token == null ? "" : token.trim();
   }
 
-  private UserEntity requireChatUser(String username) {
+  private UserSnapshot requireChatUser(String username) {
     String normalized = normalizeUsername(username);
-    UserEntity user = userRepository.findByUsername(normalized)
+    UserSnapshot user = userDirectory.findByUsername(normalized)
         .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
-    if (!"chat".equalsIgnoreCase(user.getRole())) {
+    if (!user.isChatUser()) {
       throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Chat access is allowed only for chat role users");
     }
     return user;
   }
 
-  private String normalizeMediaKind(String mediaKind, String mimeType) {
+  static boolean isVideoUpload(String mediaKind, String mimeType) {
+    return "video".equalsIgnoreCase(mediaKind) || (mimeType != null && mimeType.startsWith("video/"));
+  }
+
+  static String normalizeMediaKind(String mediaKind, String mimeType) {
     String normalizedKind = mediaKind != null ? mediaKind.trim().toLowerCase() : "";
     if ("photo".equals(normalizedKind)) return "image";
     if ("audio".equals(normalizedKind)) return "voice";
@@ -376,76 +493,17 @@ public class ChatMessageController {
       return normalizedKind;
     }
 
-    String normalizedMime = mimeType != null ? mimeType.trim().toLowerCase() : "";
-    if (normalizedMime.startsWith("audio/")) return "voice";
-    if (normalizedMime.startsWith("image/")) return "image";
-    if (normalizedMime.startsWith("video/")) return "video";
-    return "file";
+    String kind = MediaTypeDetector.mediaKind(mimeType);
+    return kind != null ? kind : "file";
   }
 
-  private String normalizeMimeType(String contentType, String originalFilename) {
-    String rawType = contentType != null ? contentType.trim().toLowerCase() : "";
-    if (rawType.startsWith("video/x-quicktime")) {
-      return "video/quicktime";
-    }
-    if (rawType.startsWith("video/") || rawType.startsWith("image/") || rawType.startsWith("audio/")) {
-      return rawType;
-    }
-
-    String name = originalFilename != null ? originalFilename.trim().toLowerCase() : "";
-    if (name.matches(".*\\.(apk)$")) {
-      return "application/vnd.android.package-archive";
-    }
-    if (name.matches(".*\\.(mp4|m4v)$")) {
-      return "video/mp4";
-    }
-    if (name.matches(".*\\.(mov|qt)$")) {
-      return "video/quicktime";
-    }
-    if (name.matches(".*\\.(3g2)$")) {
-      return "video/3gpp2";
-    }
-    if (name.matches(".*\\.(webm)$")) {
-      return "video/webm";
-    }
-    if (name.matches(".*\\.(mkv)$")) {
-      return "video/x-matroska";
-    }
-    if (name.matches(".*\\.(avi)$")) {
-      return "video/x-msvideo";
-    }
-    if (name.matches(".*\\.(3gp)$")) {
-      return "video/3gpp";
-    }
-    if (name.matches(".*\\.(heic|heics)$")) {
-      return "image/heic";
+  private static byte[] readHead(MultipartFile file) {
+    try (InputStream input = file.getInputStream()) {
+      return input.readNBytes(MediaTypeDetector.HEAD_BYTES);
+    } catch (IOException exception) {
+      // Storing fails the same way below; classify by the declared type and name meanwhile.
+      return null;
     }
-    if (name.matches(".*\\.(heif|heifs|hif)$")) {
-      return "image/heif";
-    }
-    if (name.matches(".*\\.(jpg|jpeg)$")) {
-      return "image/jpeg";
-    }
-    if (name.matches(".*\\.(png)$")) {
-      return "image/png";
-    }
-    if (name.matches(".*\\.(gif)$")) {
-      return "image/gif";
-    }
-    if (name.matches(".*\\.(webp)$")) {
-      return "image/webp";
-    }
-    if (name.matches(".*\\.(bmp)$")) {
-      return "image/bmp";
-    }
-    if (name.matches(".*\\.(svg)$")) {
-      return "image/svg+xml";
-    }
-    if (!rawType.isBlank()) {
-      return rawType;
-    }
-
-    return MediaType.APPLICATION_OCTET_STREAM_VALUE;
   }
 
   private String toMediaUploadLimitLabel() {
@@ -487,7 +545,30 @@ public class ChatMessageController {
       int page,
       int size,
       boolean hasMore,
-      long totalElements) {
+      Long totalElements,
+      String before,
+      String after) {
+  }
+
+  public record CompactConversationPageDto(
+      @JsonProperty("m") List<CompactChatMessage> messages,
+      @JsonProperty("p") int page,
+      @JsonProperty("s") int size,
+      @JsonProperty("h") boolean hasMore,
+      @JsonProperty("n") Long totalElements,
+      @JsonProperty("b") String before,
+      @JsonProperty("a") String after) {
+  }
+
+  private record ConversationSlice(
+      String meUsername,
+      List<ChatMessageEntity> rows,
+      int page,
+      int size,
+      boolean hasMore,
+      Long totalElements,
+      String before,
+      String after) {
   }
 
   public record ConversationSummaryDto(
@@ -8,26 +8,26 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
-import com.game.app.model.UserEntity;
-import com.game.app.repository.UserRepository;
 import com.game.app.service.ChatStatsService;
 import com.game.app.service.ChatStatsService.ChatStatsDto;
 import com.game.app.service.JwtTokenService;
+import com.game.app.service.UserDirectory;
+import com.game.app.service.UserDirectory.UserSnapshot;
 
 @RestController
 @RequestMapping({ "/api/chat", "/api/app/chat" })
 public class ChatStatsController {
 
   private final ChatStatsService chatStatsService;
-  private final UserRepository userRepository;
+  private final UserDirectory userDirectory;
   private final JwtTokenService jwtTokenService;
 
   public ChatStatsController(
       ChatStatsService chatStatsService,
-      UserRepository userRepository,
+      UserDirectory userDirectory,
       JwtTokenService jwtTokenService) {
     this.chatStatsService = chatStatsService;
-    this.userRepository = userRepository;
+    this.userDirectory = userDirectory;
     this.jwtTokenService = jwtTokenService;
   }
 
@@ -36,28 +36,28 @@ public class ChatStatsController {
       @RequestHeader(value = "Authorization", required = false) String authHeader,
       @RequestParam("peerUsername") String peerUsername,
       @RequestParam(value = "trackMilestone", required = false, defaultValue = "false") boolean trackMilestone) {
-    UserEntity me = requireAuthUser(authHeader);
-    String myUsername = normalizeUsername(me.getUsername());
+    UserSnapshot me = requireAuthUser(authHeader);
+    String myUsername = normalizeUsername(me.username());
     String peer = normalizeUsername(peerUsername);
 
     if (peer.isBlank()) {
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "peerUsername is required");
     }
 
-    UserEntity peerUser = userRepository.findByUsername(peer)
+    UserSnapshot peerUser = userDirectory.findByUsername(peer)
         .orElseThrow(() -> new ResponseStatusException(HttpStatus.FORBIDDEN, "Forbidden"));
-    if (!"chat".equalsIgnoreCase(peerUser.getRole())) {
+    if (!peerUser.isChatUser()) {
       throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Forbidden");
     }
 
     return chatStatsService.getStats(myUsername, peer, trackMilestone);
   }
 
-  private UserEntity requireAuthUser(String authHeader) {
+  private UserSnapshot requireAuthUser(String authHeader) {
     Long tokenUserId = jwtTokenService.extractAccessUserId(authHeader);
-    UserEntity user = userRepository.findById(tokenUserId)
+    UserSnapshot user = userDirectory.findById(tokenUserId)
         .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
-    if (!"chat".equalsIgnoreCase(user.getRole())) {
+    if (!user.isChatUser()) {
       throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Chat access is allowed only for chat role users");
     }
     return user;
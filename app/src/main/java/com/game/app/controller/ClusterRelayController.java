@@ -0,0 +1,39 @@
+package com.game.app.controller;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.game.app.websocket.HttpClusterTransport;
+
+@RestController
+@ConditionalOnProperty(name = "app.cluster.transport", havingValue = "http")
+public class ClusterRelayController {
+  private final HttpClusterTransport httpClusterTransport;
+
+  public ClusterRelayController(HttpClusterTransport httpClusterTransport) {
+    this.httpClusterTransport = httpClusterTransport;
+  }
+
+  @PostMapping(value = HttpClusterTransport.PATH, consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+  public ResponseEntity<Void> relay(
+      @RequestHeader(value = HttpClusterTransport.SECRET_HEADER, required = false) String secret,
+      @RequestBody byte[] body) {
+    boolean accepted;
+    try {
+      accepted = httpClusterTransport.accept(secret, body);
+    } catch (IllegalArgumentException ex) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+    }
+    if (!accepted) {
+      throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Invalid cluster secret");
+    }
+    return ResponseEntity.noContent().build();
+  }
+}
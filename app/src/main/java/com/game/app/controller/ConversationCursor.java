@@ -0,0 +1,41 @@
+package com.game.app.controller;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+import com.game.app.model.ChatMessageEntity;
+
+/**
+ * Position of a message in a conversation, ordered by {@code (createdAt, id)}; the id breaks ties between
+ * messages stored in the same instant. Written as {@code <createdAt>,<id>}, where {@code createdAt} is the
+ * ISO-8601 instant returned in page responses. Epoch milliseconds, as in message payloads, are refused: they
+ * drop the stored microseconds, so a seek could skip or repeat messages stored within the same millisecond.
+ */
+record ConversationCursor(Instant createdAt, long id) {
+
+  static ConversationCursor of(ChatMessageEntity message) {
+    return new ConversationCursor(message.getCreatedAt(), message.getId());
+  }
+
+  static ConversationCursor parse(String value) {
+    if (value == null) {
+      throw new IllegalArgumentException("Cursor must be <createdAt>,<id>");
+    }
+    int comma = value.lastIndexOf(',');
+    if (comma <= 0 || comma == value.length() - 1) {
+      throw new IllegalArgumentException("Cursor must be <createdAt>,<id>");
+    }
+    String createdAt = value.substring(0, comma).trim();
+    try {
+      long id = Long.parseLong(value.substring(comma + 1).trim());
+      return new ConversationCursor(Instant.parse(createdAt), id);
+    } catch (NumberFormatException | DateTimeParseException ex) {
+      throw new IllegalArgumentException("Cursor must be <createdAt>,<id>", ex);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return createdAt + "," + id;
+  }
+}
@@ -1,25 +1,42 @@
 package com.game.app.controller;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.time.Instant;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.sql.DataSource;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.game.app.service.RuntimeMetricsSource;
 
 @RestController
 public class HealthController {
 
+    public static final String METRICS_TOKEN_HEADER = "X-Metrics-Token";
+
     private final DataSource dataSource;
+    private final List<RuntimeMetricsSource> metricsSources;
+    private final byte[] metricsToken;
 
-    public HealthController(DataSource dataSource) {
+    public HealthController(
+        DataSource dataSource,
+        List<RuntimeMetricsSource> metricsSources,
+        @Value("${app.health.metrics-token:}") String metricsToken) {
         this.dataSource = dataSource;
+        this.metricsSources = metricsSources;
+        this.metricsToken = metricsToken == null ? new byte[0] : metricsToken.trim().getBytes(StandardCharsets.UTF_8);
     }
 
     @GetMapping("/")
@@ -63,6 +80,29 @@ public class HealthController {
         }
     }
 
+    /**
+     * Internal counters for operators. Disabled while {@code app.health.metrics-token} is blank, otherwise only
+     * answered when {@link #METRICS_TOKEN_HEADER} carries that token.
+     */
+    @GetMapping("/health/metrics")
+    public Map<String, Object> metrics(
+        @RequestHeader(value = METRICS_TOKEN_HEADER, required = false) String presentedToken) {
+        if (metricsToken.length == 0) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        byte[] presented = presentedToken != null ? presentedToken.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (!MessageDigest.isEqual(metricsToken, presented)) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid metrics token");
+        }
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("service", "secert-app");
+        payload.put("timestamp", Instant.now().toString());
+        for (RuntimeMetricsSource source : metricsSources) {
+            payload.put(source.metricsName(), source.metricsSnapshot());
+        }
+        return payload;
+    }
+
     private String summarizeSqlException(SQLException ex) {
         String message = ex.getMessage();
         if (message == null || message.isBlank()) {
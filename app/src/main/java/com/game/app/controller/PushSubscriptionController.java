@@ -10,25 +10,25 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
-import com.game.app.model.UserEntity;
-import com.game.app.repository.UserRepository;
 import com.game.app.service.JwtTokenService;
 import com.game.app.service.PushNotificationService;
+import com.game.app.service.UserDirectory;
+import com.game.app.service.UserDirectory.UserSnapshot;
 
 @RestController
 @RequestMapping("/api/app/push")
 public class PushSubscriptionController {
 
   private final PushNotificationService pushNotificationService;
-  private final UserRepository userRepository;
+  private final UserDirectory userDirectory;
   private final JwtTokenService jwtTokenService;
 
   public PushSubscriptionController(
       PushNotificationService pushNotificationService,
-      UserRepository userRepository,
+      UserDirectory userDirectory,
       JwtTokenService jwtTokenService) {
     this.pushNotificationService = pushNotificationService;
-    this.userRepository = userRepository;
+    this.userDirectory = userDirectory;
     this.jwtTokenService = jwtTokenService;
   }
 
@@ -43,9 +43,9 @@ public class PushSubscriptionController {
   @GetMapping("/status")
   public PushStatusResponse status(
       @RequestHeader(value = "Authorization", required = false) String authHeader) {
-    UserEntity me = requireAuthUser(authHeader);
-    long webSubscriptions = pushNotificationService.countSubscriptions(me.getUsername());
-    long mobileTokens = pushNotificationService.countMobileTokens(me.getUsername());
+    UserSnapshot me = requireAuthUser(authHeader);
+    long webSubscriptions = pushNotificationService.countSubscriptions(me.username());
+    long mobileTokens = pushNotificationService.countMobileTokens(me.username());
     return new PushStatusResponse(
         pushNotificationService.isPushEnabled(),
         pushNotificationService.isFcmEnabled(),
@@ -57,7 +57,7 @@ public class PushSubscriptionController {
   public PushSubscribeResponse subscribe(
       @RequestHeader(value = "Authorization", required = false) String authHeader,
       @RequestBody PushSubscriptionRequest payload) {
-    UserEntity me = requireAuthUser(authHeader);
+    UserSnapshot me = requireAuthUser(authHeader);
     if (payload == null || payload.endpoint() == null || payload.endpoint().isBlank()
         || payload.keys() == null
         || payload.keys().p256dh() == null || payload.keys().p256dh().isBlank()
@@ -66,7 +66,7 @@ public class PushSubscriptionController {
     }
 
     pushNotificationService.saveSubscription(
-        me.getUsername(),
+        me.username(),
         payload.endpoint().trim(),
         payload.keys().p256dh().trim(),
         payload.keys().auth().trim());
@@ -78,10 +78,10 @@ public class PushSubscriptionController {
   public PushSubscribeResponse unsubscribe(
       @RequestHeader(value = "Authorization", required = false) String authHeader,
       @RequestBody(required = false) PushUnsubscribeRequest payload) {
-    UserEntity me = requireAuthUser(authHeader);
+    UserSnapshot me = requireAuthUser(authHeader);
     String endpoint = payload != null ? payload.endpoint() : null;
     if (endpoint != null && !endpoint.isBlank()) {
-      pushNotificationService.removeSubscription(me.getUsername(), endpoint.trim());
+      pushNotificationService.removeSubscription(me.username(), endpoint.trim());
     }
     return new PushSubscribeResponse(true);
   }
@@ -90,13 +90,13 @@ public class PushSubscriptionController {
   public PushSubscribeResponse subscribeMobileToken(
       @RequestHeader(value = "Authorization", required = false) String authHeader,
       @RequestBody MobilePushTokenRequest payload) {
-    UserEntity me = requireAuthUser(authHeader);
+    UserSnapshot me = requireAuthUser(authHeader);
     if (payload == null || payload.token() == null || payload.token().isBlank()) {
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Mobile push token is required");
     }
 
     pushNotificationService.saveMobileToken(
-        me.getUsername(),
+        me.username(),
         payload.token().trim(),
         payload.platform());
     return new PushSubscribeResponse(true);
@@ -106,10 +106,10 @@ public class PushSubscriptionController {
   public PushSubscribeResponse unsubscribeMobileToken(
       @RequestHeader(value = "Authorization", required = false) String authHeader,
       @RequestBody(required = false) MobilePushTokenRequest payload) {
-    UserEntity me = requireAuthUser(authHeader);
+    UserSnapshot me = requireAuthUser(authHeader);
     String token = payload != null ? payload.token() : null;
     if (token != null && !token.isBlank()) {
-      pushNotificationService.removeMobileToken(me.getUsername(), token.trim());
+      pushNotificationService.removeMobileToken(me.username(), token.trim());
     }
     return new PushSubscribeResponse(true);
   }
@@ -118,7 +118,7 @@ public class PushSubscriptionController {
   public PushTestResponse testPush(
       @RequestHeader(value = "Authorization", required = false) String authHeader,
       @RequestBody(required = false) PushTestRequest payload) {
-    UserEntity me = requireAuthUser(authHeader);
+    UserSnapshot me = requireAuthUser(authHeader);
     String title = payload != null && payload.title() != null && !payload.title().isBlank()
         ? payload.title().trim()
         : "Test notification";
@@ -130,13 +130,13 @@ public class PushSubscriptionController {
         : "/#/chat";
 
     PushNotificationService.PushSendResult result =
-        pushNotificationService.sendTestNow(me.getUsername(), title, body, url);
+        pushNotificationService.sendTestNow(me.username(), title, body, url);
     return new PushTestResponse(result.success(), result.message(), result.attempted(), result.sent());
   }
 
-  private UserEntity requireAuthUser(String authHeader) {
+  private UserSnapshot requireAuthUser(String authHeader) {
     Long tokenUserId = jwtTokenService.extractAccessUserId(authHeader);
-    return userRepository.findById(tokenUserId)
+    return userDirectory.findById(tokenUserId)
         .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
   }
 
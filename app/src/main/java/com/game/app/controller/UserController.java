@@ -4,6 +4,8 @@ import com.game.app.dto.SecretKeyRequestDto;
 import com.game.app.model.UserEntity;
 import com.game.app.repository.UserRepository;
 import com.game.app.service.JwtTokenService;
+import com.game.app.service.UserDirectory;
+import com.game.app.service.UserDirectory.UserSnapshot;
 import jakarta.validation.Valid;
 import java.util.Map;
 import org.springframework.http.ResponseEntity;
@@ -19,10 +21,12 @@ import java.util.List;
 public class UserController {
 
   private final UserRepository userRepository;
+  private final UserDirectory userDirectory;
   private final JwtTokenService jwtTokenService;
 
-  public UserController(UserRepository userRepository, JwtTokenService jwtTokenService) {
+  public UserController(UserRepository userRepository, UserDirectory userDirectory, JwtTokenService jwtTokenService) {
     this.userRepository = userRepository;
+    this.userDirectory = userDirectory;
     this.jwtTokenService = jwtTokenService;
   }
 
@@ -47,9 +51,9 @@ public class UserController {
   public ResponseEntity<?> getUserById(
       @PathVariable Long id,
       @RequestHeader(value = "Authorization", required = false) String authHeader) {
-    UserEntity me = requireAuthUser(authHeader);
+    UserSnapshot me = requireAuthUser(authHeader);
     return userRepository.findById(id)
-        .map((user) -> ResponseEntity.ok(id.equals(me.getId()) ? toPrivateDto(user) : toPublicDto(user)))
+        .map((user) -> ResponseEntity.ok(id.equals(me.id()) ? toPrivateDto(user) : toPublicDto(user)))
         .orElse(ResponseEntity.notFound().build());
   }
 
@@ -86,6 +90,7 @@ public class UserController {
         .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
     user.setSecretKey(request.secretKey().trim());
     userRepository.save(user);
+    userDirectory.invalidate(user);
     return ResponseEntity.ok(Map.of("message", "Secret key saved"));
   }
 
@@ -103,15 +108,15 @@ public class UserController {
   }
 
   private void authorizeUser(Long requestedUserId, String authHeader) {
-    UserEntity user = requireAuthUser(authHeader);
-    if (!requestedUserId.equals(user.getId())) {
+    UserSnapshot user = requireAuthUser(authHeader);
+    if (!requestedUserId.equals(user.id())) {
       throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Cannot access another user's data");
     }
   }
 
-  private UserEntity requireAuthUser(String authHeader) {
+  private UserSnapshot requireAuthUser(String authHeader) {
     Long tokenUserId = jwtTokenService.extractAccessUserId(authHeader);
-    return userRepository.findById(tokenUserId)
+    return userDirectory.findById(tokenUserId)
         .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
   }
 
@@ -110,6 +110,10 @@ public class ChatMessageEntity {
     return id;
   }
 
+  public void setId(Long id) {
+    this.id = id;
+  }
+
   public String getFromUsername() {
     return fromUsername;
   }
@@ -258,6 +262,10 @@ public class ChatMessageEntity {
     return createdAt;
   }
 
+  public void setCreatedAt(Instant createdAt) {
+    this.createdAt = createdAt;
+  }
+
   public boolean isEdited() {
     return edited;
   }
@@ -0,0 +1,30 @@
+package com.game.app.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+@Entity
+@Table(name = "presence_nodes")
+public class PresenceNodeEntity {
+
+  @Id
+  @Column(name = "node_id", length = 64)
+  private String nodeId;
+
+  @Column(name = "lease_expires_at", nullable = false)
+  private long leaseExpiresAt;
+
+  protected PresenceNodeEntity() {
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  /** Epoch millis after which the node's presence rows no longer count and may be reaped. */
+  public long getLeaseExpiresAt() {
+    return leaseExpiresAt;
+  }
+}
@@ -0,0 +1,43 @@
+package com.game.app.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+@Entity
+@Table(
+    name = "presence_users",
+    uniqueConstraints = @UniqueConstraint(columnNames = { "node_id", "username" }),
+    indexes = @Index(name = "idx_presence_users_username", columnList = "username"))
+public class PresenceUserEntity {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(name = "node_id", nullable = false, length = 64)
+  private String nodeId;
+
+  @Column(name = "username", nullable = false, length = 60)
+  private String username;
+
+  protected PresenceUserEntity() {
+  }
+
+  public Long getId() {
+    return id;
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  public String getUsername() {
+    return username;
+  }
+}
@@ -0,0 +1,35 @@
+package com.game.app.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+@Entity
+@Table(name = "user_last_seen")
+public class UserLastSeenEntity {
+
+  @Id
+  @Column(name = "user_id")
+  private Long userId;
+
+  @Column(name = "last_seen_at", nullable = false)
+  private long lastSeenAt;
+
+  protected UserLastSeenEntity() {
+  }
+
+  public UserLastSeenEntity(Long userId, long lastSeenAt) {
+    this.userId = userId;
+    this.lastSeenAt = lastSeenAt;
+  }
+
+  public Long getUserId() {
+    return userId;
+  }
+
+  /** Epoch millis of the user's last offline transition. */
+  public long getLastSeenAt() {
+    return lastSeenAt;
+  }
+}
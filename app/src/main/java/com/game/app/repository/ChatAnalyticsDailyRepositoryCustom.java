@@ -0,0 +1,23 @@
+package com.game.app.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ChatAnalyticsDailyRepositoryCustom {
+
+  /**
+   * Adds every increment onto its {@code (user_low, user_high, talk_date)} row with a single JDBC batch of
+   * {@code INSERT ... ON DUPLICATE KEY UPDATE} statements inside one transaction.
+   */
+  void incrementAll(List<DailyIncrement> increments);
+
+  record DailyIncrement(
+      String userLow,
+      String userHigh,
+      LocalDate talkDate,
+      long messages,
+      long images,
+      long videos,
+      long voices) {
+  }
+}
@@ -0,0 +1,61 @@
+package com.game.app.repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class ChatAnalyticsDailyRepositoryCustomImpl implements ChatAnalyticsDailyRepositoryCustom {
+
+  private static final String UPSERT_SQL = """
+      INSERT INTO chat_analytics_daily (
+        user_low, user_high, talk_date, message_count, image_count, video_count, voice_count, created_at, updated_at)
+      VALUES (?, ?, ?, ?, ?, ?, ?, NOW(), NOW())
+      ON DUPLICATE KEY UPDATE
+        message_count = message_count + VALUES(message_count),
+        image_count = image_count + VALUES(image_count),
+        video_count = video_count + VALUES(video_count),
+        voice_count = voice_count + VALUES(voice_count),
+        updated_at = NOW()
+      """;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+
+  public ChatAnalyticsDailyRepositoryCustomImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  @Override
+  public void incrementAll(List<DailyIncrement> increments) {
+    if (increments == null || increments.isEmpty()) {
+      return;
+    }
+    transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+        UPSERT_SQL,
+        new BatchPreparedStatementSetter() {
+          @Override
+          public void setValues(PreparedStatement statement, int index) throws SQLException {
+            DailyIncrement increment = increments.get(index);
+            statement.setString(1, increment.userLow());
+            statement.setString(2, increment.userHigh());
+            statement.setDate(3, Date.valueOf(increment.talkDate()));
+            statement.setLong(4, increment.messages());
+            statement.setLong(5, increment.images());
+            statement.setLong(6, increment.videos());
+            statement.setLong(7, increment.voices());
+          }
+
+          @Override
+          public int getBatchSize() {
+            return increments.size();
+          }
+        }));
+  }
+}
@@ -13,7 +13,7 @@ import org.springframework.data.repository.query.Param;
 
 import com.game.app.model.ChatMessageEntity;
 
-public interface ChatMessageRepository extends JpaRepository<ChatMessageEntity, Long> {
+public interface ChatMessageRepository extends JpaRepository<ChatMessageEntity, Long>, ChatMessageRepositoryCustom {
 
   Optional<ChatMessageEntity> findByFromUsernameAndClientMessageId(String fromUsername, String clientMessageId);
 
@@ -44,6 +44,91 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessageEntity,
       """)
   Page<ChatMessageEntity> findConversationPage(String userA, String userB, Pageable pageable);
 
+  /**
+   * Up to {@code limit} messages of the conversation ordered before {@code (createdAt, id)}, newest first.
+   * Each direction of the pair is a range seek on its own {@code (from, to, created_at, id)} index that stops
+   * after {@code limit} rows; the two are merged here, so the cost does not grow with the scroll depth.
+   */
+  @Query(value = """
+      SELECT conversation.*
+      FROM (
+        (SELECT m.* FROM chat_messages m
+         WHERE m.from_username = :userA AND m.to_username = :userB
+           AND m.created_at <= :createdAt AND (m.created_at < :createdAt OR m.id < :id)
+         ORDER BY m.created_at DESC, m.id DESC
+         LIMIT :limit)
+        UNION ALL
+        (SELECT m.* FROM chat_messages m
+         WHERE m.from_username = :userB AND m.to_username = :userA
+           AND m.created_at <= :createdAt AND (m.created_at < :createdAt OR m.id < :id)
+         ORDER BY m.created_at DESC, m.id DESC
+         LIMIT :limit)
+      ) conversation
+      ORDER BY conversation.created_at DESC, conversation.id DESC
+      LIMIT :limit
+      """, nativeQuery = true)
+  List<ChatMessageEntity> findConversationBefore(
+      @Param("userA") String userA,
+      @Param("userB") String userB,
+      @Param("createdAt") Instant createdAt,
+      @Param("id") long id,
+      @Param("limit") int limit);
+
+  /** The newest {@code limit} messages of the conversation, newest first: {@link #findConversationBefore} without a cursor. */
+  @Query(value = """
+      SELECT conversation.*
+      FROM (
+        (SELECT m.* FROM chat_messages m
+         WHERE m.from_username = :userA AND m.to_username = :userB
+         ORDER BY m.created_at DESC, m.id DESC
+         LIMIT :limit)
+        UNION ALL
+        (SELECT m.* FROM chat_messages m
+         WHERE m.from_username = :userB AND m.to_username = :userA
+         ORDER BY m.created_at DESC, m.id DESC
+         LIMIT :limit)
+      ) conversation
+      ORDER BY conversation.created_at DESC, conversation.id DESC
+      LIMIT :limit
+      """, nativeQuery = true)
+  List<ChatMessageEntity> findConversationLatest(
+      @Param("userA") String userA,
+      @Param("userB") String userB,
+      @Param("limit") int limit);
+
+  /** Mirror of {@link #findConversationBefore}: messages after {@code (createdAt, id)}, oldest first. */
+  @Query(value = """
+      SELECT conversation.*
+      FROM (
+        (SELECT m.* FROM chat_messages m
+         WHERE m.from_username = :userA AND m.to_username = :userB
+           AND m.created_at >= :createdAt AND (m.created_at > :createdAt OR m.id > :id)
+         ORDER BY m.created_at ASC, m.id ASC
+         LIMIT :limit)
+        UNION ALL
+        (SELECT m.* FROM chat_messages m
+         WHERE m.from_username = :userB AND m.to_username = :userA
+           AND m.created_at >= :createdAt AND (m.created_at > :createdAt OR m.id > :id)
+         ORDER BY m.created_at ASC, m.id ASC
+         LIMIT :limit)
+      ) conversation
+      ORDER BY conversation.created_at ASC, conversation.id ASC
+      LIMIT :limit
+      """, nativeQuery = true)
+  List<ChatMessageEntity> findConversationAfter(
+      @Param("userA") String userA,
+      @Param("userB") String userB,
+      @Param("createdAt") Instant createdAt,
+      @Param("id") long id,
+      @Param("limit") int limit);
+
+  @Query("""
+      SELECT DISTINCT CASE WHEN m.fromUsername = :username THEN m.toUsername ELSE m.fromUsername END
+      FROM ChatMessageEntity m
+      WHERE m.fromUsername = :username OR m.toUsername = :username
+      """)
+  List<String> findPeerUsernames(@Param("username") String username);
+
   @Query(value = """
       SELECT m.*
       FROM chat_messages m
@@ -0,0 +1,14 @@
+package com.game.app.repository;
+
+import java.util.List;
+
+import com.game.app.model.ChatMessageEntity;
+
+public interface ChatMessageRepositoryCustom {
+
+  /**
+   * Inserts all rows with a single JDBC batch inside one transaction and assigns the generated ids
+   * (and {@code createdAt}, when missing) back onto the given entities. When it throws, nothing was committed.
+   */
+  void insertAll(List<ChatMessageEntity> entities);
+}
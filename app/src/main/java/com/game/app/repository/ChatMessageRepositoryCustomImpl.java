@@ -0,0 +1,120 @@
+package com.game.app.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.game.app.model.ChatMessageEntity;
+
+public class ChatMessageRepositoryCustomImpl implements ChatMessageRepositoryCustom {
+
+  private static final String INSERT_SQL = """
+      INSERT INTO chat_messages (
+        from_username, to_username, message, type, file_name, media_url, media_type, client_message_id,
+        moved_to_drive, mime_type, reaction, reply_text, reply_sender_name, reply_message_id, reply_type,
+        reply_media_url, reply_mime_type, reply_file_name, created_at, edited, edited_at)
+      VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+      """;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+
+  public ChatMessageRepositoryCustomImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  @Override
+  public void insertAll(List<ChatMessageEntity> entities) {
+    if (entities == null || entities.isEmpty()) {
+      return;
+    }
+    Instant now = Instant.now();
+    for (ChatMessageEntity entity : entities) {
+      if (entity.getCreatedAt() == null) {
+        entity.setCreatedAt(now);
+      }
+    }
+
+    transactionTemplate.executeWithoutResult(status -> {
+      KeyHolder keyHolder = new GeneratedKeyHolder();
+      jdbcTemplate.batchUpdate(
+          connection -> connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS),
+          new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int index) throws SQLException {
+              bindInsert(statement, entities.get(index));
+            }
+
+            @Override
+            public int getBatchSize() {
+              return entities.size();
+            }
+          },
+          keyHolder);
+
+      // Checked before the commit: throwing here rolls the batch back, so a caller retrying row by row
+      // cannot insert a row twice.
+      List<Map<String, Object>> keys = keyHolder.getKeyList();
+      if (keys.size() != entities.size()) {
+        throw new IncorrectResultSizeDataAccessException(entities.size(), keys.size());
+      }
+      for (int i = 0; i < entities.size(); i += 1) {
+        Object key = keys.get(i).values().iterator().next();
+        entities.get(i).setId(((Number) key).longValue());
+      }
+    });
+  }
+
+  private void bindInsert(PreparedStatement statement, ChatMessageEntity entity) throws SQLException {
+    statement.setString(1, entity.getFromUsername());
+    statement.setString(2, entity.getToUsername());
+    statement.setString(3, entity.getMessage());
+    statement.setString(4, entity.getType());
+    statement.setString(5, entity.getFileName());
+    statement.setString(6, entity.getMediaUrl());
+    statement.setString(7, entity.getMediaType());
+    statement.setString(8, entity.getClientMessageId());
+    statement.setBoolean(9, entity.isLegacyMediaMigratedFlag());
+    statement.setString(10, entity.getMimeType());
+    statement.setString(11, entity.getReaction());
+    statement.setString(12, entity.getReplyText());
+    statement.setString(13, entity.getReplySenderName());
+    if (entity.getReplyMessageId() != null) {
+      statement.setLong(14, entity.getReplyMessageId());
+    } else {
+      statement.setNull(14, Types.BIGINT);
+    }
+    statement.setString(15, entity.getReplyType());
+    statement.setString(16, entity.getReplyMediaUrl());
+    statement.setString(17, entity.getReplyMimeType());
+    statement.setString(18, entity.getReplyFileName());
+    setInstant(statement, 19, entity.getCreatedAt());
+    statement.setBoolean(20, entity.isEdited());
+    setInstant(statement, 21, entity.getEditedAt());
+  }
+
+  // Same binding Hibernate uses for Instant columns on MySQL, so JDBC and JPA rows compare equal.
+  private void setInstant(PreparedStatement statement, int index, Instant value) throws SQLException {
+    if (value == null) {
+      statement.setNull(index, Types.TIMESTAMP);
+      return;
+    }
+    statement.setTimestamp(index, Timestamp.from(value), Calendar.getInstance(TimeZone.getTimeZone("UTC")));
+  }
+}
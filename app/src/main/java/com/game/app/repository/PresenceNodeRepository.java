@@ -0,0 +1,8 @@
+package com.game.app.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.game.app.model.PresenceNodeEntity;
+
+public interface PresenceNodeRepository extends JpaRepository<PresenceNodeEntity, String>, PresenceNodeRepositoryCustom {
+}
@@ -0,0 +1,31 @@
+package com.game.app.repository;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Shared presence rows: one lease per application node in {@code presence_nodes} and one
+ * {@code presence_users} row per user the node holds online. A user is online while any node holding them
+ * has an unexpired lease.
+ */
+public interface PresenceNodeRepositoryCustom {
+
+  void renewLease(String nodeId, long leaseExpiresAt);
+
+  /**
+   * Applies a node's presence changes in one transaction: drops every row of the node first when
+   * {@code replaceAll} is set, then inserts {@code added} and deletes {@code removed} as JDBC batches.
+   */
+  void applyChanges(String nodeId, boolean replaceAll, List<String> added, List<String> removed);
+
+  /**
+   * Deletes the nodes whose lease expired before {@code nowMillis}, with their rows, and returns the usernames
+   * of the deleted rows. When two nodes reap at once, each row is returned to only one of them.
+   */
+  List<String> reapExpired(long nowMillis);
+
+  /** Users held online by other nodes whose lease is still valid at {@code nowMillis}. */
+  Set<String> findOnlineElsewhere(String nodeId, long nowMillis);
+
+  void removeNode(String nodeId);
+}
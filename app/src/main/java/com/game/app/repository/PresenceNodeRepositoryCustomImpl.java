@@ -0,0 +1,116 @@
+package com.game.app.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class PresenceNodeRepositoryCustomImpl implements PresenceNodeRepositoryCustom {
+
+  private static final String RENEW_SQL = """
+      INSERT INTO presence_nodes (node_id, lease_expires_at)
+      VALUES (?, ?)
+      ON DUPLICATE KEY UPDATE lease_expires_at = VALUES(lease_expires_at)
+      """;
+  private static final String ADD_USER_SQL = """
+      INSERT INTO presence_users (node_id, username)
+      VALUES (?, ?)
+      ON DUPLICATE KEY UPDATE username = VALUES(username)
+      """;
+  private static final String REMOVE_USER_SQL = "DELETE FROM presence_users WHERE node_id = ? AND username = ?";
+  private static final String CLEAR_NODE_SQL = "DELETE FROM presence_users WHERE node_id = ?";
+  private static final String REMOVE_NODE_SQL = "DELETE FROM presence_nodes WHERE node_id = ?";
+  private static final String EXPIRED_USERS_SQL = """
+      SELECT u.username
+      FROM presence_users u
+      JOIN presence_nodes n ON n.node_id = u.node_id
+      WHERE n.lease_expires_at < ?
+      FOR UPDATE
+      """;
+  private static final String REAP_USERS_SQL = """
+      DELETE FROM presence_users
+      WHERE node_id IN (SELECT node_id FROM presence_nodes WHERE lease_expires_at < ?)
+      """;
+  private static final String REAP_NODES_SQL = "DELETE FROM presence_nodes WHERE lease_expires_at < ?";
+  private static final String ONLINE_ELSEWHERE_SQL = """
+      SELECT DISTINCT u.username
+      FROM presence_users u
+      JOIN presence_nodes n ON n.node_id = u.node_id
+      WHERE u.node_id <> ? AND n.lease_expires_at >= ?
+      """;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+
+  public PresenceNodeRepositoryCustomImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  @Override
+  public void renewLease(String nodeId, long leaseExpiresAt) {
+    jdbcTemplate.update(RENEW_SQL, nodeId, leaseExpiresAt);
+  }
+
+  @Override
+  public void applyChanges(String nodeId, boolean replaceAll, List<String> added, List<String> removed) {
+    transactionTemplate.executeWithoutResult(status -> {
+      if (replaceAll) {
+        jdbcTemplate.update(CLEAR_NODE_SQL, nodeId);
+      }
+      batch(ADD_USER_SQL, nodeId, added);
+      if (!replaceAll) {
+        batch(REMOVE_USER_SQL, nodeId, removed);
+      }
+    });
+  }
+
+  @Override
+  public List<String> reapExpired(long nowMillis) {
+    // The locking read makes a concurrent reaper wait and then find the rows gone.
+    List<String> reaped = transactionTemplate.execute(status -> {
+      List<String> users = jdbcTemplate.queryForList(EXPIRED_USERS_SQL, String.class, nowMillis);
+      jdbcTemplate.update(REAP_USERS_SQL, nowMillis);
+      jdbcTemplate.update(REAP_NODES_SQL, nowMillis);
+      return users;
+    });
+    return reaped != null ? reaped : List.of();
+  }
+
+  @Override
+  public Set<String> findOnlineElsewhere(String nodeId, long nowMillis) {
+    return new HashSet<>(jdbcTemplate.queryForList(ONLINE_ELSEWHERE_SQL, String.class, nodeId, nowMillis));
+  }
+
+  @Override
+  public void removeNode(String nodeId) {
+    transactionTemplate.executeWithoutResult(status -> {
+      jdbcTemplate.update(CLEAR_NODE_SQL, nodeId);
+      jdbcTemplate.update(REMOVE_NODE_SQL, nodeId);
+    });
+  }
+
+  private void batch(String sql, String nodeId, List<String> usernames) {
+    if (usernames == null || usernames.isEmpty()) {
+      return;
+    }
+    jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+      @Override
+      public void setValues(PreparedStatement statement, int index) throws SQLException {
+        statement.setString(1, nodeId);
+        statement.setString(2, usernames.get(index));
+      }
+
+      @Override
+      public int getBatchSize() {
+        return usernames.size();
+      }
+    });
+  }
+}
@@ -0,0 +1,16 @@
+package com.game.app.repository;
+
+import java.util.List;
+
+public interface UserLastSeenRepositoryCustom {
+
+  /**
+   * Writes every timestamp onto its {@code user_id} row with a single JDBC batch of
+   * {@code INSERT ... ON DUPLICATE KEY UPDATE} statements inside one transaction. A stored value is never
+   * moved backwards.
+   */
+  void upsertAll(List<LastSeen> entries);
+
+  record LastSeen(long userId, long lastSeenAt) {
+  }
+}
@@ -0,0 +1,49 @@
+package com.game.app.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class UserLastSeenRepositoryCustomImpl implements UserLastSeenRepositoryCustom {
+
+  private static final String UPSERT_SQL = """
+      INSERT INTO user_last_seen (user_id, last_seen_at)
+      VALUES (?, ?)
+      ON DUPLICATE KEY UPDATE last_seen_at = GREATEST(last_seen_at, VALUES(last_seen_at))
+      """;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+
+  public UserLastSeenRepositoryCustomImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  @Override
+  public void upsertAll(List<LastSeen> entries) {
+    if (entries == null || entries.isEmpty()) {
+      return;
+    }
+    transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+        UPSERT_SQL,
+        new BatchPreparedStatementSetter() {
+          @Override
+          public void setValues(PreparedStatement statement, int index) throws SQLException {
+            LastSeen entry = entries.get(index);
+            statement.setLong(1, entry.userId());
+            statement.setLong(2, entry.lastSeenAt());
+          }
+
+          @Override
+          public int getBatchSize() {
+            return entries.size();
+          }
+        }));
+  }
+}
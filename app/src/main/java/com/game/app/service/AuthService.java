@@ -16,11 +16,17 @@ public class AuthService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtTokenService jwtTokenService;
+    private final UserDirectory userDirectory;
 
-    public AuthService(UserRepository userRepository, PasswordEncoder passwordEncoder, JwtTokenService jwtTokenService) {
+    public AuthService(
+        UserRepository userRepository,
+        PasswordEncoder passwordEncoder,
+        JwtTokenService jwtTokenService,
+        UserDirectory userDirectory) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.jwtTokenService = jwtTokenService;
+        this.userDirectory = userDirectory;
     }
 
     public AuthResponseDto register(AuthRequestDto request) {
@@ -44,6 +50,7 @@ public class AuthService {
         user.setEmail(email);
         user.setDob(dob);
         user = userRepository.save(user);
+        userDirectory.invalidate(user);
         String token = issueAccessToken(user);
         String refreshToken = issueRefreshToken(user);
         return new AuthResponseDto(user.getId(), user.getUsername(), token, refreshToken, user.getRole(), "Registration successful");
@@ -67,10 +74,10 @@ public class AuthService {
         Long userId = jwtTokenService.extractAccessUserId(rawToken);
         String token = extractToken(rawToken);
 
-        UserEntity user = userRepository.findById(userId)
+        UserDirectory.UserSnapshot user = userDirectory.findById(userId)
             .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
 
-        return new AuthResponseDto(user.getId(), user.getUsername(), token, null, user.getRole(), "Authenticated");
+        return new AuthResponseDto(user.id(), user.username(), token, null, user.role(), "Authenticated");
     }
 
     public AuthResponseDto refresh(RefreshTokenRequestDto request) {
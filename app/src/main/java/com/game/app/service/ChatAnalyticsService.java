@@ -3,23 +3,49 @@ package com.game.app.service;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import com.game.app.model.ChatAnalyticsDailyEntity;
 import com.game.app.repository.ChatAnalyticsDailyRepository;
+import com.game.app.repository.ChatAnalyticsDailyRepositoryCustom.DailyIncrement;
 
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Counts messages per conversation pair and day.
+ *
+ * <p>{@link #recordMessage} only bumps in-memory {@link LongAdder}s; {@link #flushPending} periodically adds
+ * the accumulated deltas onto {@code chat_analytics_daily} with one batched upsert. Reads go through
+ * {@link #loadDailyCounts}, which merges deltas that have not been flushed yet, so totals stay exact.
+ */
 @Service
-public class ChatAnalyticsService {
+public class ChatAnalyticsService implements RuntimeMetricsSource {
+
+  private static final Logger logger = LoggerFactory.getLogger(ChatAnalyticsService.class);
 
   private final ChatAnalyticsDailyRepository chatAnalyticsDailyRepository;
+  private final ConcurrentHashMap<DailyKey, PendingCounts> pending = new ConcurrentHashMap<>();
+  // Readers hold the read lock across "load rows + merge pending" so a flush cannot move deltas in between.
+  private final ReentrantReadWriteLock flushLock = new ReentrantReadWriteLock();
+  private final LongAdder flushedRows = new LongAdder();
+  private final LongAdder failedFlushes = new LongAdder();
 
   public ChatAnalyticsService(ChatAnalyticsDailyRepository chatAnalyticsDailyRepository) {
     this.chatAnalyticsDailyRepository = chatAnalyticsDailyRepository;
   }
 
-  @Transactional
   public void recordMessage(String userOne, String userTwo, String type, Instant createdAt) {
     String[] pair = canonicalPair(userOne, userTwo);
     String low = pair[0];
@@ -32,18 +58,97 @@ public class ChatAnalyticsService {
     Instant safeInstant = createdAt != null ? createdAt : Instant.now();
     LocalDate talkDate = LocalDate.ofInstant(safeInstant, zoneId);
 
-    ChatAnalyticsDailyEntity row = chatAnalyticsDailyRepository
-        .findByUserLowAndUserHighAndTalkDate(low, high, talkDate)
-        .orElseGet(() -> {
-          ChatAnalyticsDailyEntity entity = new ChatAnalyticsDailyEntity();
-          entity.setUserLow(low);
-          entity.setUserHigh(high);
-          entity.setTalkDate(talkDate);
-          return entity;
-        });
+    pending.computeIfAbsent(new DailyKey(low, high, talkDate), key -> new PendingCounts()).increment(type);
+  }
+
+  /**
+   * Daily totals for the pair in ascending date order, including increments not yet flushed.
+   */
+  public List<DailyCounts> loadDailyCounts(String userOne, String userTwo) {
+    String[] pair = canonicalPair(userOne, userTwo);
+    String low = pair[0];
+    String high = pair[1];
+
+    flushLock.readLock().lock();
+    try {
+      Map<LocalDate, DailyCounts> byDate = new TreeMap<>();
+      for (ChatAnalyticsDailyEntity row : chatAnalyticsDailyRepository.findByUserLowAndUserHighOrderByTalkDateAsc(low, high)) {
+        if (row.getTalkDate() == null) continue;
+        byDate.merge(row.getTalkDate(), new DailyCounts(
+            row.getTalkDate(),
+            row.getMessageCount(),
+            row.getImageCount(),
+            row.getVideoCount(),
+            row.getVoiceCount()), DailyCounts::plus);
+      }
+      pending.forEach((key, counts) -> {
+        if (!key.userLow().equals(low) || !key.userHigh().equals(high)) {
+          return;
+        }
+        DailyCounts delta = counts.snapshot(key.talkDate());
+        if (delta.messageCount() > 0L) {
+          byDate.merge(key.talkDate(), delta, DailyCounts::plus);
+        }
+      });
+      return new ArrayList<>(byDate.values());
+    } finally {
+      flushLock.readLock().unlock();
+    }
+  }
+
+  @Scheduled(
+      fixedDelayString = "${app.chat.analytics.flush-ms:5000}",
+      initialDelayString = "${app.chat.analytics.flush-ms:5000}")
+  public void flushPending() {
+    flushLock.writeLock().lock();
+    try {
+      List<DailyIncrement> batch = new ArrayList<>();
+      LocalDate yesterday = LocalDate.now(ZoneId.systemDefault()).minusDays(1);
+      pending.forEach((key, counts) -> {
+        DailyIncrement increment = counts.drain(key);
+        if (increment.messages() > 0L || increment.images() > 0L || increment.videos() > 0L || increment.voices() > 0L) {
+          batch.add(increment);
+        } else if (key.talkDate().isBefore(yesterday)) {
+          // Nothing records onto days this old any more, so the idle entry can go.
+          pending.remove(key, counts);
+        }
+      });
+      if (batch.isEmpty()) {
+        return;
+      }
+      try {
+        chatAnalyticsDailyRepository.incrementAll(batch);
+        flushedRows.add(batch.size());
+      } catch (RuntimeException ex) {
+        failedFlushes.increment();
+        logger.warn("Chat analytics flush of {} rows failed, keeping them for the next run: {}", batch.size(), ex.getMessage());
+        for (DailyIncrement increment : batch) {
+          DailyKey key = new DailyKey(increment.userLow(), increment.userHigh(), increment.talkDate());
+          pending.computeIfAbsent(key, ignored -> new PendingCounts()).restore(increment);
+        }
+      }
+    } finally {
+      flushLock.writeLock().unlock();
+    }
+  }
+
+  @PreDestroy
+  public void flushOnShutdown() {
+    flushPending();
+  }
+
+  @Override
+  public String metricsName() {
+    return "chatAnalytics";
+  }
 
-    row.increment(type);
-    chatAnalyticsDailyRepository.save(row);
+  @Override
+  public Map<String, Object> metricsSnapshot() {
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put("pendingKeys", pending.size());
+    snapshot.put("flushedRows", flushedRows.sum());
+    snapshot.put("failedFlushes", failedFlushes.sum());
+    return snapshot;
   }
 
   private String[] canonicalPair(String userOne, String userTwo) {
@@ -58,4 +163,61 @@ public class ChatAnalyticsService {
   private String normalizeUsername(String username) {
     return username == null ? "" : username.trim().toLowerCase();
   }
+
+  public record DailyCounts(LocalDate talkDate, long messageCount, long imageCount, long videoCount, long voiceCount) {
+
+    private DailyCounts plus(DailyCounts other) {
+      return new DailyCounts(
+          talkDate,
+          messageCount + other.messageCount,
+          imageCount + other.imageCount,
+          videoCount + other.videoCount,
+          voiceCount + other.voiceCount);
+    }
+  }
+
+  private record DailyKey(String userLow, String userHigh, LocalDate talkDate) {
+  }
+
+  private static final class PendingCounts {
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder images = new LongAdder();
+    private final LongAdder videos = new LongAdder();
+    private final LongAdder voices = new LongAdder();
+
+    private void increment(String type) {
+      String normalizedType = type == null ? "" : type.trim().toLowerCase();
+      if ("image".equals(normalizedType)) {
+        images.increment();
+      } else if ("video".equals(normalizedType)) {
+        videos.increment();
+      } else if ("voice".equals(normalizedType)) {
+        voices.increment();
+      }
+      messages.increment();
+    }
+
+    private DailyCounts snapshot(LocalDate talkDate) {
+      return new DailyCounts(talkDate, messages.sum(), images.sum(), videos.sum(), voices.sum());
+    }
+
+    private DailyIncrement drain(DailyKey key) {
+      long drainedMessages = messages.sumThenReset();
+      return new DailyIncrement(
+          key.userLow(),
+          key.userHigh(),
+          key.talkDate(),
+          drainedMessages,
+          images.sumThenReset(),
+          videos.sumThenReset(),
+          voices.sumThenReset());
+    }
+
+    private void restore(DailyIncrement increment) {
+      images.add(increment.images());
+      videos.add(increment.videos());
+      voices.add(increment.voices());
+      messages.add(increment.messages());
+    }
+  }
 }
@@ -0,0 +1,287 @@
+package com.game.app.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import com.game.app.model.ChatMessageEntity;
+import com.game.app.repository.ChatMessageRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Persists chat messages for {@code /chat.send}.
+ *
+ * <p>With group commit disabled (the default) every message is saved on the calling thread, exactly like
+ * before. When enabled, messages are queued and a single flusher thread writes everything waiting (up to
+ * {@code max-batch-size} rows) as one JDBC batch, so batches grow on their own while the previous insert is
+ * in flight. {@code max-delay-ms} optionally lets the flusher linger for more rows before writing. The
+ * returned future completes only after the batch has committed, on a single callback thread in commit order.
+ * When the queue is full a send waits up to {@code offer-timeout-ms} for room and then fails; it is never
+ * written past the queue, which would commit it ahead of messages from the same sender still waiting there.
+ *
+ * <p>Inserts are not preceded by a lookup: a retransmitted {@code clientMessageId} is caught by the
+ * {@code uk_chat_messages_from_client} unique key and only then is the existing row read back.
+ */
+@Service
+public class ChatMessageWriter {
+
+  private static final Logger logger = LoggerFactory.getLogger(ChatMessageWriter.class);
+  private static final long IDLE_POLL_MILLIS = 250L;
+  private static final long SHUTDOWN_WAIT_MILLIS = 10000L;
+
+  private final ChatMessageRepository chatMessageRepository;
+  private final boolean groupCommitEnabled;
+  private final int maxBatchSize;
+  private final long maxDelayNanos;
+  private final long offerTimeoutMillis;
+  private final BlockingQueue<PendingWrite> queue;
+  private volatile boolean running;
+  private Thread flusher;
+  private ExecutorService callbackExecutor;
+
+  public ChatMessageWriter(
+      ChatMessageRepository chatMessageRepository,
+      @Value("${app.chat.group-commit.enabled:false}") boolean groupCommitEnabled,
+      @Value("${app.chat.group-commit.max-batch-size:64}") int maxBatchSize,
+      @Value("${app.chat.group-commit.max-delay-ms:0}") long maxDelayMs,
+      @Value("${app.chat.group-commit.queue-capacity:2000}") int queueCapacity,
+      @Value("${app.chat.group-commit.offer-timeout-ms:1000}") long offerTimeoutMs) {
+    this.chatMessageRepository = chatMessageRepository;
+    this.groupCommitEnabled = groupCommitEnabled;
+    this.maxBatchSize = Math.max(1, maxBatchSize);
+    this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, maxDelayMs));
+    this.queue = new ArrayBlockingQueue<>(Math.max(this.maxBatchSize, queueCapacity));
+    this.offerTimeoutMillis = Math.max(0L, offerTimeoutMs);
+  }
+
+  @PostConstruct
+  public void start() {
+    if (!groupCommitEnabled || running) {
+      return;
+    }
+    // One callback thread: batches complete in commit order, so acks and deliveries between the same pair of
+    // users are never reordered, while the flusher already writes the next batch.
+    callbackExecutor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "chat-write-callback");
+      thread.setDaemon(true);
+      return thread;
+    });
+    running = true;
+    flusher = new Thread(this::runFlusher, "chat-group-commit");
+    flusher.setDaemon(true);
+    flusher.start();
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    try {
+      flusher.join(SHUTDOWN_WAIT_MILLIS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    List<PendingWrite> leftovers = new ArrayList<>();
+    queue.drainTo(leftovers);
+    if (!leftovers.isEmpty()) {
+      flush(leftovers);
+    }
+    callbackExecutor.shutdown();
+  }
+
+  public boolean isGroupCommitEnabled() {
+    return groupCommitEnabled;
+  }
+
+  public CompletableFuture<PersistedMessage> persist(ChatMessageEntity entity) {
+    if (!running) {
+      return saveNow(entity);
+    }
+    PendingWrite pending = new PendingWrite(entity, new CompletableFuture<>());
+    try {
+      if (!queue.offer(pending, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+        return CompletableFuture.failedFuture(new RejectedExecutionException("Chat write queue is full"));
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return CompletableFuture.failedFuture(ex);
+    }
+    return pending.future();
+  }
+
+  /**
+   * Saves a client's batch on the calling thread as one JDBC batch, bypassing the group-commit queue. If the
+   * batch is rejected (typically a retransmitted client message id) every row is retried on its own, so the
+   * returned futures, one per entity and in the same order, settle independently.
+   */
+  public List<CompletableFuture<PersistedMessage>> persistAll(List<ChatMessageEntity> entities) {
+    List<CompletableFuture<PersistedMessage>> results = new ArrayList<>(entities.size());
+    if (entities.isEmpty()) {
+      return results;
+    }
+    try {
+      chatMessageRepository.insertAll(entities);
+      for (ChatMessageEntity entity : entities) {
+        results.add(CompletableFuture.completedFuture(new PersistedMessage(entity, true)));
+      }
+    } catch (RuntimeException batchFailure) {
+      logger.warn("Chat send batch of {} failed, retrying rows individually: {}", entities.size(), batchFailure.getMessage());
+      for (ChatMessageEntity entity : entities) {
+        entity.setId(null);
+        results.add(saveNow(entity));
+      }
+    }
+    return results;
+  }
+
+  private CompletableFuture<PersistedMessage> saveNow(ChatMessageEntity entity) {
+    try {
+      return CompletableFuture.completedFuture(insertOrGetExisting(entity));
+    } catch (RuntimeException ex) {
+      return CompletableFuture.failedFuture(ex);
+    }
+  }
+
+  private PersistedMessage insertOrGetExisting(ChatMessageEntity entity) {
+    try {
+      return new PersistedMessage(chatMessageRepository.save(entity), true);
+    } catch (DataIntegrityViolationException ex) {
+      return existingFor(entity, ex);
+    }
+  }
+
+  private PersistedMessage existingFor(ChatMessageEntity entity, DataIntegrityViolationException conflict) {
+    if (entity.getClientMessageId() == null) {
+      throw conflict;
+    }
+    return chatMessageRepository
+        .findByFromUsernameAndClientMessageId(entity.getFromUsername(), entity.getClientMessageId())
+        .map(existing -> new PersistedMessage(existing, false))
+        .orElseThrow(() -> conflict);
+  }
+
+  private void runFlusher() {
+    List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        PendingWrite first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < maxBatchSize) {
+          queue.drainTo(batch, maxBatchSize - batch.size());
+          long remaining = deadline - System.nanoTime();
+          if (batch.size() >= maxBatchSize || remaining <= 0) {
+            break;
+          }
+          PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+        }
+        flush(batch);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        flush(batch);
+        return;
+      } catch (RuntimeException ex) {
+        logger.error("Chat group-commit flusher failed", ex);
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void flush(List<PendingWrite> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    List<ChatMessageEntity> entities = new ArrayList<>(batch.size());
+    for (PendingWrite pending : batch) {
+      entities.add(pending.entity());
+    }
+
+    List<PendingWrite> completed = List.copyOf(batch);
+    try {
+      chatMessageRepository.insertAll(entities);
+    } catch (RuntimeException batchFailure) {
+      // The batch is rolled back as a whole; retry row by row so one bad row cannot fail its neighbours.
+      logger.warn("Chat group-commit batch of {} failed, retrying rows individually: {}", batch.size(), batchFailure.getMessage());
+      for (PendingWrite pending : completed) {
+        pending.entity().setId(null);
+        try {
+          pending.result(insertOrGetExisting(pending.entity()));
+        } catch (RuntimeException rowFailure) {
+          pending.error(rowFailure);
+        }
+      }
+    }
+    callbackExecutor.execute(() -> {
+      for (PendingWrite pending : completed) {
+        pending.complete();
+      }
+    });
+  }
+
+  private static final class PendingWrite {
+    private final ChatMessageEntity entity;
+    private final CompletableFuture<PersistedMessage> future;
+    private PersistedMessage result;
+    private RuntimeException error;
+
+    private PendingWrite(ChatMessageEntity entity, CompletableFuture<PersistedMessage> future) {
+      this.entity = entity;
+      this.future = future;
+    }
+
+    private ChatMessageEntity entity() {
+      return entity;
+    }
+
+    private CompletableFuture<PersistedMessage> future() {
+      return future;
+    }
+
+    private void result(PersistedMessage result) {
+      this.result = result;
+    }
+
+    private void error(RuntimeException error) {
+      this.error = error;
+    }
+
+    private void complete() {
+      if (error != null) {
+        future.completeExceptionally(error);
+      } else {
+        future.complete(result != null ? result : new PersistedMessage(entity, true));
+      }
+    }
+  }
+
+  /**
+   * {@code created} is false when the client message id was already stored; {@code entity} is then the
+   * existing row.
+   */
+  public record PersistedMessage(ChatMessageEntity entity, boolean created) {
+  }
+}
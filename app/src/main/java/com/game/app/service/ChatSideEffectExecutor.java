@@ -0,0 +1,176 @@
+package com.game.app.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs the bookkeeping that follows a sent message (check events, analytics) off the delivery path.
+ *
+ * <p>Work is striped over single-threaded lanes by conversation pair, so the side effects of one
+ * conversation are applied in send order. Each lane queue is bounded; when it is full the submitter waits
+ * at most {@code offer-timeout-ms} for room (counted as an overflow) and then drops the task (counted as
+ * dropped), so a stalled lane cannot hold up the write-callback thread that delivers acks. Dropping keeps
+ * the remaining work in order, unlike running it on the caller. Queued work is drained on shutdown.
+ */
+@Component
+// Lanes must drain before the analytics counters take their final flush on shutdown.
+@DependsOn("chatAnalyticsService")
+public class ChatSideEffectExecutor implements RuntimeMetricsSource {
+
+  private static final Logger logger = LoggerFactory.getLogger(ChatSideEffectExecutor.class);
+
+  private final List<ThreadPoolExecutor> lanes;
+  private final long shutdownTimeoutMs;
+  private final long offerTimeoutMs;
+  private final LongAdder submitted = new LongAdder();
+  private final LongAdder completed = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final LongAdder overflowed = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final LongAdder ranOnCaller = new LongAdder();
+
+  public ChatSideEffectExecutor(
+      @Value("${app.chat.side-effects.lanes:4}") int laneCount,
+      @Value("${app.chat.side-effects.queue-capacity:1000}") int queueCapacity,
+      @Value("${app.chat.side-effects.shutdown-timeout-ms:10000}") long shutdownTimeoutMs,
+      @Value("${app.chat.side-effects.offer-timeout-ms:50}") long offerTimeoutMs) {
+    int safeLaneCount = Math.max(1, laneCount);
+    int safeQueueCapacity = Math.max(1, queueCapacity);
+    this.shutdownTimeoutMs = Math.max(0L, shutdownTimeoutMs);
+    this.offerTimeoutMs = Math.max(0L, offerTimeoutMs);
+    List<ThreadPoolExecutor> created = new ArrayList<>(safeLaneCount);
+    for (int i = 0; i < safeLaneCount; i += 1) {
+      String threadName = "chat-side-effects-" + (i + 1);
+      ThreadPoolExecutor lane = new ThreadPoolExecutor(
+          1,
+          1,
+          0L,
+          TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<>(safeQueueCapacity),
+          runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+          },
+          waitForRoom());
+      created.add(lane);
+    }
+    this.lanes = List.copyOf(created);
+  }
+
+  /**
+   * Queues {@code task} behind earlier side effects of the same conversation pair.
+   */
+  public void submit(String userOne, String userTwo, Runnable task) {
+    submitted.increment();
+    laneFor(userOne, userTwo).execute(() -> {
+      try {
+        task.run();
+        completed.increment();
+      } catch (Exception ex) {
+        failed.increment();
+        logger.warn("Chat side effect failed for {}/{}: {}", userOne, userTwo, ex.getMessage());
+      }
+    });
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    for (ThreadPoolExecutor lane : lanes) {
+      lane.shutdown();
+    }
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMs);
+    for (ThreadPoolExecutor lane : lanes) {
+      try {
+        long remaining = deadline - System.nanoTime();
+        if (!lane.awaitTermination(Math.max(0L, remaining), TimeUnit.NANOSECONDS)) {
+          logger.warn("Chat side-effect lane did not drain in time; {} tasks abandoned", lane.getQueue().size());
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  @Override
+  public String metricsName() {
+    return "chatSideEffects";
+  }
+
+  @Override
+  public Map<String, Object> metricsSnapshot() {
+    int queued = 0;
+    int active = 0;
+    for (ThreadPoolExecutor lane : lanes) {
+      queued += lane.getQueue().size();
+      active += lane.getActiveCount();
+    }
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put("lanes", lanes.size());
+    snapshot.put("queued", queued);
+    snapshot.put("active", active);
+    snapshot.put("submitted", submitted.sum());
+    snapshot.put("completed", completed.sum());
+    snapshot.put("failed", failed.sum());
+    snapshot.put("overflowed", overflowed.sum());
+    snapshot.put("dropped", dropped.sum());
+    snapshot.put("ranOnCaller", ranOnCaller.sum());
+    return snapshot;
+  }
+
+  private ThreadPoolExecutor laneFor(String userOne, String userTwo) {
+    String left = normalizeUsername(userOne);
+    String right = normalizeUsername(userTwo);
+    String pairKey = left.compareTo(right) <= 0 ? left + '\n' + right : right + '\n' + left;
+    return lanes.get(Math.floorMod(pairKey.hashCode(), lanes.size()));
+  }
+
+  private RejectedExecutionHandler waitForRoom() {
+    return (runnable, executor) -> {
+      if (executor.isShutdown()) {
+        // Late submissions during shutdown still get applied, just not asynchronously.
+        ranOnCaller.increment();
+        runnable.run();
+        return;
+      }
+      overflowed.increment();
+      boolean queued;
+      try {
+        queued = executor.getQueue().offer(runnable, offerTimeoutMs, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        queued = false;
+      }
+      if (!queued) {
+        dropped.increment();
+        logger.warn("Chat side-effect lane stayed full for {} ms; dropping a side effect", offerTimeoutMs);
+        return;
+      }
+      // The lane may have shut down and drained while we waited; then nothing would take the task.
+      if (executor.isShutdown() && executor.getQueue().remove(runnable)) {
+        ranOnCaller.increment();
+        runnable.run();
+      }
+    };
+  }
+
+  private String normalizeUsername(String username) {
+    return username == null ? "" : username.trim().toLowerCase();
+  }
+}
@@ -15,26 +15,25 @@ import java.util.TreeSet;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import com.game.app.model.ChatAnalyticsDailyEntity;
 import com.game.app.model.ChatStatsProgressEntity;
-import com.game.app.repository.ChatAnalyticsDailyRepository;
 import com.game.app.repository.ChatMessageRepository;
 import com.game.app.repository.ChatStatsProgressRepository;
+import com.game.app.service.ChatAnalyticsService.DailyCounts;
 
 @Service
 public class ChatStatsService {
 
   private static final long MESSAGE_MILESTONE_STEP = 500L;
 
-  private final ChatAnalyticsDailyRepository chatAnalyticsDailyRepository;
+  private final ChatAnalyticsService chatAnalyticsService;
   private final ChatMessageRepository chatMessageRepository;
   private final ChatStatsProgressRepository chatStatsProgressRepository;
 
   public ChatStatsService(
-      ChatAnalyticsDailyRepository chatAnalyticsDailyRepository,
+      ChatAnalyticsService chatAnalyticsService,
       ChatMessageRepository chatMessageRepository,
       ChatStatsProgressRepository chatStatsProgressRepository) {
-    this.chatAnalyticsDailyRepository = chatAnalyticsDailyRepository;
+    this.chatAnalyticsService = chatAnalyticsService;
     this.chatMessageRepository = chatMessageRepository;
     this.chatStatsProgressRepository = chatStatsProgressRepository;
   }
@@ -54,8 +53,7 @@ public class ChatStatsService {
     RecapPeriod previousRecapPeriod = recapPeriods.previousPeriod();
     RecapPeriod currentRecapPeriod = recapPeriods.currentPeriod();
 
-    List<ChatAnalyticsDailyEntity> dailyRows = chatAnalyticsDailyRepository
-        .findByUserLowAndUserHighOrderByTalkDateAsc(low, high);
+    List<DailyCounts> dailyRows = chatAnalyticsService.loadDailyCounts(low, high);
     long globalTotalMessages = chatMessageRepository.count();
 
     long totalMessages = 0L;
@@ -79,14 +77,14 @@ public class ChatStatsService {
     Set<LocalDate> talkDatesSet = new TreeSet<>();
     Map<YearMonth, Long> monthlyCounts = new TreeMap<>();
 
-    for (ChatAnalyticsDailyEntity row : dailyRows) {
-      LocalDate talkDate = row.getTalkDate();
+    for (DailyCounts row : dailyRows) {
+      LocalDate talkDate = row.talkDate();
       if (talkDate == null) continue;
 
-      long dayMessages = row.getMessageCount();
-      long dayPhotos = row.getImageCount();
-      long dayVideos = row.getVideoCount();
-      long dayVoices = row.getVoiceCount();
+      long dayMessages = row.messageCount();
+      long dayPhotos = row.imageCount();
+      long dayVideos = row.videoCount();
+      long dayVoices = row.voiceCount();
 
       totalMessages += dayMessages;
       totalPhotos += dayPhotos;
@@ -192,7 +190,7 @@ public class ChatStatsService {
         .toList();
   }
 
-  private StreakResult calculateStreak(List<LocalDate> talkDates, LocalDate today) {
+  static StreakResult calculateStreak(List<LocalDate> talkDates, LocalDate today) {
     if (talkDates == null || talkDates.isEmpty()) {
       return new StreakResult(0, 0);
     }
@@ -300,7 +298,7 @@ public class ChatStatsService {
     return username == null ? "" : username.trim().toLowerCase();
   }
 
-  private record StreakResult(int currentStreak, int longestStreak) {
+  record StreakResult(int currentStreak, int longestStreak) {
   }
 
   private record MilestoneResult(long reachedMilestone, boolean justHit) {
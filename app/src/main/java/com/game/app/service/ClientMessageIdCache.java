@@ -0,0 +1,76 @@
+package com.game.app.service;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers the last few acknowledged client message ids per sender so that retransmits of a {@code tempId}
+ * can be acked without touching the database. Both the sender map and each sender's id map are LRU-bounded.
+ */
+@Component
+public class ClientMessageIdCache {
+
+  private final int maxIdsPerSender;
+  private final Map<String, Map<String, AckedMessage>> senders;
+
+  public ClientMessageIdCache(
+      @Value("${app.chat.client-id-cache.max-senders:10000}") int maxSenders,
+      @Value("${app.chat.client-id-cache.ids-per-sender:64}") int maxIdsPerSender) {
+    this.maxIdsPerSender = Math.max(1, maxIdsPerSender);
+    int senderLimit = Math.max(1, maxSenders);
+    this.senders = new LinkedHashMap<>(256, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Map<String, AckedMessage>> eldest) {
+        return size() > senderLimit;
+      }
+    };
+  }
+
+  public AckedMessage find(String fromUsername, String clientMessageId) {
+    if (fromUsername == null || clientMessageId == null) {
+      return null;
+    }
+    synchronized (senders) {
+      Map<String, AckedMessage> ids = senders.get(fromUsername);
+      return ids != null ? ids.get(clientMessageId) : null;
+    }
+  }
+
+  public void remember(String fromUsername, String clientMessageId, Long messageId, String toUsername, Instant createdAt) {
+    if (fromUsername == null || clientMessageId == null || messageId == null) {
+      return;
+    }
+    AckedMessage acked = new AckedMessage(messageId, toUsername, createdAt);
+    synchronized (senders) {
+      senders.computeIfAbsent(fromUsername, ignored -> newSenderIds()).put(clientMessageId, acked);
+    }
+  }
+
+  public void forget(String fromUsername, String clientMessageId) {
+    if (fromUsername == null || clientMessageId == null) {
+      return;
+    }
+    synchronized (senders) {
+      Map<String, AckedMessage> ids = senders.get(fromUsername);
+      if (ids != null) {
+        ids.remove(clientMessageId);
+      }
+    }
+  }
+
+  private Map<String, AckedMessage> newSenderIds() {
+    return new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, AckedMessage> eldest) {
+        return size() > maxIdsPerSender;
+      }
+    };
+  }
+
+  public record AckedMessage(long messageId, String toUsername, Instant createdAt) {
+  }
+}
@@ -0,0 +1,24 @@
+package com.game.app.service;
+
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Identity of this application instance among the nodes sharing presence and message routing. Taken from
+ * {@code app.cluster.node-id}, or a random id per start when that is blank.
+ */
+@Component
+public class ClusterNode {
+
+  private final String id;
+
+  public ClusterNode(@Value("${app.cluster.node-id:}") String nodeId) {
+    this.id = nodeId == null || nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId.trim();
+  }
+
+  public String id() {
+    return id;
+  }
+}
@@ -0,0 +1,114 @@
+package com.game.app.service;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.game.app.repository.ChatMessageRepository;
+
+/**
+ * In-memory adjacency index of who has a conversation with whom, used to scope presence fan-out.
+ *
+ * <p>A user's contacts are loaded from {@code chat_messages} the first time they are needed and kept in an
+ * LRU bounded by {@code max-users}. Every delivered message calls {@link #recordPair}, which adds the pair to
+ * whichever side is loaded; a pair missed by a load racing with its first message is picked up by the next
+ * message between them.
+ */
+@Component
+public class ContactIndex implements RuntimeMetricsSource {
+
+  private final ChatMessageRepository chatMessageRepository;
+  private final Map<String, Set<String>> contacts;
+  private final LongAdder loads = new LongAdder();
+  private final LongAdder newPairs = new LongAdder();
+
+  public ContactIndex(
+      ChatMessageRepository chatMessageRepository,
+      @Value("${app.chat.contacts.max-users:50000}") int maxUsers) {
+    this.chatMessageRepository = chatMessageRepository;
+    int limit = Math.max(1, maxUsers);
+    this.contacts = new LinkedHashMap<>(256, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Set<String>> eldest) {
+        return size() > limit;
+      }
+    };
+  }
+
+  /** A copy of the user's contacts, loading them on first use. */
+  public Set<String> contactsOf(String username) {
+    String normalized = normalizeUsername(username);
+    if (normalized.isBlank()) {
+      return Set.of();
+    }
+    synchronized (contacts) {
+      Set<String> cached = contacts.get(normalized);
+      if (cached != null) {
+        return Set.copyOf(cached);
+      }
+    }
+    loads.increment();
+    Set<String> loaded = new HashSet<>();
+    for (String peer : chatMessageRepository.findPeerUsernames(normalized)) {
+      String normalizedPeer = normalizeUsername(peer);
+      if (!normalizedPeer.isBlank() && !normalizedPeer.equals(normalized)) {
+        loaded.add(normalizedPeer);
+      }
+    }
+    synchronized (contacts) {
+      Set<String> current = contacts.putIfAbsent(normalized, loaded);
+      return Set.copyOf(current != null ? current : loaded);
+    }
+  }
+
+  /** Returns true when the pair was not yet known to a loaded side, i.e. they just became contacts. */
+  public boolean recordPair(String userA, String userB) {
+    String a = normalizeUsername(userA);
+    String b = normalizeUsername(userB);
+    if (a.isBlank() || b.isBlank() || a.equals(b)) {
+      return false;
+    }
+    boolean added = false;
+    synchronized (contacts) {
+      Set<String> ofA = contacts.get(a);
+      if (ofA != null) {
+        added |= ofA.add(b);
+      }
+      Set<String> ofB = contacts.get(b);
+      if (ofB != null) {
+        added |= ofB.add(a);
+      }
+    }
+    if (added) {
+      newPairs.increment();
+    }
+    return added;
+  }
+
+  @Override
+  public String metricsName() {
+    return "contactIndex";
+  }
+
+  @Override
+  public Map<String, Object> metricsSnapshot() {
+    int users;
+    synchronized (contacts) {
+      users = contacts.size();
+    }
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put("users", users);
+    snapshot.put("loads", loads.sum());
+    snapshot.put("newPairs", newPairs.sum());
+    return snapshot;
+  }
+
+  private static String normalizeUsername(String username) {
+    return username == null ? "" : username.trim().toLowerCase();
+  }
+}
@@ -0,0 +1,95 @@
+package com.game.app.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hashed timing wheel of per-key deadlines: {@link #advance} only touches the slots whose tick has passed,
+ * so the cost of a tick is proportional to the keys that fall due rather than to every key tracked.
+ *
+ * <p>Each key has one live deadline. Rescheduling moves the key to its new slot; a deadline more than a
+ * full turn ahead simply stays in its slot until the wheel comes round to it in the right turn. Keys are
+ * expired at most one tick late. Thread-safe.
+ */
+public class DeadlineWheel<K> {
+
+  private final long tickMillis;
+  private final List<Set<K>> slots;
+  private final Map<K, Scheduled> scheduled = new HashMap<>();
+  private long lastTick;
+
+  public DeadlineWheel(long tickMillis, long horizonMillis, long nowMillis) {
+    this.tickMillis = Math.max(1L, tickMillis);
+    // One turn spans the horizon plus a spare slot, so deadlines within the horizon never share a slot
+    // with the tick currently being processed.
+    int slotCount = (int) Math.min(1 << 16, horizonMillis / this.tickMillis + 2);
+    this.slots = new ArrayList<>(slotCount);
+    for (int i = 0; i < slotCount; i += 1) {
+      slots.add(new HashSet<>());
+    }
+    this.lastTick = nowMillis / this.tickMillis;
+  }
+
+  public synchronized void schedule(K key, long deadlineMillis) {
+    // Deadlines already due land in the current slot, which the next advance visits again.
+    long tick = Math.max(tickOf(deadlineMillis), lastTick);
+    Scheduled previous = scheduled.put(key, new Scheduled(deadlineMillis, tick));
+    if (previous != null) {
+      if (previous.tick() == tick) {
+        return;
+      }
+      slotFor(previous.tick()).remove(key);
+    }
+    slotFor(tick).add(key);
+  }
+
+  public synchronized void cancel(K key) {
+    Scheduled previous = scheduled.remove(key);
+    if (previous != null) {
+      slotFor(previous.tick()).remove(key);
+    }
+  }
+
+  /** Removes and returns every key whose deadline is at or before {@code nowMillis}. */
+  public synchronized List<K> advance(long nowMillis) {
+    List<K> due = new ArrayList<>();
+    long targetTick = nowMillis / tickMillis;
+    // After a long pause one full turn visits every slot; further turns would only revisit them.
+    long fromTick = Math.max(lastTick, targetTick - slots.size() + 1);
+    for (long tick = fromTick; tick <= targetTick; tick += 1) {
+      Iterator<K> keys = slotFor(tick).iterator();
+      while (keys.hasNext()) {
+        K key = keys.next();
+        Scheduled entry = scheduled.get(key);
+        if (entry != null && entry.deadline() <= nowMillis) {
+          keys.remove();
+          scheduled.remove(key);
+          due.add(key);
+        }
+      }
+    }
+    lastTick = targetTick;
+    return due;
+  }
+
+  public synchronized int size() {
+    return scheduled.size();
+  }
+
+  private long tickOf(long deadlineMillis) {
+    // Round up so a key is never reported before its deadline.
+    return Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+  }
+
+  private Set<K> slotFor(long tick) {
+    return slots.get((int) Math.floorMod(tick, (long) slots.size()));
+  }
+
+  private record Scheduled(long deadline, long tick) {
+  }
+}
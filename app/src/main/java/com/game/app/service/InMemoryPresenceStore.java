@@ -0,0 +1,52 @@
+package com.game.app.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Presence for a single application node: nothing is shared, so no user is ever online elsewhere.
+ */
+@Component
+@ConditionalOnProperty(name = "app.chat.presence.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryPresenceStore implements PresenceStore, RuntimeMetricsSource {
+
+  private final Set<String> onlineUsers = ConcurrentHashMap.newKeySet();
+
+  @Override
+  public boolean markOnline(String username) {
+    return onlineUsers.add(username);
+  }
+
+  @Override
+  public boolean markOffline(String username) {
+    return onlineUsers.remove(username);
+  }
+
+  @Override
+  public boolean isOnlineHere(String username) {
+    return onlineUsers.contains(username);
+  }
+
+  @Override
+  public boolean isOnlineElsewhere(String username) {
+    return false;
+  }
+
+  @Override
+  public String metricsName() {
+    return "presenceStore";
+  }
+
+  @Override
+  public Map<String, Object> metricsSnapshot() {
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put("store", "memory");
+    snapshot.put("onlineHere", onlineUsers.size());
+    return snapshot;
+  }
+}
@@ -0,0 +1,253 @@
+package com.game.app.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import com.game.app.repository.PresenceNodeRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Presence shared by every node through {@code presence_nodes} / {@code presence_users}.
+ *
+ * <p>Heartbeats never reach the database. Each node holds a lease that {@link #sync} renews every
+ * {@code sync-ms}, and in the same run writes this node's online/offline transitions since the last run as
+ * one batch, reaps the rows of nodes whose lease lapsed, and reloads who the other live nodes hold online.
+ * Cross-node answers are therefore at most one sync old. A node that could not sync for a whole lease may
+ * have been reaped, so its next successful sync rewrites all of its rows. Syncs run on a thread of their own
+ * rather than the shared {@code @Scheduled} pool, so a slow cleanup or flush job cannot hold back the lease
+ * renewal until peers reap this node and announce all of its users offline.
+ *
+ * <p>A node that loses a user's last local session while another node still holds the user leaves the
+ * offline transition to that node ({@link #deferOffline}). When both sessions close within one interval, or
+ * the other node crashes, nobody records that transition. So a sync publishes a {@link PresenceDepartedEvent}
+ * for the users whose rows it reaped and for the deferred users its reload shows held by nobody else. A
+ * deferred user still held elsewhere is dropped: that node reloads after this node's removal, so it records
+ * the transition itself or defers it in turn. A user who simply goes offline on the last node holding them is
+ * recorded by that node alone.
+ */
+@Component
+@ConditionalOnProperty(name = "app.chat.presence.store", havingValue = "jdbc")
+public class JdbcPresenceStore implements PresenceStore, RuntimeMetricsSource {
+
+  private static final Logger logger = LoggerFactory.getLogger(JdbcPresenceStore.class);
+
+  private final PresenceNodeRepository presenceNodeRepository;
+  private final ApplicationEventPublisher eventPublisher;
+  private final String nodeId;
+  private final long leaseMillis;
+  private final long syncMillis;
+  // Guarded by pending, together with the transitions not yet written (latest per user wins).
+  private final Set<String> onlineHere = new HashSet<>();
+  private final Map<String, Boolean> pending = new HashMap<>();
+  // Deferred offlines, each tagged so that a sync only settles the ones whose removal it wrote.
+  private final Map<String, Long> deferred = new HashMap<>();
+  private long deferrals;
+  private volatile Set<String> onlineElsewhere = Set.of();
+  // Only touched by sync(), which is synchronized.
+  private boolean registered;
+  private long lastSyncAt;
+  private ScheduledExecutorService syncExecutor;
+  private final LongAdder syncs = new LongAdder();
+  private final LongAdder failedSyncs = new LongAdder();
+  private final LongAdder rowsWritten = new LongAdder();
+  private final LongAdder reapedRows = new LongAdder();
+  private final LongAdder departures = new LongAdder();
+
+  public JdbcPresenceStore(
+      PresenceNodeRepository presenceNodeRepository,
+      ApplicationEventPublisher eventPublisher,
+      ClusterNode clusterNode,
+      @Value("${app.chat.presence.lease-ms:30000}") long leaseMillis,
+      @Value("${app.chat.presence.sync-ms:5000}") long syncMillis) {
+    this.presenceNodeRepository = presenceNodeRepository;
+    this.eventPublisher = eventPublisher;
+    this.nodeId = clusterNode.id();
+    this.leaseMillis = Math.max(5000L, leaseMillis);
+    this.syncMillis = Math.max(100L, syncMillis);
+  }
+
+  @PostConstruct
+  public void start() {
+    syncExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "presence-sync");
+      thread.setDaemon(true);
+      return thread;
+    });
+    syncExecutor.scheduleWithFixedDelay(this::sync, 0L, syncMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public boolean markOnline(String username) {
+    synchronized (pending) {
+      deferred.remove(username);
+      boolean added = onlineHere.add(username);
+      if (added) {
+        pending.put(username, Boolean.TRUE);
+      }
+      return added;
+    }
+  }
+
+  @Override
+  public boolean markOffline(String username) {
+    synchronized (pending) {
+      boolean removed = onlineHere.remove(username);
+      if (removed) {
+        pending.put(username, Boolean.FALSE);
+      }
+      return removed;
+    }
+  }
+
+  @Override
+  public void deferOffline(String username) {
+    synchronized (pending) {
+      if (!onlineHere.contains(username)) {
+        deferrals += 1;
+        deferred.put(username, deferrals);
+      }
+    }
+  }
+
+  @Override
+  public boolean isOnlineHere(String username) {
+    synchronized (pending) {
+      return onlineHere.contains(username);
+    }
+  }
+
+  @Override
+  public boolean isOnlineElsewhere(String username) {
+    return onlineElsewhere.contains(username);
+  }
+
+  public void sync() {
+    try {
+      sync(System.currentTimeMillis());
+    } catch (RuntimeException ex) {
+      // A throwing task would end the schedule, and with it the lease.
+      logger.error("Presence sync for node {} failed", nodeId, ex);
+    }
+  }
+
+  synchronized void sync(long nowMillis) {
+    boolean replaceAll = !registered || nowMillis - lastSyncAt >= leaseMillis;
+    Map<String, Boolean> batch;
+    List<String> added = new ArrayList<>();
+    List<String> removed = new ArrayList<>();
+    Map<String, Long> settling;
+    synchronized (pending) {
+      if (replaceAll) {
+        added.addAll(onlineHere);
+        batch = Map.of();
+      } else {
+        batch = new HashMap<>(pending);
+        batch.forEach((username, online) -> (online ? added : removed).add(username));
+      }
+      pending.clear();
+      settling = new HashMap<>(deferred);
+    }
+    try {
+      presenceNodeRepository.renewLease(nodeId, nowMillis + leaseMillis);
+      if (replaceAll || !batch.isEmpty()) {
+        presenceNodeRepository.applyChanges(nodeId, replaceAll, added, removed);
+      }
+      List<String> reaped = presenceNodeRepository.reapExpired(nowMillis);
+      onlineElsewhere = Set.copyOf(presenceNodeRepository.findOnlineElsewhere(nodeId, nowMillis));
+      registered = true;
+      lastSyncAt = nowMillis;
+      syncs.increment();
+      rowsWritten.add(added.size() + removed.size());
+      reapedRows.add(reaped.size());
+      publishDepartures(reaped, settling, nowMillis);
+    } catch (RuntimeException ex) {
+      failedSyncs.increment();
+      logger.warn("Presence sync for node {} failed, retrying next run: {}", nodeId, ex.getMessage());
+      synchronized (pending) {
+        // A transition made while the write was failing is newer than the one being put back.
+        batch.forEach(pending::putIfAbsent);
+      }
+      if (replaceAll) {
+        registered = false;
+      }
+    }
+  }
+
+  private void publishDepartures(List<String> reaped, Map<String, Long> settling, long nowMillis) {
+    Set<String> departed = new HashSet<>();
+    synchronized (pending) {
+      settling.forEach((username, deferral) -> {
+        if (deferred.remove(username, deferral) && !onlineElsewhere.contains(username)) {
+          departed.add(username);
+        }
+      });
+      for (String username : reaped) {
+        if (!onlineElsewhere.contains(username) && !onlineHere.contains(username)) {
+          departed.add(username);
+        }
+      }
+    }
+    if (departed.isEmpty()) {
+      return;
+    }
+    departures.add(departed.size());
+    try {
+      eventPublisher.publishEvent(new PresenceDepartedEvent(Set.copyOf(departed), nowMillis));
+    } catch (RuntimeException ex) {
+      logger.warn("Presence departures of {} users not handled: {}", departed.size(), ex.getMessage());
+    }
+  }
+
+  @PreDestroy
+  public void leave() {
+    if (syncExecutor != null) {
+      syncExecutor.shutdownNow();
+    }
+    try {
+      presenceNodeRepository.removeNode(nodeId);
+    } catch (RuntimeException ex) {
+      logger.warn("Presence rows of node {} left for lease expiry: {}", nodeId, ex.getMessage());
+    }
+  }
+
+  @Override
+  public String metricsName() {
+    return "presenceStore";
+  }
+
+  @Override
+  public Map<String, Object> metricsSnapshot() {
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put("store", "jdbc");
+    synchronized (pending) {
+      snapshot.put("onlineHere", onlineHere.size());
+      snapshot.put("pending", pending.size());
+      snapshot.put("deferredOffline", deferred.size());
+    }
+    snapshot.put("onlineElsewhere", onlineElsewhere.size());
+    snapshot.put("syncs", syncs.sum());
+    snapshot.put("failedSyncs", failedSyncs.sum());
+    snapshot.put("rowsWritten", rowsWritten.sum());
+    snapshot.put("reapedRows", reapedRows.sum());
+    snapshot.put("departures", departures.sum());
+    return snapshot;
+  }
+}
@@ -1,7 +1,13 @@
 package com.game.app.service;
 
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.crypto.SecretKey;
 
@@ -13,9 +19,18 @@ import org.springframework.web.server.ResponseStatusException;
 import com.game.app.model.UserEntity;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 
+/**
+ * Issues and verifies access and refresh tokens.
+ *
+ * <p>Parsers are built once per key and shared; they are immutable and thread-safe. Successfully verified
+ * claims are kept in a small LRU keyed by a SHA-256 digest of the token (so raw bearer tokens are not
+ * retained) until the token's own {@code exp}, so a token presented again skips signature verification and
+ * JSON parsing. {@code verified-token-cache.max-entries=0} disables the cache.
+ */
 @Service
 public class JwtTokenService {
 
@@ -23,16 +38,26 @@ public class JwtTokenService {
   private final SecretKey refreshSigningKey;
   private final long accessExpirationMs;
   private final long refreshExpirationMs;
+  private final JwtParser accessParser;
+  private final JwtParser refreshParser;
+  private final VerifiedClaimsCache accessClaimsCache;
+  private final VerifiedClaimsCache refreshClaimsCache;
 
   public JwtTokenService(
       @Value("${app.auth.jwt-access-secret:change-this-access-jwt-secret-in-production-change-this}") String accessJwtSecret,
       @Value("${app.auth.jwt-refresh-secret:change-this-refresh-jwt-secret-in-production-change-this}") String refreshJwtSecret,
       @Value("${app.auth.jwt-access-expiration-ms:3600000}") long accessExpirationMs,
-      @Value("${app.auth.jwt-refresh-expiration-ms:2592000000}") long refreshExpirationMs) {
+      @Value("${app.auth.jwt-refresh-expiration-ms:2592000000}") long refreshExpirationMs,
+      @Value("${app.auth.verified-token-cache.max-entries:10000}") int verifiedTokenCacheMaxEntries) {
     this.accessSigningKey = Keys.hmacShaKeyFor(accessJwtSecret.getBytes(StandardCharsets.UTF_8));
     this.refreshSigningKey = Keys.hmacShaKeyFor(refreshJwtSecret.getBytes(StandardCharsets.UTF_8));
     this.accessExpirationMs = accessExpirationMs;
     this.refreshExpirationMs = refreshExpirationMs;
+    this.accessParser = Jwts.parser().verifyWith(accessSigningKey).build();
+    this.refreshParser = Jwts.parser().verifyWith(refreshSigningKey).build();
+    int cacheLimit = Math.max(0, verifiedTokenCacheMaxEntries);
+    this.accessClaimsCache = new VerifiedClaimsCache(cacheLimit);
+    this.refreshClaimsCache = new VerifiedClaimsCache(cacheLimit);
   }
 
   public String issueAccessToken(UserEntity user) {
@@ -40,6 +65,7 @@ public class JwtTokenService {
     return Jwts.builder()
         .subject(String.valueOf(user.getId()))
         .claim("username", user.getUsername())
+        .claim("role", user.getRole())
         .claim("tokenType", "access")
         .issuedAt(new Date(now))
         .expiration(new Date(now + accessExpirationMs))
@@ -60,27 +86,47 @@ public class JwtTokenService {
   }
 
   public Long extractAccessUserId(String rawToken) {
-    Claims claims = parseClaims(rawToken, accessSigningKey);
+    Claims claims = parseClaims(rawToken, accessParser, accessClaimsCache);
     validateTokenType(claims, "access");
     return extractSubjectAsUserId(claims);
   }
 
   public String extractAccessUsername(String rawToken) {
-    Claims claims = parseClaims(rawToken, accessSigningKey);
+    Claims claims = parseClaims(rawToken, accessParser, accessClaimsCache);
     validateTokenType(claims, "access");
-    String username = claims.get("username", String.class);
-    if (username == null || username.isBlank()) {
-      throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token username");
-    }
-    return username.trim().toLowerCase();
+    return extractUsername(claims);
+  }
+
+  /**
+   * Everything an access token asserts about its user. {@code role} is null for tokens issued before the
+   * role claim existed.
+   */
+  public AccessIdentity extractAccessIdentity(String rawToken) {
+    Claims claims = parseClaims(rawToken, accessParser, accessClaimsCache);
+    validateTokenType(claims, "access");
+    String role = claims.get("role", String.class);
+    Date issuedAt = claims.getIssuedAt();
+    return new AccessIdentity(
+        extractSubjectAsUserId(claims),
+        extractUsername(claims),
+        role == null || role.isBlank() ? null : role.trim().toLowerCase(),
+        issuedAt != null ? issuedAt.toInstant() : Instant.EPOCH);
   }
 
   public Long extractRefreshUserId(String rawToken) {
-    Claims claims = parseClaims(rawToken, refreshSigningKey);
+    Claims claims = parseClaims(rawToken, refreshParser, refreshClaimsCache);
     validateTokenType(claims, "refresh");
     return extractSubjectAsUserId(claims);
   }
 
+  private String extractUsername(Claims claims) {
+    String username = claims.get("username", String.class);
+    if (username == null || username.isBlank()) {
+      throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token username");
+    }
+    return username.trim().toLowerCase();
+  }
+
   private Long extractSubjectAsUserId(Claims claims) {
     try {
       return Long.valueOf(claims.getSubject());
@@ -96,17 +142,34 @@ public class JwtTokenService {
     }
   }
 
-  private Claims parseClaims(String rawToken, SecretKey signingKey) {
+  private Claims parseClaims(String rawToken, JwtParser parser, VerifiedClaimsCache cache) {
     String token = extractToken(rawToken);
+    long now = System.currentTimeMillis();
+    String digest = cache.isEnabled() ? digest(token) : null;
+    Claims cached = digest != null ? cache.get(digest, now) : null;
+    if (cached != null) {
+      return cached;
+    }
+    Claims claims;
     try {
-      return Jwts.parser()
-          .verifyWith(signingKey)
-          .build()
-          .parseSignedClaims(token)
-          .getPayload();
+      claims = parser.parseSignedClaims(token).getPayload();
     } catch (Exception exception) {
       throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid or expired token");
     }
+    Date expiration = claims.getExpiration();
+    if (digest != null && expiration != null) {
+      cache.put(digest, claims, expiration.getTime());
+    }
+    return claims;
+  }
+
+  private String digest(String token) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+      return Base64.getEncoder().encodeToString(hash);
+    } catch (NoSuchAlgorithmException exception) {
+      throw new IllegalStateException("SHA-256 is not available", exception);
+    }
   }
 
   private String extractToken(String rawToken) {
@@ -118,4 +181,49 @@ public class JwtTokenService {
     }
     return rawToken.trim();
   }
+
+  private static final class VerifiedClaimsCache {
+    private final int maxEntries;
+    private final Map<String, CachedClaims> entries;
+
+    private VerifiedClaimsCache(int maxEntries) {
+      this.maxEntries = maxEntries;
+      this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedClaims> eldest) {
+          return size() > maxEntries;
+        }
+      };
+    }
+
+    private boolean isEnabled() {
+      return maxEntries > 0;
+    }
+
+    private Claims get(String digest, long now) {
+      synchronized (entries) {
+        CachedClaims cached = entries.get(digest);
+        if (cached == null) {
+          return null;
+        }
+        if (now >= cached.expiresAtMillis()) {
+          entries.remove(digest);
+          return null;
+        }
+        return cached.claims();
+      }
+    }
+
+    private void put(String digest, Claims claims, long expiresAtMillis) {
+      synchronized (entries) {
+        entries.put(digest, new CachedClaims(claims, expiresAtMillis));
+      }
+    }
+  }
+
+  private record CachedClaims(Claims claims, long expiresAtMillis) {
+  }
+
+  public record AccessIdentity(Long userId, String username, String role, Instant issuedAt) {
+  }
 }
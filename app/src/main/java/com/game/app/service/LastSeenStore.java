@@ -0,0 +1,268 @@
+package com.game.app.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.game.app.model.UserLastSeenEntity;
+import com.game.app.repository.UserLastSeenRepository;
+import com.game.app.repository.UserLastSeenRepositoryCustom.LastSeen;
+import com.game.app.service.UserDirectory.UserSnapshot;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Durable last-seen timestamps, keyed by user id.
+ *
+ * <p>{@link #record} only updates memory; {@link #flushPending} writes what changed since the last run to
+ * {@code user_last_seen} with one batched upsert. {@link #lastSeenAt} answers from a primitive long-to-long
+ * table bounded by {@code max-entries} with CLOCK eviction, loading a user's row the first time it is asked
+ * for (a user with no row is cached as such). Nothing is loaded at startup. Timestamps only move forward, in
+ * memory and in the table.
+ */
+@Component
+public class LastSeenStore implements RuntimeMetricsSource {
+
+  private static final Logger logger = LoggerFactory.getLogger(LastSeenStore.class);
+
+  private final UserDirectory userDirectory;
+  private final UserLastSeenRepository userLastSeenRepository;
+  // All guarded by this. Entries waiting for (or in) a flush are never only in the evictable cache.
+  private final LongClockMap cache;
+  private Map<Long, Long> pending = new HashMap<>();
+  private Map<Long, Long> flushing = Map.of();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder loads = new LongAdder();
+  private final LongAdder flushedRows = new LongAdder();
+  private final LongAdder failedFlushes = new LongAdder();
+
+  public LastSeenStore(
+      UserDirectory userDirectory,
+      UserLastSeenRepository userLastSeenRepository,
+      @Value("${app.chat.last-seen.max-entries:50000}") int maxEntries) {
+    this.userDirectory = userDirectory;
+    this.userLastSeenRepository = userLastSeenRepository;
+    this.cache = new LongClockMap(Math.max(16, maxEntries));
+  }
+
+  /** Epoch millis the user was last seen, or {@code null} when they never have been. */
+  public Long lastSeenAt(String username) {
+    Long userId = userIdOf(username);
+    if (userId == null) {
+      return null;
+    }
+    synchronized (this) {
+      long known = known(userId);
+      if (known != LongClockMap.ABSENT) {
+        hits.increment();
+        return known > 0 ? known : null;
+      }
+    }
+    loads.increment();
+    long stored = userLastSeenRepository.findById(userId).map(UserLastSeenEntity::getLastSeenAt).orElse(0L);
+    synchronized (this) {
+      // A record() that raced with the load may already hold a newer value.
+      long merged = Math.max(stored, known(userId));
+      cache.put(userId, merged);
+      return merged > 0 ? merged : null;
+    }
+  }
+
+  public void record(String username, long lastSeenAt) {
+    Long userId = userIdOf(username);
+    if (userId == null || lastSeenAt <= 0) {
+      return;
+    }
+    synchronized (this) {
+      long merged = Math.max(lastSeenAt, known(userId));
+      pending.put(userId, merged);
+      cache.put(userId, merged);
+    }
+  }
+
+  @Scheduled(
+      fixedDelayString = "${app.chat.last-seen.flush-ms:5000}",
+      initialDelayString = "${app.chat.last-seen.flush-ms:5000}")
+  public void flushPending() {
+    List<LastSeen> batch = new ArrayList<>();
+    synchronized (this) {
+      if (pending.isEmpty()) {
+        return;
+      }
+      flushing = pending;
+      pending = new HashMap<>();
+      flushing.forEach((userId, lastSeenAt) -> batch.add(new LastSeen(userId, lastSeenAt)));
+    }
+    try {
+      userLastSeenRepository.upsertAll(batch);
+      flushedRows.add(batch.size());
+    } catch (RuntimeException ex) {
+      failedFlushes.increment();
+      logger.warn("Last-seen flush of {} rows failed, keeping them for the next run: {}", batch.size(), ex.getMessage());
+      synchronized (this) {
+        flushing.forEach((userId, lastSeenAt) -> pending.merge(userId, lastSeenAt, Math::max));
+      }
+    } finally {
+      synchronized (this) {
+        flushing = Map.of();
+      }
+    }
+  }
+
+  @PreDestroy
+  public void flushOnShutdown() {
+    flushPending();
+  }
+
+  @Override
+  public String metricsName() {
+    return "lastSeen";
+  }
+
+  @Override
+  public Map<String, Object> metricsSnapshot() {
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    synchronized (this) {
+      snapshot.put("cached", cache.size());
+      snapshot.put("evictions", cache.evictions());
+      snapshot.put("pending", pending.size());
+    }
+    snapshot.put("hits", hits.sum());
+    snapshot.put("loads", loads.sum());
+    snapshot.put("flushedRows", flushedRows.sum());
+    snapshot.put("failedFlushes", failedFlushes.sum());
+    return snapshot;
+  }
+
+  private long known(long userId) {
+    long best = cache.get(userId);
+    Long waiting = pending.get(userId);
+    if (waiting != null) {
+      best = Math.max(best, waiting);
+    }
+    Long inFlight = flushing.get(userId);
+    if (inFlight != null) {
+      best = Math.max(best, inFlight);
+    }
+    return best;
+  }
+
+  private Long userIdOf(String username) {
+    return userDirectory.findByUsername(username).map(UserSnapshot::id).orElse(null);
+  }
+
+  /**
+   * Open-addressing {@code long -> long} map bounded to {@code maxSize} entries, evicting with CLOCK (second
+   * chance): a lookup sets the entry's reference bit, and the hand clears set bits until it finds an entry
+   * that has not been read since it last passed. Keys must be positive. Not thread-safe.
+   */
+  static final class LongClockMap {
+
+    static final long ABSENT = -1L;
+
+    private final long[] keys;
+    private final long[] values;
+    private final boolean[] referenced;
+    private final int mask;
+    private final int maxSize;
+    private int size;
+    private int hand;
+    private long evictions;
+
+    LongClockMap(int maxSize) {
+      this.maxSize = Math.max(1, maxSize);
+      // At least twice maxSize slots, so probe runs stay short.
+      int capacity = Integer.highestOneBit(Math.max(2, this.maxSize * 2 - 1)) << 1;
+      this.keys = new long[capacity];
+      this.values = new long[capacity];
+      this.referenced = new boolean[capacity];
+      this.mask = capacity - 1;
+    }
+
+    long get(long key) {
+      for (int i = slot(key); keys[i] != 0L; i = (i + 1) & mask) {
+        if (keys[i] == key) {
+          referenced[i] = true;
+          return values[i];
+        }
+      }
+      return ABSENT;
+    }
+
+    void put(long key, long value) {
+      int i = slot(key);
+      for (; keys[i] != 0L; i = (i + 1) & mask) {
+        if (keys[i] == key) {
+          values[i] = value;
+          return;
+        }
+      }
+      if (size == maxSize) {
+        evictOne();
+        // Eviction shifts entries back, so the free slot may have moved.
+        i = slot(key);
+        while (keys[i] != 0L) {
+          i = (i + 1) & mask;
+        }
+      }
+      keys[i] = key;
+      values[i] = value;
+      referenced[i] = false;
+      size += 1;
+    }
+
+    int size() {
+      return size;
+    }
+
+    long evictions() {
+      return evictions;
+    }
+
+    private void evictOne() {
+      while (true) {
+        if (keys[hand] != 0L) {
+          if (!referenced[hand]) {
+            removeAt(hand);
+            evictions += 1;
+            return;
+          }
+          referenced[hand] = false;
+        }
+        hand = (hand + 1) & mask;
+      }
+    }
+
+    private void removeAt(int hole) {
+      keys[hole] = 0L;
+      size -= 1;
+      // Backward-shift deletion: pull later entries of the probe run into the hole when their home slot
+      // does not lie cyclically between the hole and their current slot.
+      for (int i = (hole + 1) & mask; keys[i] != 0L; i = (i + 1) & mask) {
+        int home = slot(keys[i]);
+        boolean stays = hole <= i ? (home > hole && home <= i) : (home > hole || home <= i);
+        if (stays) {
+          continue;
+        }
+        keys[hole] = keys[i];
+        values[hole] = values[i];
+        referenced[hole] = referenced[i];
+        keys[i] = 0L;
+        hole = i;
+      }
+    }
+
+    private int slot(long key) {
+      return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+  }
+}
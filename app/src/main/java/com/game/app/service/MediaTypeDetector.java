@@ -0,0 +1,197 @@
+package com.game.app.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Classifies chat uploads by content first and by name second.
+ *
+ * <p>The leading bytes of the file are checked against the signatures of the formats clients actually send
+ * (JPEG, PNG, GIF, WebP, the ISO media family of HEIC, MP4, MOV and 3GP, Ogg, AMR and ZIP), so a photo
+ * labelled {@code application/octet-stream} or a video renamed to {@code .jpg} is typed by what it is. Only
+ * when no signature matches does the client {@code Content-Type} count, and after that the file extension,
+ * looked up in a fixed table.
+ *
+ * <p>ISO media files whose brand is generic ({@code isom}, {@code mp42}, ...) may hold video or audio only:
+ * Safari records voice notes as {@code audio/mp4} with these brands. For them a declared or named audio or
+ * video type decides, and {@code video/mp4} is only the fallback.
+ */
+public final class MediaTypeDetector {
+
+  /** Bytes of a file {@link #detect} needs to recognize every supported signature. */
+  public static final int HEAD_BYTES = 12;
+
+  static final String APK = "application/vnd.android.package-archive";
+  static final String ZIP = "application/zip";
+
+  private static final byte[] JPEG = { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF };
+  private static final byte[] PNG = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+  private static final byte[] GIF87 = ascii("GIF87a");
+  private static final byte[] GIF89 = ascii("GIF89a");
+  private static final byte[] RIFF = ascii("RIFF");
+  private static final byte[] WEBP = ascii("WEBP");
+  private static final byte[] FTYP = ascii("ftyp");
+  private static final byte[] OGG = ascii("OggS");
+  private static final byte[] AMR = ascii("#!AMR\n");
+  private static final byte[] AMR_WB = ascii("#!AMR-WB\n");
+  private static final byte[] ZIP_ENTRY = { 'P', 'K', 3, 4 };
+  private static final byte[] ZIP_EMPTY = { 'P', 'K', 5, 6 };
+
+  private static final Map<String, String> BY_EXTENSION = Map.ofEntries(
+      Map.entry("apk", APK),
+      Map.entry("mp4", "video/mp4"),
+      Map.entry("m4v", "video/mp4"),
+      Map.entry("mov", "video/quicktime"),
+      Map.entry("qt", "video/quicktime"),
+      Map.entry("3g2", "video/3gpp2"),
+      Map.entry("webm", "video/webm"),
+      Map.entry("mkv", "video/x-matroska"),
+      Map.entry("avi", "video/x-msvideo"),
+      Map.entry("3gp", "video/3gpp"),
+      Map.entry("heic", "image/heic"),
+      Map.entry("heics", "image/heic"),
+      Map.entry("heif", "image/heif"),
+      Map.entry("heifs", "image/heif"),
+      Map.entry("hif", "image/heif"),
+      Map.entry("jpg", "image/jpeg"),
+      Map.entry("jpeg", "image/jpeg"),
+      Map.entry("png", "image/png"),
+      Map.entry("gif", "image/gif"),
+      Map.entry("webp", "image/webp"),
+      Map.entry("bmp", "image/bmp"),
+      Map.entry("svg", "image/svg+xml"),
+      Map.entry("ogg", "audio/ogg"),
+      Map.entry("oga", "audio/ogg"),
+      Map.entry("opus", "audio/ogg"),
+      Map.entry("amr", "audio/amr"),
+      Map.entry("m4a", "audio/mp4"),
+      Map.entry("mp3", "audio/mpeg"));
+
+  private MediaTypeDetector() {
+  }
+
+  /**
+   * Returns the MIME type to store for an upload. {@code head} is the start of the file (at least
+   * {@link #HEAD_BYTES} when the file is that long, may be null), {@code contentType} and {@code fileName}
+   * are as the client sent them.
+   */
+  public static String detect(byte[] head, String contentType, String fileName) {
+    String declared = contentType != null ? contentType.trim().toLowerCase(Locale.ROOT) : "";
+    String sniffed = sniff(head);
+    if (ZIP.equals(sniffed)) {
+      // APKs and office documents are ZIPs too; the name or a non-media declared type says which.
+      if (APK.equals(byExtension(fileName))) {
+        return APK;
+      }
+      return declared.isBlank() || isMedia(declared) || MediaType.APPLICATION_OCTET_STREAM_VALUE.equals(declared)
+          ? ZIP
+          : declared;
+    }
+    if (sniffed != null) {
+      return sniffed;
+    }
+    if (declared.startsWith("video/x-quicktime")) {
+      return "video/quicktime";
+    }
+    boolean isoMedia = head != null && startsWith(head, 4, FTYP);
+    if (isoMedia ? isAudioOrVideo(declared) : isMedia(declared)) {
+      return declared;
+    }
+    String named = byExtension(fileName);
+    if (isoMedia) {
+      return named != null && isAudioOrVideo(named) ? named : "video/mp4";
+    }
+    if (named != null) {
+      return named;
+    }
+    return declared.isBlank() ? MediaType.APPLICATION_OCTET_STREAM_VALUE : declared;
+  }
+
+  /** The chat media kind of a MIME type: {@code image}, {@code video}, {@code voice}, or null for other files. */
+  public static String mediaKind(String mimeType) {
+    if (mimeType == null) {
+      return null;
+    }
+    String normalized = mimeType.trim().toLowerCase(Locale.ROOT);
+    if (normalized.startsWith("image/")) return "image";
+    if (normalized.startsWith("video/")) return "video";
+    if (normalized.startsWith("audio/")) return "voice";
+    return null;
+  }
+
+  /** Returns the type the leading bytes identify, or null when they match no supported signature. */
+  static String sniff(byte[] head) {
+    if (head == null || head.length < 3) {
+      return null;
+    }
+    if (startsWith(head, 0, JPEG)) return "image/jpeg";
+    if (startsWith(head, 0, PNG)) return "image/png";
+    if (startsWith(head, 0, GIF87) || startsWith(head, 0, GIF89)) return "image/gif";
+    if (startsWith(head, 0, RIFF) && startsWith(head, 8, WEBP)) return "image/webp";
+    if (startsWith(head, 4, FTYP)) return isoMedia(head);
+    if (startsWith(head, 0, OGG)) return "audio/ogg";
+    if (startsWith(head, 0, AMR_WB)) return "audio/amr-wb";
+    if (startsWith(head, 0, AMR)) return "audio/amr";
+    if (startsWith(head, 0, ZIP_ENTRY) || startsWith(head, 0, ZIP_EMPTY)) return ZIP;
+    return null;
+  }
+
+  /**
+   * ISO base media files share the {@code ftyp} box; a specific major brand tells the formats apart. Generic
+   * brands return null and leave the choice to {@link #detect}.
+   */
+  private static String isoMedia(byte[] head) {
+    if (head.length < 12) {
+      return null;
+    }
+    String brand = new String(head, 8, 4, StandardCharsets.US_ASCII);
+    return switch (brand) {
+      case "heic", "heix", "heim", "heis", "hevc", "hevx" -> "image/heic";
+      case "mif1", "msf1", "heif" -> "image/heif";
+      case "avif" -> "image/avif";
+      case "qt  " -> "video/quicktime";
+      case "M4A ", "M4B " -> "audio/mp4";
+      case "M4V ", "M4VH", "M4VP", "f4v " -> "video/mp4";
+      default -> brand.startsWith("3g2") ? "video/3gpp2" : brand.startsWith("3gp") ? "video/3gpp" : null;
+    };
+  }
+
+  private static String byExtension(String fileName) {
+    if (fileName == null) {
+      return null;
+    }
+    String name = fileName.trim();
+    int dot = name.lastIndexOf('.');
+    if (dot < 0 || dot == name.length() - 1) {
+      return null;
+    }
+    return BY_EXTENSION.get(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+  }
+
+  private static boolean isAudioOrVideo(String mimeType) {
+    return mimeType.startsWith("video/") || mimeType.startsWith("audio/");
+  }
+
+  private static boolean isMedia(String mimeType) {
+    return mimeType.startsWith("video/") || mimeType.startsWith("image/") || mimeType.startsWith("audio/");
+  }
+
+  private static boolean startsWith(byte[] data, int offset, byte[] prefix) {
+    if (data.length < offset + prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i += 1) {
+      if (data[offset + i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static byte[] ascii(String value) {
+    return value.getBytes(StandardCharsets.US_ASCII);
+  }
+}
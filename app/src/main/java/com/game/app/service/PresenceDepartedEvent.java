@@ -0,0 +1,11 @@
+package com.game.app.service;
+
+import java.util.Set;
+
+/**
+ * Published by {@link JdbcPresenceStore} for users that went offline without any node recording the transition,
+ * with the time of the sync that noticed it. Only the node that reaped the rows or held the deferred offline
+ * publishes it, so the receiver announces the transition to the whole cluster.
+ */
+public record PresenceDepartedEvent(Set<String> usernames, long detectedAt) {
+}
@@ -0,0 +1,138 @@
+package com.game.app.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Versioned record of presence transitions, so a client can catch up with a delta instead of a full resync.
+ *
+ * <p>Every online/offline transition gets the next version. The last {@code log-capacity} transitions are
+ * retained; {@link #changesSince} answers from them, or returns {@code null} when the client's version is
+ * older than what is retained and it needs a snapshot instead.
+ *
+ * <p>Clients see a version as a token, {@code <epoch>:<version>}, where the epoch is random per log. A token
+ * from another node or from before a restart therefore never matches and gets a snapshot rather than a delta
+ * computed against an unrelated counter. With presence shared between nodes ({@code app.chat.presence.store=jdbc})
+ * every token gets a snapshot: transitions made on other nodes reach clients as relayed frames but never this
+ * log, so a delta from it would leave them out.
+ */
+@Component
+public class PresenceLog implements RuntimeMetricsSource {
+
+  private final int capacity;
+  private final boolean shared;
+  private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+  private final Deque<PresenceChange> changes = new ArrayDeque<>();
+  private long version;
+  private long floorVersion;
+  private final LongAdder deltasServed = new LongAdder();
+  private final LongAdder snapshotsRequired = new LongAdder();
+
+  public PresenceLog(
+      @Value("${app.chat.presence.log-capacity:4096}") int capacity,
+      @Value("${app.chat.presence.store:memory}") String presenceStore) {
+    this.capacity = Math.max(16, capacity);
+    this.shared = "jdbc".equalsIgnoreCase(presenceStore == null ? "" : presenceStore.trim());
+    this.version = System.currentTimeMillis() * 1000L;
+    this.floorVersion = version;
+  }
+
+  public synchronized long append(String username, String status, Long lastSeenAt) {
+    version += 1;
+    changes.addLast(new PresenceChange(version, username, status, lastSeenAt));
+    if (changes.size() > capacity) {
+      floorVersion = changes.removeFirst().version();
+    }
+    return version;
+  }
+
+  public synchronized long currentVersion() {
+    return version;
+  }
+
+  /** The token clients are given for {@code version} of this log. */
+  public String token(long version) {
+    return epoch + ":" + version;
+  }
+
+  /**
+   * {@link #changesSince(long)} for a token a client presents, or {@code null} when it is blank, malformed,
+   * from another log, or presence is shared between nodes.
+   */
+  public Delta changesSince(String token) {
+    int colon = token != null ? token.lastIndexOf(':') : -1;
+    if (shared || colon < 0 || !epoch.equals(token.substring(0, colon))) {
+      snapshotsRequired.increment();
+      return null;
+    }
+    long sinceVersion;
+    try {
+      sinceVersion = Long.parseLong(token.substring(colon + 1));
+    } catch (NumberFormatException ex) {
+      snapshotsRequired.increment();
+      return null;
+    }
+    return changesSince(sinceVersion);
+  }
+
+  /**
+   * Transitions after {@code sinceVersion}, latest per user and in version order, or {@code null} when they
+   * are no longer all retained.
+   */
+  public Delta changesSince(long sinceVersion) {
+    Map<String, PresenceChange> latest = new LinkedHashMap<>();
+    long current;
+    synchronized (this) {
+      current = version;
+      if (sinceVersion < floorVersion || sinceVersion > current) {
+        snapshotsRequired.increment();
+        return null;
+      }
+      Iterator<PresenceChange> newestFirst = changes.descendingIterator();
+      while (newestFirst.hasNext()) {
+        PresenceChange change = newestFirst.next();
+        if (change.version() <= sinceVersion) {
+          break;
+        }
+        latest.putIfAbsent(change.username(), change);
+      }
+    }
+    deltasServed.increment();
+    List<PresenceChange> ordered = new ArrayList<>(latest.values());
+    ordered.sort((left, right) -> Long.compare(left.version(), right.version()));
+    return new Delta(current, ordered);
+  }
+
+  @Override
+  public String metricsName() {
+    return "presenceLog";
+  }
+
+  @Override
+  public Map<String, Object> metricsSnapshot() {
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    synchronized (this) {
+      snapshot.put("version", version);
+      snapshot.put("retained", changes.size());
+    }
+    snapshot.put("deltasServed", deltasServed.sum());
+    snapshot.put("snapshotsRequired", snapshotsRequired.sum());
+    return snapshot;
+  }
+
+  public record PresenceChange(long version, String username, String status, Long lastSeenAt) {
+  }
+
+  public record Delta(long version, List<PresenceChange> changes) {
+  }
+}
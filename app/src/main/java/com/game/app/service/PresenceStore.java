@@ -0,0 +1,29 @@
+package com.game.app.service;
+
+/**
+ * Which users are online, for presence decisions that have to hold across application nodes.
+ *
+ * <p>Heartbeats and their timeouts stay on the node that owns the STOMP session; a store only learns when this
+ * node starts or stops holding a user online. {@link InMemoryPresenceStore} is the single-node default and
+ * {@link JdbcPresenceStore} ({@code app.chat.presence.store=jdbc}) shares the state through the database.
+ */
+public interface PresenceStore {
+
+  /** Returns true when this node did not already hold the user online. */
+  boolean markOnline(String username);
+
+  /** Returns true when this node held the user online. */
+  boolean markOffline(String username);
+
+  boolean isOnlineHere(String username);
+
+  boolean isOnlineElsewhere(String username);
+
+  /**
+   * Called when this node drops a user's last local session but leaves the offline transition to another node
+   * that still holds the user. A shared store reports the user in a {@link PresenceDepartedEvent} if no node
+   * ends up recording that transition.
+   */
+  default void deferOffline(String username) {
+  }
+}
@@ -0,0 +1,13 @@
+package com.game.app.service;
+
+import java.util.Map;
+
+/**
+ * A component that reports in-process counters and gauges on {@code /health/metrics}.
+ */
+public interface RuntimeMetricsSource {
+
+  String metricsName();
+
+  Map<String, Object> metricsSnapshot();
+}
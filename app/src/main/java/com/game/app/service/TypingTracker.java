@@ -0,0 +1,108 @@
+package com.game.app.service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-(sender, recipient) typing state, so {@code /chat.typing} frames arriving at keystroke rate become a
+ * handful of outbound frames.
+ *
+ * <p>{@link #update} says whether an incoming frame should reach the recipient: a state change always does; a
+ * repeated {@code typing=true} only once per {@code repeat-window-ms}, which keeps a peer's own stale timer
+ * alive; a repeated {@code typing=false} never does. A pair that stays typing without a frame for
+ * {@code idle-timeout-ms} is handed back by {@link #expire}, and the caller sends the {@code typing=false} the
+ * sender never did. Only pairs currently typing are held.
+ */
+@Component
+public class TypingTracker implements RuntimeMetricsSource {
+
+  private final long repeatWindowMillis;
+  private final long idleTimeoutMillis;
+  // Guarded by this.
+  private final Map<TypingPair, Long> forwardedAt = new HashMap<>();
+  private final DeadlineWheel<TypingPair> expiry;
+  private final LongAdder received = new LongAdder();
+  private final LongAdder forwarded = new LongAdder();
+  private final LongAdder expired = new LongAdder();
+
+  public TypingTracker(
+      @Value("${app.chat.typing.repeat-window-ms:1000}") long repeatWindowMillis,
+      @Value("${app.chat.typing.idle-timeout-ms:6000}") long idleTimeoutMillis,
+      @Value("${app.chat.typing.sweep-ms:1000}") long sweepMillis) {
+    this.repeatWindowMillis = Math.max(0L, repeatWindowMillis);
+    this.idleTimeoutMillis = Math.max(1000L, idleTimeoutMillis);
+    this.expiry = new DeadlineWheel<>(Math.max(100L, sweepMillis), this.idleTimeoutMillis, System.currentTimeMillis());
+  }
+
+  /** Records an incoming frame and returns true when it should be forwarded to the recipient. */
+  public boolean update(String from, String to, boolean typing, long nowMillis) {
+    received.increment();
+    TypingPair pair = new TypingPair(from, to);
+    boolean forward;
+    synchronized (this) {
+      Long last = forwardedAt.get(pair);
+      if (!typing) {
+        forward = forwardedAt.remove(pair) != null;
+        expiry.cancel(pair);
+      } else {
+        expiry.schedule(pair, nowMillis + idleTimeoutMillis);
+        forward = last == null || nowMillis - last >= repeatWindowMillis;
+        if (forward) {
+          forwardedAt.put(pair, nowMillis);
+        }
+      }
+    }
+    if (forward) {
+      forwarded.increment();
+    }
+    return forward;
+  }
+
+  /** Forgets the pair without a frame, e.g. once a message from the sender has ended the typing itself. */
+  public void clear(String from, String to) {
+    TypingPair pair = new TypingPair(from, to);
+    synchronized (this) {
+      if (forwardedAt.remove(pair) != null) {
+        expiry.cancel(pair);
+      }
+    }
+  }
+
+  /** Removes and returns the pairs that went quiet; each is owed a {@code typing=false}. */
+  public List<TypingPair> expire(long nowMillis) {
+    List<TypingPair> due;
+    synchronized (this) {
+      due = expiry.advance(nowMillis);
+      due.removeIf(pair -> forwardedAt.remove(pair) == null);
+    }
+    expired.add(due.size());
+    forwarded.add(due.size());
+    return due;
+  }
+
+  @Override
+  public String metricsName() {
+    return "typing";
+  }
+
+  @Override
+  public Map<String, Object> metricsSnapshot() {
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    synchronized (this) {
+      snapshot.put("typingPairs", forwardedAt.size());
+    }
+    snapshot.put("received", received.sum());
+    snapshot.put("forwarded", forwarded.sum());
+    snapshot.put("expired", expired.sum());
+    return snapshot;
+  }
+
+  public record TypingPair(String from, String to) {
+  }
+}
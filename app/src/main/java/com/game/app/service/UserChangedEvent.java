@@ -0,0 +1,12 @@
+package com.game.app.service;
+
+/**
+ * Published by {@link UserDirectory} whenever a user's cached identity is invalidated. {@code fromPeer} is set
+ * when the change was made on another node and relayed here, so it is not relayed back.
+ */
+public record UserChangedEvent(Long userId, String username, boolean fromPeer) {
+
+  public UserChangedEvent(Long userId, String username) {
+    this(userId, username, false);
+  }
+}
@@ -0,0 +1,191 @@
+package com.game.app.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import com.game.app.model.UserEntity;
+import com.game.app.repository.UserRepository;
+
+/**
+ * Cached identity and role lookups for request authorization.
+ *
+ * <p>Holds immutable {@link UserSnapshot}s indexed by id and by username. Both indexes are LRU-bounded and
+ * entries expire after {@code ttl-ms}; anything that changes a user must call {@link #invalidate} so the next
+ * lookup reloads it and a {@link UserChangedEvent} reaches live sessions; the cluster router repeats the
+ * invalidation on the other nodes. Unknown users are not cached. Code that needs columns beyond id, username
+ * and role should keep reading {@link UserRepository}.
+ */
+@Component
+public class UserDirectory implements RuntimeMetricsSource {
+
+  private static final String CHAT_ROLE = "chat";
+
+  private final UserRepository userRepository;
+  private final ApplicationEventPublisher eventPublisher;
+  private final long ttlMillis;
+  private final Map<Long, CachedUser> byId;
+  private final Map<String, CachedUser> byUsername;
+  // Bumped on every invalidation so a load that raced with one does not re-insert the stale row.
+  private final AtomicLong generation = new AtomicLong();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder invalidations = new LongAdder();
+
+  public UserDirectory(
+      UserRepository userRepository,
+      ApplicationEventPublisher eventPublisher,
+      @Value("${app.users.cache.max-entries:10000}") int maxEntries,
+      @Value("${app.users.cache.ttl-ms:300000}") long ttlMillis) {
+    this.userRepository = userRepository;
+    this.eventPublisher = eventPublisher;
+    this.ttlMillis = Math.max(0L, ttlMillis);
+    int limit = Math.max(1, maxEntries);
+    this.byId = new LinkedHashMap<>(256, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, CachedUser> eldest) {
+        return size() > limit;
+      }
+    };
+    this.byUsername = new LinkedHashMap<>(256, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+        return size() > limit;
+      }
+    };
+  }
+
+  public Optional<UserSnapshot> findById(Long id) {
+    if (id == null) {
+      return Optional.empty();
+    }
+    synchronized (this) {
+      UserSnapshot cached = fresh(byId.get(id));
+      if (cached != null) {
+        hits.increment();
+        return Optional.of(cached);
+      }
+    }
+    return load(() -> userRepository.findById(id));
+  }
+
+  public Optional<UserSnapshot> findByUsername(String username) {
+    String normalized = normalizeUsername(username);
+    if (normalized.isBlank()) {
+      return Optional.empty();
+    }
+    synchronized (this) {
+      UserSnapshot cached = fresh(byUsername.get(normalized));
+      if (cached != null) {
+        hits.increment();
+        return Optional.of(cached);
+      }
+    }
+    return load(() -> userRepository.findByUsername(normalized));
+  }
+
+  public boolean hasChatRole(String username) {
+    return findByUsername(username).map(UserSnapshot::isChatUser).orElse(false);
+  }
+
+  public void invalidate(UserEntity user) {
+    if (user == null) {
+      return;
+    }
+    invalidate(user.getId(), user.getUsername());
+  }
+
+  public void invalidate(Long id, String username) {
+    invalidate(id, username, false);
+  }
+
+  /** Applies an invalidation another node made; the resulting event is marked so it is not relayed again. */
+  public void invalidateFromPeer(Long id, String username) {
+    invalidate(id, username, true);
+  }
+
+  private void invalidate(Long id, String username, boolean fromPeer) {
+    invalidations.increment();
+    String normalized = normalizeUsername(username);
+    synchronized (this) {
+      generation.incrementAndGet();
+      CachedUser removed = id != null ? byId.remove(id) : null;
+      if (removed != null) {
+        byUsername.remove(removed.snapshot().username());
+      }
+      removed = byUsername.remove(normalized);
+      if (removed != null) {
+        byId.remove(removed.snapshot().id());
+      }
+    }
+    eventPublisher.publishEvent(new UserChangedEvent(id, normalized, fromPeer));
+  }
+
+  @Override
+  public String metricsName() {
+    return "userDirectory";
+  }
+
+  @Override
+  public Map<String, Object> metricsSnapshot() {
+    int size;
+    synchronized (this) {
+      size = byId.size();
+    }
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put("entries", size);
+    snapshot.put("hits", hits.sum());
+    snapshot.put("misses", misses.sum());
+    snapshot.put("invalidations", invalidations.sum());
+    return snapshot;
+  }
+
+  private Optional<UserSnapshot> load(Supplier<Optional<UserEntity>> lookup) {
+    misses.increment();
+    long loadGeneration = generation.get();
+    Optional<UserSnapshot> loaded = lookup.get().map(UserSnapshot::of);
+    loaded.ifPresent(snapshot -> {
+      synchronized (this) {
+        if (generation.get() != loadGeneration) {
+          return;
+        }
+        CachedUser entry = new CachedUser(snapshot, System.currentTimeMillis());
+        byId.put(snapshot.id(), entry);
+        byUsername.put(snapshot.username(), entry);
+      }
+    });
+    return loaded;
+  }
+
+  private UserSnapshot fresh(CachedUser entry) {
+    if (entry == null || System.currentTimeMillis() - entry.loadedAt() > ttlMillis) {
+      return null;
+    }
+    return entry.snapshot();
+  }
+
+  private static String normalizeUsername(String username) {
+    return username == null ? "" : username.trim().toLowerCase();
+  }
+
+  private record CachedUser(UserSnapshot snapshot, long loadedAt) {
+  }
+
+  public record UserSnapshot(Long id, String username, String role) {
+
+    static UserSnapshot of(UserEntity user) {
+      return new UserSnapshot(user.getId(), normalizeUsername(user.getUsername()), user.getRole());
+    }
+
+    public boolean isChatUser() {
+      return CHAT_ROLE.equalsIgnoreCase(role);
+    }
+  }
+}
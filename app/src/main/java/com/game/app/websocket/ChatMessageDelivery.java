@@ -0,0 +1,123 @@
+package com.game.app.websocket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpSession;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Component;
+
+import com.game.app.config.ChatSchema;
+import com.game.app.config.StompSessionRegistry;
+import com.game.app.model.ChatMessageEntity;
+import com.game.app.websocket.ChatWebSocketController.IncomingMessage;
+import com.game.app.websocket.ChatWebSocketController.ReplyPreview;
+
+/**
+ * Delivers new chat messages to {@code /user/queue/messages} in the shape each session negotiated.
+ *
+ * <p>While none of the recipient's sessions asked for {@link ChatSchema#V2} the message is sent once to the
+ * user destination exactly as before. Otherwise every session gets its own frame, addressed by session id, so
+ * v1 and v2 clients of the same user can coexist. Frames addressed to a session are not relayed between
+ * nodes, so in that case the recipient's sessions on other nodes get one verbose copy through
+ * {@link ClusterRouter#relayToUser}.
+ */
+@Component
+public class ChatMessageDelivery {
+
+  static final String DESTINATION = "/queue/messages";
+
+  private final SimpMessagingTemplate messagingTemplate;
+  private final SimpUserRegistry simpUserRegistry;
+  private final StompSessionRegistry stompSessionRegistry;
+  private final ClusterRouter clusterRouter;
+
+  public ChatMessageDelivery(
+      SimpMessagingTemplate messagingTemplate,
+      SimpUserRegistry simpUserRegistry,
+      StompSessionRegistry stompSessionRegistry,
+      ClusterRouter clusterRouter) {
+    this.messagingTemplate = messagingTemplate;
+    this.simpUserRegistry = simpUserRegistry;
+    this.stompSessionRegistry = stompSessionRegistry;
+    this.clusterRouter = clusterRouter;
+  }
+
+  public void deliver(String toUsername, String fromUsername, ChatMessageEntity entity, long createdAtMillis) {
+    SimpUser user = simpUserRegistry.getUser(toUsername);
+    List<String> sessionIds = new ArrayList<>();
+    boolean anyCompact = false;
+    if (user != null) {
+      for (SimpSession session : user.getSessions()) {
+        sessionIds.add(session.getId());
+        anyCompact |= stompSessionRegistry.schemaOf(session.getId()) == ChatSchema.V2;
+      }
+    }
+
+    IncomingMessage verbose = incomingMessage(entity, fromUsername, createdAtMillis);
+    if (!anyCompact) {
+      messagingTemplate.convertAndSendToUser(toUsername, DESTINATION, verbose);
+      return;
+    }
+
+    CompactChatMessage compact = CompactChatMessage.of(entity, fromUsername, createdAtMillis);
+    for (String sessionId : sessionIds) {
+      Object payload = stompSessionRegistry.schemaOf(sessionId) == ChatSchema.V2 ? compact : verbose;
+      messagingTemplate.convertAndSendToUser(toUsername, DESTINATION, payload, sessionHeaders(sessionId));
+    }
+    clusterRouter.relayToUser(toUsername, DESTINATION, verbose);
+  }
+
+  static IncomingMessage incomingMessage(ChatMessageEntity entity, String fromUsername, long createdAtMillis) {
+    return new IncomingMessage(
+        entity.getId(),
+        entity.getClientMessageId(),
+        fromUsername,
+        entity.getMessage(),
+        entity.getType(),
+        entity.getFileName(),
+        entity.getMediaUrl(),
+        entity.getMimeType(),
+        entity.getReaction(),
+        buildReplyPreview(entity),
+        entity.getReplyText(),
+        entity.getReplySenderName(),
+        entity.getReplyMessageId(),
+        entity.getReplyType(),
+        entity.getReplyMediaUrl(),
+        entity.getReplyMimeType(),
+        entity.getReplyFileName(),
+        createdAtMillis,
+        entity.isEdited(),
+        entity.getEditedAt() != null ? entity.getEditedAt().toEpochMilli() : null,
+        entity.getMediaType());
+  }
+
+  private static ReplyPreview buildReplyPreview(ChatMessageEntity entity) {
+    CompactChatMessage.Reply reply = CompactChatMessage.Reply.of(entity);
+    if (reply == null) {
+      return null;
+    }
+    return new ReplyPreview(
+        reply.text(),
+        reply.senderName(),
+        reply.messageId(),
+        reply.type(),
+        reply.mediaUrl(),
+        reply.mimeType(),
+        reply.fileName());
+  }
+
+  private static Map<String, Object> sessionHeaders(String sessionId) {
+    // A session id header makes the user destination resolve to that one session instead of all of them.
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+    accessor.setSessionId(sessionId);
+    accessor.setLeaveMutable(true);
+    return accessor.getMessageHeaders();
+  }
+}
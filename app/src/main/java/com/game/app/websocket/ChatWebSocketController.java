@@ -2,14 +2,21 @@ package com.game.app.websocket;
 
 import java.security.Principal;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.context.event.EventListener;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.user.SimpSession;
 import org.springframework.messaging.simp.user.SimpUser;
@@ -18,59 +25,109 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
+import com.game.app.config.StompPrincipal;
 import com.game.app.model.ChatMessageEntity;
 import com.game.app.model.ChatReadReceiptEntity;
 import com.game.app.model.UserEntity;
 import com.game.app.repository.ChatMessageRepository;
 import com.game.app.repository.ChatReadReceiptRepository;
-import com.game.app.repository.UserRepository;
 import com.game.app.service.ChatAnalyticsService;
 import com.game.app.service.ChatCheckEventService;
+import com.game.app.service.ChatMessageWriter;
+import com.game.app.service.ChatMessageWriter.PersistedMessage;
+import com.game.app.service.ChatSideEffectExecutor;
+import com.game.app.service.ClientMessageIdCache;
+import com.game.app.service.ClientMessageIdCache.AckedMessage;
+import com.game.app.service.ContactIndex;
+import com.game.app.service.DeadlineWheel;
+import com.game.app.service.LastSeenStore;
+import com.game.app.service.MediaTypeDetector;
+import com.game.app.service.PresenceDepartedEvent;
+import com.game.app.service.PresenceLog;
+import com.game.app.service.PresenceLog.Delta;
+import com.game.app.service.PresenceLog.PresenceChange;
+import com.game.app.service.PresenceStore;
 import com.game.app.service.PushNotificationService;
+import com.game.app.service.TypingTracker;
+import com.game.app.service.TypingTracker.TypingPair;
+import com.game.app.service.UserDirectory;
 
 @Controller
 public class ChatWebSocketController {
   private static final long EDIT_WINDOW_MILLIS = 15 * 60 * 1000L;
-  private static final long CHAT_ROLE_CACHE_TTL_MILLIS = 5 * 60 * 1000L;
   private static final String SECRET_TAP_TYPE = "secret-tap";
   private static final String TONY_USERNAME = "tony";
 
   private final SimpMessagingTemplate messagingTemplate;
+  private final StompFanOut stompFanOut;
+  private final ChatMessageDelivery chatMessageDelivery;
   private final SimpUserRegistry simpUserRegistry;
   private final ChatMessageRepository chatMessageRepository;
+  private final ChatMessageWriter chatMessageWriter;
+  private final ClientMessageIdCache clientMessageIdCache;
   private final ChatReadReceiptRepository chatReadReceiptRepository;
-  private final UserRepository userRepository;
+  private final UserDirectory userDirectory;
   private final ChatAnalyticsService chatAnalyticsService;
   private final ChatCheckEventService chatCheckEventService;
+  private final ChatSideEffectExecutor chatSideEffectExecutor;
   private final PushNotificationService pushNotificationService;
+  private final PresenceLog presenceLog;
+  private final ContactIndex contactIndex;
+  private final LastSeenStore lastSeenStore;
+  private final TypingTracker typingTracker;
+  private final PresenceStore presenceStore;
   private final boolean notifyWhenOnline;
   private final long presenceTimeoutMs;
-  private final Set<String> onlineUsers = ConcurrentHashMap.newKeySet();
-  private final Map<String, Long> lastSeenMap = new ConcurrentHashMap<>();
+  private final int maxSendBatchSize;
   private final Map<String, Long> presenceHeartbeatMap = new ConcurrentHashMap<>();
-  private final Map<String, CachedChatRole> chatRoleCache = new ConcurrentHashMap<>();
+  private final Set<String> announcedSessions = ConcurrentHashMap.newKeySet();
+  private final DeadlineWheel<String> presenceExpiry;
 
   public ChatWebSocketController(
       SimpMessagingTemplate messagingTemplate,
+      StompFanOut stompFanOut,
+      ChatMessageDelivery chatMessageDelivery,
       SimpUserRegistry simpUserRegistry,
       ChatMessageRepository chatMessageRepository,
+      ChatMessageWriter chatMessageWriter,
+      ClientMessageIdCache clientMessageIdCache,
       ChatReadReceiptRepository chatReadReceiptRepository,
-      UserRepository userRepository,
+      UserDirectory userDirectory,
       ChatAnalyticsService chatAnalyticsService,
       ChatCheckEventService chatCheckEventService,
+      ChatSideEffectExecutor chatSideEffectExecutor,
       PushNotificationService pushNotificationService,
+      PresenceLog presenceLog,
+      ContactIndex contactIndex,
+      LastSeenStore lastSeenStore,
+      TypingTracker typingTracker,
+      PresenceStore presenceStore,
       @Value("${app.push.notify-when-online:true}") boolean notifyWhenOnline,
-      @Value("${app.chat.presence-timeout-ms:65000}") long presenceTimeoutMs) {
+      @Value("${app.chat.presence-timeout-ms:65000}") long presenceTimeoutMs,
+      @Value("${app.chat.presence-prune-ms:20000}") long presencePruneMs,
+      @Value("${app.chat.send-batch.max-messages:100}") int maxSendBatchSize) {
     this.messagingTemplate = messagingTemplate;
+    this.stompFanOut = stompFanOut;
+    this.chatMessageDelivery = chatMessageDelivery;
     this.simpUserRegistry = simpUserRegistry;
     this.chatMessageRepository = chatMessageRepository;
+    this.chatMessageWriter = chatMessageWriter;
+    this.clientMessageIdCache = clientMessageIdCache;
     this.chatReadReceiptRepository = chatReadReceiptRepository;
-    this.userRepository = userRepository;
+    this.userDirectory = userDirectory;
     this.chatAnalyticsService = chatAnalyticsService;
     this.chatCheckEventService = chatCheckEventService;
+    this.chatSideEffectExecutor = chatSideEffectExecutor;
     this.pushNotificationService = pushNotificationService;
+    this.presenceLog = presenceLog;
+    this.contactIndex = contactIndex;
+    this.lastSeenStore = lastSeenStore;
+    this.typingTracker = typingTracker;
+    this.presenceStore = presenceStore;
     this.notifyWhenOnline = notifyWhenOnline;
     this.presenceTimeoutMs = Math.max(15000L, presenceTimeoutMs);
+    this.presenceExpiry = new DeadlineWheel<>(presencePruneMs, this.presenceTimeoutMs, System.currentTimeMillis());
+    this.maxSendBatchSize = Math.max(1, maxSendBatchSize);
   }
 
   @MessageMapping("/chat.send")
@@ -92,7 +149,7 @@ public class ChatWebSocketController {
     String normalizedFrom = normalizeUsername(fromUsername);
     String normalizedTo = normalizeUsername(payload.toUsername());
     String normalizedTempId = normalizeClientMessageId(payload.tempId());
-    if (!hasChatRole(normalizedFrom)) {
+    if (!senderHasChatRole(principal, normalizedFrom)) {
       sendAck(normalizedFrom, payload.tempId(), false, null, null);
       messagingTemplate.convertAndSendToUser(normalizedFrom, "/queue/errors", Map.of(
           "type", "forbidden",
@@ -106,26 +163,178 @@ public class ChatWebSocketController {
           "message", "Recipient is not allowed to use chat"));
       return;
     }
-    if (normalizedTempId != null) {
-      ChatMessageEntity existing = chatMessageRepository
-          .findByFromUsernameAndClientMessageId(normalizedFrom, normalizedTempId)
-          .orElse(null);
-      if (existing != null) {
-        String existingTo = normalizeUsername(existing.getToUsername());
-        if (!normalizedTo.equals(existingTo)) {
-          sendAck(normalizedFrom, payload.tempId(), false, null, null);
-          messagingTemplate.convertAndSendToUser(normalizedFrom, "/queue/errors", Map.of(
-              "type", "invalid_message",
-              "message", "Message id conflict. Please retry sending."));
-          return;
-        }
-        sendAck(normalizedFrom, payload.tempId(), true, existing.getId(), toEpochMillis(existing.getCreatedAt()));
+    AckedMessage acked = clientMessageIdCache.find(normalizedFrom, normalizedTempId);
+    if (acked != null) {
+      ackRetransmit(normalizedFrom, normalizedTo, payload.tempId(), acked.toUsername(), acked.messageId(), acked.createdAt());
+      return;
+    }
+
+    String normalizedType = normalizeMessageType(payload.type());
+
+    ChatMessageEntity entity = toEntity(payload, normalizedFrom, normalizedTo, normalizedText, normalizedTempId, normalizedType);
+    String tempId = payload.tempId();
+    chatMessageWriter.persist(entity).whenComplete((result, error) -> {
+      if (error != null) {
+        sendAck(normalizedFrom, tempId, false, null, null);
+        return;
+      }
+      ChatMessageEntity saved = result.entity();
+      clientMessageIdCache.remember(normalizedFrom, saved.getClientMessageId(), saved.getId(), saved.getToUsername(), saved.getCreatedAt());
+      if (!result.created()) {
+        ackRetransmit(normalizedFrom, normalizedTo, tempId, saved.getToUsername(), saved.getId(), saved.getCreatedAt());
         return;
       }
+      deliverPersistedMessage(saved, normalizedFrom, normalizedTo, tempId);
+    });
+  }
+
+  /**
+   * Replays a reconnecting client's outbox in one frame. The sender is checked once and each recipient once;
+   * new rows go through {@link ChatMessageWriter#persistAll} as a single batch, every tempId gets its entry in
+   * one {@link SendBatchAck}, and each recipient receives one coalesced push.
+   */
+  @MessageMapping("/chat.sendBatch")
+  public void sendBatch(ChatMessageBatch payload, Principal principal) {
+    if (principal == null || payload == null || payload.messages() == null || payload.messages().isEmpty()) {
+      return;
+    }
+    String normalizedFrom = normalizeUsername(principal.getName());
+    if (normalizedFrom.isBlank()) {
+      return;
+    }
+    List<ChatMessage> messages = payload.messages();
+    SendAck[] acks = new SendAck[messages.size()];
+    if (messages.size() > maxSendBatchSize) {
+      rejectBatch(normalizedFrom, messages, acks);
+      messagingTemplate.convertAndSendToUser(normalizedFrom, "/queue/errors", Map.of(
+          "type", "invalid_message",
+          "message", "A batch can hold at most " + maxSendBatchSize + " messages"));
+      return;
+    }
+    if (!senderHasChatRole(principal, normalizedFrom)) {
+      rejectBatch(normalizedFrom, messages, acks);
+      messagingTemplate.convertAndSendToUser(normalizedFrom, "/queue/errors", Map.of(
+          "type", "forbidden",
+          "message", "Chat access is allowed only for chat role users"));
+      return;
+    }
+
+    Map<String, Boolean> allowedRecipients = new HashMap<>();
+    Map<String, Integer> firstIndexByTempId = new HashMap<>();
+    List<Integer> pendingIndexes = new ArrayList<>();
+    List<ChatMessageEntity> pending = new ArrayList<>();
+    boolean forbiddenRecipient = false;
+    boolean conflict = false;
+    for (int i = 0; i < messages.size(); i += 1) {
+      ChatMessage message = messages.get(i);
+      String tempId = message != null ? message.tempId() : null;
+      String normalizedText = message != null && message.message() != null ? message.message().trim() : "";
+      String normalizedTo = message != null ? normalizeUsername(message.toUsername()) : "";
+      if (normalizedText.isBlank() || normalizedTo.isBlank()) {
+        acks[i] = new SendAck(tempId, false, null, null);
+        continue;
+      }
+      if (!allowedRecipients.computeIfAbsent(normalizedTo, this::hasChatRole)) {
+        acks[i] = new SendAck(tempId, false, null, null);
+        forbiddenRecipient = true;
+        continue;
+      }
+      String normalizedTempId = normalizeClientMessageId(tempId);
+      AckedMessage acked = clientMessageIdCache.find(normalizedFrom, normalizedTempId);
+      if (acked != null) {
+        acks[i] = retransmitAck(normalizedTo, tempId, acked.toUsername(), acked.messageId(), acked.createdAt());
+        conflict |= !acks[i].success();
+        continue;
+      }
+      Integer firstIndex = normalizedTempId != null ? firstIndexByTempId.putIfAbsent(normalizedTempId, i) : null;
+      if (firstIndex != null) {
+        if (!sameMessage(messages.get(firstIndex), normalizedTo, normalizedText, message)) {
+          // Reused for a different message: a conflict, as when the tempId was acked in an earlier frame.
+          acks[i] = new SendAck(tempId, false, null, null);
+          conflict = true;
+        }
+        // Otherwise a plain duplicate, acked below with the first occurrence's result.
+        continue;
+      }
+      pendingIndexes.add(i);
+      pending.add(toEntity(message, normalizedFrom, normalizedTo, normalizedText, normalizedTempId, normalizeMessageType(message.type())));
     }
 
-    String normalizedType = normalizeMessageType(payload.type());
+    List<CompletableFuture<PersistedMessage>> results = chatMessageWriter.persistAll(pending);
+    Map<String, List<ChatMessageEntity>> createdByRecipient = new LinkedHashMap<>();
+    for (int p = 0; p < pending.size(); p += 1) {
+      int index = pendingIndexes.get(p);
+      String tempId = messages.get(index).tempId();
+      String normalizedTo = pending.get(p).getToUsername();
+      PersistedMessage result;
+      try {
+        result = results.get(p).join();
+      } catch (RuntimeException ex) {
+        acks[index] = new SendAck(tempId, false, null, null);
+        continue;
+      }
+      ChatMessageEntity saved = result.entity();
+      clientMessageIdCache.remember(normalizedFrom, saved.getClientMessageId(), saved.getId(), saved.getToUsername(), saved.getCreatedAt());
+      if (!result.created()) {
+        acks[index] = retransmitAck(normalizedTo, tempId, saved.getToUsername(), saved.getId(), saved.getCreatedAt());
+        conflict |= !acks[index].success();
+        continue;
+      }
+      acks[index] = new SendAck(tempId, true, saved.getId(), toEpochMillis(saved.getCreatedAt()));
+      createdByRecipient.computeIfAbsent(normalizedTo, ignored -> new ArrayList<>()).add(saved);
+    }
+    for (int i = 0; i < acks.length; i += 1) {
+      if (acks[i] == null) {
+        SendAck first = acks[firstIndexByTempId.get(normalizeClientMessageId(messages.get(i).tempId()))];
+        acks[i] = new SendAck(messages.get(i).tempId(), first.success(), first.messageId(), first.createdAt());
+      }
+    }
+
+    for (Map.Entry<String, List<ChatMessageEntity>> entry : createdByRecipient.entrySet()) {
+      String normalizedTo = entry.getKey();
+      List<ChatMessageEntity> created = entry.getValue();
+      submitSideEffects(normalizedFrom, normalizedTo, created);
+      recordContact(normalizedFrom, normalizedTo);
+      typingTracker.clear(normalizedFrom, normalizedTo);
+      for (ChatMessageEntity saved : created) {
+        chatMessageDelivery.deliver(normalizedTo, normalizedFrom, saved, toEpochMillis(saved.getCreatedAt()));
+      }
+    }
+    messagingTemplate.convertAndSendToUser(normalizedFrom, "/queue/send-batch-ack", new SendBatchAck(List.of(acks)));
+    if (forbiddenRecipient) {
+      messagingTemplate.convertAndSendToUser(normalizedFrom, "/queue/errors", Map.of(
+          "type", "forbidden",
+          "message", "Recipient is not allowed to use chat"));
+    }
+    if (conflict) {
+      sendRetransmitConflict(normalizedFrom);
+    }
+    for (Map.Entry<String, List<ChatMessageEntity>> entry : createdByRecipient.entrySet()) {
+      notifyRecipient(normalizedFrom, entry.getKey(), entry.getValue());
+    }
+  }
+
+  private boolean sameMessage(ChatMessage first, String normalizedTo, String normalizedText, ChatMessage other) {
+    return normalizedTo.equals(normalizeUsername(first.toUsername()))
+        && normalizedText.equals(first.message().trim())
+        && normalizeMessageType(first.type()).equals(normalizeMessageType(other.type()))
+        && Objects.equals(first.mediaUrl(), other.mediaUrl());
+  }
 
+  private void rejectBatch(String normalizedFrom, List<ChatMessage> messages, SendAck[] acks) {
+    for (int i = 0; i < messages.size(); i += 1) {
+      acks[i] = new SendAck(messages.get(i) != null ? messages.get(i).tempId() : null, false, null, null);
+    }
+    messagingTemplate.convertAndSendToUser(normalizedFrom, "/queue/send-batch-ack", new SendBatchAck(List.of(acks)));
+  }
+
+  private ChatMessageEntity toEntity(
+      ChatMessage payload,
+      String normalizedFrom,
+      String normalizedTo,
+      String normalizedText,
+      String normalizedTempId,
+      String normalizedType) {
     ChatMessageEntity entity = new ChatMessageEntity();
     entity.setFromUsername(normalizedFrom);
     entity.setToUsername(normalizedTo);
@@ -144,22 +353,81 @@ public class ChatWebSocketController {
     entity.setReplyMediaUrl(payload.replyingTo() != null ? payload.replyingTo().mediaUrl() : payload.replyMediaUrl());
     entity.setReplyMimeType(payload.replyingTo() != null ? payload.replyingTo().mimeType() : payload.replyMimeType());
     entity.setReplyFileName(payload.replyingTo() != null ? payload.replyingTo().fileName() : payload.replyFileName());
-    entity = chatMessageRepository.save(entity);
-    Instant receiverOfflineAt = isUserConnected(normalizedTo) && isPresenceAlive(normalizedTo, Instant.now().toEpochMilli())
-        ? null
-        : resolveOfflineTimestamp(normalizedTo);
-    chatCheckEventService.trackOutgoingMessage(normalizedFrom, normalizedTo, receiverOfflineAt);
-    try {
-      chatAnalyticsService.recordMessage(normalizedFrom, normalizedTo, normalizedType, entity.getCreatedAt());
-    } catch (Exception ignored) {
-      // Keep message delivery non-blocking if analytics write fails.
+    return entity;
+  }
+
+  private void ackRetransmit(
+      String normalizedFrom,
+      String normalizedTo,
+      String tempId,
+      String existingTo,
+      Long existingId,
+      Instant existingCreatedAt) {
+    SendAck ack = retransmitAck(normalizedTo, tempId, existingTo, existingId, existingCreatedAt);
+    if (!ack.success()) {
+      sendRetransmitConflict(normalizedFrom);
     }
+    sendAck(normalizedFrom, ack.tempId(), ack.success(), ack.messageId(), ack.createdAt());
+  }
+
+  private SendAck retransmitAck(
+      String normalizedTo,
+      String tempId,
+      String existingTo,
+      Long existingId,
+      Instant existingCreatedAt) {
+    if (!normalizedTo.equals(normalizeUsername(existingTo))) {
+      return new SendAck(tempId, false, null, null);
+    }
+    return new SendAck(tempId, true, existingId, toEpochMillis(existingCreatedAt));
+  }
+
+  private void sendRetransmitConflict(String normalizedFrom) {
+    messagingTemplate.convertAndSendToUser(normalizedFrom, "/queue/errors", Map.of(
+        "type", "invalid_message",
+        "message", "Message id conflict. Please retry sending."));
+  }
+
+  private void deliverPersistedMessage(
+      ChatMessageEntity entity,
+      String normalizedFrom,
+      String normalizedTo,
+      String tempId) {
+    submitSideEffects(normalizedFrom, normalizedTo, List.of(entity));
+    recordContact(normalizedFrom, normalizedTo);
+    typingTracker.clear(normalizedFrom, normalizedTo);
 
     long createdAtMillis = toEpochMillis(entity.getCreatedAt());
-    sendIncomingMessage(normalizedTo, normalizedFrom, entity, createdAtMillis);
-    sendAck(normalizedFrom, payload.tempId(), true, entity.getId(), createdAtMillis);
+    chatMessageDelivery.deliver(normalizedTo, normalizedFrom, entity, createdAtMillis);
+    sendAck(normalizedFrom, tempId, true, entity.getId(), createdAtMillis);
 
-    String preview = notificationPreview(entity.getMessage(), entity.getType(), entity.getFileName(), normalizedTo);
+    notifyRecipient(normalizedFrom, normalizedTo, List.of(entity));
+  }
+
+  private void submitSideEffects(String normalizedFrom, String normalizedTo, List<ChatMessageEntity> entities) {
+    boolean receiverOnline = (isUserConnected(normalizedTo) && isPresenceAlive(normalizedTo, Instant.now().toEpochMilli()))
+        || presenceStore.isOnlineElsewhere(normalizedTo);
+    Instant receiverOfflineAt = receiverOnline
+        ? null
+        : resolveOfflineTimestamp(normalizedTo);
+    chatSideEffectExecutor.submit(normalizedFrom, normalizedTo, () -> {
+      // The check event is per conversation, so one update covers every message in a batch.
+      chatCheckEventService.trackOutgoingMessage(normalizedFrom, normalizedTo, receiverOfflineAt);
+      for (ChatMessageEntity entity : entities) {
+        try {
+          chatAnalyticsService.recordMessage(normalizedFrom, normalizedTo, entity.getType(), entity.getCreatedAt());
+        } catch (Exception ignored) {
+          // Keep check-event tracking independent from analytics write failures.
+        }
+      }
+    });
+  }
+
+  private void notifyRecipient(String normalizedFrom, String normalizedTo, List<ChatMessageEntity> entities) {
+    ChatMessageEntity last = entities.get(entities.size() - 1);
+    String preview = entities.size() == 1
+        ? notificationPreview(last.getMessage(), last.getType(), last.getFileName(), normalizedTo)
+        : entities.size() + " new messages";
     notifyUserAsync(
         normalizedTo,
         "@" + normalizedFrom,
@@ -179,7 +447,7 @@ public class ChatWebSocketController {
     }
 
     String normalizedEditor = normalizeUsername(editor);
-    if (!hasChatRole(normalizedEditor)) {
+    if (!senderHasChatRole(principal, normalizedEditor)) {
       messagingTemplate.convertAndSendToUser(normalizedEditor, "/queue/edit-ack", new EditAck(payload.messageId(), false, "Chat access denied"));
       return;
     }
@@ -216,8 +484,7 @@ public class ChatWebSocketController {
         entity.getEditedAt() != null ? entity.getEditedAt().toEpochMilli() : Instant.now().toEpochMilli(),
         entity.getCreatedAt() != null ? entity.getCreatedAt().toEpochMilli() : Instant.now().toEpochMilli());
 
-    messagingTemplate.convertAndSendToUser(normalizedTo, "/queue/message-edits", event);
-    messagingTemplate.convertAndSendToUser(normalizedFrom, "/queue/message-edits", event);
+    stompFanOut.sendToUsers("/queue/message-edits", event, normalizedTo, normalizedFrom);
     messagingTemplate.convertAndSendToUser(normalizedFrom, "/queue/edit-ack", new EditAck(entity.getId(), true, null));
   }
 
@@ -234,7 +501,7 @@ public class ChatWebSocketController {
 
     String normalizedReader = normalizeUsername(reader);
     String normalizedPeer = normalizeUsername(payload.peerUsername());
-    if (!hasChatRole(normalizedReader) || !hasChatRole(normalizedPeer)) {
+    if (!senderHasChatRole(principal, normalizedReader) || !hasChatRole(normalizedPeer)) {
       messagingTemplate.convertAndSendToUser(normalizedReader, "/queue/errors", Map.of(
           "type", "forbidden",
           "message", "Chat access is allowed only for chat role users"));
@@ -283,7 +550,7 @@ public class ChatWebSocketController {
     }
 
     String normalizedReactor = normalizeUsername(reactor);
-    if (!hasChatRole(normalizedReactor)) {
+    if (!senderHasChatRole(principal, normalizedReactor)) {
       messagingTemplate.convertAndSendToUser(normalizedReactor, "/queue/errors", Map.of(
           "type", "forbidden",
           "message", "Chat access is allowed only for chat role users"));
@@ -310,8 +577,7 @@ public class ChatWebSocketController {
         normalizedReactor,
         Instant.now().toEpochMilli());
 
-    messagingTemplate.convertAndSendToUser(normalizedFrom, "/queue/message-reactions", event);
-    messagingTemplate.convertAndSendToUser(normalizedTo, "/queue/message-reactions", event);
+    stompFanOut.sendToUsers("/queue/message-reactions", event, normalizedFrom, normalizedTo);
   }
 
   @MessageMapping("/chat.delete")
@@ -326,7 +592,7 @@ public class ChatWebSocketController {
     }
 
     String normalizedRequester = normalizeUsername(requester);
-    if (!hasChatRole(normalizedRequester)) {
+    if (!senderHasChatRole(principal, normalizedRequester)) {
       messagingTemplate.convertAndSendToUser(
           normalizedRequester,
           "/queue/delete-ack",
@@ -355,42 +621,59 @@ public class ChatWebSocketController {
     }
 
     chatMessageRepository.delete(entity);
+    clientMessageIdCache.forget(normalizedFrom, entity.getClientMessageId());
 
     MessageDeletePayload event = new MessageDeletePayload(
         entity.getId(),
         normalizedFrom,
         normalizedTo,
         Instant.now().toEpochMilli());
-    messagingTemplate.convertAndSendToUser(normalizedFrom, "/queue/message-deletes", event);
-    messagingTemplate.convertAndSendToUser(normalizedTo, "/queue/message-deletes", event);
+    stompFanOut.sendToUsers("/queue/message-deletes", event, normalizedFrom, normalizedTo);
     messagingTemplate.convertAndSendToUser(
         normalizedFrom,
         "/queue/delete-ack",
         new DeleteAck(entity.getId(), true, null));
   }
 
+  /**
+   * Presence announcement and keep-alive. The first announcement of a STOMP session, or one from a user who
+   * had gone offline, marks the user online and runs the (re)connect sync: presence, read receipts and
+   * pending check notices. Any later call on the same session is a keep-alive that only moves the heartbeat
+   * deadline, with no database access and no outbound frames.
+   */
   @MessageMapping("/user.online")
-  public void userOnline(UserStatusMessage payload, Principal principal) {
+  public void userOnline(
+      UserStatusMessage payload,
+      Principal principal,
+      @Header(name = SimpMessageHeaderAccessor.SESSION_ID_HEADER, required = false) String sessionId) {
     String username = principal != null ? principal.getName() : (payload != null ? payload.username() : null);
     if (username == null || username.isBlank()) {
       return;
     }
     String normalized = normalizeUsername(username);
-    if (!hasChatRole(normalized)) {
+    if (!senderHasChatRole(principal, normalized)) {
       messagingTemplate.convertAndSendToUser(normalized, "/queue/errors", Map.of(
           "type", "forbidden",
           "message", "Chat access is allowed only for chat role users"));
       return;
     }
     long now = Instant.now().toEpochMilli();
-    boolean wasOnline = onlineUsers.contains(normalized) && isPresenceAlive(normalized, now);
-    onlineUsers.add(normalized);
+    boolean wasOnline = presenceStore.isOnlineHere(normalized) && isPresenceAlive(normalized, now);
     presenceHeartbeatMap.put(normalized, now);
-    lastSeenMap.remove(normalized);
-    if (!wasOnline) {
+    presenceExpiry.schedule(normalized, now + presenceTimeoutMs);
+    boolean firstAnnouncement = sessionId == null || announcedSessions.add(sessionId);
+    if (wasOnline && !firstAnnouncement) {
+      return;
+    }
+    presenceStore.markOnline(normalized);
+    if (!wasOnline && !presenceStore.isOnlineElsewhere(normalized)) {
       broadcastUserStatus(normalized, "online", null);
     }
-    syncOnlineUsersFor(normalized);
+    if (payload != null && payload.presenceVersion() != null) {
+      syncPresenceFor(normalized, payload.presenceVersion());
+    } else {
+      syncOnlineUsersFor(normalized);
+    }
     syncReadReceiptsFor(normalized);
     chatCheckEventService.pushPendingNoticesFor(normalized);
   }
@@ -402,7 +685,7 @@ public class ChatWebSocketController {
       return;
     }
     String normalized = normalizeUsername(username);
-    if (!hasChatRole(normalized)) {
+    if (!senderHasChatRole(principal, normalized)) {
       return;
     }
     markUserOffline(normalized, Instant.now().toEpochMilli());
@@ -420,7 +703,7 @@ public class ChatWebSocketController {
     }
     String normalizedFrom = normalizeUsername(fromUsername);
     String normalizedTo = normalizeUsername(payload.toUsername());
-    if (!hasChatRole(normalizedFrom) || !hasChatRole(normalizedTo)) {
+    if (!senderHasChatRole(principal, normalizedFrom) || !hasChatRole(normalizedTo)) {
       messagingTemplate.convertAndSendToUser(normalizedFrom, "/queue/errors", Map.of(
           "type", "forbidden",
           "message", "Chat access is allowed only for chat role users"));
@@ -428,6 +711,9 @@ public class ChatWebSocketController {
     }
 
     boolean typing = payload.typing() != null && payload.typing();
+    if (!typingTracker.update(normalizedFrom, normalizedTo, typing, Instant.now().toEpochMilli())) {
+      return;
+    }
     messagingTemplate.convertAndSendToUser(
         normalizedTo,
         "/queue/typing",
@@ -436,6 +722,7 @@ public class ChatWebSocketController {
 
   @EventListener
   public void onDisconnect(SessionDisconnectEvent event) {
+    announcedSessions.remove(event.getSessionId());
     Principal principal = event.getUser();
     if (principal == null) {
       return;
@@ -445,7 +732,7 @@ public class ChatWebSocketController {
     String normalized = normalizeUsername(username);
     String disconnectingSessionId = event.getSessionId();
     if (!normalized.isBlank()
-        && onlineUsers.contains(normalized)
+        && presenceStore.isOnlineHere(normalized)
         && !hasOtherActiveSessions(normalized, disconnectingSessionId)) {
       markUserOffline(normalized, Instant.now().toEpochMilli());
     }
@@ -456,8 +743,8 @@ public class ChatWebSocketController {
     SimpUser user = simpUserRegistry.getUser(normalizedUsername);
     boolean connected = user != null && !user.getSessions().isEmpty();
     if (!connected) {
-      onlineUsers.remove(normalizedUsername);
-      presenceHeartbeatMap.remove(normalizedUsername);
+      // The heartbeat deadline stays scheduled, so the next prune still records the offline transition.
+      presenceStore.markOffline(normalizedUsername);
     }
     return connected;
   }
@@ -472,18 +759,44 @@ public class ChatWebSocketController {
 
   private void markUserOffline(String normalizedUsername, long lastSeenAt) {
     if (normalizedUsername == null || normalizedUsername.isBlank()) return;
-    boolean wasOnline = onlineUsers.remove(normalizedUsername);
-    presenceHeartbeatMap.remove(normalizedUsername);
-    if (!wasOnline && lastSeenMap.containsKey(normalizedUsername)) {
+    boolean wasOnline = presenceStore.markOffline(normalizedUsername);
+    boolean hadHeartbeat = presenceHeartbeatMap.remove(normalizedUsername) != null;
+    presenceExpiry.cancel(normalizedUsername);
+    if (!wasOnline && !hadHeartbeat) {
       return;
     }
-    lastSeenMap.put(normalizedUsername, lastSeenAt);
+    if (presenceStore.isOnlineElsewhere(normalizedUsername)) {
+      // Still connected through another node, which records the transition. If it drops the user before
+      // seeing this node's, the store reports a departure instead (onPresenceDeparted).
+      presenceStore.deferOffline(normalizedUsername);
+      return;
+    }
+    lastSeenStore.record(normalizedUsername, lastSeenAt);
     chatCheckEventService.markUserOffline(normalizedUsername, Instant.ofEpochMilli(lastSeenAt));
     broadcastUserStatus(normalizedUsername, "offline", lastSeenAt);
   }
 
+  /**
+   * Records and announces users that left the cluster while no node saw their last session close as the
+   * transition to offline: sessions on two nodes closing within one presence sync, or a crashed node being
+   * reaped. Only the node whose store noticed it receives the event, so the announcement goes to contacts on
+   * every node. The last-seen time is when the departure was noticed, at most one sync (or one lease, after a
+   * crash) late.
+   */
+  @EventListener
+  public void onPresenceDeparted(PresenceDepartedEvent event) {
+    for (String username : event.usernames()) {
+      if (presenceStore.isOnlineHere(username) || presenceStore.isOnlineElsewhere(username)) {
+        continue;
+      }
+      lastSeenStore.record(username, event.detectedAt());
+      chatCheckEventService.markUserOffline(username, Instant.ofEpochMilli(event.detectedAt()));
+      broadcastUserStatus(username, "offline", event.detectedAt());
+    }
+  }
+
   private Instant resolveOfflineTimestamp(String normalizedUsername) {
-    Long lastSeenAt = lastSeenMap.get(normalizedUsername);
+    Long lastSeenAt = lastSeenStore.lastSeenAt(normalizedUsername);
     if (lastSeenAt != null && lastSeenAt > 0) {
       return Instant.ofEpochMilli(lastSeenAt);
     }
@@ -504,42 +817,118 @@ public class ChatWebSocketController {
     return false;
   }
 
+  /**
+   * Publishes a presence transition to the user's online contacts only, on their {@code /queue/user-status},
+   * serialized once for all of them. Contacts online on another node are included: each copy is a plain user
+   * destination, which {@link ClusterRouter} relays to the node holding that contact.
+   */
   private void broadcastUserStatus(String username, String status, Long lastSeenAt) {
-    messagingTemplate.convertAndSend("/topic/user-status", new UserStatusPayload(username, status, lastSeenAt));
+    String version = presenceLog.token(presenceLog.append(username, status, lastSeenAt));
+    String[] recipients = contactIndex.contactsOf(username).stream()
+        .filter(contact -> presenceStore.isOnlineHere(contact) || presenceStore.isOnlineElsewhere(contact))
+        .toArray(String[]::new);
+    stompFanOut.sendToUsers("/queue/user-status", new UserStatusPayload(username, status, lastSeenAt, version), recipients);
   }
 
-  private void syncOnlineUsersFor(String username) {
+  private void recordContact(String normalizedFrom, String normalizedTo) {
+    if (!contactIndex.recordPair(normalizedFrom, normalizedTo)) {
+      return;
+    }
+    // First message between them: neither has been sent the other's presence yet.
     long now = Instant.now().toEpochMilli();
-    for (String onlineUsername : Set.copyOf(onlineUsers)) {
-      if (isUserConnected(onlineUsername) && isPresenceAlive(onlineUsername, now)) {
-        messagingTemplate.convertAndSendToUser(
-            username,
-            "/queue/user-status",
-            new UserStatusPayload(onlineUsername, "online", null));
-        continue;
-      }
-      markUserOffline(onlineUsername, now);
+    sendCurrentStatus(normalizedTo, normalizedFrom, now);
+    sendCurrentStatus(normalizedFrom, normalizedTo, now);
+  }
+
+  private void sendCurrentStatus(String recipient, String subject, long now) {
+    UserStatusPayload status = presenceStore.isOnlineHere(recipient) || presenceStore.isOnlineElsewhere(recipient)
+        ? currentStatusOf(subject, now)
+        : null;
+    if (status != null) {
+      messagingTemplate.convertAndSendToUser(recipient, "/queue/user-status", status);
     }
+  }
+
+  private UserStatusPayload currentStatusOf(String username, long now) {
+    if ((presenceStore.isOnlineHere(username) && isPresenceAlive(username, now))
+        || presenceStore.isOnlineElsewhere(username)) {
+      return new UserStatusPayload(username, "online", null, null);
+    }
+    Long lastSeenAt = lastSeenStore.lastSeenAt(username);
+    return lastSeenAt != null ? new UserStatusPayload(username, "offline", lastSeenAt, null) : null;
+  }
 
-    for (Map.Entry<String, Long> entry : lastSeenMap.entrySet()) {
+  /**
+   * Versioned presence sync: nothing when the client is current, the coalesced transitions since its version
+   * when this node's log can answer for them (see {@link PresenceLog}), otherwise one snapshot. Both cover the
+   * user's contacts only. A blank or unknown version asks for the snapshot.
+   */
+  private void syncPresenceFor(String username, String sinceVersion) {
+    Delta delta = presenceLog.changesSince(sinceVersion);
+    if (delta != null && delta.changes().isEmpty()) {
+      return;
+    }
+    Set<String> contacts = contactIndex.contactsOf(username);
+    if (delta != null) {
+      List<UserStatusPayload> statuses = new ArrayList<>();
+      for (PresenceChange change : delta.changes()) {
+        if (contacts.contains(change.username())) {
+          statuses.add(new UserStatusPayload(
+              change.username(), change.status(), change.lastSeenAt(), presenceLog.token(change.version())));
+        }
+      }
       messagingTemplate.convertAndSendToUser(
-          username,
-          "/queue/user-status",
-          new UserStatusPayload(entry.getKey(), "offline", entry.getValue()));
+          username, "/queue/presence", new PresenceSync(false, presenceLog.token(delta.version()), statuses));
+      return;
+    }
+
+    // Read the version first: a transition racing with the copy is then replayed by the next delta, and
+    // replaying a state assignment is harmless.
+    String version = presenceLog.token(presenceLog.currentVersion());
+    long now = Instant.now().toEpochMilli();
+    List<UserStatusPayload> statuses = new ArrayList<>();
+    for (String contact : contacts) {
+      UserStatusPayload status = currentStatusOf(contact, now);
+      if (status != null) {
+        statuses.add(status);
+      }
+    }
+    messagingTemplate.convertAndSendToUser(username, "/queue/presence", new PresenceSync(true, version, statuses));
+  }
+
+  private void syncOnlineUsersFor(String username) {
+    long now = Instant.now().toEpochMilli();
+    for (String contact : contactIndex.contactsOf(username)) {
+      sendCurrentStatus(username, contact, now);
     }
   }
 
+  /**
+   * Expires users whose heartbeat deadline has passed. Only the timing-wheel slots that came due are visited,
+   * so a tick costs in proportion to the users expiring rather than to everyone online; sessions that close
+   * cleanly are already handled by {@link #onDisconnect}.
+   */
   @Scheduled(fixedDelayString = "${app.chat.presence-prune-ms:20000}")
   public void pruneStalePresence() {
     long now = Instant.now().toEpochMilli();
-    for (String username : Set.copyOf(onlineUsers)) {
+    for (String username : presenceExpiry.advance(now)) {
       if (isUserConnected(username) && isPresenceAlive(username, now)) {
+        // A heartbeat landed between the wheel reading the deadline and this check.
+        presenceExpiry.schedule(username, presenceHeartbeatMap.getOrDefault(username, now) + presenceTimeoutMs);
         continue;
       }
       markUserOffline(username, now);
     }
   }
 
+  /** Sends the {@code typing=false} owed for every sender that went quiet without sending one. */
+  @Scheduled(fixedDelayString = "${app.chat.typing.sweep-ms:1000}")
+  public void expireTyping() {
+    for (TypingPair pair : typingTracker.expire(Instant.now().toEpochMilli())) {
+      messagingTemplate.convertAndSendToUser(pair.to(), "/queue/typing", new TypingPayload(pair.from(), false));
+    }
+  }
+
   private void syncReadReceiptsFor(String username) {
     for (ChatReadReceiptEntity receipt : chatReadReceiptRepository.findByPeerUsername(username)) {
       messagingTemplate.convertAndSendToUser(
@@ -552,59 +941,6 @@ public class ChatWebSocketController {
     }
   }
 
-  private ReplyPreview buildReplyPreview(
-      String replyText,
-      String replySenderName,
-      Long replyMessageId,
-      String replyType,
-      String replyMediaUrl,
-      String replyMimeType,
-      String replyFileName) {
-    if ((replyText == null || replyText.isBlank())
-        && replyMessageId == null
-        && (replyType == null || replyType.isBlank())
-        && (replyMediaUrl == null || replyMediaUrl.isBlank())
-        && (replyFileName == null || replyFileName.isBlank())) {
-      return null;
-    }
-    return new ReplyPreview(replyText, replySenderName, replyMessageId, replyType, replyMediaUrl, replyMimeType, replyFileName);
-  }
-
-  private void sendIncomingMessage(String normalizedTo, String normalizedFrom, ChatMessageEntity entity, long createdAtMillis) {
-    messagingTemplate.convertAndSendToUser(
-        normalizedTo,
-        "/queue/messages",
-        new IncomingMessage(
-            entity.getId(),
-            entity.getClientMessageId(),
-            normalizedFrom,
-            entity.getMessage(),
-            entity.getType(),
-            entity.getFileName(),
-            entity.getMediaUrl(),
-            entity.getMimeType(),
-            entity.getReaction(),
-            buildReplyPreview(
-                entity.getReplyText(),
-                entity.getReplySenderName(),
-                entity.getReplyMessageId(),
-                entity.getReplyType(),
-                entity.getReplyMediaUrl(),
-                entity.getReplyMimeType(),
-                entity.getReplyFileName()),
-            entity.getReplyText(),
-            entity.getReplySenderName(),
-            entity.getReplyMessageId(),
-            entity.getReplyType(),
-            entity.getReplyMediaUrl(),
-            entity.getReplyMimeType(),
-            entity.getReplyFileName(),
-            createdAtMillis,
-            entity.isEdited(),
-            entity.getEditedAt() != null ? entity.getEditedAt().toEpochMilli() : null,
-            entity.getMediaType()));
-  }
-
   private void sendAck(String normalizedFrom, String tempId, boolean success, Long messageId, Long createdAt) {
     if (normalizedFrom == null || normalizedFrom.isBlank()) {
       return;
@@ -629,7 +965,7 @@ public class ChatWebSocketController {
     return value != null ? value.toEpochMilli() : Instant.now().toEpochMilli();
   }
 
-  private String normalizeUsername(String username) {
+  static String normalizeUsername(String username) {
     return username == null ? "" : username.trim().toLowerCase();
   }
 
@@ -651,7 +987,7 @@ public class ChatWebSocketController {
     return normalized;
   }
 
-  private String messagePreview(String text, String type, String fileName) {
+  private static String messagePreview(String text, String type, String fileName) {
     if (isSecretTapType(type)) return "";
     if ("image".equalsIgnoreCase(type)) return "Sent an image";
     if ("video".equalsIgnoreCase(type)) return "Sent a video";
@@ -662,7 +998,7 @@ public class ChatWebSocketController {
     return text != null ? text : "New message";
   }
 
-  private String notificationPreview(String text, String type, String fileName, String toUsername) {
+  static String notificationPreview(String text, String type, String fileName, String toUsername) {
     if (isSecretTapType(type)) {
       return TONY_USERNAME.equalsIgnoreCase(normalizeUsername(toUsername))
           ? (text != null && !text.isBlank() ? text : "New message")
@@ -679,7 +1015,7 @@ public class ChatWebSocketController {
     return trimmed;
   }
 
-  private String resolveMediaType(String mediaType, String type, String mimeType) {
+  static String resolveMediaType(String mediaType, String type, String mimeType) {
     String normalizedType = normalizeUsername(type);
     if (normalizedType.isBlank()
         || "text".equals(normalizedType)
@@ -703,31 +1039,22 @@ public class ChatWebSocketController {
       return normalizedMediaType;
     }
 
-    String normalizedMimeType = normalizeUsername(mimeType);
-    if (normalizedMimeType.startsWith("image/")) return "image";
-    if (normalizedMimeType.startsWith("video/")) return "video";
-    if (normalizedMimeType.startsWith("audio/")) return "voice";
-    return null;
+    return MediaTypeDetector.mediaKind(mimeType);
   }
 
   private boolean hasChatRole(String username) {
-    String normalized = normalizeUsername(username);
-    if (normalized.isBlank()) return false;
+    return userDirectory.hasChatRole(username);
+  }
 
-    long now = Instant.now().toEpochMilli();
-    CachedChatRole cachedRole = chatRoleCache.get(normalized);
-    if (cachedRole != null && (now - cachedRole.checkedAt()) <= CHAT_ROLE_CACHE_TTL_MILLIS) {
-      return cachedRole.hasChatRole();
+  // The sender's role was resolved at CONNECT and rides on the session principal.
+  private boolean senderHasChatRole(Principal principal, String normalizedUsername) {
+    if (principal instanceof StompPrincipal stompPrincipal && normalizedUsername.equals(stompPrincipal.getName())) {
+      return stompPrincipal.hasChatRole();
     }
-
-    boolean hasChatRole = userRepository.findByUsername(normalized)
-        .map(user -> "chat".equalsIgnoreCase(user.getRole()))
-        .orElse(false);
-    chatRoleCache.put(normalized, new CachedChatRole(hasChatRole, now));
-    return hasChatRole;
+    return hasChatRole(normalizedUsername);
   }
 
-  private boolean isSecretTapType(String type) {
+  private static boolean isSecretTapType(String type) {
     return SECRET_TAP_TYPE.equalsIgnoreCase(normalizeUsername(type));
   }
 
@@ -782,9 +1109,16 @@ public class ChatWebSocketController {
       String mimeType,
       String fileName) {}
 
-  public record UserStatusMessage(String username) {}
+  /**
+   * {@code presenceVersion} is the last presence version token the client applied (blank when it has none).
+   * Clients that leave it out get the legacy one-frame-per-user sync, on a session's first announcement and
+   * after going offline only; keep-alives send nothing back either way.
+   */
+  public record UserStatusMessage(String username, String presenceVersion) {}
+
+  public record UserStatusPayload(String username, String status, Long lastSeenAt, String version) {}
 
-  public record UserStatusPayload(String username, String status, Long lastSeenAt) {}
+  public record PresenceSync(boolean snapshot, String version, List<UserStatusPayload> statuses) {}
 
   public record TypingMessage(String toUsername, String fromUsername, Boolean typing) {}
 
@@ -792,6 +1126,10 @@ public class ChatWebSocketController {
 
   public record SendAck(String tempId, boolean success, Long messageId, Long createdAt) {}
 
+  public record ChatMessageBatch(List<ChatMessage> messages) {}
+
+  public record SendBatchAck(List<SendAck> acks) {}
+
   public record EditMessage(Long messageId, String message, String fromUsername) {}
 
   public record MessageEditPayload(Long messageId, String fromUsername, String message, boolean edited, Long editedAt,
@@ -813,5 +1151,4 @@ public class ChatWebSocketController {
 
   public record DeleteAck(Long messageId, boolean success, String reason) {}
 
-  private record CachedChatRole(boolean hasChatRole, long checkedAt) {}
 }
@@ -0,0 +1,356 @@
+package com.game.app.websocket;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import com.game.app.service.ClusterNode;
+import com.game.app.service.PresenceStore;
+import com.game.app.service.RuntimeMetricsSource;
+import com.game.app.service.UserChangedEvent;
+import com.game.app.service.UserDirectory;
+import com.game.app.websocket.ClusterTransport.RelayBatch;
+import com.game.app.websocket.ClusterTransport.RelayedMessage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Lets the simple broker serve users connected to other nodes. Sits on the broker channel and copies
+ * already-encoded messages to the {@link ClusterTransport}: every {@code /topic/**} message, and a
+ * {@code /user/{name}/**} message only when the presence store says that user is online on another node (so
+ * user routing needs {@code app.chat.presence.store=jdbc}). Messages addressed to one session stay local;
+ * code that delivers per session hands the router one copy for the other nodes through {@link #relayToUser}.
+ *
+ * <p>Copies are queued and a flusher thread sends them in batches of up to {@code max-batch-size}, lingering
+ * up to {@code flush-ms} for more. A full queue or a failed batch drops messages; clients recover them from
+ * chat history. Batches from other nodes are sent into the local broker marked with {@link #ORIGIN_HEADER} so
+ * they are never relayed again. Nothing is queued or started while the transport has no peers.
+ *
+ * <p>The same batches carry {@link UserChangedEvent}s to every other node as {@link #USER_CHANGED_DESTINATION}
+ * messages, which are applied to the local {@link UserDirectory} instead of the broker, so a role change
+ * reaches cached lookups and open sessions everywhere. A dropped one leaves peers on the old role until the
+ * cache TTL and the session role refresh catch up.
+ */
+@Component
+public class ClusterRouter implements ChannelInterceptor, RuntimeMetricsSource {
+
+  static final String ORIGIN_HEADER = "clusterOrigin";
+  static final String USER_CHANGED_DESTINATION = "/cluster/user-changed";
+
+  private static final Logger logger = LoggerFactory.getLogger(ClusterRouter.class);
+  private static final long IDLE_POLL_MILLIS = 250L;
+  private static final long SHUTDOWN_WAIT_MILLIS = 5000L;
+  private static final String USER_PREFIX = "/user/";
+  private static final String TOPIC_PREFIX = "/topic/";
+  private static final MessageHeaders JSON_HEADERS =
+      new MessageHeaders(Map.of(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON));
+
+  private final ClusterTransport transport;
+  private final PresenceStore presenceStore;
+  private final UserDirectory userDirectory;
+  private final String nodeId;
+  private final Supplier<SimpMessagingTemplate> messagingTemplate;
+  private final int maxBatchSize;
+  private final long lingerNanos;
+  private final BlockingQueue<RelayedMessage> queue;
+  private volatile boolean running;
+  private Thread flusher;
+  private final LongAdder relayedUser = new LongAdder();
+  private final LongAdder relayedTopic = new LongAdder();
+  private final LongAdder relayedUserChanges = new LongAdder();
+  private final LongAdder appliedUserChanges = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final LongAdder batches = new LongAdder();
+  private final LongAdder failedBatches = new LongAdder();
+  private final Map<String, LongAdder> receivedByNode = new ConcurrentHashMap<>();
+
+  @Autowired
+  public ClusterRouter(
+      ClusterTransport transport,
+      PresenceStore presenceStore,
+      UserDirectory userDirectory,
+      ClusterNode clusterNode,
+      // Lazy: the broker template is built from the same configuration this interceptor is registered in.
+      ObjectProvider<SimpMessagingTemplate> messagingTemplate,
+      @Value("${app.cluster.relay.max-batch-size:256}") int maxBatchSize,
+      @Value("${app.cluster.relay.flush-ms:10}") long flushMs,
+      @Value("${app.cluster.relay.queue-capacity:10000}") int queueCapacity) {
+    this(transport, presenceStore, userDirectory, clusterNode, messagingTemplate::getObject, maxBatchSize, flushMs,
+        queueCapacity);
+  }
+
+  ClusterRouter(
+      ClusterTransport transport,
+      PresenceStore presenceStore,
+      UserDirectory userDirectory,
+      ClusterNode clusterNode,
+      Supplier<SimpMessagingTemplate> messagingTemplate,
+      int maxBatchSize,
+      long flushMs,
+      int queueCapacity) {
+    this.transport = transport;
+    this.presenceStore = presenceStore;
+    this.userDirectory = userDirectory;
+    this.nodeId = clusterNode.id();
+    this.messagingTemplate = messagingTemplate;
+    this.maxBatchSize = Math.max(1, maxBatchSize);
+    this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, flushMs));
+    this.queue = new ArrayBlockingQueue<>(Math.max(this.maxBatchSize, queueCapacity));
+    transport.onReceive(this::deliverLocally);
+  }
+
+  @PostConstruct
+  public void start() {
+    if (running || !transport.hasPeers()) {
+      return;
+    }
+    running = true;
+    flusher = new Thread(this::runFlusher, "cluster-relay");
+    flusher.setDaemon(true);
+    flusher.start();
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    try {
+      flusher.join(SHUTDOWN_WAIT_MILLIS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+    if (!transport.hasPeers() || !(message.getPayload() instanceof byte[] payload)) {
+      return message;
+    }
+    MessageHeaders headers = message.getHeaders();
+    SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+    if ((type != null && type != SimpMessageType.MESSAGE)
+        || headers.containsKey(ORIGIN_HEADER)
+        || SimpMessageHeaderAccessor.getSessionId(headers) != null) {
+      return message;
+    }
+    String destination = SimpMessageHeaderAccessor.getDestination(headers);
+    if (destination == null) {
+      return message;
+    }
+    LongAdder counter;
+    if (destination.startsWith(TOPIC_PREFIX)) {
+      counter = relayedTopic;
+    } else if (destination.startsWith(USER_PREFIX) && presenceStore.isOnlineElsewhere(userOf(destination))) {
+      counter = relayedUser;
+    } else {
+      return message;
+    }
+    Object contentType = headers.get(MessageHeaders.CONTENT_TYPE);
+    enqueue(new RelayedMessage(destination, contentType != null ? contentType.toString() : null, payload), counter);
+    return message;
+  }
+
+  /**
+   * Relays {@code payload} to {@code /user/{username}{destination}} on the other nodes only, when the user is
+   * online on one. For deliveries this node addresses to its own sessions one by one, which {@link #preSend}
+   * keeps local: the user's sessions elsewhere get this single copy.
+   */
+  void relayToUser(String username, String destination, Object payload) {
+    if (!transport.hasPeers() || !presenceStore.isOnlineElsewhere(username)) {
+      return;
+    }
+    byte[] body = encode(payload);
+    if (body == null) {
+      logger.warn("Cannot relay {} to {}: payload did not encode to a byte[]", payload.getClass().getName(), username);
+      return;
+    }
+    // Same escaping SimpMessagingTemplate.convertAndSendToUser applies to the user segment.
+    String userDestination = USER_PREFIX + username.replace("/", "%2F") + destination;
+    enqueue(new RelayedMessage(userDestination, MimeTypeUtils.APPLICATION_JSON_VALUE, body), relayedUser);
+  }
+
+  @EventListener
+  public void onUserChanged(UserChangedEvent event) {
+    if (event.fromPeer() || !transport.hasPeers()) {
+      return;
+    }
+    byte[] body = encode(new UserChange(event.userId(), event.username()));
+    if (body == null) {
+      logger.warn("Cannot relay the change of user {}: payload did not encode to a byte[]", event.userId());
+      return;
+    }
+    enqueue(new RelayedMessage(USER_CHANGED_DESTINATION, MimeTypeUtils.APPLICATION_JSON_VALUE, body), relayedUserChanges);
+  }
+
+  private byte[] encode(Object payload) {
+    Message<?> encoded = messagingTemplate.get().getMessageConverter().toMessage(payload, JSON_HEADERS);
+    return encoded != null && encoded.getPayload() instanceof byte[] body ? body : null;
+  }
+
+  private void enqueue(RelayedMessage relayed, LongAdder counter) {
+    if (queue.offer(relayed)) {
+      counter.increment();
+    } else {
+      dropped.increment();
+    }
+  }
+
+  /** Sends everything queued so far as one or more batches on the calling thread. */
+  void flushNow() {
+    List<RelayedMessage> batch = new ArrayList<>(maxBatchSize);
+    while (queue.drainTo(batch, maxBatchSize) > 0) {
+      publish(batch);
+      batch.clear();
+    }
+  }
+
+  void deliverLocally(RelayBatch batch) {
+    receivedByNode.computeIfAbsent(batch.originNode(), node -> new LongAdder()).add(batch.messages().size());
+    SimpMessagingTemplate template = messagingTemplate.get();
+    for (RelayedMessage relayed : batch.messages()) {
+      if (USER_CHANGED_DESTINATION.equals(relayed.destination())) {
+        applyUserChange(relayed, batch.originNode());
+        continue;
+      }
+      SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+      if (relayed.contentType() != null) {
+        accessor.setContentType(MimeType.valueOf(relayed.contentType()));
+      }
+      accessor.setHeader(ORIGIN_HEADER, batch.originNode());
+      accessor.setLeaveMutable(true);
+      try {
+        template.send(relayed.destination(), MessageBuilder.createMessage(relayed.payload(), accessor.getMessageHeaders()));
+      } catch (RuntimeException ex) {
+        logger.warn("Relayed message to {} from node {} not delivered: {}",
+            relayed.destination(), batch.originNode(), ex.getMessage());
+      }
+    }
+  }
+
+  private void applyUserChange(RelayedMessage relayed, String originNode) {
+    try {
+      Object decoded = messagingTemplate.get().getMessageConverter()
+          .fromMessage(MessageBuilder.createMessage(relayed.payload(), JSON_HEADERS), UserChange.class);
+      if (decoded instanceof UserChange change) {
+        userDirectory.invalidateFromPeer(change.userId(), change.username());
+        appliedUserChanges.increment();
+      }
+    } catch (RuntimeException ex) {
+      logger.warn("User change relayed from node {} not applied: {}", originNode, ex.getMessage());
+    }
+  }
+
+  private void runFlusher() {
+    List<RelayedMessage> batch = new ArrayList<>(maxBatchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        RelayedMessage first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < maxBatchSize) {
+          queue.drainTo(batch, maxBatchSize - batch.size());
+          long remaining = deadline - System.nanoTime();
+          if (batch.size() >= maxBatchSize || remaining <= 0) {
+            break;
+          }
+          RelayedMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+        }
+        publish(batch);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        publish(batch);
+        return;
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void publish(List<RelayedMessage> messages) {
+    if (messages.isEmpty()) {
+      return;
+    }
+    try {
+      transport.publish(new RelayBatch(nodeId, List.copyOf(messages)));
+      batches.increment();
+    } catch (RuntimeException ex) {
+      failedBatches.increment();
+      dropped.add(messages.size());
+      logger.warn("Cluster relay batch of {} messages not delivered: {}", messages.size(), ex.getMessage());
+    }
+  }
+
+  private static String userOf(String destination) {
+    int end = destination.indexOf('/', USER_PREFIX.length());
+    String user = end < 0 ? destination.substring(USER_PREFIX.length()) : destination.substring(USER_PREFIX.length(), end);
+    // Undo the escaping SimpMessagingTemplate.convertAndSendToUser applies to the user segment.
+    return user.replace("%2F", "/").trim().toLowerCase(Locale.ROOT);
+  }
+
+  @Override
+  public String metricsName() {
+    return "clusterRouting";
+  }
+
+  @Override
+  public Map<String, Object> metricsSnapshot() {
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put("peers", transport.hasPeers());
+    snapshot.put("queued", queue.size());
+    snapshot.put("relayedUser", relayedUser.sum());
+    snapshot.put("relayedTopic", relayedTopic.sum());
+    snapshot.put("relayedUserChanges", relayedUserChanges.sum());
+    snapshot.put("appliedUserChanges", appliedUserChanges.sum());
+    snapshot.put("batches", batches.sum());
+    snapshot.put("failedBatches", failedBatches.sum());
+    snapshot.put("dropped", dropped.sum());
+    long received = 0;
+    for (LongAdder count : receivedByNode.values()) {
+      received += count.sum();
+    }
+    snapshot.put("received", received);
+    snapshot.put("receivedFromNodes", receivedByNode.size());
+    return snapshot;
+  }
+
+  /** What {@link #USER_CHANGED_DESTINATION} carries. */
+  record UserChange(Long userId, String username) {
+  }
+}
@@ -0,0 +1,30 @@
+package com.game.app.websocket;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Carries already-encoded broker messages between application nodes for {@link ClusterRouter}.
+ *
+ * <p>{@link LocalClusterTransport} ({@code app.cluster.transport=local}, the default) links transports inside
+ * one JVM; {@link HttpClusterTransport} ({@code app.cluster.transport=http}) posts batches to the configured
+ * peers. Delivery is best effort: a batch that cannot be handed to a peer is counted and dropped.
+ */
+public interface ClusterTransport {
+
+  /** Whether any other node can receive; the router relays nothing otherwise. */
+  boolean hasPeers();
+
+  /** Hands one batch to every other node; throws when it did not reach all of them. */
+  void publish(RelayBatch batch);
+
+  /** Sets the handler for batches arriving from other nodes. */
+  void onReceive(Consumer<RelayBatch> handler);
+
+  record RelayBatch(String originNode, List<RelayedMessage> messages) {
+  }
+
+  /** A broker message as relayed: its destination, content type (may be null) and the encoded body. */
+  record RelayedMessage(String destination, String contentType, byte[] payload) {
+  }
+}
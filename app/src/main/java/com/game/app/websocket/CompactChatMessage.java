@@ -0,0 +1,79 @@
+package com.game.app.websocket;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.game.app.model.ChatMessageEntity;
+
+/**
+ * {@link com.game.app.config.ChatSchema#V2} chat message: short keys, nulls omitted, and the reply preview
+ * carried once under {@code rp} instead of both nested and flattened. {@code e} is only present on edited
+ * messages. The same shape is used for live frames and conversation pages.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CompactChatMessage(
+    @JsonProperty("i") Long id,
+    @JsonProperty("c") String clientMessageId,
+    @JsonProperty("f") String fromUsername,
+    @JsonProperty("m") String message,
+    @JsonProperty("t") String type,
+    @JsonProperty("fn") String fileName,
+    @JsonProperty("u") String mediaUrl,
+    @JsonProperty("mt") String mimeType,
+    @JsonProperty("r") String reaction,
+    @JsonProperty("rp") Reply reply,
+    @JsonProperty("ts") Long createdAt,
+    @JsonProperty("e") Boolean edited,
+    @JsonProperty("et") Long editedAt,
+    @JsonProperty("md") String mediaType) {
+
+  public static CompactChatMessage of(ChatMessageEntity entity, String fromUsername, Long createdAtMillis) {
+    return new CompactChatMessage(
+        entity.getId(),
+        entity.getClientMessageId(),
+        fromUsername,
+        entity.getMessage(),
+        entity.getType(),
+        entity.getFileName(),
+        entity.getMediaUrl(),
+        entity.getMimeType(),
+        entity.getReaction(),
+        Reply.of(entity),
+        createdAtMillis,
+        entity.isEdited() ? Boolean.TRUE : null,
+        entity.getEditedAt() != null ? entity.getEditedAt().toEpochMilli() : null,
+        entity.getMediaType());
+  }
+
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public record Reply(
+      @JsonProperty("m") String text,
+      @JsonProperty("f") String senderName,
+      @JsonProperty("i") Long messageId,
+      @JsonProperty("t") String type,
+      @JsonProperty("u") String mediaUrl,
+      @JsonProperty("mt") String mimeType,
+      @JsonProperty("fn") String fileName) {
+
+    static Reply of(ChatMessageEntity entity) {
+      if (isBlank(entity.getReplyText())
+          && entity.getReplyMessageId() == null
+          && isBlank(entity.getReplyType())
+          && isBlank(entity.getReplyMediaUrl())
+          && isBlank(entity.getReplyFileName())) {
+        return null;
+      }
+      return new Reply(
+          entity.getReplyText(),
+          entity.getReplySenderName(),
+          entity.getReplyMessageId(),
+          entity.getReplyType(),
+          entity.getReplyMediaUrl(),
+          entity.getReplyMimeType(),
+          entity.getReplyFileName());
+    }
+
+    private static boolean isBlank(String value) {
+      return value == null || value.isBlank();
+    }
+  }
+}
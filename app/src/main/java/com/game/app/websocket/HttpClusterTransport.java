@@ -0,0 +1,154 @@
+package com.game.app.websocket;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.game.app.service.RuntimeMetricsSource;
+
+/**
+ * Posts each relay batch to every peer in {@code app.cluster.peers} (base URLs, comma-separated) at
+ * {@link #PATH}, in the {@link RelayBatchCodec} format, with the shared {@code app.cluster.secret} in
+ * {@link #SECRET_HEADER}. Peers are posted to in parallel and the call returns once all have answered or
+ * timed out, throwing when any of them did not take the batch. Incoming batches arrive through {@link #accept}.
+ */
+@Component
+@ConditionalOnProperty(name = "app.cluster.transport", havingValue = "http")
+public class HttpClusterTransport implements ClusterTransport, RuntimeMetricsSource {
+
+  public static final String PATH = "/internal/cluster/relay";
+  public static final String SECRET_HEADER = "X-Cluster-Secret";
+
+  private static final Logger logger = LoggerFactory.getLogger(HttpClusterTransport.class);
+
+  private final List<Peer> peers;
+  private final byte[] secret;
+  private final Duration timeout;
+  private final HttpClient httpClient;
+  private volatile Consumer<RelayBatch> handler = batch -> {};
+  private final LongAdder receivedBatches = new LongAdder();
+  private final LongAdder rejectedBatches = new LongAdder();
+
+  public HttpClusterTransport(
+      @Value("${app.cluster.peers:}") String peers,
+      @Value("${app.cluster.secret:}") String secret,
+      @Value("${app.cluster.http.timeout-ms:2000}") long timeoutMs) {
+    if (secret == null || secret.isBlank()) {
+      throw new IllegalStateException("app.cluster.secret must be set when app.cluster.transport=http");
+    }
+    this.peers = Arrays.stream(peers.split(","))
+        .map(String::trim)
+        .filter(value -> !value.isEmpty())
+        .map(value -> new Peer(value, URI.create(value.replaceAll("/+$", "") + PATH)))
+        .toList();
+    this.secret = secret.getBytes(StandardCharsets.UTF_8);
+    this.timeout = Duration.ofMillis(Math.max(100L, timeoutMs));
+    this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+  }
+
+  @Override
+  public boolean hasPeers() {
+    return !peers.isEmpty();
+  }
+
+  @Override
+  public void publish(RelayBatch batch) {
+    byte[] body = RelayBatchCodec.encode(batch);
+    String secretValue = new String(secret, StandardCharsets.UTF_8);
+    List<CompletableFuture<Boolean>> sends = new ArrayList<>(peers.size());
+    for (Peer peer : peers) {
+      HttpRequest request = HttpRequest.newBuilder(peer.uri())
+          .timeout(timeout)
+          .header("Content-Type", "application/octet-stream")
+          .header(SECRET_HEADER, secretValue)
+          .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+          .build();
+      sends.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+          .handle((response, error) -> {
+            if (error == null && response.statusCode() / 100 == 2) {
+              peer.batches().increment();
+              peer.messages().add(batch.messages().size());
+              peer.bytes().add(body.length);
+              return true;
+            }
+            peer.failures().increment();
+            logger.warn("Relay batch to {} failed: {}", peer.baseUrl(),
+                error != null ? error.getMessage() : "HTTP " + response.statusCode());
+            return false;
+          }));
+    }
+    long failed = sends.stream().filter(send -> !send.join()).count();
+    if (failed > 0) {
+      throw new IllegalStateException("Relay batch not taken by " + failed + " of " + peers.size() + " peers");
+    }
+  }
+
+  @Override
+  public void onReceive(Consumer<RelayBatch> handler) {
+    this.handler = handler;
+  }
+
+  /** Hands an incoming batch to the router; returns false when the secret does not match. */
+  public boolean accept(String presentedSecret, byte[] body) {
+    byte[] presented = presentedSecret != null ? presentedSecret.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    if (!MessageDigest.isEqual(secret, presented)) {
+      rejectedBatches.increment();
+      return false;
+    }
+    RelayBatch batch = RelayBatchCodec.decode(body);
+    receivedBatches.increment();
+    handler.accept(batch);
+    return true;
+  }
+
+  @Override
+  public String metricsName() {
+    return "clusterTransport";
+  }
+
+  @Override
+  public Map<String, Object> metricsSnapshot() {
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put("transport", "http");
+    // Peers are numbered in configuration order rather than named: the URLs are internal addresses.
+    Map<String, Object> byPeer = new LinkedHashMap<>();
+    for (int index = 0; index < peers.size(); index += 1) {
+      Peer peer = peers.get(index);
+      Map<String, Object> counters = new LinkedHashMap<>();
+      counters.put("batches", peer.batches().sum());
+      counters.put("messages", peer.messages().sum());
+      counters.put("bytes", peer.bytes().sum());
+      counters.put("failures", peer.failures().sum());
+      byPeer.put("peer-" + (index + 1), counters);
+    }
+    snapshot.put("peers", byPeer);
+    snapshot.put("receivedBatches", receivedBatches.sum());
+    snapshot.put("rejectedBatches", rejectedBatches.sum());
+    return snapshot;
+  }
+
+  private record Peer(String baseUrl, URI uri, LongAdder batches, LongAdder messages, LongAdder bytes, LongAdder failures) {
+
+    Peer(String baseUrl, URI uri) {
+      this(baseUrl, uri, new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder());
+    }
+  }
+}
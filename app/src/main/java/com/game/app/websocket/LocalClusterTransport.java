@@ -0,0 +1,43 @@
+package com.game.app.websocket;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-process transport. On its own (a single-node deployment) it has no peers and nothing is relayed;
+ * {@link #connect} links transports in the same JVM so several routers can exchange batches directly.
+ */
+@Component
+@ConditionalOnProperty(name = "app.cluster.transport", havingValue = "local", matchIfMissing = true)
+public class LocalClusterTransport implements ClusterTransport {
+
+  private final List<LocalClusterTransport> peers = new CopyOnWriteArrayList<>();
+  private volatile Consumer<RelayBatch> handler = batch -> {};
+
+  /** Links the two transports both ways. */
+  public void connect(LocalClusterTransport other) {
+    peers.add(other);
+    other.peers.add(this);
+  }
+
+  @Override
+  public boolean hasPeers() {
+    return !peers.isEmpty();
+  }
+
+  @Override
+  public void publish(RelayBatch batch) {
+    for (LocalClusterTransport peer : peers) {
+      peer.handler.accept(batch);
+    }
+  }
+
+  @Override
+  public void onReceive(Consumer<RelayBatch> handler) {
+    this.handler = handler;
+  }
+}
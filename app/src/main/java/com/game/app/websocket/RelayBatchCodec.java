@@ -0,0 +1,76 @@
+package com.game.app.websocket;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.game.app.websocket.ClusterTransport.RelayBatch;
+import com.game.app.websocket.ClusterTransport.RelayedMessage;
+
+/**
+ * Binary wire format of a {@link RelayBatch}: a version byte, the origin node, the message count, then per
+ * message its destination, content type (empty for none) and length-prefixed body. Bodies are copied as-is,
+ * so JSON frames cross nodes without being re-encoded or base64-inflated.
+ */
+final class RelayBatchCodec {
+
+  private static final int VERSION = 1;
+
+  private RelayBatchCodec() {
+  }
+
+  static byte[] encode(RelayBatch batch) {
+    int size = 16;
+    for (RelayedMessage message : batch.messages()) {
+      size += message.payload().length + message.destination().length() + 32;
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(size);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(VERSION);
+      out.writeUTF(batch.originNode());
+      out.writeInt(batch.messages().size());
+      for (RelayedMessage message : batch.messages()) {
+        out.writeUTF(message.destination());
+        out.writeUTF(message.contentType() != null ? message.contentType() : "");
+        out.writeInt(message.payload().length);
+        out.write(message.payload());
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return bytes.toByteArray();
+  }
+
+  static RelayBatch decode(byte[] body) {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body))) {
+      int version = in.readUnsignedByte();
+      if (version != VERSION) {
+        throw new IllegalArgumentException("Unsupported relay batch version " + version);
+      }
+      String originNode = in.readUTF();
+      int count = in.readInt();
+      if (count < 0 || count > body.length) {
+        throw new IllegalArgumentException("Corrupt relay batch");
+      }
+      List<RelayedMessage> messages = new ArrayList<>(count);
+      for (int i = 0; i < count; i += 1) {
+        String destination = in.readUTF();
+        String contentType = in.readUTF();
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+          throw new IllegalArgumentException("Corrupt relay batch");
+        }
+        byte[] payload = in.readNBytes(length);
+        messages.add(new RelayedMessage(destination, contentType.isEmpty() ? null : contentType, payload));
+      }
+      return new RelayBatch(originNode, messages);
+    } catch (IOException ex) {
+      throw new IllegalArgumentException("Corrupt relay batch", ex);
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package com.game.app.websocket;
+
+import java.util.Map;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Sends one payload to several user destinations while serializing it only once.
+ *
+ * <p>The payload goes through the broker's configured message converter a single time; every destination then
+ * receives a message that shares the same encoded {@code byte[]}, so the JSON is never rebuilt per recipient.
+ */
+@Component
+public class StompFanOut {
+
+  private static final MessageHeaders JSON_HEADERS =
+      new MessageHeaders(Map.of(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON));
+
+  private final SimpMessagingTemplate messagingTemplate;
+
+  public StompFanOut(SimpMessagingTemplate messagingTemplate) {
+    this.messagingTemplate = messagingTemplate;
+  }
+
+  public void sendToUsers(String destination, Object payload, String... usernames) {
+    if (usernames.length == 0) {
+      return;
+    }
+    Message<byte[]> encoded = encode(payload);
+    String prefix = messagingTemplate.getUserDestinationPrefix();
+    for (String username : usernames) {
+      // Same escaping SimpMessagingTemplate.convertAndSendToUser applies to the user segment.
+      messagingTemplate.send(prefix + username.replace("/", "%2F") + destination, encoded);
+    }
+  }
+
+  Message<byte[]> encode(Object payload) {
+    Message<?> converted = messagingTemplate.getMessageConverter().toMessage(payload, JSON_HEADERS);
+    if (converted == null || !(converted.getPayload() instanceof byte[] body)) {
+      throw new MessageConversionException("Cannot encode " + payload.getClass().getName() + " to a byte[] frame");
+    }
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+    accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+    return MessageBuilder.createMessage(body, accessor.getMessageHeaders());
+  }
+}
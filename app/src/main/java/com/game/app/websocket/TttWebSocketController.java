@@ -345,7 +345,7 @@ public class TttWebSocketController {
     return size;
   }
 
-  private String getWinner(List<String> board, int size) {
+  static String getWinner(List<String> board, int size) {
     for (int row = 0; row < size; row += 1) {
       int start = row * size;
       String first = board.get(start);
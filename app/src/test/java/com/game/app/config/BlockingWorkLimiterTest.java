@@ -0,0 +1,81 @@
+package com.game.app.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlockingWorkLimiterTest {
+
+  @Test
+  void concurrentWorkIsCappedAtThePermits() throws Exception {
+    BlockingWorkLimiter limiter = new BlockingWorkLimiter(true, 3);
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger peak = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(20);
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 20; i += 1) {
+      Thread thread = new Thread(() -> {
+        if (limiter.acquire()) {
+          try {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(5);
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          } finally {
+            inFlight.decrementAndGet();
+            limiter.release();
+          }
+        }
+        done.countDown();
+      });
+      threads.add(thread);
+      thread.start();
+    }
+
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    assertTrue(peak.get() <= 3);
+    assertEquals(20L, limiter.metricsSnapshot().get("acquired"));
+    assertEquals(0, limiter.metricsSnapshot().get("inFlight"));
+  }
+
+  @Test
+  void onlySendFramesTakeAPermitAndHandlingReleasesIt() {
+    BlockingWorkLimiter limiter = new BlockingWorkLimiter(true, 1);
+    Message<byte[]> send = frame(SimpMessageType.MESSAGE);
+    Message<byte[]> subscribe = frame(SimpMessageType.SUBSCRIBE);
+
+    assertSame(send, limiter.beforeHandle(send, null, null));
+    assertSame(subscribe, limiter.beforeHandle(subscribe, null, null));
+    assertEquals(1, limiter.metricsSnapshot().get("inFlight"));
+    limiter.afterMessageHandled(subscribe, null, null, null);
+    assertEquals(1, limiter.metricsSnapshot().get("inFlight"));
+    limiter.afterMessageHandled(send, null, null, new IllegalStateException("handler failed"));
+    assertEquals(0, limiter.metricsSnapshot().get("inFlight"));
+  }
+
+  @Test
+  void platformThreadModeNeverWaits() {
+    BlockingWorkLimiter limiter = new BlockingWorkLimiter(false, 1);
+    for (int i = 0; i < 5; i += 1) {
+      assertTrue(limiter.acquire());
+    }
+    assertEquals(0L, limiter.metricsSnapshot().get("acquired"));
+  }
+
+  private static Message<byte[]> frame(SimpMessageType type) {
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+    return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+  }
+}
@@ -0,0 +1,167 @@
+package com.game.app.config;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.JacksonJsonMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import com.game.app.config.InboundAdmissionControl.FrameClass;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InboundAdmissionControlTest {
+
+  private static final long START = System.nanoTime();
+  private static final Principal ALICE = () -> "alice";
+
+  private final List<Message<?>> sent = new CopyOnWriteArrayList<>();
+
+  @Test
+  void destinationsMapToTheirFrameClass() {
+    assertEquals(FrameClass.TYPING, InboundAdmissionControl.classify("/app/chat.typing"));
+    assertEquals(FrameClass.MESSAGE, InboundAdmissionControl.classify("/app/chat.sendBatch"));
+    assertEquals(FrameClass.ACTION, InboundAdmissionControl.classify("/app/chat.react"));
+    assertEquals(FrameClass.PRESENCE, InboundAdmissionControl.classify("/app/user.online"));
+    assertEquals(FrameClass.GAME, InboundAdmissionControl.classify("/app/ttt.move"));
+    assertEquals(FrameClass.OTHER, InboundAdmissionControl.classify("/topic/anything"));
+  }
+
+  @Test
+  void burstIsAdmittedThenTheRefillRate() {
+    InboundAdmissionControl control = control();
+
+    for (int i = 0; i < 10; i += 1) {
+      assertTrue(control.admit(ALICE, "s1", "/app/chat.typing", null, START));
+    }
+    assertFalse(control.admit(ALICE, "s1", "/app/chat.typing", null, START));
+    // Other classes and other users have their own budgets.
+    assertTrue(control.admit(ALICE, "s1", "/app/chat.send", null, START));
+    assertTrue(control.admit(() -> "bob", "s2", "/app/chat.typing", null, START));
+
+    long oneToken = TimeUnit.MILLISECONDS.toNanos(200);
+    assertTrue(control.admit(ALICE, "s1", "/app/chat.typing", null, START + oneToken));
+    assertFalse(control.admit(ALICE, "s1", "/app/chat.typing", null, START + oneToken));
+  }
+
+  @Test
+  void throttledFramesAreCountedPerDestinationAndNotifiedOncePerSecond() {
+    InboundAdmissionControl control = control();
+    for (int i = 0; i < 100; i += 1) {
+      control.admit(ALICE, "s1", "/app/chat.typing", null, START);
+    }
+    // 1.1s later five tokens have refilled; the rest is throttled again and a second notice is due.
+    for (int i = 0; i < 10; i += 1) {
+      control.admit(ALICE, "s1", "/app/chat.typing", null, START + TimeUnit.MILLISECONDS.toNanos(1100));
+    }
+
+    assertEquals(2, sent.size());
+    assertEquals("/user/alice/queue/errors", SimpMessageHeaderAccessor.getDestination(sent.get(0).getHeaders()));
+    Map<String, Object> metrics = control.metricsSnapshot();
+    assertEquals(95L, metrics.get("throttled"));
+    assertEquals(Map.of("/app/chat.typing", 95L), metrics.get("throttledByDestination"));
+    assertEquals(2L, metrics.get("notices"));
+  }
+
+  @Test
+  void presenceIsBudgetedPerSession() {
+    InboundAdmissionControl control = control();
+
+    assertTrue(control.admit(ALICE, "s1", "/app/user.online", null, START));
+    assertTrue(control.admit(ALICE, "s1", "/app/user.online", null, START));
+    assertFalse(control.admit(ALICE, "s1", "/app/user.online", null, START));
+    // A second tab of the same user announces itself on its own budget.
+    assertTrue(control.admit(ALICE, "s2", "/app/user.online", null, START));
+  }
+
+  @Test
+  void aThrottledSendIsAckedAsFailedForItsTempId() {
+    InboundAdmissionControl control = control();
+    for (int i = 0; i < 40; i += 1) {
+      assertTrue(control.admit(ALICE, "s1", "/app/chat.send", null, START));
+    }
+
+    assertFalse(control.admit(ALICE, "s1", "/app/chat.send",
+        sendFrame("{\"toUsername\":\"bob\",\"tempId\":\"t-41\"}"), START));
+    assertFalse(control.admit(ALICE, "s1", "/app/chat.sendBatch",
+        sendFrame("{\"messages\":[{\"tempId\":\"t-42\"},{\"tempId\":\"t-43\"}]}"), START));
+
+    assertEquals(2, sent.size());
+    assertEquals("/user/alice/queue/send-ack", SimpMessageHeaderAccessor.getDestination(sent.get(0).getHeaders()));
+    assertTrue(body(sent.get(0)).contains("\"tempId\":\"t-41\""));
+    assertTrue(body(sent.get(0)).contains("\"success\":false"));
+    assertEquals("/user/alice/queue/send-batch-ack", SimpMessageHeaderAccessor.getDestination(sent.get(1).getHeaders()));
+    assertTrue(body(sent.get(1)).contains("\"t-43\""));
+    assertEquals(3L, control.metricsSnapshot().get("failedSendAcks"));
+    assertEquals(0L, control.metricsSnapshot().get("notices"));
+  }
+
+  @Test
+  void concurrentSendersCannotExceedTheBurst() throws Exception {
+    InboundAdmissionControl control = control();
+    AtomicInteger admitted = new AtomicInteger();
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t += 1) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 1000; i += 1) {
+          if (control.admit(ALICE, "s1", "/app/chat.send", null, START)) {
+            admitted.incrementAndGet();
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(40, admitted.get());
+  }
+
+  @Test
+  void refilledBucketsAreSwept() {
+    InboundAdmissionControl control = control();
+    control.admit(ALICE, "s1", "/app/chat.send", null, System.nanoTime() - TimeUnit.SECONDS.toNanos(10));
+    control.admit(() -> "bob", "s2", "/app/chat.send", null, System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+
+    control.sweepIdle();
+
+    assertEquals(1, control.metricsSnapshot().get("trackedUsers"));
+  }
+
+  private InboundAdmissionControl control() {
+    SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> sent.add(message));
+    template.setMessageConverter(new JacksonJsonMessageConverter());
+    @SuppressWarnings("unchecked")
+    ObjectProvider<SimpMessagingTemplate> provider = (ObjectProvider<SimpMessagingTemplate>) Proxy.newProxyInstance(
+        ObjectProvider.class.getClassLoader(),
+        new Class<?>[] { ObjectProvider.class },
+        (proxy, method, args) -> method.getName().equals("getObject") ? template : null);
+    return new InboundAdmissionControl(provider, true, 2, 5, 20, 20, 1, 10, 10);
+  }
+
+  private static Message<byte[]> sendFrame(String json) {
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+    accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+    return MessageBuilder.createMessage(json.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+  }
+
+  private static String body(Message<?> message) {
+    return new String((byte[]) message.getPayload(), StandardCharsets.UTF_8);
+  }
+}
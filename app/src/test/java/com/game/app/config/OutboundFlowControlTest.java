@@ -0,0 +1,122 @@
+package com.game.app.config;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.game.app.config.OutboundFlowControl.Priority;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class OutboundFlowControlTest {
+
+  private static final int BODY = 1000;
+
+  @Test
+  void destinationsAreClassifiedByWhatTheClientSubscribedTo() {
+    assertEquals(Priority.HIGH, OutboundFlowControl.classify("/user/queue/messages"));
+    assertEquals(Priority.HIGH, OutboundFlowControl.classify("/user/queue/send-ack"));
+    assertEquals(Priority.HIGH, OutboundFlowControl.classify("/topic/ttt.room.42"));
+    assertEquals(Priority.NORMAL, OutboundFlowControl.classify("/user/queue/read-receipts"));
+    assertEquals(Priority.NORMAL, OutboundFlowControl.classify("/user/queue/message-edits"));
+    assertEquals(Priority.LOW, OutboundFlowControl.classify("/user/queue/typing"));
+    assertEquals(Priority.NORMAL, OutboundFlowControl.classify("/user/queue/user-status"));
+  }
+
+  @Test
+  void backedUpSessionShedsLowThenNormalButNeverHighPriorityFrames() throws Exception {
+    OutboundFlowControl flow = new OutboundFlowControl(true, 1024, 2048);
+    WebSocketSession tracked = connect(flow, "s1");
+
+    assertNotNull(flow.preSend(frame("s1", "/user/queue/messages"), null));
+    assertNull(flow.preSend(frame("s1", "/user/queue/typing"), null));
+    assertNotNull(flow.preSend(frame("s1", "/user/queue/read-receipts"), null));
+    assertNull(flow.preSend(frame("s1", "/user/queue/message-edits"), null));
+    assertNotNull(flow.preSend(frame("s1", "/user/queue/send-ack"), null));
+    // Another session is unaffected by s1's backlog.
+    connect(flow, "s2");
+    assertNotNull(flow.preSend(frame("s2", "/user/queue/typing"), null));
+
+    Map<String, Object> metrics = flow.metricsSnapshot();
+    assertEquals(4L, metrics.get("pendingFrames"));
+    assertEquals(3L * (BODY + OutboundFlowControl.FRAME_OVERHEAD_BYTES), metrics.get("maxPendingBytes"));
+    assertEquals(Map.of("empty", 0, "belowLow", 0, "lowToHigh", 1, "aboveHigh", 1), metrics.get("backlogDepths"));
+    assertEquals(1, metrics.get("sessionsShed"));
+    assertFalse(metrics.toString().contains("s1"));
+    assertEquals(1L, flow.metricsSnapshot().get("shedLow"));
+    assertEquals(1L, flow.metricsSnapshot().get("shedNormal"));
+
+    // Heartbeats and other frames do not drain the backlog; written MESSAGE frames do.
+    tracked.sendMessage(new TextMessage("\n"));
+    for (int i = 0; i < 3; i += 1) {
+      tracked.sendMessage(new TextMessage("MESSAGE\ndestination:/user/queue/messages\n\n{}\u0000"));
+    }
+    // Only s2's frame is still pending.
+    assertEquals((long) (BODY + OutboundFlowControl.FRAME_OVERHEAD_BYTES), flow.metricsSnapshot().get("pendingBytes"));
+    assertNotNull(flow.preSend(frame("s1", "/user/queue/typing"), null));
+  }
+
+  @Test
+  void closedSessionsAreForgotten() throws Exception {
+    OutboundFlowControl flow = new OutboundFlowControl(true, 1024, 2048);
+    WebSocketHandler handler = flow.decorate(recordingHandler(new AtomicReference<>()));
+    WebSocketSession session = session("s1");
+    handler.afterConnectionEstablished(session);
+    flow.preSend(frame("s1", "/user/queue/messages"), null);
+
+    handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+
+    assertEquals(0, flow.metricsSnapshot().get("sessions"));
+    assertEquals(0L, flow.metricsSnapshot().get("pendingBytes"));
+  }
+
+  private static WebSocketSession connect(OutboundFlowControl flow, String sessionId) throws Exception {
+    AtomicReference<WebSocketSession> seen = new AtomicReference<>();
+    flow.decorate(recordingHandler(seen)).afterConnectionEstablished(session(sessionId));
+    return seen.get();
+  }
+
+  private static WebSocketHandler recordingHandler(AtomicReference<WebSocketSession> seen) {
+    return (WebSocketHandler) Proxy.newProxyInstance(
+        WebSocketHandler.class.getClassLoader(),
+        new Class<?>[] { WebSocketHandler.class },
+        (proxy, method, args) -> {
+          if (method.getName().equals("afterConnectionEstablished")) {
+            seen.set((WebSocketSession) args[0]);
+          }
+          return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+        });
+  }
+
+  private static WebSocketSession session(String id) {
+    return (WebSocketSession) Proxy.newProxyInstance(
+        WebSocketSession.class.getClassLoader(),
+        new Class<?>[] { WebSocketSession.class },
+        (proxy, method, args) -> switch (method.getName()) {
+          case "getId" -> id;
+          case "isOpen" -> Boolean.TRUE;
+          default -> null;
+        });
+  }
+
+  private static Message<byte[]> frame(String sessionId, String subscribedDestination) {
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+    accessor.setSessionId(sessionId);
+    accessor.setDestination(subscribedDestination.replace("/user", "") + "-user" + sessionId);
+    accessor.setHeader(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION, subscribedDestination);
+    return MessageBuilder.createMessage(new byte[BODY], accessor.getMessageHeaders());
+  }
+}
@@ -0,0 +1,83 @@
+package com.game.app.config;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.game.app.model.UserEntity;
+import com.game.app.repository.UserRepository;
+import com.game.app.service.JwtTokenService.AccessIdentity;
+import com.game.app.service.UserChangedEvent;
+import com.game.app.service.UserDirectory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StompSessionRegistryTest {
+
+  private final UserEntity alice = user(1L, "alice", "chat");
+  private final AtomicInteger lookups = new AtomicInteger();
+  private StompSessionRegistry registry;
+
+  @Test
+  void roleClaimIsUsedWithoutALookup() {
+    StompPrincipal principal = registry().connect("s1", identity("chat", Instant.now()));
+
+    assertTrue(principal.hasChatRole());
+    assertEquals(1L, principal.getUserId());
+    assertEquals(0, lookups.get());
+  }
+
+  @Test
+  void tokensWithoutRoleClaimAreResolvedOnce() {
+    StompPrincipal principal = registry().connect("s1", identity(null, Instant.now()));
+
+    assertTrue(principal.hasChatRole());
+    assertEquals(1, lookups.get());
+  }
+
+  @Test
+  void userChangeRefreshesLiveSessionsAndDistrustsOlderTokens() {
+    Instant issuedAt = Instant.now().minusSeconds(60);
+    StompPrincipal live = registry().connect("s1", identity("chat", issuedAt));
+
+    alice.setRole("game");
+    registry.onUserChanged(new UserChangedEvent(1L, "alice"));
+
+    assertFalse(live.hasChatRole());
+    StompPrincipal reconnected = registry.connect("s2", identity("chat", issuedAt));
+    assertFalse(reconnected.hasChatRole());
+  }
+
+  private StompSessionRegistry registry() {
+    UserRepository repository = (UserRepository) Proxy.newProxyInstance(
+        UserRepository.class.getClassLoader(),
+        new Class<?>[] { UserRepository.class },
+        (proxy, method, args) -> {
+          if ("findById".equals(method.getName())) {
+            lookups.incrementAndGet();
+            return alice.getId().equals(args[0]) ? Optional.of(alice) : Optional.empty();
+          }
+          return null;
+        });
+    UserDirectory directory = new UserDirectory(repository, event -> {}, 100, 0);
+    registry = new StompSessionRegistry(directory, 3600000);
+    return registry;
+  }
+
+  private static AccessIdentity identity(String role, Instant issuedAt) {
+    return new AccessIdentity(1L, "alice", role, issuedAt);
+  }
+
+  private static UserEntity user(Long id, String username, String role) {
+    UserEntity user = new UserEntity(username, "hash");
+    ReflectionTestUtils.setField(user, "id", id);
+    user.setRole(role);
+    return user;
+  }
+}
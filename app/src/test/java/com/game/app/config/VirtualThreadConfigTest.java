@@ -0,0 +1,47 @@
+package com.game.app.config;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class VirtualThreadConfigTest {
+
+  @Test
+  void multipartUploadsDoNotHoldAPermitWhileTheBodyStreamsIn() throws Exception {
+    BlockingWorkLimiter limiter = new BlockingWorkLimiter(true, 1);
+    Filter filter = new VirtualThreadConfig().blockingWorkFilter(limiter).getFilter();
+    AtomicInteger inFlight = new AtomicInteger();
+    FilterChain chain = (request, response) -> inFlight.set((Integer) limiter.metricsSnapshot().get("inFlight"));
+
+    filter.doFilter(request("multipart/form-data; boundary=x"), response(), chain);
+    assertEquals(0, inFlight.get());
+
+    filter.doFilter(request("application/json"), response(), chain);
+    assertEquals(1, inFlight.get());
+    filter.doFilter(request(null), response(), chain);
+    assertEquals(1, inFlight.get());
+    assertEquals(0, limiter.metricsSnapshot().get("inFlight"));
+  }
+
+  private static HttpServletRequest request(String contentType) {
+    return (HttpServletRequest) Proxy.newProxyInstance(
+        HttpServletRequest.class.getClassLoader(),
+        new Class<?>[] { HttpServletRequest.class },
+        (proxy, method, args) -> method.getName().equals("getContentType") ? contentType : null);
+  }
+
+  private static ServletResponse response() {
+    return (ServletResponse) Proxy.newProxyInstance(
+        ServletResponse.class.getClassLoader(),
+        new Class<?>[] { ServletResponse.class },
+        (proxy, method, args) -> null);
+  }
+}
@@ -0,0 +1,36 @@
+package com.game.app.controller;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.game.app.service.MediaTypeDetector;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatMediaUploadTest {
+
+  @Test
+  void safariVoiceNoteWithAGenericIsoBrandIsAcceptedAsVoice() {
+    byte[] head = "\0\0\0\u0018ftypisom".getBytes(StandardCharsets.ISO_8859_1);
+
+    String mimeType = MediaTypeDetector.detect(head, "audio/mp4", "voice-1760000000000.m4a");
+    String kind = ChatMessageController.normalizeMediaKind("voice", mimeType);
+
+    assertEquals("audio/mp4", mimeType);
+    assertEquals("voice", kind);
+    assertFalse(ChatMessageController.isVideoUpload(kind, mimeType));
+  }
+
+  @Test
+  void videoIsStillRejectedWhateverTheClaimedKind() {
+    byte[] head = "\0\0\0\u0018ftypisom".getBytes(StandardCharsets.ISO_8859_1);
+
+    String mimeType = MediaTypeDetector.detect(head, "video/mp4", "clip.mp4");
+
+    assertTrue(ChatMessageController.isVideoUpload(ChatMessageController.normalizeMediaKind("voice", mimeType), mimeType));
+    assertTrue(ChatMessageController.isVideoUpload("video", "audio/mp4"));
+  }
+}
@@ -0,0 +1,38 @@
+package com.game.app.controller;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConversationCursorTest {
+
+  @Test
+  void roundTripsMicrosecondInstants() {
+    ConversationCursor cursor = new ConversationCursor(Instant.parse("2026-03-01T10:15:30.123456Z"), 42L);
+
+    assertEquals("2026-03-01T10:15:30.123456Z,42", cursor.toString());
+    assertEquals(cursor, ConversationCursor.parse(cursor.toString()));
+  }
+
+  @Test
+  void rejectsEpochMillisThatLoseTheStoredMicroseconds() {
+    assertThrows(IllegalArgumentException.class, () -> ConversationCursor.parse("1772360130123,7"));
+    assertEquals(
+        new ConversationCursor(Instant.parse("2026-03-01T10:15:30.123456Z"), 7L),
+        ConversationCursor.parse(" 2026-03-01T10:15:30.123456Z , 7 "));
+  }
+
+  @Test
+  void rejectsMalformedCursors() {
+    assertThrows(IllegalArgumentException.class, () -> ConversationCursor.parse(null));
+    assertThrows(IllegalArgumentException.class, () -> ConversationCursor.parse(" "));
+    assertThrows(IllegalArgumentException.class, () -> ConversationCursor.parse("42"));
+    assertThrows(IllegalArgumentException.class, () -> ConversationCursor.parse("2026-03-01T10:15:30Z,"));
+    assertThrows(IllegalArgumentException.class, () -> ConversationCursor.parse(",42"));
+    assertThrows(IllegalArgumentException.class, () -> ConversationCursor.parse("yesterday,42"));
+    assertThrows(IllegalArgumentException.class, () -> ConversationCursor.parse("2026-03-01T10:15:30Z,abc"));
+  }
+}
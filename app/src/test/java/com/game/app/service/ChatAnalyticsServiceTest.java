@@ -0,0 +1,135 @@
+package com.game.app.service;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import com.game.app.model.ChatAnalyticsDailyEntity;
+import com.game.app.repository.ChatAnalyticsDailyRepository;
+import com.game.app.repository.ChatAnalyticsDailyRepositoryCustom.DailyIncrement;
+import com.game.app.service.ChatAnalyticsService.DailyCounts;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatAnalyticsServiceTest {
+
+  private static final Instant NOW = Instant.now();
+  private static final LocalDate TODAY = LocalDate.ofInstant(NOW, ZoneId.systemDefault());
+
+  @Test
+  void concurrentIncrementsAreFlushedAsOneExactUpsertPerDay() throws InterruptedException {
+    StubRepository repository = new StubRepository();
+    ChatAnalyticsService service = new ChatAnalyticsService(repository.proxy());
+
+    ExecutorService senders = Executors.newFixedThreadPool(8);
+    for (int i = 0; i < 1000; i += 1) {
+      String type = i % 10 == 0 ? "image" : "text";
+      boolean reversed = i % 2 == 0;
+      senders.execute(() -> service.recordMessage(reversed ? "Bob" : "alice", reversed ? "alice" : "bob", type, NOW));
+    }
+    senders.shutdown();
+    assertTrue(senders.awaitTermination(10, TimeUnit.SECONDS));
+
+    service.flushPending();
+
+    assertEquals(1, repository.batches.size());
+    DailyIncrement increment = repository.batches.get(0).get(0);
+    assertEquals("alice", increment.userLow());
+    assertEquals("bob", increment.userHigh());
+    assertEquals(1000L, increment.messages());
+    assertEquals(100L, increment.images());
+
+    service.flushPending();
+    assertEquals(1, repository.batches.size());
+  }
+
+  @Test
+  void readsMergeUnflushedDeltas() {
+    StubRepository repository = new StubRepository();
+    ChatAnalyticsService service = new ChatAnalyticsService(repository.proxy());
+
+    service.recordMessage("alice", "bob", "voice", NOW);
+    service.flushPending();
+    service.recordMessage("bob", "alice", "text", NOW);
+    service.recordMessage("alice", "carol", "text", NOW);
+
+    List<DailyCounts> counts = service.loadDailyCounts("bob", "alice");
+
+    assertEquals(List.of(new DailyCounts(TODAY, 2L, 0L, 0L, 1L)), counts);
+  }
+
+  @Test
+  void failedFlushKeepsDeltasForTheNextRun() {
+    StubRepository repository = new StubRepository();
+    repository.failNext = true;
+    ChatAnalyticsService service = new ChatAnalyticsService(repository.proxy());
+
+    service.recordMessage("alice", "bob", "text", NOW);
+    service.flushPending();
+    assertEquals(List.of(new DailyCounts(TODAY, 1L, 0L, 0L, 0L)), service.loadDailyCounts("alice", "bob"));
+
+    service.flushPending();
+    assertEquals(1L, repository.batches.get(0).get(0).messages());
+    assertEquals(1L, service.metricsSnapshot().get("failedFlushes"));
+  }
+
+  private static final class StubRepository {
+    private final List<List<DailyIncrement>> batches = new CopyOnWriteArrayList<>();
+    private volatile boolean failNext;
+
+    @SuppressWarnings("unchecked")
+    private ChatAnalyticsDailyRepository proxy() {
+      return (ChatAnalyticsDailyRepository) Proxy.newProxyInstance(
+          ChatAnalyticsDailyRepository.class.getClassLoader(),
+          new Class<?>[] { ChatAnalyticsDailyRepository.class },
+          (proxy, method, args) -> switch (method.getName()) {
+            case "incrementAll" -> {
+              if (failNext) {
+                failNext = false;
+                throw new QueryTimeoutException("flush timed out");
+              }
+              batches.add(new ArrayList<>((List<DailyIncrement>) args[0]));
+              yield null;
+            }
+            case "findByUserLowAndUserHighOrderByTalkDateAsc" -> rows((String) args[0], (String) args[1]);
+            default -> null;
+          });
+    }
+
+    private List<ChatAnalyticsDailyEntity> rows(String low, String high) {
+      long messages = 0L;
+      long voices = 0L;
+      for (List<DailyIncrement> batch : batches) {
+        for (DailyIncrement increment : batch) {
+          if (increment.userLow().equals(low) && increment.userHigh().equals(high)) {
+            messages += increment.messages();
+            voices += increment.voices();
+          }
+        }
+      }
+      List<ChatAnalyticsDailyEntity> rows = new ArrayList<>();
+      if (messages > 0L) {
+        ChatAnalyticsDailyEntity row = new ChatAnalyticsDailyEntity();
+        row.setUserLow(low);
+        row.setUserHigh(high);
+        row.setTalkDate(TODAY);
+        for (long i = 0; i < messages; i += 1) {
+          row.increment(i < voices ? "voice" : "text");
+        }
+        rows.add(row);
+      }
+      return rows;
+    }
+  }
+}
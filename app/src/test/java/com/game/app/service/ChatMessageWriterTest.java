@@ -0,0 +1,196 @@
+package com.game.app.service;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import com.game.app.model.ChatMessageEntity;
+import com.game.app.repository.ChatMessageRepository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatMessageWriterTest {
+
+  @Test
+  void savesOnCallingThreadWhenGroupCommitIsDisabled() {
+    StubRepository repository = new StubRepository(false);
+    ChatMessageWriter writer = new ChatMessageWriter(repository.proxy(), false, 64, 5, 100, 1000);
+    writer.start();
+
+    ChatMessageEntity saved = writer.persist(message("hi")).join().entity();
+
+    assertNotNull(saved.getId());
+    assertEquals(1, repository.saves.size());
+    assertTrue(repository.batches.isEmpty());
+  }
+
+  @Test
+  void writesQueuedMessagesAsOneBatch() {
+    StubRepository repository = new StubRepository(false);
+    ChatMessageWriter writer = new ChatMessageWriter(repository.proxy(), true, 8, 200, 100, 1000);
+    writer.start();
+    try {
+      List<CompletableFuture<ChatMessageWriter.PersistedMessage>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i += 1) {
+        futures.add(writer.persist(message("m" + i)));
+      }
+      for (CompletableFuture<ChatMessageWriter.PersistedMessage> future : futures) {
+        assertNotNull(future.join().entity().getId());
+      }
+
+      assertEquals(List.of(8), repository.batches);
+      assertTrue(repository.saves.isEmpty());
+    } finally {
+      writer.stop();
+    }
+  }
+
+  @Test
+  void failedBatchFallsBackToSingleRowSaves() {
+    StubRepository repository = new StubRepository(true);
+    ChatMessageWriter writer = new ChatMessageWriter(repository.proxy(), true, 2, 200, 100, 1000);
+    writer.start();
+    try {
+      CompletableFuture<ChatMessageWriter.PersistedMessage> good = writer.persist(message("ok"));
+      CompletableFuture<ChatMessageWriter.PersistedMessage> bad = writer.persist(message("duplicate"));
+
+      assertNotNull(good.join().entity().getId());
+      assertThrows(CompletionException.class, bad::join);
+      assertEquals(2, repository.saves.size());
+    } finally {
+      writer.stop();
+    }
+  }
+
+  @Test
+  void fullQueueFailsTheSendInsteadOfWritingAheadOfIt() throws Exception {
+    StubRepository repository = new StubRepository(false);
+    repository.gate = new CountDownLatch(1);
+    ChatMessageWriter writer = new ChatMessageWriter(repository.proxy(), true, 1, 0, 1, 20);
+    writer.start();
+    try {
+      CompletableFuture<ChatMessageWriter.PersistedMessage> first = writer.persist(message("m0"));
+      repository.inBatch.await();
+      CompletableFuture<ChatMessageWriter.PersistedMessage> queued = writer.persist(message("m1"));
+      CompletableFuture<ChatMessageWriter.PersistedMessage> overflow = writer.persist(message("m2"));
+
+      CompletionException failure = assertThrows(CompletionException.class, overflow::join);
+      assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+      repository.gate.countDown();
+      assertTrue(first.join().entity().getId() < queued.join().entity().getId());
+      assertTrue(repository.saves.isEmpty());
+      assertEquals(List.of(1, 1), repository.batches);
+    } finally {
+      writer.stop();
+    }
+  }
+
+  @Test
+  void duplicateClientMessageIdReturnsExistingRow() {
+    StubRepository repository = new StubRepository(false);
+    ChatMessageWriter writer = new ChatMessageWriter(repository.proxy(), false, 64, 0, 100, 1000);
+    ChatMessageEntity retry = message("duplicate");
+    retry.setClientMessageId("tmp-1");
+
+    ChatMessageWriter.PersistedMessage result = writer.persist(retry).join();
+
+    assertFalse(result.created());
+    assertEquals(7L, result.entity().getId());
+    assertEquals(List.of("duplicate"), repository.saves);
+  }
+
+  @Test
+  void persistAllWritesOneBatchAndFallsBackPerRowOnConflict() {
+    StubRepository repository = new StubRepository(false);
+    ChatMessageWriter writer = new ChatMessageWriter(repository.proxy(), false, 64, 0, 100, 1000);
+
+    List<CompletableFuture<ChatMessageWriter.PersistedMessage>> results =
+        writer.persistAll(List.of(message("a"), message("b"), message("c")));
+
+    assertEquals(List.of(3), repository.batches);
+    assertTrue(results.stream().allMatch(result -> result.join().created()));
+
+    StubRepository failing = new StubRepository(true);
+    ChatMessageEntity retry = message("duplicate");
+    retry.setClientMessageId("tmp-1");
+    results = new ChatMessageWriter(failing.proxy(), false, 64, 0, 100, 1000).persistAll(List.of(message("ok"), retry));
+
+    assertTrue(results.get(0).join().created());
+    assertFalse(results.get(1).join().created());
+    assertEquals(7L, results.get(1).join().entity().getId());
+  }
+
+  private static ChatMessageEntity message(String text) {
+    ChatMessageEntity entity = new ChatMessageEntity();
+    entity.setFromUsername("alice");
+    entity.setToUsername("bob");
+    entity.setMessage(text);
+    return entity;
+  }
+
+  private static final class StubRepository {
+    private final boolean failBatches;
+    private final AtomicLong ids = new AtomicLong();
+    private final List<Integer> batches = new CopyOnWriteArrayList<>();
+    private final List<String> saves = new CopyOnWriteArrayList<>();
+    private final CountDownLatch inBatch = new CountDownLatch(1);
+    private volatile CountDownLatch gate;
+
+    private StubRepository(boolean failBatches) {
+      this.failBatches = failBatches;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ChatMessageRepository proxy() {
+      return (ChatMessageRepository) Proxy.newProxyInstance(
+          ChatMessageRepository.class.getClassLoader(),
+          new Class<?>[] { ChatMessageRepository.class },
+          (proxy, method, args) -> switch (method.getName()) {
+            case "insertAll" -> {
+              List<ChatMessageEntity> entities = (List<ChatMessageEntity>) args[0];
+              if (failBatches) {
+                throw new DataIntegrityViolationException("batch rejected");
+              }
+              inBatch.countDown();
+              if (gate != null) {
+                gate.await();
+              }
+              batches.add(entities.size());
+              entities.forEach(entity -> entity.setId(ids.incrementAndGet()));
+              yield null;
+            }
+            case "save" -> {
+              ChatMessageEntity entity = (ChatMessageEntity) args[0];
+              saves.add(entity.getMessage());
+              if ("duplicate".equals(entity.getMessage())) {
+                throw new DataIntegrityViolationException("duplicate client message id");
+              }
+              entity.setId(ids.incrementAndGet());
+              yield entity;
+            }
+            case "findByFromUsernameAndClientMessageId" -> {
+              ChatMessageEntity existing = message("original");
+              existing.setId(7L);
+              existing.setClientMessageId((String) args[1]);
+              yield Optional.of(existing);
+            }
+            default -> null;
+          });
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package com.game.app.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatSideEffectExecutorTest {
+
+  @Test
+  void keepsSideEffectsOfOneConversationInSubmitOrder() {
+    ChatSideEffectExecutor executor = new ChatSideEffectExecutor(4, 4, 5000, 5000);
+    List<Integer> applied = Collections.synchronizedList(new ArrayList<>());
+
+    for (int i = 0; i < 200; i += 1) {
+      int sequence = i;
+      // Alternate direction: both map to the same canonical pair.
+      if (i % 2 == 0) {
+        executor.submit("alice", "bob", () -> applied.add(sequence));
+      } else {
+        executor.submit("Bob", "alice", () -> applied.add(sequence));
+      }
+    }
+    executor.shutdown();
+
+    assertEquals(200, applied.size());
+    for (int i = 0; i < applied.size(); i += 1) {
+      assertEquals(i, applied.get(i));
+    }
+  }
+
+  @Test
+  void failingSideEffectDoesNotStopTheLane() throws InterruptedException {
+    ChatSideEffectExecutor executor = new ChatSideEffectExecutor(1, 10, 5000, 5000);
+    CountDownLatch done = new CountDownLatch(1);
+
+    executor.submit("alice", "bob", () -> {
+      throw new IllegalStateException("boom");
+    });
+    executor.submit("alice", "bob", done::countDown);
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    executor.shutdown();
+    assertEquals(1L, executor.metricsSnapshot().get("failed"));
+  }
+
+  @Test
+  void dropsInsteadOfBlockingWhenALaneStaysFull() throws InterruptedException {
+    ChatSideEffectExecutor executor = new ChatSideEffectExecutor(1, 1, 5000, 10);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(1);
+    List<String> applied = Collections.synchronizedList(new ArrayList<>());
+
+    executor.submit("alice", "bob", () -> {
+      started.countDown();
+      awaitQuietly(release);
+    });
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    executor.submit("alice", "bob", () -> applied.add("queued"));
+    long begin = System.nanoTime();
+    executor.submit("alice", "bob", () -> applied.add("dropped"));
+    long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+    release.countDown();
+    executor.shutdown();
+
+    assertTrue(waitedMs < 2000, "submit waited " + waitedMs + " ms");
+    assertEquals(List.of("queued"), applied);
+    assertEquals(1L, executor.metricsSnapshot().get("dropped"));
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
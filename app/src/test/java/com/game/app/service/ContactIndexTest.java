@@ -0,0 +1,62 @@
+package com.game.app.service;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.game.app.repository.ChatMessageRepository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContactIndexTest {
+
+  private final AtomicInteger queries = new AtomicInteger();
+
+  @Test
+  void contactsAreLoadedOnceAndNormalized() {
+    ContactIndex index = new ContactIndex(repository(), 100);
+
+    assertEquals(Set.of("bob", "carol"), index.contactsOf(" Alice "));
+    assertEquals(Set.of("bob", "carol"), index.contactsOf("alice"));
+    assertEquals(1, queries.get());
+  }
+
+  @Test
+  void recordPairUpdatesLoadedSidesAndReportsNewPairsOnce() {
+    ContactIndex index = new ContactIndex(repository(), 100);
+    index.contactsOf("alice");
+
+    assertTrue(index.recordPair("alice", "dave"));
+    assertFalse(index.recordPair("dave", "alice"));
+    assertFalse(index.recordPair("alice", "bob"));
+    assertTrue(index.contactsOf("alice").contains("dave"));
+  }
+
+  @Test
+  void evictedUsersAreReloaded() {
+    ContactIndex index = new ContactIndex(repository(), 1);
+    index.contactsOf("alice");
+    index.contactsOf("bob");
+    index.contactsOf("alice");
+
+    assertEquals(3, queries.get());
+  }
+
+  private ChatMessageRepository repository() {
+    return (ChatMessageRepository) Proxy.newProxyInstance(
+        ChatMessageRepository.class.getClassLoader(),
+        new Class<?>[] { ChatMessageRepository.class },
+        (proxy, method, args) -> {
+          if (!"findPeerUsernames".equals(method.getName())) {
+            return null;
+          }
+          queries.incrementAndGet();
+          return "alice".equals(args[0]) ? List.of("Bob", "carol", "alice") : List.of("alice");
+        });
+  }
+}
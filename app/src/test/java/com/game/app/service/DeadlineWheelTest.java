@@ -0,0 +1,50 @@
+package com.game.app.service;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadlineWheelTest {
+
+  private static final long START = 1_760_000_000_000L;
+
+  @Test
+  void keysFallDueNoEarlierThanTheirDeadlineAndAtMostOneTickLate() {
+    DeadlineWheel<String> wheel = new DeadlineWheel<>(20_000, 65_000, START);
+    wheel.schedule("alice", START + 65_000);
+    wheel.schedule("bob", START + 30_000);
+
+    assertTrue(wheel.advance(START + 20_000).isEmpty());
+    assertTrue(wheel.advance(START + 29_999).isEmpty());
+    assertEquals(List.of("bob"), wheel.advance(START + 40_000));
+    assertTrue(wheel.advance(START + 64_999).isEmpty());
+    assertEquals(List.of("alice"), wheel.advance(START + 80_000));
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  void reschedulingAndCancellingMoveTheOnlyLiveDeadline() {
+    DeadlineWheel<String> wheel = new DeadlineWheel<>(20_000, 65_000, START);
+    wheel.schedule("alice", START + 65_000);
+    wheel.schedule("alice", START + 95_000);
+    wheel.schedule("bob", START + 65_000);
+    wheel.cancel("bob");
+
+    assertTrue(wheel.advance(START + 80_000).isEmpty());
+    assertEquals(List.of("alice"), wheel.advance(START + 100_000));
+  }
+
+  @Test
+  void deadlinesBeyondOneTurnAndLongPausesAreHandled() {
+    DeadlineWheel<String> wheel = new DeadlineWheel<>(1_000, 3_000, START);
+    wheel.schedule("late", START + 12_500);
+    wheel.schedule("overdue", START - 5_000);
+
+    assertEquals(List.of("overdue"), wheel.advance(START + 1_000));
+    assertTrue(wheel.advance(START + 7_000).isEmpty());
+    assertEquals(List.of("late"), wheel.advance(START + 60_000));
+  }
+}
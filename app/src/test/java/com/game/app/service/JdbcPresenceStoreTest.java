@@ -0,0 +1,288 @@
+package com.game.app.service;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import com.game.app.repository.PresenceNodeRepository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JdbcPresenceStoreTest {
+
+  private static final long LEASE = 30000L;
+
+  @Test
+  void usersOnlineOnOneNodeAreSeenByTheOtherAfterASync() {
+    SharedTables tables = new SharedTables();
+    JdbcPresenceStore nodeA = new JdbcPresenceStore(tables.proxy(), event -> { }, new ClusterNode("node-a"), LEASE, 5000L);
+    JdbcPresenceStore nodeB = new JdbcPresenceStore(tables.proxy(), event -> { }, new ClusterNode("node-b"), LEASE, 5000L);
+
+    assertTrue(nodeA.markOnline("alice"));
+    assertTrue(nodeB.markOnline("bob"));
+    assertFalse(nodeB.isOnlineElsewhere("alice"));
+
+    nodeA.sync(1000L);
+    nodeB.sync(1000L);
+    nodeA.sync(2000L);
+
+    assertTrue(nodeB.isOnlineElsewhere("alice"));
+    assertTrue(nodeA.isOnlineElsewhere("bob"));
+    assertFalse(nodeA.isOnlineElsewhere("alice"));
+
+    assertTrue(nodeA.markOffline("alice"));
+    nodeA.sync(3000L);
+    nodeB.sync(3000L);
+    assertFalse(nodeB.isOnlineElsewhere("alice"));
+  }
+
+  @Test
+  void transitionsAreWrittenAsOneBatchPerSyncAndRepeatsWriteNothing() {
+    SharedTables tables = new SharedTables();
+    JdbcPresenceStore node = new JdbcPresenceStore(tables.proxy(), event -> { }, new ClusterNode("node-a"), LEASE, 5000L);
+    node.sync(0L);
+
+    for (int i = 0; i < 100; i += 1) {
+      node.markOnline("user" + i);
+    }
+    for (int beat = 0; beat < 10; beat += 1) {
+      for (int i = 0; i < 100; i += 1) {
+        assertFalse(node.markOnline("user" + i));
+      }
+    }
+    node.markOffline("user0");
+    node.sync(1000L);
+    node.sync(2000L);
+
+    // The registering sync plus one batch; the idle sync only renews the lease.
+    assertEquals(2, tables.applyCalls);
+    assertEquals(99, tables.users.get("node-a").size());
+    assertEquals(100L, node.metricsSnapshot().get("rowsWritten"));
+  }
+
+  @Test
+  void rowsOfANodeWhoseLeaseLapsedAreReaped() {
+    SharedTables tables = new SharedTables();
+    List<Object> events = new ArrayList<>();
+    JdbcPresenceStore crashed = new JdbcPresenceStore(tables.proxy(), event -> { }, new ClusterNode("node-a"), LEASE, 5000L);
+    JdbcPresenceStore survivor = new JdbcPresenceStore(tables.proxy(), events::add, new ClusterNode("node-b"), LEASE, 5000L);
+    crashed.markOnline("alice");
+    crashed.sync(0L);
+    survivor.sync(0L);
+    assertTrue(survivor.isOnlineElsewhere("alice"));
+
+    survivor.sync(LEASE + 1);
+
+    assertFalse(survivor.isOnlineElsewhere("alice"));
+    assertFalse(tables.leases.containsKey("node-a"));
+    assertEquals(1L, survivor.metricsSnapshot().get("reapedRows"));
+    assertEquals(List.of(new PresenceDepartedEvent(Set.of("alice"), LEASE + 1)), events);
+  }
+
+  @Test
+  void aCleanTwoNodeDisconnectIsRecordedOnceByTheLastNode() {
+    SharedTables tables = new SharedTables();
+    List<Object> eventsA = new ArrayList<>();
+    List<Object> eventsB = new ArrayList<>();
+    JdbcPresenceStore nodeA = new JdbcPresenceStore(tables.proxy(), eventsA::add, new ClusterNode("node-a"), LEASE, 5000L);
+    JdbcPresenceStore nodeB = new JdbcPresenceStore(tables.proxy(), eventsB::add, new ClusterNode("node-b"), LEASE, 5000L);
+    nodeA.markOnline("alice");
+    nodeB.markOnline("alice");
+    nodeA.sync(0L);
+    nodeB.sync(0L);
+    nodeA.sync(1000L);
+
+    List<String> recorded = new ArrayList<>();
+    closeLastSession(nodeA, "node-a", "alice", recorded);
+    nodeA.sync(2000L);
+    nodeB.sync(2000L);
+    closeLastSession(nodeB, "node-b", "alice", recorded);
+    nodeB.sync(3000L);
+    nodeA.sync(3000L);
+    nodeA.sync(4000L);
+
+    // One offline frame and one lastOfflineAt write, both from node B.
+    assertEquals(List.of("node-b"), recorded);
+    assertTrue(eventsA.isEmpty());
+    assertTrue(eventsB.isEmpty());
+    assertEquals(0, nodeA.metricsSnapshot().get("deferredOffline"));
+  }
+
+  @Test
+  void sessionsClosingOnBothNodesWithinOneSyncAreReportedOnce() {
+    SharedTables tables = new SharedTables();
+    List<Object> eventsA = new ArrayList<>();
+    List<Object> eventsB = new ArrayList<>();
+    JdbcPresenceStore nodeA = new JdbcPresenceStore(tables.proxy(), eventsA::add, new ClusterNode("node-a"), LEASE, 5000L);
+    JdbcPresenceStore nodeB = new JdbcPresenceStore(tables.proxy(), eventsB::add, new ClusterNode("node-b"), LEASE, 5000L);
+    nodeA.markOnline("alice");
+    nodeB.markOnline("alice");
+    nodeB.markOnline("bob");
+    nodeA.sync(0L);
+    nodeB.sync(0L);
+    nodeA.sync(1000L);
+    assertTrue(nodeA.isOnlineElsewhere("alice"));
+    assertTrue(nodeB.isOnlineElsewhere("alice"));
+
+    // Each node still sees the other holding alice, so both defer the transition.
+    List<String> recorded = new ArrayList<>();
+    closeLastSession(nodeA, "node-a", "alice", recorded);
+    closeLastSession(nodeB, "node-b", "alice", recorded);
+    nodeA.sync(2000L);
+    nodeB.sync(2000L);
+    nodeA.sync(3000L);
+
+    assertTrue(recorded.isEmpty());
+    assertTrue(eventsA.isEmpty());
+    assertEquals(List.of(new PresenceDepartedEvent(Set.of("alice"), 2000L)), eventsB);
+  }
+
+  @Test
+  void aDeferredUserBackOnlineHereIsNotReportedAsDeparted() {
+    SharedTables tables = new SharedTables();
+    List<Object> events = new ArrayList<>();
+    JdbcPresenceStore nodeA = new JdbcPresenceStore(tables.proxy(), events::add, new ClusterNode("node-a"), LEASE, 5000L);
+    JdbcPresenceStore nodeB = new JdbcPresenceStore(tables.proxy(), event -> { }, new ClusterNode("node-b"), LEASE, 5000L);
+    nodeA.markOnline("alice");
+    nodeB.markOnline("alice");
+    nodeA.sync(0L);
+    nodeB.sync(0L);
+    nodeA.sync(1000L);
+
+    closeLastSession(nodeA, "node-a", "alice", new ArrayList<>());
+    nodeA.markOnline("alice");
+    nodeB.markOffline("alice");
+    nodeB.sync(2000L);
+    nodeA.sync(2000L);
+
+    assertTrue(events.isEmpty());
+  }
+
+  @Test
+  void aUserStillHeldHereIsNotReportedAsDeparted() {
+    SharedTables tables = new SharedTables();
+    List<Object> events = new ArrayList<>();
+    JdbcPresenceStore nodeA = new JdbcPresenceStore(tables.proxy(), events::add, new ClusterNode("node-a"), LEASE, 5000L);
+    JdbcPresenceStore nodeB = new JdbcPresenceStore(tables.proxy(), event -> { }, new ClusterNode("node-b"), LEASE, 5000L);
+    nodeB.markOnline("alice");
+    nodeB.sync(0L);
+    nodeA.sync(0L);
+    assertTrue(nodeA.isOnlineElsewhere("alice"));
+
+    nodeA.markOnline("alice");
+    nodeB.markOffline("alice");
+    nodeB.sync(1000L);
+    nodeA.sync(1000L);
+
+    assertTrue(events.isEmpty());
+  }
+
+  @Test
+  void failedSyncRetriesAndANodeBackFromALapseRewritesItsRows() {
+    SharedTables tables = new SharedTables();
+    JdbcPresenceStore node = new JdbcPresenceStore(tables.proxy(), event -> { }, new ClusterNode("node-a"), LEASE, 5000L);
+    node.sync(0L);
+
+    node.markOnline("alice");
+    tables.failNext = true;
+    node.sync(1000L);
+    assertFalse(tables.users.get("node-a").contains("alice"));
+    node.sync(2000L);
+    assertTrue(tables.users.get("node-a").contains("alice"));
+
+    // Reaped by another node while this one could not reach the database.
+    tables.users.remove("node-a");
+    tables.leases.remove("node-a");
+    node.markOnline("bob");
+    node.sync(2000L + LEASE);
+
+    assertEquals(Set.of("alice", "bob"), tables.users.get("node-a"));
+    assertEquals(1L, node.metricsSnapshot().get("failedSyncs"));
+  }
+
+  /** What the chat controller does when a node drops a user's last local session. */
+  private static void closeLastSession(JdbcPresenceStore node, String nodeId, String username, List<String> recorded) {
+    node.markOffline(username);
+    if (node.isOnlineElsewhere(username)) {
+      node.deferOffline(username);
+    } else {
+      recorded.add(nodeId);
+    }
+  }
+
+  private static final class SharedTables {
+    private final Map<String, Long> leases = new HashMap<>();
+    private final Map<String, Set<String>> users = new HashMap<>();
+    private int applyCalls;
+    private boolean failNext;
+
+    @SuppressWarnings("unchecked")
+    private PresenceNodeRepository proxy() {
+      return (PresenceNodeRepository) Proxy.newProxyInstance(
+          PresenceNodeRepository.class.getClassLoader(),
+          new Class<?>[] { PresenceNodeRepository.class },
+          (proxy, method, args) -> {
+            synchronized (this) {
+              return switch (method.getName()) {
+                case "renewLease" -> {
+                  if (failNext) {
+                    failNext = false;
+                    throw new QueryTimeoutException("lease renewal timed out");
+                  }
+                  leases.put((String) args[0], (Long) args[1]);
+                  yield null;
+                }
+                case "applyChanges" -> {
+                  applyCalls += 1;
+                  Set<String> rows = users.computeIfAbsent((String) args[0], node -> new HashSet<>());
+                  if ((Boolean) args[1]) {
+                    rows.clear();
+                  }
+                  rows.addAll((List<String>) args[2]);
+                  rows.removeAll((List<String>) args[3]);
+                  yield null;
+                }
+                case "reapExpired" -> {
+                  List<String> reaped = new ArrayList<>();
+                  for (String node : Set.copyOf(leases.keySet())) {
+                    if (leases.get(node) < (Long) args[0]) {
+                      leases.remove(node);
+                      Set<String> rows = users.remove(node);
+                      if (rows != null) {
+                        reaped.addAll(rows);
+                      }
+                    }
+                  }
+                  yield reaped;
+                }
+                case "findOnlineElsewhere" -> {
+                  Set<String> online = new HashSet<>();
+                  users.forEach((node, rows) -> {
+                    Long lease = leases.get(node);
+                    if (!node.equals(args[0]) && lease != null && lease >= (Long) args[1]) {
+                      online.addAll(rows);
+                    }
+                  });
+                  yield online;
+                }
+                case "removeNode" -> {
+                  leases.remove((String) args[0]);
+                  users.remove((String) args[0]);
+                  yield null;
+                }
+                default -> null;
+              };
+            }
+          });
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package com.game.app.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.game.app.model.UserEntity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JwtTokenServiceTest {
+
+  private static final String ACCESS_SECRET = "test-access-secret-test-access-secret-0123456789";
+  private static final String REFRESH_SECRET = "test-refresh-secret-test-refresh-secret-012345678";
+
+  @Test
+  void repeatedVerificationReturnsSameIdentity() {
+    JwtTokenService service = new JwtTokenService(ACCESS_SECRET, REFRESH_SECRET, 60000L, 120000L, 16);
+    String token = "Bearer " + service.issueAccessToken(user());
+
+    assertEquals(7L, service.extractAccessUserId(token));
+    assertEquals(7L, service.extractAccessUserId(token));
+    assertEquals("chat", service.extractAccessIdentity(token).role());
+  }
+
+  @Test
+  void cachedAccessTokenIsNotAcceptedAsRefreshToken() {
+    JwtTokenService service = new JwtTokenService(ACCESS_SECRET, REFRESH_SECRET, 60000L, 120000L, 16);
+    String access = service.issueAccessToken(user());
+    String refresh = service.issueRefreshToken(user());
+
+    service.extractAccessUserId(access);
+    service.extractRefreshUserId(refresh);
+
+    assertThrows(ResponseStatusException.class, () -> service.extractRefreshUserId(access));
+    assertThrows(ResponseStatusException.class, () -> service.extractAccessUserId(refresh));
+  }
+
+  @Test
+  void tamperedAndExpiredTokensAreRejected() {
+    JwtTokenService service = new JwtTokenService(ACCESS_SECRET, REFRESH_SECRET, -1000L, 120000L, 16);
+    String expired = service.issueAccessToken(user());
+    assertThrows(ResponseStatusException.class, () -> service.extractAccessUserId(expired));
+
+    JwtTokenService live = new JwtTokenService(ACCESS_SECRET, REFRESH_SECRET, 60000L, 120000L, 16);
+    String token = live.issueAccessToken(user());
+    live.extractAccessUserId(token);
+    String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+    assertThrows(ResponseStatusException.class, () -> live.extractAccessUserId(tampered));
+  }
+
+  private static UserEntity user() {
+    UserEntity user = new UserEntity("alice", "hash");
+    ReflectionTestUtils.setField(user, "id", 7L);
+    user.setRole("chat");
+    return user;
+  }
+}
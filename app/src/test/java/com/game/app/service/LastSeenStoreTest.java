@@ -0,0 +1,178 @@
+package com.game.app.service;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.game.app.model.UserEntity;
+import com.game.app.model.UserLastSeenEntity;
+import com.game.app.repository.UserLastSeenRepository;
+import com.game.app.repository.UserLastSeenRepositoryCustom.LastSeen;
+import com.game.app.repository.UserRepository;
+import com.game.app.service.LastSeenStore.LongClockMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LastSeenStoreTest {
+
+  @Test
+  void loadsStoredValueOnceAndCachesMissingRows() {
+    StubLastSeenRepository table = new StubLastSeenRepository();
+    table.rows.put(1L, 1000L);
+    LastSeenStore store = new LastSeenStore(directory("alice", "bob"), table.proxy(), 100);
+
+    assertEquals(1000L, store.lastSeenAt("Alice"));
+    assertEquals(1000L, store.lastSeenAt("alice"));
+    assertNull(store.lastSeenAt("bob"));
+    assertNull(store.lastSeenAt("bob"));
+    assertNull(store.lastSeenAt("ghost"));
+
+    assertEquals(2, table.loads.get());
+  }
+
+  @Test
+  void recordsAreWrittenBehindInOneBatchAndNeverMoveBackwards() {
+    StubLastSeenRepository table = new StubLastSeenRepository();
+    LastSeenStore store = new LastSeenStore(directory("alice", "bob"), table.proxy(), 100);
+
+    store.record("alice", 2000L);
+    store.record("alice", 1500L);
+    store.record("bob", 3000L);
+    assertEquals(2000L, store.lastSeenAt("alice"));
+    assertEquals(0, table.loads.get());
+
+    store.flushPending();
+    store.flushPending();
+
+    assertEquals(1, table.batches.size());
+    assertEquals(List.of(new LastSeen(1L, 2000L), new LastSeen(2L, 3000L)), sorted(table.batches.get(0)));
+  }
+
+  @Test
+  void failedFlushKeepsValuesForTheNextRun() {
+    StubLastSeenRepository table = new StubLastSeenRepository();
+    table.failNext = true;
+    LastSeenStore store = new LastSeenStore(directory("alice"), table.proxy(), 100);
+
+    store.record("alice", 2000L);
+    store.flushPending();
+    assertEquals(2000L, store.lastSeenAt("alice"));
+
+    store.flushPending();
+    assertEquals(List.of(new LastSeen(1L, 2000L)), table.batches.get(0));
+    assertEquals(1L, store.metricsSnapshot().get("failedFlushes"));
+  }
+
+  @Test
+  void evictedUsersAreReloadedFromTheTable() {
+    StubLastSeenRepository table = new StubLastSeenRepository();
+    String[] usernames = new String[40];
+    for (int i = 0; i < usernames.length; i += 1) {
+      usernames[i] = "user" + i;
+      table.rows.put(i + 1L, 100L + i);
+    }
+    LastSeenStore store = new LastSeenStore(directory(usernames), table.proxy(), 16);
+
+    for (String username : usernames) {
+      store.lastSeenAt(username);
+    }
+    assertEquals(16, store.metricsSnapshot().get("cached"));
+    assertEquals(40, table.loads.get());
+
+    for (int i = 0; i < usernames.length; i += 1) {
+      assertEquals(100L + i, store.lastSeenAt(usernames[i]));
+    }
+    assertTrue(table.loads.get() >= 40 + 24);
+  }
+
+  @Test
+  void clockMapSurvivesChurnAcrossCollidingSlots() {
+    LongClockMap map = new LongClockMap(64);
+    for (long key = 1; key <= 10000; key += 1) {
+      map.put(key, key * 10);
+      if (key % 3 == 0) {
+        // Re-read one key often enough that it always has its second chance when the hand comes round.
+        assertEquals(30L, map.get(3L));
+      }
+    }
+    assertEquals(64, map.size());
+    int found = 0;
+    for (long key = 1; key <= 10000; key += 1) {
+      long value = map.get(key);
+      if (value != LongClockMap.ABSENT) {
+        assertEquals(key * 10, value);
+        found += 1;
+      }
+    }
+    assertEquals(64, found);
+    assertEquals(30L, map.get(3L));
+    assertEquals(10000L - 64, map.evictions());
+  }
+
+  private static List<LastSeen> sorted(List<LastSeen> batch) {
+    List<LastSeen> copy = new ArrayList<>(batch);
+    copy.sort((left, right) -> Long.compare(left.userId(), right.userId()));
+    return copy;
+  }
+
+  private static UserDirectory directory(String... usernames) {
+    Map<String, UserEntity> users = new ConcurrentHashMap<>();
+    for (int i = 0; i < usernames.length; i += 1) {
+      UserEntity user = new UserEntity(usernames[i], "hash");
+      ReflectionTestUtils.setField(user, "id", i + 1L);
+      user.setRole("chat");
+      users.put(usernames[i], user);
+    }
+    UserRepository repository = (UserRepository) Proxy.newProxyInstance(
+        UserRepository.class.getClassLoader(),
+        new Class<?>[] { UserRepository.class },
+        (proxy, method, args) -> switch (method.getName()) {
+          case "findByUsername" -> Optional.ofNullable(users.get((String) args[0]));
+          default -> null;
+        });
+    return new UserDirectory(repository, event -> {}, 1000, 60000);
+  }
+
+  private static final class StubLastSeenRepository {
+    private final Map<Long, Long> rows = new ConcurrentHashMap<>();
+    private final List<List<LastSeen>> batches = new CopyOnWriteArrayList<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private volatile boolean failNext;
+
+    @SuppressWarnings("unchecked")
+    private UserLastSeenRepository proxy() {
+      return (UserLastSeenRepository) Proxy.newProxyInstance(
+          UserLastSeenRepository.class.getClassLoader(),
+          new Class<?>[] { UserLastSeenRepository.class },
+          (proxy, method, args) -> switch (method.getName()) {
+            case "findById" -> {
+              loads.incrementAndGet();
+              Long value = rows.get((Long) args[0]);
+              yield Optional.ofNullable(value != null ? new UserLastSeenEntity((Long) args[0], value) : null);
+            }
+            case "upsertAll" -> {
+              if (failNext) {
+                failNext = false;
+                throw new QueryTimeoutException("flush timed out");
+              }
+              List<LastSeen> batch = new ArrayList<>((List<LastSeen>) args[0]);
+              batches.add(batch);
+              batch.forEach(entry -> rows.merge(entry.userId(), entry.lastSeenAt(), Math::max));
+              yield null;
+            }
+            default -> null;
+          });
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package com.game.app.service;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MediaTypeDetectorTest {
+
+  private static final byte[] JPEG = { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE1, 0, 0, 'E', 'x', 'i', 'f', 0, 0 };
+  private static final byte[] PNG = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13 };
+  private static final byte[] ZIP = { 'P', 'K', 3, 4, 20, 0, 8, 0, 8, 0, 0, 0 };
+
+  @Test
+  void sniffsSignatures() {
+    assertEquals("image/jpeg", MediaTypeDetector.sniff(JPEG));
+    assertEquals("image/png", MediaTypeDetector.sniff(PNG));
+    assertEquals("image/gif", MediaTypeDetector.sniff(ascii("GIF89a\1\0\1\0\0\0")));
+    assertEquals("image/webp", MediaTypeDetector.sniff(ascii("RIFF\0\0\0\0WEBP")));
+    assertEquals("image/heic", MediaTypeDetector.sniff(ftyp("heic")));
+    assertEquals("image/heif", MediaTypeDetector.sniff(ftyp("mif1")));
+    assertEquals("video/mp4", MediaTypeDetector.sniff(ftyp("M4V ")));
+    assertNull(MediaTypeDetector.sniff(ftyp("isom")));
+    assertNull(MediaTypeDetector.sniff(ftyp("mp42")));
+    assertEquals("video/quicktime", MediaTypeDetector.sniff(ftyp("qt  ")));
+    assertEquals("video/3gpp", MediaTypeDetector.sniff(ftyp("3gp5")));
+    assertEquals("audio/mp4", MediaTypeDetector.sniff(ftyp("M4A ")));
+    assertEquals("audio/ogg", MediaTypeDetector.sniff(ascii("OggS\0\2\0\0\0\0\0\0")));
+    assertEquals("audio/amr", MediaTypeDetector.sniff(ascii("#!AMR\n<\0\0\0\0\0")));
+    assertEquals("audio/amr-wb", MediaTypeDetector.sniff(ascii("#!AMR-WB\n\0\0\0")));
+    assertEquals(MediaTypeDetector.ZIP, MediaTypeDetector.sniff(ZIP));
+    assertNull(MediaTypeDetector.sniff(ascii("%PDF-1.7\n%\0\0")));
+    assertNull(MediaTypeDetector.sniff(new byte[] { (byte) 0xFF, (byte) 0xD8 }));
+    assertNull(MediaTypeDetector.sniff(null));
+  }
+
+  @Test
+  void contentWinsOverMislabeledDeclaredTypeAndName() {
+    assertEquals("image/jpeg", MediaTypeDetector.detect(JPEG, "application/octet-stream", "photo.bin"));
+    assertEquals("image/png", MediaTypeDetector.detect(PNG, "image/jpeg", "screenshot.jpg"));
+    assertEquals("video/mp4", MediaTypeDetector.detect(ftyp("mp42"), "image/jpeg", "not-a-photo.jpg"));
+  }
+
+  @Test
+  void genericIsoBrandsFollowTheDeclaredAudioOrVideoType() {
+    assertEquals("audio/mp4", MediaTypeDetector.detect(ftyp("isom"), "audio/mp4", "voice-1760000000000.m4a"));
+    assertEquals("audio/mp4;codecs=mp4a.40.2", MediaTypeDetector.detect(ftyp("mp42"), "audio/mp4;codecs=mp4a.40.2", "voice"));
+    assertEquals("audio/mp4", MediaTypeDetector.detect(ftyp("iso5"), "application/octet-stream", "note.m4a"));
+    assertEquals("video/quicktime", MediaTypeDetector.detect(ftyp("isom"), "video/x-quicktime", "clip.mov"));
+    assertEquals("video/mp4", MediaTypeDetector.detect(ftyp("isom"), null, "clip"));
+    assertEquals("video/mp4", MediaTypeDetector.detect(ftyp("mp41"), "image/png", "fake.png"));
+    assertEquals("voice", MediaTypeDetector.mediaKind(MediaTypeDetector.detect(ftyp("isom"), "audio/mp4", "voice.m4a")));
+  }
+
+  @Test
+  void zipIsApkByNameOtherwiseKeepsDeclaredDocumentType() {
+    assertEquals(MediaTypeDetector.APK, MediaTypeDetector.detect(ZIP, "application/octet-stream", "App-Release.APK"));
+    String docx = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+    assertEquals(docx, MediaTypeDetector.detect(ZIP, docx, "report.docx"));
+    assertEquals(MediaTypeDetector.ZIP, MediaTypeDetector.detect(ZIP, "image/png", "fake.png"));
+    assertEquals(MediaTypeDetector.ZIP, MediaTypeDetector.detect(ZIP, null, "archive.zip"));
+  }
+
+  @Test
+  void fallsBackToDeclaredMediaTypeThenExtension() {
+    byte[] svg = ascii("<svg xmlns=\"");
+    assertEquals("video/quicktime", MediaTypeDetector.detect(null, "video/x-quicktime", "clip.mov"));
+    assertEquals("audio/ogg; codecs=opus", MediaTypeDetector.detect(null, " Audio/Ogg; codecs=opus", "voice"));
+    assertEquals("image/svg+xml", MediaTypeDetector.detect(svg, "application/octet-stream", "drawing.SVG"));
+    assertEquals("image/heif", MediaTypeDetector.detect(null, null, "IMG.hif"));
+    assertEquals("application/pdf", MediaTypeDetector.detect(ascii("%PDF-1.7\n%\0\0"), "application/pdf", "a.pdf"));
+    assertEquals("application/octet-stream", MediaTypeDetector.detect(new byte[0], "", "notes"));
+    assertEquals("application/octet-stream", MediaTypeDetector.detect(null, null, "trailing."));
+  }
+
+  @Test
+  void mediaKindMapsAudioToVoice() {
+    assertEquals("image", MediaTypeDetector.mediaKind("image/heic"));
+    assertEquals("video", MediaTypeDetector.mediaKind(" VIDEO/mp4"));
+    assertEquals("voice", MediaTypeDetector.mediaKind("audio/ogg"));
+    assertNull(MediaTypeDetector.mediaKind("application/pdf"));
+    assertNull(MediaTypeDetector.mediaKind(null));
+  }
+
+  private static byte[] ftyp(String brand) {
+    return ascii("\0\0\0\u0018ftyp" + brand);
+  }
+
+  private static byte[] ascii(String value) {
+    return value.getBytes(StandardCharsets.ISO_8859_1);
+  }
+}
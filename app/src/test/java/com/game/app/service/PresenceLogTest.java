@@ -0,0 +1,77 @@
+package com.game.app.service;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.game.app.service.PresenceLog.Delta;
+import com.game.app.service.PresenceLog.PresenceChange;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PresenceLogTest {
+
+  @Test
+  void deltaKeepsTheLatestTransitionPerUserInVersionOrder() {
+    PresenceLog log = new PresenceLog(16, "memory");
+    long start = log.currentVersion();
+    log.append("alice", "online", null);
+    long seen = log.append("bob", "online", null);
+    log.append("alice", "offline", 100L);
+    log.append("carol", "online", null);
+    long last = log.append("bob", "offline", 200L);
+
+    Delta delta = log.changesSince(seen);
+
+    assertEquals(last, delta.version());
+    assertEquals(
+        List.of("alice:offline", "carol:online", "bob:offline"),
+        delta.changes().stream().map(change -> change.username() + ":" + change.status()).toList());
+    assertEquals(3, log.changesSince(start).changes().size());
+    assertTrue(log.changesSince(last).changes().isEmpty());
+  }
+
+  @Test
+  void versionsOutsideTheRetainedWindowNeedASnapshot() {
+    PresenceLog log = new PresenceLog(16, "memory");
+    long start = log.currentVersion();
+    for (int i = 0; i < 20; i += 1) {
+      log.append("user" + i, "online", null);
+    }
+
+    assertNull(log.changesSince(start));
+    assertNull(log.changesSince(start - 1000));
+    assertNull(log.changesSince(log.currentVersion() + 1));
+    List<PresenceChange> retained = log.changesSince(start + 4).changes();
+    assertEquals(16, retained.size());
+    assertEquals(3L, log.metricsSnapshot().get("snapshotsRequired"));
+  }
+
+  @Test
+  void aTokenFromAnotherNodeNeedsASnapshot() {
+    PresenceLog nodeA = new PresenceLog(16, "memory");
+    PresenceLog nodeB = new PresenceLog(16, "memory");
+    String seenOnA = nodeA.token(nodeA.append("alice", "online", null));
+    nodeB.append("bob", "online", null);
+    nodeB.append("carol", "online", null);
+
+    // The client reconnects to node B with the version it last applied on node A.
+    assertNull(nodeB.changesSince(seenOnA));
+    assertNull(nodeB.changesSince(seenOnA.substring(seenOnA.indexOf(':') + 1)));
+    assertNull(nodeB.changesSince((String) null));
+    assertEquals(1, nodeA.changesSince(nodeA.token(nodeA.currentVersion() - 1)).changes().size());
+    assertTrue(nodeA.changesSince(seenOnA).changes().isEmpty());
+  }
+
+  @Test
+  void sharedPresenceAlwaysNeedsASnapshot() {
+    PresenceLog log = new PresenceLog(16, "jdbc");
+    String start = log.token(log.currentVersion());
+    log.append("alice", "online", null);
+
+    assertNull(log.changesSince(start));
+    assertNull(log.changesSince(log.token(log.currentVersion())));
+  }
+}
@@ -0,0 +1,70 @@
+package com.game.app.service;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.game.app.service.TypingTracker.TypingPair;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TypingTrackerTest {
+
+  private static final long START = System.currentTimeMillis();
+
+  @Test
+  void forwardsTransitionsAndDropsRepeats() {
+    TypingTracker tracker = new TypingTracker(1000, 6000, 100);
+
+    assertFalse(tracker.update("alice", "bob", false, START));
+    assertTrue(tracker.update("alice", "bob", true, START));
+    assertFalse(tracker.update("alice", "bob", true, START + 100));
+    assertTrue(tracker.update("alice", "bob", true, START + 1000));
+    assertTrue(tracker.update("alice", "bob", false, START + 1100));
+    assertFalse(tracker.update("alice", "bob", false, START + 1200));
+    assertTrue(tracker.update("alice", "bob", true, START + 1300));
+    assertTrue(tracker.update("bob", "alice", true, START + 1300));
+  }
+
+  @Test
+  void quietSenderExpiresOnceAndMessageClearsWithoutAFrame() {
+    TypingTracker tracker = new TypingTracker(1000, 6000, 100);
+    tracker.update("alice", "bob", true, START);
+    tracker.update("carol", "bob", true, START);
+    tracker.update("alice", "bob", true, START + 3000);
+    tracker.clear("carol", "bob");
+
+    assertEquals(List.of(), tracker.expire(START + 8000));
+    assertEquals(List.of(new TypingPair("alice", "bob")), tracker.expire(START + 9100));
+    assertEquals(List.of(), tracker.expire(START + 20000));
+    assertEquals(0, tracker.metricsSnapshot().get("typingPairs"));
+  }
+
+  @Test
+  void keystrokeRateTypingLoadIsCoalesced() {
+    // 200 conversations, each sender typing=true on every keystroke (every 100ms) for 10s and then going
+    // quiet without a typing=false.
+    TypingTracker tracker = new TypingTracker(1000, 6000, 100);
+    int pairs = 200;
+    long frames = 0;
+    long outbound = 0;
+    for (long t = 0; t < 10000; t += 100) {
+      for (int i = 0; i < pairs; i += 1) {
+        frames += 1;
+        if (tracker.update("sender" + i, "peer" + i, true, START + t)) {
+          outbound += 1;
+        }
+      }
+    }
+    for (long t = 10000; t <= 20000; t += 100) {
+      outbound += tracker.expire(START + t).size();
+    }
+
+    assertEquals(20000L, frames);
+    // Ten keep-alive trues and one expiry false per conversation instead of 100 frames.
+    assertEquals(pairs * 11L, outbound);
+    assertEquals(outbound, tracker.metricsSnapshot().get("forwarded"));
+  }
+}
@@ -0,0 +1,127 @@
+package com.game.app.service;
+
+import java.lang.reflect.Proxy;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.game.app.model.UserEntity;
+import com.game.app.repository.UserRepository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserDirectoryTest {
+
+  @Test
+  void servesRepeatedLookupsFromEitherIndexWithoutReloading() {
+    StubRepository repository = new StubRepository(user(1L, "alice", "chat"));
+    UserDirectory directory = new UserDirectory(repository.proxy(), event -> {}, 100, 60000);
+
+    assertTrue(directory.hasChatRole("Alice"));
+    assertEquals("alice", directory.findById(1L).orElseThrow().username());
+    assertTrue(directory.findByUsername(" alice ").orElseThrow().isChatUser());
+
+    assertEquals(1, repository.lookups.get());
+    assertEquals(2L, directory.metricsSnapshot().get("hits"));
+    assertEquals(1L, directory.metricsSnapshot().get("misses"));
+  }
+
+  @Test
+  void invalidationReloadsChangedRole() {
+    UserEntity alice = user(1L, "alice", "chat");
+    StubRepository repository = new StubRepository(alice);
+    UserDirectory directory = new UserDirectory(repository.proxy(), event -> {}, 100, 60000);
+
+    assertTrue(directory.hasChatRole("alice"));
+    alice.setRole("game");
+    assertTrue(directory.hasChatRole("alice"));
+
+    directory.invalidate(alice);
+
+    assertFalse(directory.findById(1L).orElseThrow().isChatUser());
+    assertEquals(2, repository.lookups.get());
+  }
+
+  @Test
+  void expiredAndEvictedEntriesAreReloaded() {
+    StubRepository repository = new StubRepository(user(1L, "alice", "chat"), user(2L, "bob", "chat"));
+    UserDirectory expiring = new UserDirectory(repository.proxy(), event -> {}, 100, 0);
+    expiring.findById(1L);
+    sleepPastClockTick();
+    expiring.findById(1L);
+    assertEquals(2, repository.lookups.get());
+
+    UserDirectory bounded = new UserDirectory(repository.proxy(), event -> {}, 1, 60000);
+    bounded.findById(1L);
+    bounded.findById(2L);
+    bounded.findById(1L);
+    assertEquals(5, repository.lookups.get());
+    assertEquals(1, bounded.metricsSnapshot().get("entries"));
+  }
+
+  @Test
+  void unknownUsersAreNotCached() {
+    StubRepository repository = new StubRepository();
+    UserDirectory directory = new UserDirectory(repository.proxy(), event -> {}, 100, 60000);
+
+    assertFalse(directory.hasChatRole("ghost"));
+    assertFalse(directory.hasChatRole("ghost"));
+
+    assertEquals(2, repository.lookups.get());
+  }
+
+  private static void sleepPastClockTick() {
+    try {
+      Thread.sleep(5);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static UserEntity user(Long id, String username, String role) {
+    UserEntity user = new UserEntity(username, "hash");
+    ReflectionTestUtils.setField(user, "id", id);
+    user.setRole(role);
+    return user;
+  }
+
+  private static final class StubRepository {
+    private final UserEntity[] users;
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    private StubRepository(UserEntity... users) {
+      this.users = users;
+    }
+
+    private UserRepository proxy() {
+      return (UserRepository) Proxy.newProxyInstance(
+          UserRepository.class.getClassLoader(),
+          new Class<?>[] { UserRepository.class },
+          (proxy, method, args) -> switch (method.getName()) {
+            case "findById" -> {
+              lookups.incrementAndGet();
+              yield find(user -> user.getId().equals(args[0]));
+            }
+            case "findByUsername" -> {
+              lookups.incrementAndGet();
+              yield find(user -> user.getUsername().equals(args[0]));
+            }
+            default -> null;
+          });
+    }
+
+    private Optional<UserEntity> find(Predicate<UserEntity> filter) {
+      for (UserEntity user : users) {
+        if (filter.test(user)) {
+          return Optional.of(user);
+        }
+      }
+      return Optional.empty();
+    }
+  }
+}
@@ -0,0 +1,206 @@
+package com.game.app.websocket;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.JacksonJsonMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpSession;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.util.MimeTypeUtils;
+
+import com.game.app.config.ChatSchema;
+import com.game.app.config.StompSessionRegistry;
+import com.game.app.model.ChatMessageEntity;
+import com.game.app.repository.UserRepository;
+import com.game.app.service.ClusterNode;
+import com.game.app.service.JwtTokenService.AccessIdentity;
+import com.game.app.service.PresenceStore;
+import com.game.app.service.UserDirectory;
+import com.game.app.websocket.ChatWebSocketController.IncomingMessage;
+import com.game.app.websocket.ClusterTransport.RelayedMessage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatMessageDeliveryTest {
+
+  private static final MessageHeaders JSON_HEADERS =
+      new MessageHeaders(Map.of(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON));
+
+  private final List<Message<?>> sent = new CopyOnWriteArrayList<>();
+  private final List<Object> payloads = new CopyOnWriteArrayList<>();
+  private final Set<String> bobSessions = new LinkedHashSet<>();
+  private final StompSessionRegistry sessionRegistry = new StompSessionRegistry(userDirectory(), 3600000);
+  private final LocalClusterTransport transport = new LocalClusterTransport();
+  private final Set<String> onlineElsewhere = new LinkedHashSet<>();
+  private ClusterRouter router;
+
+  @Test
+  void v1OnlyRecipientGetsOneUserDestinationFrame() {
+    connect("s1", ChatSchema.V1);
+    connect("s2", ChatSchema.V1);
+
+    delivery().deliver("bob", "alice", replyMessage(), 1760000000000L);
+
+    assertEquals(1, sent.size());
+    assertNull(SimpMessageHeaderAccessor.getSessionId(sent.get(0).getHeaders()));
+    assertInstanceOf(IncomingMessage.class, payloads.get(0));
+  }
+
+  @Test
+  void mixedSessionsGetTheirOwnSchema() {
+    connect("s1", ChatSchema.V1);
+    connect("s2", ChatSchema.V2);
+
+    delivery().deliver("bob", "alice", replyMessage(), 1760000000000L);
+
+    assertEquals(2, sent.size());
+    assertEquals("s1", SimpMessageHeaderAccessor.getSessionId(sent.get(0).getHeaders()));
+    assertInstanceOf(IncomingMessage.class, payloads.get(0));
+    assertEquals("s2", SimpMessageHeaderAccessor.getSessionId(sent.get(1).getHeaders()));
+    CompactChatMessage compact = assertInstanceOf(CompactChatMessage.class, payloads.get(1));
+    assertEquals("Dinner on Friday?", compact.reply().text());
+  }
+
+  @Test
+  void perSessionDeliveryRelaysOneVerboseCopyToTheRecipientsOtherNodes() {
+    connect("s1", ChatSchema.V2);
+    onlineElsewhere.add("bob");
+    LocalClusterTransport peer = new LocalClusterTransport();
+    List<RelayedMessage> relayed = new CopyOnWriteArrayList<>();
+    peer.onReceive(batch -> relayed.addAll(batch.messages()));
+    transport.connect(peer);
+
+    delivery().deliver("bob", "alice", replyMessage(), 1760000000000L);
+    router.flushNow();
+
+    assertEquals(1, sent.size());
+    assertEquals("s1", SimpMessageHeaderAccessor.getSessionId(sent.get(0).getHeaders()));
+    assertEquals(1, relayed.size());
+    assertEquals("/user/bob/queue/messages", relayed.get(0).destination());
+    assertInstanceOf(IncomingMessage.class, payloads.get(1));
+  }
+
+  @Test
+  void compactFrameDropsNullsAndDuplicatedReplyFields() {
+    JacksonJsonMessageConverter converter = new JacksonJsonMessageConverter();
+    ChatMessageEntity entity = replyMessage();
+
+    String v1 = encode(converter, ChatMessageDelivery.incomingMessage(entity, "alice", 1760000000000L));
+    String v2 = encode(converter, CompactChatMessage.of(entity, "alice", 1760000000000L));
+
+    assertTrue(v1.contains("\"replyText\""));
+    assertFalse(v2.contains("null"));
+    assertFalse(v2.contains("\"e\""));
+    assertEquals(1, v2.split("Dinner on Friday\\?", -1).length - 1);
+    assertTrue(v2.length() * 2 < v1.length(), v2.length() + " vs " + v1.length());
+  }
+
+  private ChatMessageDelivery delivery() {
+    SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> sent.add(message));
+    template.setMessageConverter(new RecordingConverter());
+    router = new ClusterRouter(
+        transport, presence(), userDirectory(), new ClusterNode("node-a"), () -> template, 256, 0L, 100);
+    return new ChatMessageDelivery(template, userRegistry(), sessionRegistry, router);
+  }
+
+  private void connect(String sessionId, ChatSchema schema) {
+    bobSessions.add(sessionId);
+    sessionRegistry.connect(sessionId, new AccessIdentity(2L, "bob", "chat", Instant.now()), schema);
+  }
+
+  private PresenceStore presence() {
+    return (PresenceStore) Proxy.newProxyInstance(
+        PresenceStore.class.getClassLoader(),
+        new Class<?>[] { PresenceStore.class },
+        (proxy, method, args) -> "isOnlineElsewhere".equals(method.getName()) && onlineElsewhere.contains(args[0]));
+  }
+
+  private SimpUserRegistry userRegistry() {
+    SimpUser bob = (SimpUser) Proxy.newProxyInstance(
+        SimpUser.class.getClassLoader(),
+        new Class<?>[] { SimpUser.class },
+        (proxy, method, args) -> "getSessions".equals(method.getName()) ? sessions() : null);
+    return (SimpUserRegistry) Proxy.newProxyInstance(
+        SimpUserRegistry.class.getClassLoader(),
+        new Class<?>[] { SimpUserRegistry.class },
+        (proxy, method, args) -> "getUser".equals(method.getName()) && "bob".equals(args[0]) ? bob : null);
+  }
+
+  private Set<SimpSession> sessions() {
+    Set<SimpSession> sessions = new LinkedHashSet<>();
+    for (String id : bobSessions) {
+      sessions.add((SimpSession) Proxy.newProxyInstance(
+          SimpSession.class.getClassLoader(),
+          new Class<?>[] { SimpSession.class },
+          (proxy, method, args) -> switch (method.getName()) {
+            case "getId" -> id;
+            case "hashCode" -> id.hashCode();
+            case "equals" -> proxy == args[0];
+            default -> null;
+          }));
+    }
+    return sessions;
+  }
+
+  private static UserDirectory userDirectory() {
+    UserRepository repository = (UserRepository) Proxy.newProxyInstance(
+        UserRepository.class.getClassLoader(),
+        new Class<?>[] { UserRepository.class },
+        (proxy, method, args) -> method.getName().startsWith("find") ? Optional.empty() : null);
+    return new UserDirectory(repository, event -> {}, 100, 0);
+  }
+
+  private static ChatMessageEntity replyMessage() {
+    ChatMessageEntity entity = new ChatMessageEntity();
+    entity.setId(42L);
+    entity.setFromUsername("alice");
+    entity.setToUsername("bob");
+    entity.setMessage("Sounds good");
+    entity.setType("text");
+    entity.setReplyText("Dinner on Friday?");
+    entity.setReplySenderName("bob");
+    entity.setReplyMessageId(41L);
+    entity.setReplyType("text");
+    return entity;
+  }
+
+  private static String encode(JacksonJsonMessageConverter converter, Object payload) {
+    return new String((byte[]) converter.toMessage(payload, JSON_HEADERS).getPayload(), StandardCharsets.UTF_8);
+  }
+
+  private final class RecordingConverter extends AbstractMessageConverter {
+
+    private RecordingConverter() {
+      super(MimeTypeUtils.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+      return true;
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+      payloads.add(payload);
+      return new byte[0];
+    }
+  }
+}
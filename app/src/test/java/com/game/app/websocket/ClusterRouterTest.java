@@ -0,0 +1,206 @@
+package com.game.app.websocket;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.JacksonJsonMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import com.game.app.service.ClusterNode;
+import com.game.app.repository.UserRepository;
+import com.game.app.service.PresenceStore;
+import com.game.app.service.UserChangedEvent;
+import com.game.app.service.UserDirectory;
+import com.game.app.websocket.ClusterTransport.RelayBatch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterRouterTest {
+
+  @Test
+  void relaysTopicsAndUsersOnlineElsewhereInOneBatch() {
+    Node a = new Node("node-a", Set.of("bob"));
+    Node b = new Node("node-b", Set.of());
+    a.transport.connect(b.transport);
+
+    a.send("/topic/lobby", "{\"n\":1}", null);
+    a.send("/user/bob/queue/messages", "{\"n\":2}", null);
+    a.send("/user/carol/queue/messages", "{\"n\":3}", null);
+    a.send("/user/bob/queue/messages", "{\"n\":4}", "session-1");
+    a.router.flushNow();
+
+    assertEquals(2, b.received.size());
+    assertEquals("/topic/lobby", SimpMessageHeaderAccessor.getDestination(b.received.get(0).getHeaders()));
+    assertEquals("/user/bob/queue/messages", SimpMessageHeaderAccessor.getDestination(b.received.get(1).getHeaders()));
+    assertArrayEquals("{\"n\":2}".getBytes(StandardCharsets.UTF_8), (byte[]) b.received.get(1).getPayload());
+    assertEquals(MimeTypeUtils.APPLICATION_JSON, b.received.get(1).getHeaders().get(MessageHeaders.CONTENT_TYPE));
+    assertEquals(1L, a.router.metricsSnapshot().get("batches"));
+    assertEquals(1L, a.router.metricsSnapshot().get("relayedUser"));
+    assertEquals(1L, a.router.metricsSnapshot().get("relayedTopic"));
+    assertEquals(2L, b.router.metricsSnapshot().get("received"));
+    assertEquals(1, b.router.metricsSnapshot().get("receivedFromNodes"));
+  }
+
+  @Test
+  void relayedMessagesAreNotRelayedBack() {
+    Node a = new Node("node-a", Set.of());
+    Node b = new Node("node-b", Set.of());
+    a.transport.connect(b.transport);
+
+    a.send("/topic/lobby", "{}", null);
+    a.router.flushNow();
+    b.router.flushNow();
+
+    assertEquals(1, b.received.size());
+    assertEquals("node-a", b.received.get(0).getHeaders().get(ClusterRouter.ORIGIN_HEADER));
+    assertEquals(0L, b.router.metricsSnapshot().get("batches"));
+    assertTrue(a.received.isEmpty());
+  }
+
+  @Test
+  void aNodeWithoutPeersRelaysNothing() {
+    Node a = new Node("node-a", Set.of("bob"));
+
+    a.send("/topic/lobby", "{}", null);
+    a.send("/user/bob/queue/messages", "{}", null);
+    a.router.flushNow();
+
+    assertEquals(0, a.router.metricsSnapshot().get("queued"));
+    assertEquals(0L, a.router.metricsSnapshot().get("relayedTopic"));
+  }
+
+  @Test
+  void userChangesAreAppliedOnTheOtherNodesAndNotRelayedBack() {
+    Node a = new Node("node-a", Set.of());
+    Node b = new Node("node-b", Set.of());
+    a.transport.connect(b.transport);
+
+    a.directory.invalidate(7L, "Alice");
+    a.router.flushNow();
+    b.router.flushNow();
+
+    assertEquals(List.of(new UserChangedEvent(7L, "alice", false)), a.events);
+    assertEquals(List.of(new UserChangedEvent(7L, "alice", true)), b.events);
+    assertEquals(1L, a.router.metricsSnapshot().get("relayedUserChanges"));
+    assertEquals(1L, b.router.metricsSnapshot().get("appliedUserChanges"));
+    assertEquals(0L, b.router.metricsSnapshot().get("batches"));
+    // Applied to the directory, not handed to the broker.
+    assertTrue(b.received.isEmpty());
+  }
+
+  @Test
+  void aBatchThePeersDidNotTakeIsCountedAsFailed() {
+    ClusterTransport failing = new ClusterTransport() {
+      @Override
+      public boolean hasPeers() {
+        return true;
+      }
+
+      @Override
+      public void publish(RelayBatch batch) {
+        throw new IllegalStateException("Relay batch not taken by 1 of 1 peers");
+      }
+
+      @Override
+      public void onReceive(Consumer<RelayBatch> handler) {
+      }
+    };
+    ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+    SimpMessagingTemplate template = new SimpMessagingTemplate(brokerChannel);
+    ClusterRouter router = new ClusterRouter(failing, new FixedPresence(Set.of()), directory(event -> {}),
+        new ClusterNode("node-a"), () -> template, 256, 0L, 100);
+    brokerChannel.addInterceptor(router);
+
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+    accessor.setDestination("/topic/lobby");
+    brokerChannel.send(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    router.flushNow();
+
+    assertEquals(1L, router.metricsSnapshot().get("failedBatches"));
+    assertEquals(1L, router.metricsSnapshot().get("dropped"));
+  }
+
+  private static UserDirectory directory(Consumer<Object> events) {
+    UserRepository repository = (UserRepository) Proxy.newProxyInstance(
+        UserRepository.class.getClassLoader(),
+        new Class<?>[] { UserRepository.class },
+        (proxy, method, args) -> method.getName().startsWith("find") ? Optional.empty() : null);
+    return new UserDirectory(repository, events::accept, 100, 60000);
+  }
+
+  private static final class Node {
+    private final LocalClusterTransport transport = new LocalClusterTransport();
+    // Only what arrived from other nodes; local sends reach the broker channel too.
+    private final List<Message<?>> received = new CopyOnWriteArrayList<>();
+    private final ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+    private final List<Object> events = new CopyOnWriteArrayList<>();
+    private final UserDirectory directory;
+    private final ClusterRouter router;
+
+    private Node(String nodeId, Set<String> onlineElsewhere) {
+      brokerChannel.subscribe(message -> {
+        if (message.getHeaders().containsKey(ClusterRouter.ORIGIN_HEADER)) {
+          received.add(message);
+        }
+      });
+      SimpMessagingTemplate template = new SimpMessagingTemplate(brokerChannel);
+      template.setMessageConverter(new JacksonJsonMessageConverter());
+      directory = directory(this::publishEvent);
+      router = new ClusterRouter(transport, new FixedPresence(onlineElsewhere), directory, new ClusterNode(nodeId),
+          () -> template, 256, 0L, 100);
+      brokerChannel.addInterceptor(router);
+    }
+
+    // What the application event multicaster does for the router's listener.
+    private void publishEvent(Object event) {
+      events.add(event);
+      router.onUserChanged((UserChangedEvent) event);
+    }
+
+    private void send(String destination, String json, String sessionId) {
+      SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+      accessor.setDestination(destination);
+      accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+      accessor.setSessionId(sessionId);
+      brokerChannel.send(MessageBuilder.createMessage(json.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders()));
+    }
+  }
+
+  private record FixedPresence(Set<String> onlineElsewhere) implements PresenceStore {
+
+    @Override
+    public boolean markOnline(String username) {
+      return false;
+    }
+
+    @Override
+    public boolean markOffline(String username) {
+      return false;
+    }
+
+    @Override
+    public boolean isOnlineHere(String username) {
+      return false;
+    }
+
+    @Override
+    public boolean isOnlineElsewhere(String username) {
+      return onlineElsewhere.contains(username);
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package com.game.app.websocket;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import com.game.app.websocket.ClusterTransport.RelayBatch;
+import com.game.app.websocket.ClusterTransport.RelayedMessage;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpClusterTransportTest {
+
+  private static final String SECRET = "s3cret";
+
+  @Test
+  void postsBatchesToAPeerThatHandsThemToItsRouter() throws Exception {
+    // A stand-in peer: the relay endpoint of another node, backed by that node's transport.
+    HttpClusterTransport receiver = new HttpClusterTransport("", SECRET, 2000);
+    List<RelayBatch> delivered = new CopyOnWriteArrayList<>();
+    receiver.onReceive(delivered::add);
+    HttpServer peer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    peer.createContext(HttpClusterTransport.PATH, exchange -> {
+      byte[] body;
+      try (InputStream in = exchange.getRequestBody()) {
+        body = in.readAllBytes();
+      }
+      boolean accepted = receiver.accept(exchange.getRequestHeaders().getFirst(HttpClusterTransport.SECRET_HEADER), body);
+      exchange.sendResponseHeaders(accepted ? 204 : 403, -1);
+      exchange.close();
+    });
+    peer.start();
+    try {
+      String url = "http://127.0.0.1:" + peer.getAddress().getPort();
+      HttpClusterTransport sender = new HttpClusterTransport(url + "/", SECRET, 2000);
+      HttpClusterTransport wrongSecret = new HttpClusterTransport(url, "other", 2000);
+      assertTrue(sender.hasPeers());
+
+      byte[] payload = "{\"text\":\"hi\"}".getBytes(StandardCharsets.UTF_8);
+      sender.publish(new RelayBatch("node-a", List.of(
+          new RelayedMessage("/user/bob/queue/messages", "application/json", payload),
+          new RelayedMessage("/topic/lobby", null, new byte[0]))));
+      assertThrows(IllegalStateException.class, () -> wrongSecret.publish(
+          new RelayBatch("node-x", List.of(new RelayedMessage("/topic/lobby", null, new byte[0])))));
+
+      assertEquals(1, delivered.size());
+      RelayBatch batch = delivered.get(0);
+      assertEquals("node-a", batch.originNode());
+      assertEquals("/user/bob/queue/messages", batch.messages().get(0).destination());
+      assertEquals("application/json", batch.messages().get(0).contentType());
+      assertArrayEquals(payload, batch.messages().get(0).payload());
+      assertNull(batch.messages().get(1).contentType());
+
+      Map<?, ?> peerCounters = (Map<?, ?>) ((Map<?, ?>) sender.metricsSnapshot().get("peers")).get("peer-1");
+      assertEquals(1L, peerCounters.get("batches"));
+      assertEquals(2L, peerCounters.get("messages"));
+      assertEquals(1L, ((Map<?, ?>) ((Map<?, ?>) wrongSecret.metricsSnapshot().get("peers")).get("peer-1")).get("failures"));
+      assertEquals(1L, receiver.metricsSnapshot().get("rejectedBatches"));
+    } finally {
+      peer.stop(0);
+    }
+  }
+
+  @Test
+  void unreachablePeerCountsAFailureAndFailsThePublish() {
+    HttpClusterTransport sender = new HttpClusterTransport("http://127.0.0.1:1", SECRET, 500);
+
+    assertThrows(IllegalStateException.class, () -> sender.publish(
+        new RelayBatch("node-a", List.of(new RelayedMessage("/topic/lobby", null, new byte[0])))));
+
+    Map<?, ?> peerCounters = (Map<?, ?>) ((Map<?, ?>) sender.metricsSnapshot().get("peers")).get("peer-1");
+    assertEquals(1L, peerCounters.get("failures"));
+  }
+
+  @Test
+  void requiresASecretAndRejectsCorruptBodies() {
+    assertThrows(IllegalStateException.class, () -> new HttpClusterTransport("http://peer", " ", 2000));
+    HttpClusterTransport transport = new HttpClusterTransport("", SECRET, 2000);
+    assertFalse(transport.hasPeers());
+    assertThrows(IllegalArgumentException.class, () -> transport.accept(SECRET, new byte[] { 1, 0 }));
+  }
+}
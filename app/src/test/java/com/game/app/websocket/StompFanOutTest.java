@@ -0,0 +1,56 @@
+package com.game.app.websocket;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.util.MimeTypeUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class StompFanOutTest {
+
+  @Test
+  void encodesOnceAndSharesTheBodyAcrossUserDestinations() {
+    List<Message<?>> sent = new CopyOnWriteArrayList<>();
+    SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> sent.add(message));
+    CountingConverter converter = new CountingConverter();
+    template.setMessageConverter(converter);
+
+    new StompFanOut(template).sendToUsers("/queue/message-edits", "payload", "bob", "alice");
+
+    assertEquals(1, converter.encodes.get());
+    assertEquals(2, sent.size());
+    assertEquals("/user/bob/queue/message-edits", SimpMessageHeaderAccessor.getDestination(sent.get(0).getHeaders()));
+    assertEquals("/user/alice/queue/message-edits", SimpMessageHeaderAccessor.getDestination(sent.get(1).getHeaders()));
+    assertSame(sent.get(0).getPayload(), sent.get(1).getPayload());
+    assertEquals(MimeTypeUtils.APPLICATION_JSON, sent.get(1).getHeaders().get(MessageHeaders.CONTENT_TYPE));
+  }
+
+  private static final class CountingConverter extends AbstractMessageConverter {
+    private final AtomicInteger encodes = new AtomicInteger();
+
+    private CountingConverter() {
+      super(MimeTypeUtils.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+      return true;
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+      encodes.incrementAndGet();
+      return ("\"" + payload + "\"").getBytes(StandardCharsets.UTF_8);
+    }
+  }
+}
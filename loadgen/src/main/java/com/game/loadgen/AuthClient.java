@@ -0,0 +1,75 @@
+package com.game.loadgen;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/** Obtains access tokens from {@code /api/app/auth}, registering load users on first use. */
+final class AuthClient {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(15);
+
+  private final HttpClient httpClient;
+  private final ObjectMapper objectMapper;
+  private final URI authBase;
+  private final String password;
+  private final boolean register;
+
+  AuthClient(HttpClient httpClient, ObjectMapper objectMapper, LoadOptions options) {
+    this.httpClient = httpClient;
+    this.objectMapper = objectMapper;
+    this.authBase = URI.create(options.baseUrl() + "/api/app/auth/");
+    this.password = options.password();
+    this.register = options.register();
+  }
+
+  /** Returns a JWT for {@code username}, logging in or, when allowed, registering the user. */
+  String token(String username) throws IOException, InterruptedException {
+    Map<String, Object> credentials = new LinkedHashMap<>();
+    credentials.put("username", username);
+    credentials.put("password", password);
+    HttpResponse<String> login = post("login", credentials);
+    if (login.statusCode() == 200) {
+      return tokenOf(login);
+    }
+    if (!register || login.statusCode() != 401) {
+      throw new IOException("Login of " + username + " failed with HTTP " + login.statusCode() + ": " + login.body());
+    }
+    Map<String, Object> registration = new LinkedHashMap<>(credentials);
+    registration.put("name", "Load " + username);
+    registration.put("phone", "0000000000");
+    registration.put("email", username + "@loadtest.invalid");
+    registration.put("dob", "2000-01-01");
+    HttpResponse<String> registered = post("register", registration);
+    if (registered.statusCode() != 200) {
+      throw new IOException("Registration of " + username + " failed with HTTP " + registered.statusCode()
+          + ": " + registered.body());
+    }
+    return tokenOf(registered);
+  }
+
+  private HttpResponse<String> post(String action, Map<String, Object> body) throws IOException, InterruptedException {
+    HttpRequest request = HttpRequest.newBuilder(authBase.resolve(action))
+        .timeout(TIMEOUT)
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+        .build();
+    return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+  }
+
+  private String tokenOf(HttpResponse<String> response) throws IOException {
+    JsonNode token = objectMapper.readTree(response.body()).get("token");
+    if (token == null || token.asText().isBlank()) {
+      throw new IOException("No token in auth response: " + response.body());
+    }
+    return token.asText();
+  }
+}
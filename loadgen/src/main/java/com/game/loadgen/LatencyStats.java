@@ -0,0 +1,251 @@
+package com.game.loadgen;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Counters and latency histograms shared by all simulated users. Latencies are recorded in microseconds into
+ * HdrHistogram {@link Recorder}s, which writers can use without locking; the single reporter thread swaps out
+ * the interval histograms and folds them into the run totals.
+ *
+ * <p>Nothing is recorded until {@link #startMeasuring} ends the warmup.
+ */
+final class LatencyStats {
+
+  /** Sends without an ack or delivery after this long are counted as lost and forgotten. */
+  static final long LOST_AFTER_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+  private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(2);
+
+  enum Metric {
+    SEND_TO_ACK("send->ack"),
+    SEND_TO_DELIVER("send->deliver"),
+    GAME_MOVE("game move->state");
+
+    private final String label;
+
+    Metric(String label) {
+      this.label = label;
+    }
+  }
+
+  enum Counter {
+    SENT, ACKED, ACK_FAILED, DELIVERED, LOST, TYPING, READ, REACT, HEARTBEAT, GAME_MOVES, GAME_ROUNDS
+  }
+
+  private final Recorder[] recorders = new Recorder[Metric.values().length];
+  private final Histogram[] intervals = new Histogram[Metric.values().length];
+  private final Histogram[] totals = new Histogram[Metric.values().length];
+  private final LongAdder[] counters = new LongAdder[Counter.values().length];
+  private final long[] reportedCounters = new long[Counter.values().length];
+  private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+  private final Map<String, PendingSend> pending = new ConcurrentHashMap<>();
+  private volatile boolean measuring;
+  private volatile long measuringSinceNanos;
+
+  LatencyStats() {
+    for (int i = 0; i < recorders.length; i += 1) {
+      recorders[i] = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+      totals[i] = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+    }
+    for (int i = 0; i < counters.length; i += 1) {
+      counters[i] = new LongAdder();
+    }
+  }
+
+  void startMeasuring() {
+    for (int i = 0; i < recorders.length; i += 1) {
+      // Drop whatever the warmup left in the recorders.
+      recorders[i].reset();
+      totals[i].reset();
+    }
+    for (int i = 0; i < counters.length; i += 1) {
+      counters[i].reset();
+      reportedCounters[i] = 0;
+    }
+    errors.clear();
+    measuringSinceNanos = System.nanoTime();
+    measuring = true;
+  }
+
+  void count(Counter counter) {
+    if (measuring) {
+      counters[counter.ordinal()].increment();
+    }
+  }
+
+  void error(String type) {
+    if (measuring) {
+      errors.computeIfAbsent(type, ignored -> new LongAdder()).increment();
+    }
+  }
+
+  void record(Metric metric, long startNanos, long endNanos) {
+    if (measuring) {
+      long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0L, endNanos - startNanos));
+      recorders[metric.ordinal()].recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+    }
+  }
+
+  /** Registers a chat.send so its ack and its delivery to the peer can be timed against it. */
+  void sent(String tempId, long sentNanos) {
+    pending.put(tempId, new PendingSend(sentNanos));
+    count(Counter.SENT);
+  }
+
+  void acked(String tempId, boolean success, long nowNanos) {
+    PendingSend send = pending.get(tempId);
+    if (send == null || !send.markAcked()) {
+      return;
+    }
+    if (success) {
+      record(Metric.SEND_TO_ACK, send.sentNanos, nowNanos);
+      count(Counter.ACKED);
+    } else {
+      // A failed send is never delivered either.
+      pending.remove(tempId);
+      count(Counter.ACK_FAILED);
+      return;
+    }
+    removeIfDone(tempId, send);
+  }
+
+  void delivered(String tempId, long nowNanos) {
+    PendingSend send = pending.get(tempId);
+    if (send == null || !send.markDelivered()) {
+      return;
+    }
+    record(Metric.SEND_TO_DELIVER, send.sentNanos, nowNanos);
+    count(Counter.DELIVERED);
+    removeIfDone(tempId, send);
+  }
+
+  private void removeIfDone(String tempId, PendingSend send) {
+    if (send.isDone()) {
+      pending.remove(tempId, send);
+    }
+  }
+
+  /** Forgets sends that never completed, counting them as lost. */
+  void expirePending(long nowNanos) {
+    pending.entrySet().removeIf(entry -> {
+      if (nowNanos - entry.getValue().sentNanos < LOST_AFTER_NANOS) {
+        return false;
+      }
+      count(Counter.LOST);
+      return true;
+    });
+  }
+
+  int pendingCount() {
+    return pending.size();
+  }
+
+  /** Prints one line covering the time since the previous call. Only called from the reporter thread. */
+  void printInterval(PrintStream out, long intervalNanos) {
+    long elapsedSeconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - measuringSinceNanos);
+    StringBuilder line = new StringBuilder(String.format("[%5ds]", elapsedSeconds));
+    double seconds = Math.max(1e-9, intervalNanos / 1e9);
+    for (Counter counter : new Counter[] { Counter.SENT, Counter.ACKED, Counter.DELIVERED }) {
+      long current = counters[counter.ordinal()].sum();
+      line.append(String.format(" %s %.0f/s", counter.name().toLowerCase(Locale.ROOT), (current - reportedCounters[counter.ordinal()]) / seconds));
+      reportedCounters[counter.ordinal()] = current;
+    }
+    for (Metric metric : Metric.values()) {
+      int slot = metric.ordinal();
+      intervals[slot] = recorders[slot].getIntervalHistogram(intervals[slot]);
+      totals[slot].add(intervals[slot]);
+      if (intervals[slot].getTotalCount() > 0) {
+        line.append(" | ").append(metric.label).append(' ').append(percentiles(intervals[slot]));
+      }
+    }
+    line.append(" | pending ").append(pending.size());
+    long errorCount = errors.values().stream().mapToLong(LongAdder::sum).sum();
+    if (errorCount > 0) {
+      line.append(" | errors ").append(errorCount);
+    }
+    out.println(line);
+  }
+
+  /** Prints the run totals. Call after the last {@link #printInterval}, from the same thread. */
+  void printSummary(PrintStream out, LoadOptions options) {
+    for (Metric metric : Metric.values()) {
+      int slot = metric.ordinal();
+      intervals[slot] = recorders[slot].getIntervalHistogram(intervals[slot]);
+      totals[slot].add(intervals[slot]);
+    }
+    double seconds = Math.max(1e-9, (System.nanoTime() - measuringSinceNanos) / 1e9);
+    out.println();
+    out.printf("=== %d users, game %s, measured %.1f s ===%n", options.users(), options.game().name().toLowerCase(Locale.ROOT), seconds);
+    for (Counter counter : Counter.values()) {
+      long value = counters[counter.ordinal()].sum();
+      out.printf("%-12s %10d  %10.1f/s%n", counter.name().toLowerCase(Locale.ROOT), value, value / seconds);
+    }
+    out.println();
+    out.printf("%-18s %10s %10s %10s %10s %10s%n", "latency (ms)", "count", "p50", "p99", "p999", "max");
+    for (Metric metric : Metric.values()) {
+      Histogram total = totals[metric.ordinal()];
+      out.printf("%-18s %10d %10.2f %10.2f %10.2f %10.2f%n",
+          metric.label,
+          total.getTotalCount(),
+          millis(total.getValueAtPercentile(50)),
+          millis(total.getValueAtPercentile(99)),
+          millis(total.getValueAtPercentile(99.9)),
+          millis(total.getMaxValue()));
+    }
+    if (!errors.isEmpty()) {
+      out.println();
+      out.println("errors:");
+      new TreeMap<>(errors).forEach((type, count) -> out.printf("  %-24s %d%n", type, count.sum()));
+    }
+  }
+
+  private static String percentiles(Histogram histogram) {
+    return String.format("p50 %.1f p99 %.1f p999 %.1f ms",
+        millis(histogram.getValueAtPercentile(50)),
+        millis(histogram.getValueAtPercentile(99)),
+        millis(histogram.getValueAtPercentile(99.9)));
+  }
+
+  private static double millis(long micros) {
+    return micros / 1000.0;
+  }
+
+  private static final class PendingSend {
+    private final long sentNanos;
+    private boolean acked;
+    private boolean delivered;
+
+    private PendingSend(long sentNanos) {
+      this.sentNanos = sentNanos;
+    }
+
+    private synchronized boolean markAcked() {
+      if (acked) {
+        return false;
+      }
+      acked = true;
+      return true;
+    }
+
+    private synchronized boolean markDelivered() {
+      if (delivered) {
+        return false;
+      }
+      delivered = true;
+      return true;
+    }
+
+    private synchronized boolean isDone() {
+      return acked && delivered;
+    }
+  }
+}
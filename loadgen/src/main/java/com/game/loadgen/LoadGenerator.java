@@ -0,0 +1,152 @@
+package com.game.loadgen;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Headless load generator for the STOMP chat and game paths. Logs in (or registers) {@code --users} users,
+ * opens one STOMP session each, runs the simulated traffic for {@code --warmup} plus {@code --duration}
+ * seconds and prints throughput and send-to-ack, send-to-deliver and game move latency percentiles.
+ *
+ * <p>Rates should stay within the server's per-user admission budgets ({@code app.websocket.admission.*}),
+ * otherwise throttled frames show up as {@code server_rate_limited} errors rather than as latency.
+ */
+public final class LoadGenerator {
+
+  private LoadGenerator() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (LoadOptions.wantsHelp(args)) {
+      System.out.println(LoadOptions.USAGE);
+      return;
+    }
+    LoadOptions options;
+    try {
+      options = LoadOptions.parse(args);
+    } catch (IllegalArgumentException ex) {
+      System.err.println(ex.getMessage());
+      System.err.println(LoadOptions.USAGE);
+      System.exit(2);
+      return;
+    }
+    System.exit(run(options));
+  }
+
+  static int run(LoadOptions options) throws InterruptedException {
+    ObjectMapper objectMapper = new ObjectMapper();
+    LatencyStats stats = new LatencyStats();
+    String runId = UUID.randomUUID().toString().replace("-", "").substring(0, 6).toUpperCase(Locale.ROOT);
+    ExecutorService ioExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    HttpClient httpClient = HttpClient.newBuilder()
+        .executor(ioExecutor)
+        .connectTimeout(Duration.ofSeconds(10))
+        .build();
+    int schedulerThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+    ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(schedulerThreads, runnable -> {
+      Thread thread = new Thread(runnable, "loadgen-scheduler");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    List<SimulatedUser> users = new ArrayList<>(options.users());
+    for (int i = 0; i < options.users(); i += 1) {
+      users.add(new SimulatedUser(i, runId, options, objectMapper, stats, scheduler));
+    }
+    for (int i = 0; i + 1 < users.size(); i += 2) {
+      users.get(i).pairWith(users.get(i + 1));
+      users.get(i + 1).pairWith(users.get(i));
+    }
+
+    System.out.printf("Connecting %d users to %s (run %s)%n", options.users(), options.stompUri(), runId);
+    long connectStart = System.nanoTime();
+    List<SimulatedUser> connected = connectAll(options, users, httpClient, objectMapper, stats, scheduler, ioExecutor);
+    System.out.printf("Connected %d/%d users in %d ms%n", connected.size(), users.size(),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectStart));
+    if (connected.isEmpty()) {
+      ioExecutor.shutdownNow();
+      return 1;
+    }
+
+    if (options.warmupSeconds() > 0) {
+      System.out.printf("Warming up for %d s%n", options.warmupSeconds());
+      TimeUnit.SECONDS.sleep(options.warmupSeconds());
+    }
+    stats.startMeasuring();
+    long intervalNanos = TimeUnit.SECONDS.toNanos(options.reportSeconds());
+    long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.durationSeconds());
+    long lastReport = System.nanoTime();
+    while (System.nanoTime() < end) {
+      long sleepNanos = Math.min(intervalNanos, end - System.nanoTime());
+      TimeUnit.NANOSECONDS.sleep(Math.max(0L, sleepNanos));
+      long now = System.nanoTime();
+      stats.expirePending(now);
+      stats.printInterval(System.out, now - lastReport);
+      lastReport = now;
+    }
+
+    for (SimulatedUser user : connected) {
+      try {
+        user.stop();
+      } catch (RuntimeException ex) {
+        // The summary is what matters; a session that fails to close cleanly does not change it.
+      }
+    }
+    stats.printSummary(System.out, options);
+    scheduler.shutdownNow();
+    ioExecutor.shutdownNow();
+    return 0;
+  }
+
+  private static List<SimulatedUser> connectAll(
+      LoadOptions options,
+      List<SimulatedUser> users,
+      HttpClient httpClient,
+      ObjectMapper objectMapper,
+      LatencyStats stats,
+      ScheduledExecutorService scheduler,
+      ExecutorService ioExecutor) throws InterruptedException {
+    AuthClient authClient = new AuthClient(httpClient, objectMapper, options);
+    Semaphore parallelism = new Semaphore(options.connectParallelism());
+    List<Future<StompConnection>> connections = new ArrayList<>(users.size());
+    for (SimulatedUser user : users) {
+      connections.add(ioExecutor.submit(() -> {
+        parallelism.acquire();
+        try {
+          String token = authClient.token(user.username());
+          return StompConnection.open(httpClient, options.stompUri(), user.username(), token, scheduler, stats::error);
+        } finally {
+          parallelism.release();
+        }
+      }));
+    }
+    // Sessions start only once every user is connected, so peers are online before the first message.
+    List<SimulatedUser> connected = new ArrayList<>(users.size());
+    List<StompConnection> opened = new ArrayList<>(users.size());
+    for (int i = 0; i < users.size(); i += 1) {
+      try {
+        opened.add(connections.get(i).get());
+        connected.add(users.get(i));
+      } catch (ExecutionException ex) {
+        System.err.printf("%s failed to connect: %s%n", users.get(i).username(), ex.getCause());
+      }
+    }
+    for (int i = 0; i < connected.size(); i += 1) {
+      connected.get(i).start(opened.get(i));
+    }
+    return connected;
+  }
+}
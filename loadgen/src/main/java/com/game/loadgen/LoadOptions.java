@@ -0,0 +1,143 @@
+package com.game.loadgen;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/** Command line options, given as {@code --name=value}. Rates are per simulated user. */
+record LoadOptions(
+    URI baseUrl,
+    int users,
+    String userPrefix,
+    String password,
+    boolean register,
+    int connectParallelism,
+    int durationSeconds,
+    int warmupSeconds,
+    int reportSeconds,
+    double sendPerMinute,
+    double typingPerMinute,
+    double readPerMinute,
+    double reactPerMinute,
+    int heartbeatSeconds,
+    Game game,
+    double gameMovesPerMinute) {
+
+  enum Game {
+    NONE, TTT, SNL
+  }
+
+  static final String USAGE = """
+      Usage: loadgen [--name=value ...]
+
+        --base-url=http://localhost:8080   app to load; STOMP goes to <base-url>/ws-chat/websocket
+        --users=100                        simulated users, paired as chat peers and game opponents
+        --user-prefix=loadtest             usernames are <prefix><index>
+        --password=loadtest-pass
+        --register=true                    register users that cannot log in yet
+        --connect-parallelism=16           concurrent logins and STOMP handshakes
+        --duration=60                      measured seconds, after the warmup
+        --warmup=10                        seconds run but not recorded
+        --report-interval=5                seconds between interval lines
+        --send-per-minute=12               chat.send per user
+        --typing-per-minute=12             chat.typing per user
+        --read-per-minute=6                chat.read per user
+        --react-per-minute=2               chat.react per user, on received messages
+        --heartbeat-seconds=25             user.online keep-alive period
+        --game=none|ttt|snl                game played by each pair
+        --game-moves-per-minute=30         moves (ttt) or rolls (snl) per player
+
+      Chat destinations require users with role 'chat'; registration creates role 'game', so promote the
+      load users once, e.g. UPDATE app_users SET role = 'chat' WHERE username LIKE 'loadtest%';
+      """;
+
+  static LoadOptions parse(String[] args) {
+    Map<String, String> values = new LinkedHashMap<>();
+    for (String arg : args) {
+      if (!arg.startsWith("--")) {
+        throw new IllegalArgumentException("Unexpected argument: " + arg);
+      }
+      int equals = arg.indexOf('=');
+      String name = equals < 0 ? arg.substring(2) : arg.substring(2, equals);
+      values.put(name, equals < 0 ? "true" : arg.substring(equals + 1));
+    }
+    Options options = new Options(values);
+    LoadOptions parsed = new LoadOptions(
+        URI.create(stripTrailingSlash(options.string("base-url", "http://localhost:8080"))),
+        Math.max(1, options.integer("users", 100)),
+        options.string("user-prefix", "loadtest").toLowerCase(Locale.ROOT),
+        options.string("password", "loadtest-pass"),
+        options.bool("register", true),
+        Math.max(1, options.integer("connect-parallelism", 16)),
+        Math.max(1, options.integer("duration", 60)),
+        Math.max(0, options.integer("warmup", 10)),
+        Math.max(1, options.integer("report-interval", 5)),
+        Math.max(0.0, options.decimal("send-per-minute", 12)),
+        Math.max(0.0, options.decimal("typing-per-minute", 12)),
+        Math.max(0.0, options.decimal("read-per-minute", 6)),
+        Math.max(0.0, options.decimal("react-per-minute", 2)),
+        Math.max(1, options.integer("heartbeat-seconds", 25)),
+        Game.valueOf(options.string("game", "none").toUpperCase(Locale.ROOT)),
+        Math.max(0.0, options.decimal("game-moves-per-minute", 30)));
+    options.rejectUnknown();
+    return parsed;
+  }
+
+  static boolean wantsHelp(String[] args) {
+    for (String arg : args) {
+      if ("--help".equals(arg) || "-h".equals(arg)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  String username(int index) {
+    return userPrefix + index;
+  }
+
+  URI stompUri() {
+    String scheme = "https".equalsIgnoreCase(baseUrl.getScheme()) ? "wss" : "ws";
+    // The raw WebSocket transport of the SockJS endpoint, without SockJS framing.
+    return URI.create(scheme + "://" + baseUrl.getRawAuthority() + baseUrl.getRawPath() + "/ws-chat/websocket");
+  }
+
+  private static String stripTrailingSlash(String url) {
+    return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+  }
+
+  private static final class Options {
+    private final Map<String, String> values;
+
+    private Options(Map<String, String> values) {
+      this.values = new LinkedHashMap<>(values);
+    }
+
+    private String string(String name, String fallback) {
+      String value = values.remove(name);
+      return value == null || value.isBlank() ? fallback : value.trim();
+    }
+
+    private int integer(String name, int fallback) {
+      String value = string(name, null);
+      return value == null ? fallback : Integer.parseInt(value);
+    }
+
+    private double decimal(String name, double fallback) {
+      String value = string(name, null);
+      return value == null ? fallback : Double.parseDouble(value);
+    }
+
+    private boolean bool(String name, boolean fallback) {
+      String value = string(name, null);
+      return value == null ? fallback : Boolean.parseBoolean(value);
+    }
+
+    private void rejectUnknown() {
+      if (!values.isEmpty()) {
+        throw new IllegalArgumentException("Unknown option(s): " + String.join(", ", values.keySet()));
+      }
+    }
+  }
+}
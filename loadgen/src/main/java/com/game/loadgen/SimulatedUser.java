@@ -0,0 +1,394 @@
+package com.game.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * One simulated user: a STOMP session that chats with its peer (user {@code i ^ 1}) and, optionally, plays a
+ * game against it. Every periodic action runs at a fixed rate from a random offset so users do not move in
+ * lockstep. Of each pair the even user hosts the game rooms; a new round starts as soon as one is decided.
+ */
+final class SimulatedUser {
+
+  private static final String[] REACTIONS = { "👍", "❤️", "😂", "😮" };
+
+  private final int index;
+  private final String username;
+  private final String runId;
+  private final LoadOptions options;
+  private final ObjectMapper objectMapper;
+  private final LatencyStats stats;
+  private final ScheduledExecutorService scheduler;
+  private final List<ScheduledFuture<?>> tasks = new ArrayList<>();
+  private final AtomicLong sequence = new AtomicLong();
+  private StompConnection connection;
+  private SimulatedUser peer;
+  private volatile Long lastReceivedMessageId;
+  private volatile boolean stopped;
+
+  // Game state, only touched under the lock of this user.
+  private String roomId;
+  private String roomSubscription;
+  private int round;
+  private int scheduledAtMoveCount = -1;
+  private long scheduledAtUpdatedAt = -1;
+  private long moveSentNanos;
+  private int pendingMoveIndex = -1;
+
+  SimulatedUser(
+      int index,
+      String runId,
+      LoadOptions options,
+      ObjectMapper objectMapper,
+      LatencyStats stats,
+      ScheduledExecutorService scheduler) {
+    this.index = index;
+    this.username = options.username(index);
+    this.runId = runId;
+    this.options = options;
+    this.objectMapper = objectMapper;
+    this.stats = stats;
+    this.scheduler = scheduler;
+  }
+
+  String username() {
+    return username;
+  }
+
+  void pairWith(SimulatedUser peer) {
+    this.peer = peer;
+  }
+
+  private boolean isHost() {
+    return (index & 1) == 0;
+  }
+
+  /** Subscribes to the user queues on {@code connection} and schedules this user's actions. */
+  void start(StompConnection connection) {
+    this.connection = connection;
+    connection.subscribe("/user/queue/messages", this::onMessage);
+    connection.subscribe("/user/queue/send-ack", this::onSendAck);
+    connection.subscribe("/user/queue/errors", frame -> stats.error("server_" + field(frame, "type")));
+    connection.subscribe("/user/queue/typing", frame -> { });
+    connection.subscribe("/user/queue/read-receipts", frame -> { });
+    connection.subscribe("/user/queue/message-reactions", frame -> { });
+    switch (options.game()) {
+      case TTT -> connection.subscribe("/user/queue/ttt.events", this::onGameUserEvent);
+      case SNL -> connection.subscribe("/user/queue/snl.events", this::onGameUserEvent);
+      default -> { }
+    }
+
+    sendJson("/app/user.online", json().put("username", username));
+    every(options.heartbeatSeconds() * 1000.0, () -> {
+      sendJson("/app/user.online", json().put("username", username));
+      stats.count(LatencyStats.Counter.HEARTBEAT);
+    });
+    if (peer == null) {
+      return;
+    }
+    every(perMinuteToMillis(options.sendPerMinute()), this::sendChatMessage);
+    every(perMinuteToMillis(options.typingPerMinute()), () -> {
+      sendJson("/app/chat.typing", json().put("toUsername", peer.username).put("typing", true));
+      stats.count(LatencyStats.Counter.TYPING);
+    });
+    every(perMinuteToMillis(options.readPerMinute()), () -> {
+      sendJson("/app/chat.read", json().put("peerUsername", peer.username).put("readAt", System.currentTimeMillis()));
+      stats.count(LatencyStats.Counter.READ);
+    });
+    every(perMinuteToMillis(options.reactPerMinute()), this::react);
+    if (options.game() != LoadOptions.Game.NONE && isHost()) {
+      synchronized (this) {
+        startRound();
+      }
+    }
+  }
+
+  void stop() {
+    stopped = true;
+    tasks.forEach(task -> task.cancel(false));
+    if (connection != null) {
+      connection.close();
+    }
+  }
+
+  private void every(double periodMillis, Runnable action) {
+    if (periodMillis <= 0 || Double.isInfinite(periodMillis)) {
+      return;
+    }
+    long period = Math.max(1L, Math.round(periodMillis));
+    long offset = ThreadLocalRandom.current().nextLong(period);
+    tasks.add(scheduler.scheduleAtFixedRate(() -> {
+      if (stopped) {
+        return;
+      }
+      try {
+        action.run();
+      } catch (RuntimeException ex) {
+        stats.error("client_" + ex.getClass().getSimpleName());
+      }
+    }, offset, period, TimeUnit.MILLISECONDS));
+  }
+
+  private static double perMinuteToMillis(double perMinute) {
+    return perMinute <= 0 ? 0 : 60_000.0 / perMinute;
+  }
+
+  private void sendChatMessage() {
+    String tempId = "lg-" + runId + "-" + username + "-" + sequence.incrementAndGet();
+    ObjectNode body = json()
+        .put("toUsername", peer.username)
+        .put("message", "load message " + tempId)
+        .put("tempId", tempId)
+        .put("type", "text");
+    stats.sent(tempId, System.nanoTime());
+    sendJson("/app/chat.send", body);
+  }
+
+  private void react() {
+    Long messageId = lastReceivedMessageId;
+    if (messageId == null) {
+      return;
+    }
+    String reaction = REACTIONS[ThreadLocalRandom.current().nextInt(REACTIONS.length)];
+    sendJson("/app/chat.react", json().put("messageId", messageId).put("reaction", reaction));
+    stats.count(LatencyStats.Counter.REACT);
+  }
+
+  private void onMessage(StompFrame frame) {
+    long now = System.nanoTime();
+    JsonNode message = parse(frame);
+    if (message == null) {
+      return;
+    }
+    JsonNode clientMessageId = message.get("clientMessageId");
+    if (clientMessageId != null && !clientMessageId.isNull()) {
+      stats.delivered(clientMessageId.asText(), now);
+    }
+    JsonNode id = message.get("id");
+    if (id != null && id.canConvertToLong()) {
+      lastReceivedMessageId = id.asLong();
+    }
+  }
+
+  private void onSendAck(StompFrame frame) {
+    long now = System.nanoTime();
+    JsonNode ack = parse(frame);
+    if (ack != null && ack.hasNonNull("tempId")) {
+      stats.acked(ack.get("tempId").asText(), ack.path("success").asBoolean(false), now);
+    }
+  }
+
+  private String gamePrefix() {
+    return options.game() == LoadOptions.Game.TTT ? "ttt" : "snl";
+  }
+
+  /** Host only: opens the next room, subscribing to its topic before creating it so no state is missed. */
+  private void startRound() {
+    if (stopped) {
+      return;
+    }
+    round += 1;
+    String nextRoom = "LG" + runId + index + "R" + round;
+    enterRoom(nextRoom);
+    ObjectNode create = json().put("roomId", nextRoom);
+    if (options.game() == LoadOptions.Game.TTT) {
+      create.put("size", 3);
+    } else {
+      create.put("difficulty", "medium");
+    }
+    sendJson("/app/" + gamePrefix() + ".create", create);
+  }
+
+  /** Guest only: called by the host once the room exists. */
+  private synchronized void joinRoom(String hostRoomId) {
+    if (stopped) {
+      return;
+    }
+    enterRoom(hostRoomId);
+    sendJson("/app/" + gamePrefix() + ".join", json().put("roomId", hostRoomId));
+  }
+
+  private void enterRoom(String nextRoom) {
+    roomId = nextRoom;
+    scheduledAtMoveCount = -1;
+    scheduledAtUpdatedAt = -1;
+    pendingMoveIndex = -1;
+    moveSentNanos = 0;
+    String topic = "/topic/" + gamePrefix() + ".room." + nextRoom;
+    roomSubscription = connection.subscribe(topic, this::onGameState);
+  }
+
+  private void leaveRoom() {
+    if (roomSubscription != null) {
+      connection.unsubscribe(roomSubscription);
+      roomSubscription = null;
+    }
+    if (roomId != null) {
+      sendJson("/app/" + gamePrefix() + ".leave", json().put("roomId", roomId));
+      roomId = null;
+    }
+  }
+
+  private void onGameUserEvent(StompFrame frame) {
+    JsonNode event = parse(frame);
+    if (event == null) {
+      return;
+    }
+    String type = event.path("type").asText();
+    if ("error".equals(type)) {
+      stats.error(gamePrefix() + "_error");
+    } else if ("room_created".equals(type) && peer != null) {
+      peer.joinRoom(event.path("roomId").asText());
+    }
+  }
+
+  private void onGameState(StompFrame frame) {
+    long now = System.nanoTime();
+    JsonNode state = parse(frame);
+    if (state == null) {
+      return;
+    }
+    synchronized (this) {
+      if (roomId == null || !roomId.equals(state.path("roomId").asText())) {
+        return;
+      }
+      if (options.game() == LoadOptions.Game.TTT) {
+        onTttState(state, now);
+      } else {
+        onSnlState(state, now);
+      }
+    }
+  }
+
+  private void onTttState(JsonNode state, long now) {
+    String myMark = isHost() ? "X" : "O";
+    JsonNode board = state.path("board");
+    List<Integer> empty = new ArrayList<>();
+    for (int cell = 0; cell < board.size(); cell += 1) {
+      if (board.get(cell).asText("").isBlank()) {
+        empty.add(cell);
+      }
+    }
+    int moveCount = board.size() - empty.size();
+    if (pendingMoveIndex >= 0 && state.path("lastMoveIndex").asInt(-1) == pendingMoveIndex
+        && myMark.equals(board.path(pendingMoveIndex).asText())) {
+      stats.record(LatencyStats.Metric.GAME_MOVE, moveSentNanos, now);
+      pendingMoveIndex = -1;
+    }
+    if (!state.path("winner").asText("").isBlank()) {
+      roundFinished();
+      return;
+    }
+    boolean bothSeated = !state.path("xPlayer").asText("").isBlank() && !state.path("oPlayer").asText("").isBlank();
+    if (!bothSeated || !myMark.equals(state.path("turn").asText()) || empty.isEmpty()
+        || moveCount == scheduledAtMoveCount) {
+      return;
+    }
+    scheduledAtMoveCount = moveCount;
+    String room = roomId;
+    int cell = empty.get(ThreadLocalRandom.current().nextInt(empty.size()));
+    afterThinking(() -> {
+      synchronized (this) {
+        if (!room.equals(roomId)) {
+          return;
+        }
+        pendingMoveIndex = cell;
+        moveSentNanos = System.nanoTime();
+      }
+      sendJson("/app/ttt.move", json().put("roomId", room).put("index", cell));
+      stats.count(LatencyStats.Counter.GAME_MOVES);
+    });
+  }
+
+  private void onSnlState(JsonNode state, long now) {
+    long updatedAt = state.path("updatedAt").asLong(0);
+    if (moveSentNanos > 0 && username.equals(state.path("rolledBy").asText())) {
+      stats.record(LatencyStats.Metric.GAME_MOVE, moveSentNanos, now);
+      moveSentNanos = 0;
+    }
+    if (!state.path("winnerUsername").asText("").isBlank()) {
+      roundFinished();
+      return;
+    }
+    if (!username.equals(state.path("turnUsername").asText()) || updatedAt == scheduledAtUpdatedAt) {
+      return;
+    }
+    scheduledAtUpdatedAt = updatedAt;
+    String room = roomId;
+    afterThinking(() -> {
+      synchronized (this) {
+        if (!room.equals(roomId)) {
+          return;
+        }
+        moveSentNanos = System.nanoTime();
+      }
+      sendJson("/app/snl.roll", json().put("roomId", room));
+      stats.count(LatencyStats.Counter.GAME_MOVES);
+    });
+  }
+
+  private void roundFinished() {
+    leaveRoom();
+    if (isHost()) {
+      stats.count(LatencyStats.Counter.GAME_ROUNDS);
+      afterThinking(() -> {
+        synchronized (this) {
+          startRound();
+        }
+      });
+    }
+  }
+
+  private void afterThinking(Runnable action) {
+    double thinkMillis = perMinuteToMillis(options.gameMovesPerMinute());
+    if (thinkMillis <= 0 || stopped) {
+      return;
+    }
+    // Uniform in [0.5, 1.5) of the mean think time.
+    long delay = Math.round(thinkMillis * (0.5 + ThreadLocalRandom.current().nextDouble()));
+    scheduler.schedule(() -> {
+      if (!stopped) {
+        action.run();
+      }
+    }, delay, TimeUnit.MILLISECONDS);
+  }
+
+  private ObjectNode json() {
+    return objectMapper.createObjectNode();
+  }
+
+  private void sendJson(String destination, ObjectNode body) {
+    if (stopped) {
+      return;
+    }
+    try {
+      connection.sendJson(destination, objectMapper.writeValueAsString(body));
+    } catch (JsonProcessingException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private JsonNode parse(StompFrame frame) {
+    try {
+      return objectMapper.readTree(frame.body());
+    } catch (JsonProcessingException ex) {
+      stats.error("bad_json");
+      return null;
+    }
+  }
+
+  private String field(StompFrame frame, String name) {
+    JsonNode node = parse(frame);
+    return node != null ? node.path(name).asText("unknown") : "unknown";
+  }
+}
@@ -0,0 +1,214 @@
+package com.game.loadgen;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * One STOMP 1.2 session over a JDK {@link WebSocket}. Frames are written one at a time in call order, as the
+ * WebSocket API requires; incoming {@code MESSAGE} frames are dispatched to the subscription's handler on
+ * the socket's receive thread, so handlers must not block.
+ */
+final class StompConnection implements WebSocket.Listener {
+
+  private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(20);
+  private static final long CLIENT_HEARTBEAT_MILLIS = 10_000;
+
+  private final String username;
+  private final Map<String, Consumer<StompFrame>> handlers = new ConcurrentHashMap<>();
+  private final AtomicInteger subscriptionIds = new AtomicInteger();
+  private final CompletableFuture<StompFrame> connected = new CompletableFuture<>();
+  private final StringBuilder partial = new StringBuilder();
+  private final Consumer<String> errorHandler;
+  private CompletableFuture<?> outbound = CompletableFuture.completedFuture(null);
+  private WebSocket webSocket;
+  private ScheduledFuture<?> heartbeat;
+  private volatile boolean closed;
+
+  private StompConnection(String username, Consumer<String> errorHandler) {
+    this.username = username;
+    this.errorHandler = errorHandler;
+  }
+
+  /** Opens the socket and completes the STOMP handshake, authenticated by {@code token}. */
+  static StompConnection open(
+      HttpClient httpClient,
+      URI uri,
+      String username,
+      String token,
+      ScheduledExecutorService scheduler,
+      Consumer<String> errorHandler) {
+    StompConnection connection = new StompConnection(username, errorHandler);
+    connection.webSocket = httpClient.newWebSocketBuilder()
+        .connectTimeout(CONNECT_TIMEOUT)
+        .buildAsync(uri, connection)
+        .orTimeout(CONNECT_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)
+        .join();
+    connection.send(StompFrame.of("CONNECT",
+        "accept-version", "1.2",
+        "host", uri.getHost(),
+        "heart-beat", CLIENT_HEARTBEAT_MILLIS + "," + CLIENT_HEARTBEAT_MILLIS,
+        "Authorization", "Bearer " + token));
+    StompFrame reply = connection.connected.orTimeout(CONNECT_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS).join();
+    long interval = heartbeatInterval(reply.header("heart-beat"));
+    if (interval > 0) {
+      connection.heartbeat = scheduler.scheduleAtFixedRate(
+          connection::sendHeartbeat, interval, interval, TimeUnit.MILLISECONDS);
+    }
+    return connection;
+  }
+
+  /** The client heartbeat period: the larger of ours and what the server asks for, or 0 when either is off. */
+  static long heartbeatInterval(String serverHeartbeat) {
+    if (serverHeartbeat == null) {
+      return 0;
+    }
+    String[] parts = serverHeartbeat.split(",");
+    long serverWants = parts.length == 2 ? Long.parseLong(parts[1].trim()) : 0;
+    return serverWants == 0 ? 0 : Math.max(CLIENT_HEARTBEAT_MILLIS, serverWants);
+  }
+
+  String username() {
+    return username;
+  }
+
+  String subscribe(String destination, Consumer<StompFrame> handler) {
+    String id = "sub-" + subscriptionIds.incrementAndGet();
+    handlers.put(id, handler);
+    send(StompFrame.of("SUBSCRIBE", "id", id, "destination", destination));
+    return id;
+  }
+
+  void unsubscribe(String id) {
+    if (handlers.remove(id) != null) {
+      send(StompFrame.of("UNSUBSCRIBE", "id", id));
+    }
+  }
+
+  void sendJson(String destination, String json) {
+    send(StompFrame.of("SEND", "destination", destination).withBody("application/json", json));
+  }
+
+  void close() {
+    if (closed) {
+      return;
+    }
+    if (heartbeat != null) {
+      heartbeat.cancel(false);
+    }
+    send(StompFrame.of("DISCONNECT"));
+    closed = true;
+    CompletableFuture<?> drained;
+    synchronized (this) {
+      drained = outbound;
+    }
+    drained.orTimeout(5, TimeUnit.SECONDS)
+        .handle((ignored, error) -> webSocket.sendClose(WebSocket.NORMAL_CLOSURE, ""))
+        .join();
+  }
+
+  private void send(StompFrame frame) {
+    write(frame.encode());
+  }
+
+  private void sendHeartbeat() {
+    write(StompFrame.HEARTBEAT);
+  }
+
+  private synchronized void write(String text) {
+    if (closed) {
+      return;
+    }
+    // WebSocket allows one outstanding sendText; chain each write on the previous one.
+    outbound = outbound
+        .handle((ignored, error) -> null)
+        .thenCompose(ignored -> webSocket.sendText(text, true))
+        .whenComplete((ignored, error) -> {
+          if (error != null && !closed) {
+            errorHandler.accept("send_failed");
+          }
+        });
+  }
+
+  @Override
+  public void onOpen(WebSocket socket) {
+    socket.request(1);
+  }
+
+  @Override
+  public CompletionStage<?> onText(WebSocket socket, CharSequence data, boolean last) {
+    partial.append(data);
+    if (last) {
+      String text = partial.toString();
+      partial.setLength(0);
+      try {
+        for (StompFrame frame : StompFrame.parseAll(text)) {
+          dispatch(frame);
+        }
+      } catch (RuntimeException ex) {
+        errorHandler.accept("bad_frame");
+      }
+    }
+    socket.request(1);
+    return null;
+  }
+
+  @Override
+  public CompletionStage<?> onBinary(WebSocket socket, ByteBuffer data, boolean last) {
+    socket.request(1);
+    return null;
+  }
+
+  @Override
+  public CompletionStage<?> onClose(WebSocket socket, int statusCode, String reason) {
+    if (!closed) {
+      closed = true;
+      errorHandler.accept("closed_by_server");
+    }
+    connected.completeExceptionally(new IllegalStateException("Closed " + statusCode + " " + reason));
+    if (heartbeat != null) {
+      heartbeat.cancel(false);
+    }
+    return null;
+  }
+
+  @Override
+  public void onError(WebSocket socket, Throwable error) {
+    closed = true;
+    connected.completeExceptionally(error);
+    if (heartbeat != null) {
+      heartbeat.cancel(false);
+    }
+    errorHandler.accept("socket_error");
+  }
+
+  private void dispatch(StompFrame frame) {
+    switch (frame.command()) {
+      case "CONNECTED" -> connected.complete(frame);
+      case "MESSAGE" -> {
+        Consumer<StompFrame> handler = handlers.get(frame.header("subscription"));
+        if (handler != null) {
+          handler.accept(frame);
+        }
+      }
+      case "ERROR" -> {
+        connected.completeExceptionally(new IllegalStateException("STOMP ERROR: " + frame.header("message")));
+        errorHandler.accept("stomp_error");
+      }
+      default -> {
+        // RECEIPT frames are not requested.
+      }
+    }
+  }
+}
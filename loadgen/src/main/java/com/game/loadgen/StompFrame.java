@@ -0,0 +1,128 @@
+package com.game.loadgen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A STOMP 1.2 frame as sent over one WebSocket text message. Header values are escaped as the spec requires
+ * for every command except CONNECT and CONNECTED.
+ */
+record StompFrame(String command, Map<String, String> headers, String body) {
+
+  static final String HEARTBEAT = "\n";
+
+  StompFrame {
+    headers = Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+    body = body != null ? body : "";
+  }
+
+  static StompFrame of(String command, String... keyValues) {
+    Map<String, String> headers = new LinkedHashMap<>();
+    for (int i = 0; i + 1 < keyValues.length; i += 2) {
+      headers.put(keyValues[i], keyValues[i + 1]);
+    }
+    return new StompFrame(command, headers, "");
+  }
+
+  StompFrame withBody(String contentType, String body) {
+    Map<String, String> withType = new LinkedHashMap<>(headers);
+    withType.put("content-type", contentType);
+    return new StompFrame(command, withType, body);
+  }
+
+  String header(String name) {
+    return headers.get(name);
+  }
+
+  String encode() {
+    boolean escape = !"CONNECT".equals(command) && !"CONNECTED".equals(command);
+    StringBuilder out = new StringBuilder(command.length() + body.length() + 64);
+    out.append(command).append('\n');
+    headers.forEach((name, value) -> out
+        .append(escape ? escape(name) : name)
+        .append(':')
+        .append(escape ? escape(value) : value)
+        .append('\n'));
+    return out.append('\n').append(body).append('\0').toString();
+  }
+
+  /** Parses every complete frame in {@code data}; bare EOLs between frames are heartbeats and are skipped. */
+  static List<StompFrame> parseAll(String data) {
+    List<StompFrame> frames = new ArrayList<>(1);
+    int position = 0;
+    while (position < data.length()) {
+      while (position < data.length() && (data.charAt(position) == '\n' || data.charAt(position) == '\r')) {
+        position += 1;
+      }
+      if (position >= data.length()) {
+        break;
+      }
+      int end = data.indexOf('\0', position);
+      if (end < 0) {
+        throw new IllegalArgumentException("Unterminated STOMP frame");
+      }
+      frames.add(parse(data.substring(position, end)));
+      position = end + 1;
+    }
+    return frames;
+  }
+
+  private static StompFrame parse(String frame) {
+    int commandEnd = frame.indexOf('\n');
+    String command = stripCr(commandEnd < 0 ? frame : frame.substring(0, commandEnd));
+    boolean unescape = !"CONNECTED".equals(command);
+    Map<String, String> headers = new LinkedHashMap<>();
+    int position = commandEnd < 0 ? frame.length() : commandEnd + 1;
+    while (position < frame.length()) {
+      int lineEnd = frame.indexOf('\n', position);
+      String line = stripCr(lineEnd < 0 ? frame.substring(position) : frame.substring(position, lineEnd));
+      position = lineEnd < 0 ? frame.length() : lineEnd + 1;
+      if (line.isEmpty()) {
+        break;
+      }
+      int colon = line.indexOf(':');
+      if (colon > 0) {
+        String name = unescape ? unescape(line.substring(0, colon)) : line.substring(0, colon);
+        // The first occurrence of a repeated header wins.
+        headers.putIfAbsent(name, unescape ? unescape(line.substring(colon + 1)) : line.substring(colon + 1));
+      }
+    }
+    return new StompFrame(command, headers, frame.substring(Math.min(position, frame.length())));
+  }
+
+  private static String stripCr(String line) {
+    return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+  }
+
+  private static String escape(String value) {
+    if (value.indexOf('\\') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0 && value.indexOf(':') < 0) {
+      return value;
+    }
+    return value.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r").replace(":", "\\c");
+  }
+
+  private static String unescape(String value) {
+    if (value.indexOf('\\') < 0) {
+      return value;
+    }
+    StringBuilder out = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i += 1) {
+      char c = value.charAt(i);
+      if (c != '\\' || i + 1 >= value.length()) {
+        out.append(c);
+        continue;
+      }
+      char next = value.charAt(++i);
+      out.append(switch (next) {
+        case 'n' -> '\n';
+        case 'r' -> '\r';
+        case 'c' -> ':';
+        default -> next;
+      });
+    }
+    return out.toString();
+  }
+}
@@ -0,0 +1,72 @@
+package com.game.loadgen;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StompFrameTest {
+
+  @Test
+  void encodesSendFrameWithEscapedHeadersAndNulTerminator() {
+    StompFrame frame = StompFrame.of("SEND", "destination", "/app/chat.send", "note", "a:b\nc")
+        .withBody("application/json", "{\"x\":1}");
+
+    assertEquals(
+        "SEND\ndestination:/app/chat.send\nnote:a\\cb\\nc\ncontent-type:application/json\n\n{\"x\":1}\0",
+        frame.encode());
+  }
+
+  @Test
+  void connectHeadersAreNotEscaped() {
+    String encoded = StompFrame.of("CONNECT", "Authorization", "Bearer a:b").encode();
+
+    assertEquals("CONNECT\nAuthorization:Bearer a:b\n\n\0", encoded);
+  }
+
+  @Test
+  void parsesFramesBetweenHeartbeatsAndUnescapesHeaders() {
+    String data = "\n\nMESSAGE\r\nsubscription:sub-1\ndestination:/user/queue/x\\c1\n\n{\"a\":1}\0\n"
+        + "RECEIPT\nreceipt-id:7\n\n\0";
+
+    List<StompFrame> frames = StompFrame.parseAll(data);
+
+    assertEquals(2, frames.size());
+    assertEquals("MESSAGE", frames.get(0).command());
+    assertEquals("sub-1", frames.get(0).header("subscription"));
+    assertEquals("/user/queue/x:1", frames.get(0).header("destination"));
+    assertEquals("{\"a\":1}", frames.get(0).body());
+    assertEquals("7", frames.get(1).header("receipt-id"));
+    assertEquals("", frames.get(1).body());
+  }
+
+  @Test
+  void roundTripsEncodedFrames() {
+    StompFrame frame = StompFrame.of("MESSAGE", "subscription", "sub-2", "message-id", "m\\1")
+        .withBody("application/json", "[]");
+
+    StompFrame parsed = StompFrame.parseAll(frame.encode()).get(0);
+
+    assertEquals(frame, parsed);
+  }
+
+  @Test
+  void heartbeatOnlyDataHasNoFrames() {
+    assertEquals(0, StompFrame.parseAll(StompFrame.HEARTBEAT).size());
+  }
+
+  @Test
+  void rejectsUnterminatedFrame() {
+    assertThrows(IllegalArgumentException.class, () -> StompFrame.parseAll("MESSAGE\n\nbody"));
+  }
+
+  @Test
+  void clientHeartbeatFollowsServerRequest() {
+    assertEquals(0, StompConnection.heartbeatInterval(null));
+    assertEquals(0, StompConnection.heartbeatInterval("10000,0"));
+    assertEquals(10_000, StompConnection.heartbeatInterval("0,5000"));
+    assertEquals(25_000, StompConnection.heartbeatInterval("0,25000"));
+  }
+}